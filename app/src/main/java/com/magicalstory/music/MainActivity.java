@@ -49,6 +49,7 @@ import com.magicalstory.music.service.MusicService;
 import com.magicalstory.music.player.MediaControllerHelper;
 import com.magicalstory.music.player.MediaControllerHelper.PlaybackStateListener;
 import com.magicalstory.music.utils.app.ToastUtils;
+import com.magicalstory.music.utils.query.LazySongList;
 import com.tencent.mmkv.MMKV;
 
 import java.lang.reflect.Type;
@@ -87,7 +88,7 @@ public class MainActivity extends AppCompatActivity implements PlaybackStateList
     private MediaController mediaController;
     private ListenableFuture<MediaController> controllerFuture;
     private MediaControllerHelper controllerHelper;
-    private ArrayList<Song> songArrayList_lastest = new ArrayList<>();
+    private List<Song> songArrayList_lastest = new ArrayList<>();
     private boolean hasLastedPlayList = false;
 
     // SplashScreen相关
@@ -197,7 +198,13 @@ public class MainActivity extends AppCompatActivity implements PlaybackStateList
 
         Type listType = new TypeToken<List<Song>>() {
         }.getType();
-        songArrayList_lastest = GsonFactory.getSingletonGson().fromJson(PlaylistManager.getInstance().getPlayList(), listType);
+        long[] lastPlayListIds = PlaylistManager.getInstance().getPlayListIds();
+        if (lastPlayListIds.length > 0) {
+            // 上次是随机播放全部，只保存了歌曲ID
+            songArrayList_lastest = new LazySongList(lastPlayListIds);
+        } else {
+            songArrayList_lastest = GsonFactory.getSingletonGson().fromJson(PlaylistManager.getInstance().getPlayList(), listType);
+        }
         hasLastedPlayList = songArrayList_lastest != null && !songArrayList_lastest.isEmpty();
 
         // 获取mini player和full player的容器
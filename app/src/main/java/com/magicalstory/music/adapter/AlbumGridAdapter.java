@@ -305,9 +305,8 @@ public class AlbumGridAdapter extends RecyclerView.Adapter<AlbumGridAdapter.View
      * 播放专辑歌曲
      */
     private void playAlbumSongs(MainActivity mainActivity, Album album) {
-        // 根据专辑ID和艺术家名称查询歌曲
-        List<Song> albumSongs = LitePal.where("albumId = ? and artist = ?", 
-                String.valueOf(album.getAlbumId()), album.getArtist())
+        // 根据专辑行ID查询歌曲
+        List<Song> albumSongs = LitePal.where("albumRowId = ?", String.valueOf(album.getId()))
                 .order("track asc")
                 .find(Song.class);
         
@@ -12,8 +12,10 @@ import android.view.animation.DecelerateInterpolator;
 import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 import androidx.media3.common.util.UnstableApi;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
@@ -328,6 +330,35 @@ public class PlaylistGridAdapter extends RecyclerView.Adapter<PlaylistGridAdapte
         
         notifyDataSetChanged();
     }
+
+    /**
+     * 按差异更新数据，只刷新变化的项；diff为null时整体刷新
+     * 选中的歌单按ID对应到新列表中的对象，已不在新列表中的取消选中
+     */
+    public void updateData(List<Playlist> newPlaylistList, @Nullable DiffUtil.DiffResult diff) {
+        this.playlistList = newPlaylistList;
+        if (!selectedPlaylists.isEmpty()) {
+            List<Playlist> stillSelected = new ArrayList<>();
+            for (Playlist playlist : newPlaylistList) {
+                for (Playlist selected : selectedPlaylists) {
+                    if (selected.getId() == playlist.getId()) {
+                        stillSelected.add(playlist);
+                        break;
+                    }
+                }
+            }
+            boolean selectionChanged = stillSelected.size() != selectedPlaylists.size();
+            selectedPlaylists = stillSelected;
+            if (selectionChanged && onSelectionChangedListener != null) {
+                onSelectionChangedListener.onSelectionChanged(selectedPlaylists.size());
+            }
+        }
+        if (diff == null) {
+            notifyDataSetChanged();
+        } else {
+            diff.dispatchUpdatesTo(this);
+        }
+    }
     
     /**
      * 禁用后续的加载动画
@@ -1,6 +1,8 @@
 package com.magicalstory.music.adapter;
 
 import android.content.Context;
+import android.graphics.Color;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -9,6 +11,7 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.media3.common.util.UnstableApi;
 
+import com.google.android.material.color.MaterialColors;
 import com.magicalstory.music.MainActivity;
 import com.magicalstory.music.R;
 import com.magicalstory.music.databinding.ItemAlbumVerticalBinding;
@@ -20,13 +23,16 @@ import com.magicalstory.music.model.Album;
 import com.magicalstory.music.model.Artist;
 import com.magicalstory.music.model.Song;
 import com.magicalstory.music.utils.glide.Glide2;
+import com.magicalstory.music.utils.search.FuzzyMatcher;
+import com.magicalstory.music.utils.text.KeywordHighlighter;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * 搜索结果适配器
- * 支持显示歌曲、专辑、艺术家和分组标题
+ * 支持显示歌曲、专辑、艺术家和分组标题，名称中与关键字匹配的部分高亮显示
  */
 @UnstableApi
 public class SearchResultAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
@@ -42,6 +48,11 @@ public class SearchResultAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
     private OnAlbumClickListener onAlbumClickListener;
     private OnArtistClickListener onArtistClickListener;
 
+    // 高亮的关键字（小写）和去掉空格标点后的关键字
+    private String highlightQuery;
+    private String compactHighlightQuery;
+    private final int highlightColor;
+
     public interface OnSongClickListener {
         void onSongClick(Song song, int position);
     }
@@ -57,6 +68,16 @@ public class SearchResultAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
     public SearchResultAdapter(Context context) {
         this.context = context;
         this.items = new ArrayList<>();
+        this.highlightColor = MaterialColors.getColor(context, com.google.android.material.R.attr.colorPrimary,
+                Color.parseColor("#0081ff"));
+    }
+
+    /**
+     * 设置需要高亮的关键字，在更新搜索结果前调用
+     */
+    public void setHighlightQuery(String query) {
+        this.highlightQuery = TextUtils.isEmpty(query) ? null : query.trim().toLowerCase(Locale.ROOT);
+        this.compactHighlightQuery = FuzzyMatcher.compact(query);
     }
 
     public void setOnSongClickListener(OnSongClickListener listener) {
@@ -122,14 +143,14 @@ public class SearchResultAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
         Song song = item.getSong();
         holder.binding.getRoot().setPadding(0, 0, 0, 0);
         // 设置歌曲标题
-        holder.binding.tvTitle.setText(song.getTitle());
+        holder.binding.tvTitle.setText(highlight(song.getTitle()));
 
         // 设置艺术家和专辑信息
         String artistAlbum = song.getArtist();
         if (song.getAlbum() != null && !song.getAlbum().isEmpty()) {
             artistAlbum += " • " + formatDuration(song.getDuration());
         }
-        holder.binding.tvArtistDur.setText(artistAlbum);
+        holder.binding.tvArtistDur.setText(highlight(artistAlbum));
 
         // 加载专辑封面
         loadAlbumArt(holder.binding.ivCover, song);
@@ -151,10 +172,10 @@ public class SearchResultAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
         Album album = item.getAlbum();
 
         // 设置专辑名称
-        holder.binding.tvAlbumName.setText(album.getAlbumName());
+        holder.binding.tvAlbumName.setText(highlight(album.getAlbumName()));
 
         // 设置艺术家名称
-        holder.binding.tvArtist.setText(album.getArtist());
+        holder.binding.tvArtist.setText(highlight(album.getArtist()));
 
         // 加载专辑封面
         String albumArtUri = null;
@@ -175,7 +196,7 @@ public class SearchResultAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
         Artist artist = item.getArtist();
 
         // 设置艺术家名称
-        holder.binding.tvArtistName.setText(artist.getArtistName());
+        holder.binding.tvArtistName.setText(highlight(artist.getArtistName()));
 
         // 设置歌曲数量
         holder.binding.tvSongCount.setText(artist.getSongCount() + " 首歌曲");
@@ -197,6 +218,34 @@ public class SearchResultAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
         });
     }
 
+    /**
+     * 高亮文本中与关键字匹配的部分：优先查找完整的关键字（忽略大小写），
+     * 找不到时（容错搜索的结果）高亮编辑距离最小的一段；拼音匹配的结果不高亮
+     */
+    private CharSequence highlight(String text) {
+        if (TextUtils.isEmpty(text) || highlightQuery == null) {
+            return text;
+        }
+        String lowerText = text.toLowerCase(Locale.ROOT);
+        int start = lowerText.length() == text.length() ? lowerText.indexOf(highlightQuery) : -1;
+        int end;
+        if (start >= 0) {
+            end = start + highlightQuery.length();
+        } else {
+            if (compactHighlightQuery.length() < 3) {
+                return text;
+            }
+            FuzzyMatcher.Match match = FuzzyMatcher.find(compactHighlightQuery, text,
+                    FuzzyMatcher.maxEdits(compactHighlightQuery.length()));
+            if (match == null) {
+                return text;
+            }
+            start = match.start;
+            end = match.end;
+        }
+        return KeywordHighlighter.highlightRange(text, start, end, highlightColor);
+    }
+
     private void loadAlbumArt(android.widget.ImageView imageView, Song song) {
         String albumArtUri = null;
         if (song.getAlbumId() > 0) {
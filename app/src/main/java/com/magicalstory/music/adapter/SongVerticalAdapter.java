@@ -9,8 +9,10 @@ import android.view.ViewGroup;
 import android.view.animation.DecelerateInterpolator;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 import androidx.media3.common.util.UnstableApi;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.magicalstory.music.MainActivity;
@@ -330,6 +332,35 @@ public class SongVerticalAdapter extends RecyclerView.Adapter<SongVerticalAdapte
         notifyDataSetChanged();
     }
 
+    /**
+     * 按差异更新数据，只刷新变化的项；diff为null时整体刷新
+     * 选中的歌曲按ID对应到新列表中的对象，已不在新列表中的取消选中
+     */
+    public void updateData(List<Song> newSongList, @Nullable DiffUtil.DiffResult diff) {
+        this.songList = newSongList;
+        if (!selectedSongs.isEmpty()) {
+            List<Song> stillSelected = new ArrayList<>();
+            for (Song song : newSongList) {
+                for (Song selected : selectedSongs) {
+                    if (selected.getId() == song.getId()) {
+                        stillSelected.add(song);
+                        break;
+                    }
+                }
+            }
+            boolean selectionChanged = stillSelected.size() != selectedSongs.size();
+            selectedSongs = stillSelected;
+            if (selectionChanged && onSelectionChangedListener != null) {
+                onSelectionChangedListener.onSelectionChanged(selectedSongs.size());
+            }
+        }
+        if (diff == null) {
+            notifyDataSetChanged();
+        } else {
+            diff.dispatchUpdatesTo(this);
+        }
+    }
+
     /**
      * 获取歌曲列表
      */
@@ -5,6 +5,9 @@ import android.app.Application;
 import androidx.media3.common.util.UnstableApi;
 
 import com.magicalstory.music.player.PlaylistManager;
+import com.magicalstory.music.utils.MediaStoreSyncCoordinator;
+import com.magicalstory.music.utils.db.LibrarySchema;
+import com.magicalstory.music.utils.db.PlaybackJournal;
 import com.magicalstory.music.utils.network.NetworkUtils;
 import com.tencent.mmkv.BuildConfig;
 import com.tencent.mmkv.MMKV;
@@ -25,8 +28,14 @@ public class applicantion extends Application {
         super.onCreate();
         MMKV.initialize(this);
         LitePal.initialize(this);
+        // 补齐LitePal不维护的索引，LitePal升级和整表迁移在后台线程执行，访问音乐库前等待完成
+        LibrarySchema.migrateInBackground();
+        // 恢复上次进程退出前未写入的播放记录（在日志线程中等待迁移完成后恢复）
+        PlaybackJournal.getInstance(this);
         NetworkUtils.initialize(this);
         PlaylistManager.getInstance().init(this);
+        // 监听MediaStore变化，实时同步音乐库
+        MediaStoreSyncCoordinator.getInstance(this).start();
         //Fragmentation.builder()
         //        // show stack view. Mode: BUBBLE, SHAKE, NONE
         //        .stackViewMode(Fragmentation.BUBBLE)
@@ -34,4 +43,13 @@ public class applicantion extends Application {
         //        .install();
 
     }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // 界面进入后台后进程随时可能被回收，写入累积的播放记录
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            PlaybackJournal.getInstance(this).flush();
+        }
+    }
 }
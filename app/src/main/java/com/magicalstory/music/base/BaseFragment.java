@@ -23,6 +23,7 @@ import androidx.viewbinding.ViewBinding;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.magicalstory.music.MainActivity;
+import com.magicalstory.music.utils.query.LibrarySnapshot;
 import com.magicalstory.music.utils.screen.DensityUtil;
 
 /**
@@ -343,6 +344,9 @@ public abstract class BaseFragment<VB extends ViewBinding> extends Fragment {
         // 在后台线程发送广播
         new Thread(() -> {
             try {
+                // 音乐库已修改，列表快照需要重新读取
+                LibrarySnapshot.invalidate();
+
                 // 发送刷新广播
                 Intent refreshIntent = new Intent(ACTION_REFRESH_MUSIC_LIST);
                 LocalBroadcastManager.getInstance(requireContext()).sendBroadcast(refreshIntent);
@@ -41,6 +41,7 @@ public class AlbumBottomSheetDialogFragment extends BottomSheetDialogFragment {
 
     private static final String TAG = "AlbumBottomSheetDialogFragment";
     private static final String ARG_ALBUM_ID = "album_id";
+    private static final String ARG_ALBUM_ROW_ID = "album_row_id";
     private static final String ARG_ALBUM_NAME = "album_name";
     private static final String ARG_ARTIST = "artist";
     private static final String ARG_SONG_COUNT = "song_count";
@@ -57,6 +58,7 @@ public class AlbumBottomSheetDialogFragment extends BottomSheetDialogFragment {
         AlbumBottomSheetDialogFragment fragment = new AlbumBottomSheetDialogFragment();
         Bundle args = new Bundle();
         args.putLong(ARG_ALBUM_ID, album.getAlbumId());
+        args.putLong(ARG_ALBUM_ROW_ID, album.getId());
         args.putString(ARG_ALBUM_NAME, album.getAlbumName());
         args.putString(ARG_ARTIST, album.getArtist());
         args.putInt(ARG_SONG_COUNT, album.getSongCount());
@@ -81,6 +83,7 @@ public class AlbumBottomSheetDialogFragment extends BottomSheetDialogFragment {
         if (getArguments() != null) {
             Bundle args = getArguments();
             album = new Album();
+            album.setId(args.getLong(ARG_ALBUM_ROW_ID, 0));
             album.setAlbumId(args.getLong(ARG_ALBUM_ID, 0));
             album.setAlbumName(args.getString(ARG_ALBUM_NAME, ""));
             album.setArtist(args.getString(ARG_ARTIST, ""));
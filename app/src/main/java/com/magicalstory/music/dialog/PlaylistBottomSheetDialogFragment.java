@@ -30,6 +30,7 @@ import com.magicalstory.music.utils.app.ToastUtils;
 import com.magicalstory.music.utils.file.SafUtils;
 import com.magicalstory.music.utils.glide.GlideUtils;
 import com.magicalstory.music.MainActivity;
+import com.magicalstory.music.utils.query.QueryCache;
 
 import java.util.List;
 
@@ -295,6 +296,7 @@ public class PlaylistBottomSheetDialogFragment extends BottomSheetDialogFragment
                             // 更新播放列表名称
                             playlist.setName(newName.trim());
                             playlist.save();
+                            QueryCache.invalidate(QueryCache.PLAYLIST);
                             
                             ToastUtils.showToast(requireContext(), getString(R.string.playlist_renamed));
                             Log.d(TAG, "播放列表已重命名: " + newName.trim());
@@ -389,6 +391,7 @@ public class PlaylistBottomSheetDialogFragment extends BottomSheetDialogFragment
 
             // 删除播放列表本身
             playlist.delete();
+            QueryCache.invalidate(QueryCache.PLAYLIST);
 
             ToastUtils.showToast(requireContext(), getString(R.string.playlist_deleted));
             Log.d(TAG, "播放列表已删除: " + playlist.getName());
@@ -40,6 +40,7 @@ import com.magicalstory.music.model.Song;
 import com.magicalstory.music.player.MediaControllerHelper;
 import com.magicalstory.music.utils.app.ToastUtils;
 import com.magicalstory.music.utils.glide.Glide2;
+import com.magicalstory.music.utils.query.QueryCache;
 import com.magicalstory.music.utils.screen.DensityUtil;
 
 import org.litepal.LitePal;
@@ -63,6 +64,8 @@ public class AlbumDetailFragment extends BaseFragment<FragmentAlbumDetailBinding
     private Album currentAlbum;
     private List<Song> albumSongs;
     private List<Album> otherAlbums;
+    private Artist albumArtist;         // 专辑艺术家，没有对应的艺术家行时为null
+    private int totalAlbumCount;        // 同一艺术家的专辑数量（包括当前专辑）
 
     private SongVerticalAdapter songAdapter;
     private AlbumHorizontalAdapter albumAdapter;
@@ -248,6 +251,7 @@ public class AlbumDetailFragment extends BaseFragment<FragmentAlbumDetailBinding
             Bundle bundle = new Bundle();
             bundle.putString("dataType", "album");
             bundle.putLong("albumId", currentAlbum.getAlbumId());
+            bundle.putLong("albumRowId", currentAlbum.getId());
             bundle.putString("artistName", currentAlbum.getArtist());
             bundle.putString("albumName", currentAlbum.getAlbumName());
             Navigation.findNavController(requireView()).navigate(R.id.action_album_detail_to_recent_songs, bundle);
@@ -257,6 +261,7 @@ public class AlbumDetailFragment extends BaseFragment<FragmentAlbumDetailBinding
         binding.btnViewAllAlbums.setOnClickListener(v -> {
             Bundle bundle = new Bundle();
             bundle.putString("artistName", currentAlbum.getArtist());
+            bundle.putLong("artistRowId", currentAlbum.getArtistRowId());
             Navigation.findNavController(requireView()).navigate(R.id.action_album_detail_to_albums, bundle);
         });
 
@@ -613,22 +618,31 @@ public class AlbumDetailFragment extends BaseFragment<FragmentAlbumDetailBinding
                     currentAlbum.setAlbumName(albumName);
                 }
 
-                // 查询专辑歌曲（按音轨号排序）
-                albumSongs = LitePal.where("albumId = ? and artist = ?",
-                                String.valueOf(albumId), artistName)
-                        .order("track asc")
-                        .find(Song.class);
+                // 以下查询的结果按专辑/艺术家行ID缓存，再次打开同一张专辑时不需要查询
+                String[] tables = {QueryCache.SONG, QueryCache.ALBUM, QueryCache.ARTIST};
+                String albumRowId = String.valueOf(currentAlbum.getId());
+
+                // 查询专辑歌曲（按专辑行ID，按音轨号排序）
+                albumSongs = QueryCache.getList("album.songs", tables,
+                        () -> LitePal.where("albumRowId = ?", albumRowId)
+                                .order("track asc")
+                                .find(Song.class), albumRowId);
 
                 // 更新专辑歌曲数量
                 if (albumSongs != null) {
                     currentAlbum.setSongCount(albumSongs.size());
                 }
 
-                // 查询同一艺术家的其他专辑
-                otherAlbums = LitePal.where("artist = ? and albumId != ?",
-                                artistName, String.valueOf(albumId))
-                        .limit(10)
-                        .find(Album.class);
+                // 查询同一艺术家（按艺术家行ID）的其他专辑和专辑总数
+                String artistRowId = String.valueOf(currentAlbum.getArtistRowId());
+                otherAlbums = QueryCache.getList("album.others", tables,
+                        () -> LitePal.where("artistRowId = ? and id != ?", artistRowId, albumRowId)
+                                .limit(10)
+                                .find(Album.class), artistRowId, albumRowId);
+                totalAlbumCount = QueryCache.get("artist.albums.count", tables,
+                        () -> LitePal.where("artistRowId = ?", artistRowId).count(Album.class), artistRowId);
+                albumArtist = currentAlbum.getArtistRowId() > 0
+                        ? LitePal.find(Artist.class, currentAlbum.getArtistRowId()) : null;
 
                 // 在主线程更新UI
                 mainHandler.post(() -> {
@@ -714,8 +728,8 @@ public class AlbumDetailFragment extends BaseFragment<FragmentAlbumDetailBinding
      * 加载艺术家头像
      */
     private void loadArtistAvatar() {
-        // 尝试从数据库获取艺术家头像
-        Artist artist = LitePal.where("artistName = ?", currentAlbum.getArtist()).findFirst(Artist.class);
+        // 艺术家在加载专辑详情时按行ID读取
+        Artist artist = albumArtist;
 
         if (artist != null && artist.getCoverUrl() != null && !artist.getCoverUrl().isEmpty()) {
             Glide2.loadImage(getContext(), binding.ivArtistAvatar, artist.getCoverUrl(), R.drawable.place_holder_artist);
@@ -759,8 +773,7 @@ public class AlbumDetailFragment extends BaseFragment<FragmentAlbumDetailBinding
             // 设置标题
             binding.tvOtherAlbumsTitle.setText(getString(R.string.other_albums_from_artist_format, currentAlbum.getArtist()));
 
-            // 查询艺术家的所有专辑数量
-            int totalAlbumCount = LitePal.where("artist = ?", currentAlbum.getArtist()).count(Album.class);
+            // 艺术家的所有专辑数量在加载专辑详情时统计
             if (totalAlbumCount > otherAlbums.size() + 1) { // +1 因为当前专辑不在其他专辑列表中
                 binding.btnViewAllAlbums.setVisibility(View.VISIBLE);
             } else {
@@ -33,6 +33,7 @@ import com.magicalstory.music.player.MediaControllerHelper;
 import com.magicalstory.music.utils.query.MusicQueryUtils;
 import com.magicalstory.music.utils.app.ToastUtils;
 import com.magicalstory.music.utils.file.FileDeleteUtils;
+import com.magicalstory.music.utils.query.LibrarySnapshot;
 import com.google.android.material.snackbar.Snackbar;
 
 
@@ -630,6 +631,7 @@ public class AlbumListFragment extends BaseFragment<FragmentAlbumBinding> {
         }
 
         // 重新加载数据以反映数据库变化
+        LibrarySnapshot.invalidate();
         loadAlbums();
 
         // 发送广播通知其他组件刷新
@@ -651,10 +653,8 @@ public class AlbumListFragment extends BaseFragment<FragmentAlbumBinding> {
                 Bundle arguments = getArguments();
                 if (arguments != null && arguments.containsKey("artistName")) {
                     String artistName = arguments.getString("artistName");
-                    // 查询特定艺术家的专辑
-                    albums = LitePal.where("artist = ?", artistName)
-                            .order("lastPlayed desc")
-                            .find(Album.class);
+                    // 查询特定艺术家的专辑（按艺术家行ID）
+                    albums = LibrarySnapshot.get().getAlbumsByArtist(arguments.getLong("artistRowId"));
 
                     // 更新标题
                     mainHandler.post(() -> {
@@ -666,14 +666,14 @@ public class AlbumListFragment extends BaseFragment<FragmentAlbumBinding> {
                         String sortType = arguments.getString("sortType");
                         if ("dateAdded".equals(sortType)) {
                             // 按添加时间倒序排列
-                            albums = LitePal.order("dateAdded desc").find(Album.class);
+                            albums = LibrarySnapshot.get().getAlbumsByDateAdded();
                         } else {
                             // 默认按最后播放时间倒序
-                            albums = LitePal.order("lastPlayed desc").find(Album.class);
+                            albums = LibrarySnapshot.get().getAlbumsByLastPlayed();
                         }
                     } else {
                         // 默认按最后播放时间倒序
-                        albums = LitePal.order("lastPlayed desc").find(Album.class);
+                        albums = LibrarySnapshot.get().getAlbumsByLastPlayed();
                     }
                 }
 
@@ -764,8 +764,7 @@ public class AlbumListFragment extends BaseFragment<FragmentAlbumBinding> {
 
                 // 遍历所有专辑，获取每个专辑的歌曲
                 for (Album album : albumList) {
-                    List<Song> albumSongs = LitePal.where("albumId = ? and artist = ?",
-                                    String.valueOf(album.getAlbumId()), album.getArtist())
+                    List<Song> albumSongs = LitePal.where("albumRowId = ?", String.valueOf(album.getId()))
                             .order("track asc")
                             .find(Song.class);
                     if (albumSongs != null) {
@@ -811,8 +810,7 @@ public class AlbumListFragment extends BaseFragment<FragmentAlbumBinding> {
 
                 // 遍历所有专辑，获取每个专辑的歌曲
                 for (Album album : albumList) {
-                    List<Song> albumSongs = LitePal.where("albumId = ? and artist = ?",
-                                    String.valueOf(album.getAlbumId()), album.getArtist())
+                    List<Song> albumSongs = LitePal.where("albumRowId = ?", String.valueOf(album.getId()))
                             .order("track asc")
                             .find(Song.class);
                     if (albumSongs != null) {
@@ -862,8 +860,7 @@ public class AlbumListFragment extends BaseFragment<FragmentAlbumBinding> {
 
                 // 遍历所有专辑，获取每个专辑的歌曲
                 for (Album album : albumList) {
-                    List<Song> albumSongs = LitePal.where("albumId = ? and artist = ?",
-                                    String.valueOf(album.getAlbumId()), album.getArtist())
+                    List<Song> albumSongs = LitePal.where("albumRowId = ?", String.valueOf(album.getId()))
                             .order("track asc")
                             .find(Song.class);
                     if (albumSongs != null) {
@@ -913,8 +910,7 @@ public class AlbumListFragment extends BaseFragment<FragmentAlbumBinding> {
 
                 // 遍历所有专辑，获取每个专辑的歌曲
                 for (Album album : albumList) {
-                    List<Song> albumSongs = LitePal.where("albumId = ? and artist = ?",
-                                    String.valueOf(album.getAlbumId()), album.getArtist())
+                    List<Song> albumSongs = LitePal.where("albumRowId = ?", String.valueOf(album.getId()))
                             .order("track asc")
                             .find(Song.class);
                     if (albumSongs != null) {
@@ -957,8 +953,7 @@ public class AlbumListFragment extends BaseFragment<FragmentAlbumBinding> {
 
                 // 遍历所有专辑，获取每个专辑的歌曲
                 for (Album album : albumList) {
-                    List<Song> albumSongs = LitePal.where("albumId = ? and artist = ?",
-                                    String.valueOf(album.getAlbumId()), album.getArtist())
+                    List<Song> albumSongs = LitePal.where("albumRowId = ?", String.valueOf(album.getId()))
                             .order("track asc")
                             .find(Song.class);
                     if (albumSongs != null) {
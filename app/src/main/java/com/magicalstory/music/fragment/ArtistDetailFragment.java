@@ -36,9 +36,12 @@ import com.magicalstory.music.adapter.SongVerticalAdapter;
 import com.magicalstory.music.model.Album;
 import com.magicalstory.music.model.Artist;
 import com.magicalstory.music.model.Song;
+import com.magicalstory.music.model.SongArtist;
 import com.magicalstory.music.player.MediaControllerHelper;
 import com.magicalstory.music.utils.app.ToastUtils;
+import com.magicalstory.music.utils.query.QueryCache;
 import com.magicalstory.music.utils.screen.DensityUtil;
+import com.magicalstory.music.utils.text.ArtistCredits;
 
 import org.litepal.LitePal;
 
@@ -60,6 +63,8 @@ public class ArtistDetailFragment extends BaseFragment<FragmentArtistDetailBindi
     private Artist currentArtist;
     private List<Song> popularSongs;
     private List<Album> artistAlbums;
+    private int totalSongCount;         // 艺术家署名的歌曲数量
+    private int totalAlbumCount;        // 艺术家的专辑数量
 
     private SongVerticalAdapter songAdapter;
     private AlbumHorizontalAdapter albumAdapter;
@@ -235,6 +240,7 @@ public class ArtistDetailFragment extends BaseFragment<FragmentArtistDetailBindi
             Bundle bundle = new Bundle();
             bundle.putString("dataType", "artist");
             bundle.putString("artistName", currentArtist.getArtistName());
+            bundle.putLong("artistRowId", currentArtist.getId());
             Navigation.findNavController(requireView()).navigate(R.id.action_artist_detail_to_recent_songs, bundle);
         });
 
@@ -242,6 +248,7 @@ public class ArtistDetailFragment extends BaseFragment<FragmentArtistDetailBindi
         binding.btnViewAllAlbums.setOnClickListener(v -> {
             Bundle bundle = new Bundle();
             bundle.putString("artistName", currentArtist.getArtistName());
+            bundle.putLong("artistRowId", currentArtist.getId());
             Navigation.findNavController(requireView()).navigate(R.id.action_artist_detail_to_albums, bundle);
         });
     }
@@ -575,6 +582,11 @@ public class ArtistDetailFragment extends BaseFragment<FragmentArtistDetailBindi
             try {
                 // 查询歌手信息
                 currentArtist = LitePal.where("artistName = ?", artistName).findFirst(Artist.class);
+                if (currentArtist == null) {
+                    // 传入的是多艺术家署名（例如专辑的艺术家"A;B"）时，显示主艺术家
+                    currentArtist = LitePal.where("artistName = ?", ArtistCredits.primary(artistName))
+                            .findFirst(Artist.class);
+                }
 
                 if (currentArtist == null) {
                     // 如果数据库中没有歌手信息，创建一个基本的歌手对象
@@ -582,11 +594,19 @@ public class ArtistDetailFragment extends BaseFragment<FragmentArtistDetailBindi
                     currentArtist.setArtistName(artistName);
                 }
 
+                // 歌曲和专辑都按艺术家行ID关联，歌曲通过歌曲-艺术家关联行查找
+                String artistRowId = String.valueOf(currentArtist.getId());
+                String creditedSongs = "id in (select songid from songartist where artistid = ?)";
+
+                // 以下查询的结果按艺术家行ID缓存，再次打开同一位艺术家时不需要查询
+                String[] tables = {QueryCache.SONG, QueryCache.SONG_ARTIST, QueryCache.ALBUM};
+
                 // 查询歌手的热门歌曲（按播放次数排序，取前10首）
-                popularSongs = LitePal.where("artist = ?", artistName)
-                        .order("dateAdded desc")
-                        .limit(10)
-                        .find(Song.class);
+                popularSongs = QueryCache.getList("artist.songs.recent", tables,
+                        () -> LitePal.where(creditedSongs, artistRowId)
+                                .order("dateAdded desc")
+                                .limit(10)
+                                .find(Song.class), artistRowId);
 
                 // 更新歌手歌曲数量
                 if (popularSongs != null) {
@@ -594,9 +614,16 @@ public class ArtistDetailFragment extends BaseFragment<FragmentArtistDetailBindi
                 }
 
                 // 查询歌手的专辑
-                artistAlbums = LitePal.where("artist = ?", artistName)
-                        .limit(10)
-                        .find(Album.class);
+                artistAlbums = QueryCache.getList("artist.albums", tables,
+                        () -> LitePal.where("artistRowId = ?", artistRowId)
+                                .limit(10)
+                                .find(Album.class), artistRowId);
+
+                // 歌曲和专辑总数
+                totalSongCount = QueryCache.get("artist.songs.count", tables,
+                        () -> LitePal.where("artistId = ?", artistRowId).count(SongArtist.class), artistRowId);
+                totalAlbumCount = QueryCache.get("artist.albums.count", tables,
+                        () -> LitePal.where("artistRowId = ?", artistRowId).count(Album.class), artistRowId);
 
                 // 在主线程更新UI
                 mainHandler.post(() -> {
@@ -631,8 +658,7 @@ public class ArtistDetailFragment extends BaseFragment<FragmentArtistDetailBindi
         // 设置歌手名称
         binding.tvArtistName.setText(currentArtist.getArtistName());
 
-        // 设置歌曲数量
-        int totalSongCount = LitePal.where("artist = ?", currentArtist.getArtistName()).count(Song.class);
+        // 设置歌曲数量（加载详情时统计）
         binding.tvSongCount.setText(totalSongCount + " 首歌曲");
 
         // 加载歌手头像并提取颜色
@@ -696,8 +722,7 @@ public class ArtistDetailFragment extends BaseFragment<FragmentArtistDetailBindi
             songAdapter.updateData(popularSongs);
             binding.layoutPopularSongs.setVisibility(View.VISIBLE);
 
-            // 获取歌手的所有歌曲数量
-            int totalSongCount = LitePal.where("artist = ?", currentArtist.getArtistName()).count(Song.class);
+            // 歌手的所有歌曲数量在加载详情时统计
             if (totalSongCount > 10) {
                 binding.btnViewAllSongs.setVisibility(View.VISIBLE);
             } else {
@@ -716,8 +741,7 @@ public class ArtistDetailFragment extends BaseFragment<FragmentArtistDetailBindi
             albumAdapter.updateData(artistAlbums);
             binding.layoutAlbums.setVisibility(View.VISIBLE);
 
-            // 查询歌手的所有专辑数量
-            int totalAlbumCount = LitePal.where("artist = ?", currentArtist.getArtistName()).count(Album.class);
+            // 歌手的所有专辑数量在加载详情时统计
             if (totalAlbumCount > artistAlbums.size()) {
                 binding.btnViewAllAlbums.setVisibility(View.VISIBLE);
             } else {
@@ -33,6 +33,7 @@ import com.magicalstory.music.player.MediaControllerHelper;
 import com.magicalstory.music.utils.query.MusicQueryUtils;
 import com.magicalstory.music.utils.app.ToastUtils;
 import com.magicalstory.music.utils.file.FileDeleteUtils;
+import com.magicalstory.music.utils.query.LibrarySnapshot;
 import com.google.android.material.snackbar.Snackbar;
 
 
@@ -636,6 +637,7 @@ public class ArtistListFragment extends BaseFragment<FragmentArtistBinding> {
         }
 
         // 重新加载数据以反映数据库变化
+        LibrarySnapshot.invalidate();
         loadArtists();
 
         // 发送广播通知其他组件刷新
@@ -659,14 +661,14 @@ public class ArtistListFragment extends BaseFragment<FragmentArtistBinding> {
                     String sortType = arguments.getString("sortType");
                     if ("dateAdded".equals(sortType)) {
                         // 按添加时间倒序排列
-                        artists = LitePal.order("dateAdded desc").find(Artist.class);
+                        artists = LibrarySnapshot.get().getArtistsByDateAdded();
                     } else {
                         // 默认按最后播放时间倒序
-                        artists = LitePal.order("lastPlayed desc").find(Artist.class);
+                        artists = LibrarySnapshot.get().getArtistsByLastPlayed();
                     }
                 } else {
                     // 默认按最后播放时间倒序
-                    artists = LitePal.order("lastPlayed desc").find(Artist.class);
+                    artists = LibrarySnapshot.get().getArtistsByLastPlayed();
                 }
 
                 sleep(200);
@@ -749,7 +751,8 @@ public class ArtistListFragment extends BaseFragment<FragmentArtistBinding> {
 
                 // 遍历所有艺术家，获取每个艺术家的歌曲
                 for (Artist artist : artistList) {
-                    List<Song> artistSongs = LitePal.where("artist = ?", artist.getArtistName())
+                    List<Song> artistSongs = LitePal.where("id in (select songid from songartist where artistid = ?)",
+                                    String.valueOf(artist.getId()))
                             .order("dateAdded desc")
                             .find(Song.class);
                     if (artistSongs != null) {
@@ -795,7 +798,8 @@ public class ArtistListFragment extends BaseFragment<FragmentArtistBinding> {
 
                 // 遍历所有艺术家，获取每个艺术家的歌曲
                 for (Artist artist : artistList) {
-                    List<Song> artistSongs = LitePal.where("artist = ?", artist.getArtistName())
+                    List<Song> artistSongs = LitePal.where("id in (select songid from songartist where artistid = ?)",
+                                    String.valueOf(artist.getId()))
                             .order("dateAdded desc")
                             .find(Song.class);
                     if (artistSongs != null) {
@@ -845,7 +849,8 @@ public class ArtistListFragment extends BaseFragment<FragmentArtistBinding> {
 
                 // 遍历所有艺术家，获取每个艺术家的歌曲
                 for (Artist artist : artistList) {
-                    List<Song> artistSongs = LitePal.where("artist = ?", artist.getArtistName())
+                    List<Song> artistSongs = LitePal.where("id in (select songid from songartist where artistid = ?)",
+                                    String.valueOf(artist.getId()))
                             .order("dateAdded desc")
                             .find(Song.class);
                     if (artistSongs != null) {
@@ -895,7 +900,8 @@ public class ArtistListFragment extends BaseFragment<FragmentArtistBinding> {
 
                 // 遍历所有艺术家，获取每个艺术家的歌曲
                 for (Artist artist : artistList) {
-                    List<Song> artistSongs = LitePal.where("artist = ?", artist.getArtistName())
+                    List<Song> artistSongs = LitePal.where("id in (select songid from songartist where artistid = ?)",
+                                    String.valueOf(artist.getId()))
                             .order("dateAdded desc")
                             .find(Song.class);
                     if (artistSongs != null) {
@@ -938,7 +944,8 @@ public class ArtistListFragment extends BaseFragment<FragmentArtistBinding> {
 
                 // 遍历所有艺术家，获取每个艺术家的歌曲
                 for (Artist artist : artistList) {
-                    List<Song> artistSongs = LitePal.where("artist = ?", artist.getArtistName())
+                    List<Song> artistSongs = LitePal.where("id in (select songid from songartist where artistid = ?)",
+                                    String.valueOf(artist.getId()))
                             .order("dateAdded desc")
                             .find(Song.class);
                     if (artistSongs != null) {
@@ -31,6 +31,7 @@ import com.magicalstory.music.model.Album;
 import com.magicalstory.music.model.Song;
 import com.magicalstory.music.utils.VersionUtils;
 import com.magicalstory.music.utils.app.ToastUtils;
+import com.magicalstory.music.utils.db.LibraryAggregates;
 import com.magicalstory.music.utils.glide.GlideUtils;
 import com.magicalstory.music.utils.tag.TagWriter;
 
@@ -675,6 +676,7 @@ public class SongTagEditorFragment extends BaseFragment<FragmentSongTagEditorBin
                 String trackStr = binding.etTrackNumber.getText().toString().trim();
                 String discStr = binding.etDiscNumber.getText().toString().trim();
 
+                String previousArtist = currentSong.getArtist();
                 currentSong.setTitle(title);
                 currentSong.setArtist(artist);
                 currentSong.setAlbum(album);
@@ -696,14 +698,17 @@ public class SongTagEditorFragment extends BaseFragment<FragmentSongTagEditorBin
                     }
                 }
 
-                // 保存到数据库
-                currentSong.save();
+                // 保存到数据库，歌曲可能来自列表快照（没有LitePal的保存状态），按ID更新
+                currentSong.saveOrUpdate("id = ?", String.valueOf(currentSong.getId()));
 
                 // 如果专辑信息发生变化，可能需要更新专辑表
                 if (!TextUtils.isEmpty(album) && !TextUtils.isEmpty(artist)) {
                     updateAlbumInfo(album, artist, genre, yearStr);
                 }
 
+                // 重新统计并关联修改前后的艺术家，歌曲的专辑/艺术家行ID随之更新
+                LibraryAggregates.refreshArtists(previousArtist, artist);
+
                 // 打印原始数据到控制台
                 System.out.println("已更新歌曲信息到数据库:");
                 System.out.println("标题: " + currentSong.getTitle());
@@ -1,7 +1,5 @@
 package com.magicalstory.music.fragment;
 
-import static java.lang.Thread.sleep;
-
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
@@ -15,8 +13,11 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.media3.common.util.UnstableApi;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import androidx.navigation.Navigation;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -30,13 +31,20 @@ import com.magicalstory.music.model.Song;
 import com.google.android.material.snackbar.Snackbar;
 import com.magicalstory.music.player.MediaControllerHelper;
 import com.magicalstory.music.utils.app.ToastUtils;
+import com.magicalstory.music.utils.db.PlayEventLog;
 import com.magicalstory.music.utils.file.FileDeleteUtils;
+import com.magicalstory.music.utils.query.ItemDiffs;
+import com.magicalstory.music.utils.query.ObservableQuery;
+import com.magicalstory.music.utils.query.QueryCache;
+import com.magicalstory.music.utils.query.SongPager;
+import com.magicalstory.music.utils.query.SongSampler;
 
 import org.litepal.LitePal;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 /**
  * 歌曲列表Fragment
@@ -59,8 +67,20 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
     // 请求代码常量
     private static final int CLEAR_LIST_REQUEST_CODE = 1002;
 
+    // 距离列表末尾多少项时预读下一页
+    private static final int PREFETCH_DISTANCE = 30;
+
     private SongVerticalAdapter songAdapter;
     private List<Song> songList;
+    // 当前列表的查询，依赖的表变化后重新读取并按差异刷新
+    private ObservableQuery<Song> songQuery;
+    // 当前列表的分页读取器，每次查询后替换
+    private SongPager songPager;
+    // 后台查询创建的分页读取器，查询结果回调时替换songPager
+    private volatile SongPager loadedPager;
+    private boolean loadingPage;
+    // 随机推荐的种子，重新查询时保持相同的顺序
+    private int randomSeed;
     private Handler mainHandler;
     private String dataType;
 
@@ -302,6 +322,15 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
         }
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (songQuery != null) {
+            songQuery.close();
+            songQuery = null;
+        }
+    }
+
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -399,6 +428,12 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
 
         binding.rvRecentSongs.setLayoutManager(new LinearLayoutManager(getContext()));
         binding.rvRecentSongs.setAdapter(songAdapter);
+        binding.rvRecentSongs.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                loadMoreIfNeeded();
+            }
+        });
 
         // 获取当前播放歌曲并设置到适配器
         updateCurrentPlayingSong();
@@ -510,11 +545,35 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
             return;
         }
 
-        if (getActivity() instanceof MainActivity mainActivity) {
-            List<Song> shuffledSongs = new ArrayList<>(songList);
-            Collections.shuffle(shuffledSongs);
-            mainActivity.playFromPlaylist(shuffledSongs, 0);
+        if (isWholeLibrary()) {
+            // 列表包含所有歌曲时只打乱歌曲ID，歌曲在播放队列访问时才读取
+            new Thread(() -> {
+                List<Song> shuffledSongs = SongSampler.shuffleAll();
+                mainHandler.post(() -> {
+                    if (isAdded() && !shuffledSongs.isEmpty()
+                            && getActivity() instanceof MainActivity mainActivity) {
+                        mainActivity.playFromPlaylist(shuffledSongs, 0);
+                    }
+                });
+            }).start();
+            return;
         }
+
+        withAllSongs(songs -> {
+            if (getActivity() instanceof MainActivity mainActivity) {
+                List<Song> shuffledSongs = new ArrayList<>(songs);
+                Collections.shuffle(shuffledSongs);
+                mainActivity.playFromPlaylist(shuffledSongs, 0);
+            }
+        });
+    }
+
+    /**
+     * 列表是否包含所有歌曲（只是顺序不同）
+     */
+    private boolean isWholeLibrary() {
+        return DATA_TYPE_ALL.equals(dataType) || DATA_TYPE_RANDOM.equals(dataType)
+                || DATA_TYPE_RECENT.equals(dataType);
     }
 
     /**
@@ -526,15 +585,17 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
             return;
         }
 
-        // 获取MediaControllerHelper实例
-        MediaControllerHelper controllerHelper = MediaControllerHelper.getInstance();
-        if (controllerHelper != null) {
-            // 添加歌曲到下一首播放位置
-            controllerHelper.addSongsToPlayNext(songList);
-            ToastUtils.showToast(getContext(), getString(R.string.added_to_queue_next));
-        } else {
-            ToastUtils.showToast(getContext(), "播放控制器未初始化");
-        }
+        withAllSongs(songs -> {
+            // 获取MediaControllerHelper实例
+            MediaControllerHelper controllerHelper = MediaControllerHelper.getInstance();
+            if (controllerHelper != null) {
+                // 添加歌曲到下一首播放位置
+                controllerHelper.addSongsToPlayNext(songs);
+                ToastUtils.showToast(getContext(), getString(R.string.added_to_queue_next));
+            } else {
+                ToastUtils.showToast(getContext(), "播放控制器未初始化");
+            }
+        });
     }
 
     /**
@@ -546,15 +607,17 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
             return;
         }
 
-        // 获取MediaControllerHelper实例
-        MediaControllerHelper controllerHelper = MediaControllerHelper.getInstance();
-        if (controllerHelper != null) {
-            // 添加歌曲到播放列表末尾
-            controllerHelper.addSongsToPlaylist(songList);
-            ToastUtils.showToast(getContext(), getString(R.string.added_to_playlist));
-        } else {
-            ToastUtils.showToast(getContext(), "播放控制器未初始化");
-        }
+        withAllSongs(songs -> {
+            // 获取MediaControllerHelper实例
+            MediaControllerHelper controllerHelper = MediaControllerHelper.getInstance();
+            if (controllerHelper != null) {
+                // 添加歌曲到播放列表末尾
+                controllerHelper.addSongsToPlaylist(songs);
+                ToastUtils.showToast(getContext(), getString(R.string.added_to_playlist));
+            } else {
+                ToastUtils.showToast(getContext(), "播放控制器未初始化");
+            }
+        });
     }
 
     /**
@@ -567,7 +630,8 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
         }
 
         // 使用PlaylistAddUtils显示歌单选择对话框
-        com.magicalstory.music.utils.playlist.PlaylistAddUtils.showPlaylistSelectorDialog(getContext(), songList);
+        withAllSongs(songs -> com.magicalstory.music.utils.playlist.PlaylistAddUtils
+                .showPlaylistSelectorDialog(getContext(), songs));
     }
 
     /**
@@ -657,13 +721,11 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
         MediaControllerHelper controllerHelper = MediaControllerHelper.getInstance();
         if (controllerHelper != null) {
             // 从播放列表中移除选中的歌曲
-            List<Song> currentPlaylist = controllerHelper.getPlaylist();
             for (Song selectedSong : selectedSongs) {
-                for (int i = 0; i < currentPlaylist.size(); i++) {
-                    if (currentPlaylist.get(i).getId() == selectedSong.getId()) {
-                        controllerHelper.removeFromPlaylist(i);
-                        break;
-                    }
+                // 按ID查找，按需读取的播放列表不会被整体读取
+                int index = controllerHelper.indexOfSong(selectedSong.getId());
+                if (index >= 0) {
+                    controllerHelper.removeFromPlaylist(index);
                 }
             }
             ToastUtils.showToast(getContext(), getString(R.string.removed_from_playlist, selectedSongs.size()));
@@ -825,15 +887,7 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
      * 删除成功后的处理
      */
     private void handleDeleteSuccess(List<Song> deletedSongs) {
-        // 从当前列表中移除
-        songList.removeAll(deletedSongs);
-        songAdapter.notifyDataSetChanged();
-
-        // 如果列表为空，显示空状态
-        if (songList.isEmpty()) {
-            binding.rvRecentSongs.setVisibility(View.GONE);
-            binding.layoutEmpty.setVisibility(View.VISIBLE);
-        }
+        // 列表由songQuery在歌曲表变化后按差异刷新
 
         // 退出多选模式
         exitMultiSelectMode();
@@ -855,6 +909,7 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
                         LitePal.deleteAll(com.magicalstory.music.model.FavoriteSong.class,
                                 "songId = ?", String.valueOf(song.getId()));
                     }
+                    QueryCache.invalidate(QueryCache.FAVORITE_SONG);
                     showSnackbar(getString(R.string.delete_from_favorites_success, songsToDelete.size()));
                     break;
 
@@ -864,6 +919,7 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
                         LitePal.deleteAll(com.magicalstory.music.model.PlayHistory.class,
                                 "songId = ?", String.valueOf(song.getId()));
                     }
+                    QueryCache.invalidate(QueryCache.PLAY_HISTORY);
                     showSnackbar(getString(R.string.delete_from_history_success, songsToDelete.size()));
                     break;
 
@@ -872,20 +928,14 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
                     for (Song song : songsToDelete) {
                         LitePal.deleteAll(com.magicalstory.music.model.PlayHistory.class,
                                 "songId = ?", String.valueOf(song.getId()));
+                        PlayEventLog.removeFromMostPlayed(song.getId());
                     }
+                    QueryCache.invalidate(QueryCache.PLAY_HISTORY, QueryCache.PLAY_ROLLUP);
                     showSnackbar(getString(R.string.delete_from_most_played_success, songsToDelete.size()));
                     break;
             }
 
-            // 从当前列表中移除
-            songList.removeAll(songsToDelete);
-            songAdapter.notifyDataSetChanged();
-
-            // 如果列表为空，显示空状态
-            if (songList.isEmpty()) {
-                binding.rvRecentSongs.setVisibility(View.GONE);
-                binding.layoutEmpty.setVisibility(View.VISIBLE);
-            }
+            // 列表由songQuery在收藏/播放历史表变化后按差异刷新
 
             // 退出多选模式
             exitMultiSelectMode();
@@ -907,29 +957,27 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
                 case DATA_TYPE_FAVORITE:
                     // 清空收藏
                     LitePal.deleteAll(com.magicalstory.music.model.FavoriteSong.class);
+                    QueryCache.invalidate(QueryCache.FAVORITE_SONG);
                     showSnackbar("已清空收藏列表");
                     break;
 
                 case DATA_TYPE_HISTORY:
                     // 清空播放历史
                     LitePal.deleteAll(com.magicalstory.music.model.PlayHistory.class);
+                    QueryCache.invalidate(QueryCache.PLAY_HISTORY);
                     showSnackbar("已清空播放历史");
                     break;
 
                 case DATA_TYPE_MOST_PLAYED:
-                    // 清空最常播放（实际上也是清空播放历史）
+                    // 清空最常播放（同时清空播放历史，收听记录保留）
                     LitePal.deleteAll(com.magicalstory.music.model.PlayHistory.class);
+                    PlayEventLog.clearMostPlayed();
+                    QueryCache.invalidate(QueryCache.PLAY_HISTORY, QueryCache.PLAY_ROLLUP);
                     showSnackbar("已清空最常播放列表");
                     break;
             }
 
-            // 清空当前列表
-            songList.clear();
-            songAdapter.notifyDataSetChanged();
-
-            // 显示空状态
-            binding.rvRecentSongs.setVisibility(View.GONE);
-            binding.layoutEmpty.setVisibility(View.VISIBLE);
+            // 列表由songQuery在收藏/播放历史表变化后按差异刷新
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -938,160 +986,204 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
     }
 
     /**
-     * 根据数据类型加载歌曲
+     * 根据数据类型创建分页读取器
      */
-    private void loadSongsByType() {
-
-        // 创建新线程进行数据查询
-        Thread loadThread = new Thread(() -> {
-            try {
-                List<Song> songs;
-
-                // 根据数据类型查询不同的数据
-                switch (dataType) {
-                    case DATA_TYPE_FAVORITE:
-                        // 我的收藏 - 从FavoriteSong表查询真正的收藏歌曲，按添加时间倒序
-                        List<com.magicalstory.music.model.FavoriteSong> favoriteSongList =
-                                LitePal.order("addTime desc").find(com.magicalstory.music.model.FavoriteSong.class);
-                        songs = new ArrayList<>();
-                        if (favoriteSongList != null && !favoriteSongList.isEmpty()) {
-                            for (com.magicalstory.music.model.FavoriteSong favoriteSong : favoriteSongList) {
-                                // 根据songId查询对应的Song对象
-                                Song song = LitePal.find(Song.class, favoriteSong.getSongId());
-                                if (song != null) {
-                                    songs.add(song);
-                                }
-                            }
-                        }
-                        break;
-                    case DATA_TYPE_RANDOM:
-                        // 随机推荐
-                        songs = LitePal.order("random()").find(Song.class);
-                        break;
-                    case DATA_TYPE_HISTORY:
-                        // 播放历史 - 从PlayHistory表查询播放历史，按播放时间倒序
-                        List<com.magicalstory.music.model.PlayHistory> playHistoryList =
-                                LitePal.order("lastPlayTime desc").find(com.magicalstory.music.model.PlayHistory.class);
-                        songs = new ArrayList<>();
-                        if (playHistoryList != null && !playHistoryList.isEmpty()) {
-                            for (com.magicalstory.music.model.PlayHistory playHistory : playHistoryList) {
-                                // 根据songId查询对应的Song对象
-                                Song song = LitePal.find(Song.class, playHistory.getSongId());
-                                if (song != null) {
-                                    songs.add(song);
-                                }
-                            }
-                        }
-                        break;
-                    case DATA_TYPE_MOST_PLAYED:
-                        // 最常播放 - 从PlayHistory表查询播放次数最多的歌曲
-                        List<com.magicalstory.music.model.PlayHistory> mostPlayedList =
-                                LitePal.order("playCount desc").find(com.magicalstory.music.model.PlayHistory.class);
-                        songs = new ArrayList<>();
-                        if (mostPlayedList != null && !mostPlayedList.isEmpty()) {
-                            for (com.magicalstory.music.model.PlayHistory playHistory : mostPlayedList) {
-                                // 根据songId查询对应的Song对象
-                                Song song = LitePal.find(Song.class, playHistory.getSongId());
-                                if (song != null) {
-                                    songs.add(song);
-                                }
-                            }
-                        }
-                        break;
-                    case DATA_TYPE_ALBUM:
-                        // 专辑歌曲 - 根据专辑ID和艺术家查询，按添加时间倒序
-                        Bundle arguments = getArguments();
-                        if (arguments != null) {
-                            long albumId = arguments.getLong("albumId");
-                            String artistName = arguments.getString("artistName");
-                            songs = LitePal.where("albumId = ? and artist = ?",
-                                            String.valueOf(albumId), artistName)
-                                    .order("dateAdded desc")
-                                    .find(Song.class);
-                        } else {
-                            songs = new ArrayList<>();
-                        }
-                        break;
-                    case DATA_TYPE_ARTIST:
-                        // 艺术家歌曲 - 根据艺术家名称查询，按添加时间倒序
-                        Bundle artistArguments = getArguments();
-                        if (artistArguments != null) {
-                            String artistName = artistArguments.getString("artistName");
-                            songs = LitePal.where("artist = ?", artistName)
-                                    .order("dateAdded desc")
-                                    .find(Song.class);
-                        } else {
-                            songs = new ArrayList<>();
-                        }
-                        break;
-                    case DATA_TYPE_PLAYLIST:
-                        // 歌单歌曲 - 根据歌单ID查询，按添加时间倒序（最新添加的歌曲在前面）
-                        Bundle playlistArguments = getArguments();
-                        if (playlistArguments != null) {
-                            long playlistId = playlistArguments.getLong("playlist_id");
-                            songs = com.magicalstory.music.model.PlaylistSong.getPlaylistSongs(playlistId);
-                        } else {
-                            songs = new ArrayList<>();
-                        }
-                        break;
-                    case DATA_TYPE_ALL:
-                        // 我的歌曲 - 所有歌曲按添加时间倒序排列
-                        songs = LitePal.order("dateAdded desc").find(Song.class);
-                        break;
-                    case DATA_TYPE_RECENT:
-                    default:
-                        // 最近收听的歌曲，按播放时间倒序排列
-                        songs = LitePal.order("lastplayed desc").find(Song.class);
-                        break;
+    private SongPager createPager() {
+        Bundle arguments = getArguments();
+        switch (dataType) {
+            case DATA_TYPE_FAVORITE:
+                // 我的收藏 - 从FavoriteSong表查询真正的收藏歌曲，按添加时间倒序
+                return SongPager.favorites();
+            case DATA_TYPE_RANDOM:
+                // 随机推荐 - 每次进入页面使用新的随机顺序，重新查询时顺序不变
+                return SongPager.random(randomSeed);
+            case DATA_TYPE_HISTORY:
+                // 播放历史 - 从PlayHistory表查询播放历史，按播放时间倒序
+                return SongPager.history();
+            case DATA_TYPE_MOST_PLAYED:
+                // 最常播放 - 从收听汇总查询播放次数最多的歌曲
+                return SongPager.mostPlayed();
+            case DATA_TYPE_ALBUM:
+                // 专辑歌曲 - 根据专辑行ID查询，按添加时间倒序
+                if (arguments == null) {
+                    return null;
                 }
+                return SongPager.byAlbum(arguments.getLong("albumRowId"));
+            case DATA_TYPE_ARTIST:
+                // 艺术家歌曲 - 根据艺术家行ID查询署名的歌曲，按添加时间倒序
+                if (arguments == null) {
+                    return null;
+                }
+                return SongPager.byArtist(arguments.getLong("artistRowId"));
+            case DATA_TYPE_PLAYLIST:
+                // 歌单歌曲 - 根据歌单ID查询，按添加时间倒序（最新添加的歌曲在前面）
+                if (arguments == null) {
+                    return null;
+                }
+                return SongPager.playlist(arguments.getLong("playlist_id"));
+            case DATA_TYPE_ALL:
+                // 我的歌曲 - 所有歌曲按添加时间倒序排列
+                return SongPager.allByDateAdded();
+            case DATA_TYPE_RECENT:
+            default:
+                // 最近收听的歌曲，按播放时间倒序排列
+                return SongPager.allByLastPlayed();
+        }
+    }
 
-                sleep(200);
-
+    /**
+     * 列表依赖的表，这些表变化时重新查询
+     */
+    private String[] getObservedTables() {
+        switch (dataType) {
+            case DATA_TYPE_FAVORITE:
+                return new String[]{QueryCache.FAVORITE_SONG, QueryCache.SONG};
+            case DATA_TYPE_HISTORY:
+                return new String[]{QueryCache.PLAY_HISTORY, QueryCache.SONG};
+            case DATA_TYPE_MOST_PLAYED:
+                return new String[]{QueryCache.PLAY_ROLLUP, QueryCache.SONG};
+            case DATA_TYPE_ARTIST:
+                return new String[]{QueryCache.SONG_ARTIST, QueryCache.SONG};
+            case DATA_TYPE_PLAYLIST:
+                return new String[]{QueryCache.PLAYLIST_SONG, QueryCache.SONG};
+            default:
+                return new String[]{QueryCache.SONG};
+        }
+    }
 
-                // 切换到主线程更新UI
-                mainHandler.post(() -> {
-                    // 隐藏进度圈
-                    binding.progressBar.setVisibility(View.GONE);
-
-                    if (songs != null && !songs.isEmpty()) {
-                        songList.clear();
-                        songList.addAll(songs);
-                        songAdapter.notifyDataSetChanged();
-
-                        // 数据加载完成后更新当前播放歌曲状态
-                        updateCurrentPlayingSong();
-
-                        // 显示列表，隐藏空状态
-                        binding.rvRecentSongs.setVisibility(View.VISIBLE);
-                        binding.layoutEmpty.setVisibility(View.GONE);
-                        // 有数据时显示fab
-                        binding.fab.setVisibility(View.VISIBLE);
-                        // 有数据时显示fab
-                        binding.fab.show();
-                    } else {
-                        // 显示空状态，隐藏列表
-                        binding.rvRecentSongs.setVisibility(View.GONE);
-                        binding.layoutEmpty.setVisibility(View.VISIBLE);
-                        // 无数据时隐藏fab
-                        binding.fab.hide();
-                    }
-                });
+    /**
+     * 根据数据类型订阅歌曲列表，第一次只读取第一页，其余的在滚动时读取；
+     * 依赖的表变化后重新读取已显示的数量，只刷新变化的项
+     */
+    private void loadSongsByType() {
+        if (songQuery != null) {
+            songQuery.close();
+        }
+        randomSeed = new Random().nextInt();
+        songPager = null;
+        loadingPage = true;
+
+        ObservableQuery<Song> query = new ObservableQuery<>(getObservedTables(), loadedCount -> {
+            SongPager pager = createPager();
+            List<Song> songs = new ArrayList<>();
+            if (pager != null) {
+                do {
+                    songs.addAll(pager.nextPage());
+                } while (songs.size() < loadedCount && pager.hasMore());
+            }
+            loadedPager = pager;
+            return songs;
+        }, ItemDiffs.SONG);
+        songQuery = query;
+        query.subscribe(new ObservableQuery.Callback<Song>() {
+            @Override
+            public void onChanged(@NonNull List<Song> songs, @Nullable DiffUtil.DiffResult diff) {
+                songPager = loadedPager;
+                loadingPage = false;
+                // 隐藏进度圈
+                binding.progressBar.setVisibility(View.GONE);
+
+                songList.clear();
+                songList.addAll(songs);
+                songAdapter.updateData(songList, diff);
+
+                if (!songs.isEmpty()) {
+                    // 数据加载完成后更新当前播放歌曲状态
+                    updateCurrentPlayingSong();
+
+                    // 显示列表，隐藏空状态
+                    binding.rvRecentSongs.setVisibility(View.VISIBLE);
+                    binding.layoutEmpty.setVisibility(View.GONE);
+                    // 有数据时显示fab
+                    binding.fab.setVisibility(View.VISIBLE);
+                    binding.fab.show();
+                    loadMoreIfNeeded();
+                } else {
+                    // 显示空状态，隐藏列表
+                    binding.rvRecentSongs.setVisibility(View.GONE);
+                    binding.layoutEmpty.setVisibility(View.VISIBLE);
+                    // 无数据时隐藏fab
+                    binding.fab.hide();
+                }
+            }
 
-            } catch (Exception e) {
-                e.printStackTrace();
+            @Override
+            public void onError(Exception e) {
+                loadingPage = false;
                 // 发生错误时也要隐藏进度圈
-                mainHandler.post(() -> {
-                    binding.progressBar.setVisibility(View.GONE);
+                binding.progressBar.setVisibility(View.GONE);
+                if (songList.isEmpty()) {
                     binding.rvRecentSongs.setVisibility(View.GONE);
                     binding.layoutEmpty.setVisibility(View.VISIBLE);
                     // 错误时隐藏fab
                     binding.fab.hide();
-                });
+                }
             }
         });
+    }
+
+    /**
+     * 最后一个可见项距离列表末尾不足PREFETCH_DISTANCE时读取下一页
+     */
+    private void loadMoreIfNeeded() {
+        SongPager pager = songPager;
+        if (pager == null || loadingPage || !pager.hasMore()) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) binding.rvRecentSongs.getLayoutManager();
+        if (layoutManager == null
+                || layoutManager.findLastVisibleItemPosition() < songList.size() - PREFETCH_DISTANCE) {
+            return;
+        }
+
+        loadingPage = true;
+        new Thread(() -> {
+            List<Song> songs;
+            try {
+                songs = pager.nextPage();
+            } catch (Exception e) {
+                e.printStackTrace();
+                songs = new ArrayList<>();
+            }
+            List<Song> page = songs;
+            mainHandler.post(() -> {
+                if (pager != songPager) {
+                    return;
+                }
+                loadingPage = false;
+                if (!page.isEmpty()) {
+                    int start = songList.size();
+                    songQuery.append(page);
+                    songList.addAll(page);
+                    songAdapter.notifyItemRangeInserted(start, page.size());
+                }
+                // 一页中的歌曲可能全部已删除，或一页不足一屏，继续检查
+                loadMoreIfNeeded();
+            });
+        }).start();
+    }
+
+    /**
+     * 获取完整的歌曲列表：已全部读取时直接使用当前列表，否则在后台按相同顺序读取完整结果
+     */
+    private void withAllSongs(AllSongsCallback callback) {
+        SongPager pager = songPager;
+        if (pager == null || !pager.hasMore()) {
+            callback.onSongs(songList);
+            return;
+        }
+        new Thread(() -> {
+            List<Song> songs = pager.loadAll();
+            mainHandler.post(() -> {
+                if (isAdded()) {
+                    callback.onSongs(songs);
+                }
+            });
+        }).start();
+    }
 
-        // 启动线程
-        loadThread.start();
+    private interface AllSongsCallback {
+        void onSongs(List<Song> songs);
     }
 
     /**
@@ -1106,8 +1198,10 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
      */
     @Override
     protected void onRefreshMusicList() {
-        // 重新加载歌曲列表
-        loadSongsByType();
+        // 重新查询，只刷新变化的项
+        if (songQuery != null) {
+            songQuery.refresh();
+        }
     }
 
     /**
@@ -1119,9 +1213,11 @@ public class SongsListFragment extends BaseFragment<FragmentRecentSongsBinding>
             return;
         }
 
-        // 将当前歌曲列表设置为播放列表并播放第一首
-        if (getActivity() instanceof MainActivity mainActivity) {
-            mainActivity.playFromPlaylist(songList, 0);
-        }
+        // 将完整的歌曲列表设置为播放列表并播放第一首
+        withAllSongs(songs -> {
+            if (getActivity() instanceof MainActivity mainActivity) {
+                mainActivity.playFromPlaylist(songs, 0);
+            }
+        });
     }
 }
\ No newline at end of file
@@ -36,6 +36,7 @@ import com.magicalstory.music.model.Album;
 import com.magicalstory.music.model.Song;
 import com.magicalstory.music.utils.VersionUtils;
 import com.magicalstory.music.utils.app.ToastUtils;
+import com.magicalstory.music.utils.db.LibraryAggregates;
 import com.magicalstory.music.utils.tag.TagWriter;
 import com.magicalstory.music.utils.text.TimeUtils;
 
@@ -248,9 +249,8 @@ public class TagEditorFragment extends BaseFragment<FragmentTagEditorBinding> {
                     currentAlbum.setAlbumName(albumName);
                 }
 
-                // 查询专辑歌曲
-                albumSongs = LitePal.where("albumId = ? and artist = ?",
-                                String.valueOf(albumId), artistName)
+                // 查询专辑歌曲（按专辑行ID）
+                albumSongs = LitePal.where("albumRowId = ?", String.valueOf(currentAlbum.getId()))
                         .order("track asc")
                         .find(Song.class);
 
@@ -803,6 +803,8 @@ public class TagEditorFragment extends BaseFragment<FragmentTagEditorBinding> {
             String yearStr = binding.etYear.getText().toString().trim();
             String trackTotalStr = binding.etTrackTotal.getText().toString().trim();
 
+            String previousArtist = currentAlbum != null ? currentAlbum.getArtist() : null;
+
             // 更新专辑信息
             if (currentAlbum != null) {
                 currentAlbum.setAlbumName(albumName);
@@ -846,6 +848,9 @@ public class TagEditorFragment extends BaseFragment<FragmentTagEditorBinding> {
                 }
             }
 
+            // 重新统计并关联修改前后的艺术家，专辑和歌曲的行ID随之更新
+            LibraryAggregates.refreshArtists(previousArtist, albumArtist);
+
             // 打印原始数据到控制台
             System.out.println("文件替换成功，已更新本地数据库:");
             System.out.println("专辑信息 - 名称: " + albumName + 
@@ -53,7 +53,6 @@ import com.magicalstory.music.adapter.SearchResultAdapter;
 import com.magicalstory.music.model.Song;
 import com.magicalstory.music.model.Album;
 import com.magicalstory.music.model.Artist;
-import com.magicalstory.music.model.Playlist;
 import com.magicalstory.music.utils.network.NetUtils;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
@@ -69,11 +68,15 @@ import java.util.concurrent.Executors;
 
 import okhttp3.Response;
 
-import com.magicalstory.music.model.FavoriteSong;
 import com.magicalstory.music.utils.glide.ColorExtractor;
 import com.magicalstory.music.utils.glide.CoverFallbackUtils;
 import com.magicalstory.music.service.CoverFetchService;
 import com.magicalstory.music.utils.screen.DensityUtil;
+import com.magicalstory.music.utils.query.QueryCache;
+import com.magicalstory.music.utils.query.SongResolver;
+import com.magicalstory.music.utils.query.SongSampler;
+import com.magicalstory.music.utils.search.LibrarySearch;
+import com.magicalstory.music.utils.search.SearchRunner;
 
 
 @UnstableApi
@@ -105,6 +108,11 @@ public class HomeFragment extends BaseFragment<FragmentHomeBinding> {
     // 网络请求相关
     private ExecutorService executorService;
     private Handler mainHandler;
+    private SearchRunner searchRunner;
+
+    // 扫描过程中刷新首页的最小间隔（毫秒）
+    private static final long SCAN_PROGRESS_REFRESH_INTERVAL = 3000;
+    private long lastScanProgressRefreshTime = 0;
 
     // 扫描完成广播接收器
     private final BroadcastReceiver scanCompleteReceiver = new BroadcastReceiver() {
@@ -116,7 +124,11 @@ public class HomeFragment extends BaseFragment<FragmentHomeBinding> {
                 android.util.Log.d("HomeFragment", "扫描完成广播，新增歌曲数量: " + scanCount);
                 ToastUtils.showToast(getContext(), "扫描完成，新增 " + scanCount + " 首歌曲");
                 // 扫描完成后重新加载歌曲并显示布局
+                lastScanProgressRefreshTime = 0;
                 reloadMusicDataAndShowLayout();
+            } else if (MusicScanService.ACTION_SCAN_PROGRESS.equals(intent.getAction())) {
+                int rowsWritten = intent.getIntExtra(MusicScanService.EXTRA_ROWS_WRITTEN, 0);
+                onScanProgress(rowsWritten);
             }
         }
     };
@@ -566,6 +578,9 @@ public class HomeFragment extends BaseFragment<FragmentHomeBinding> {
                     performSearch(currentSearchQuery, currentSearchType);
                 } else {
                     // 清空搜索结果，显示placeholder
+                    if (searchRunner != null) {
+                        searchRunner.cancel();
+                    }
                     searchResultAdapter.updateSearchResults(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
                     binding.searchLayout.layoutEmpty.setVisibility(View.GONE);
                     binding.searchLayout.placeholder.setVisibility(View.VISIBLE);
@@ -622,73 +637,41 @@ public class HomeFragment extends BaseFragment<FragmentHomeBinding> {
     }
 
     /**
-     * 执行搜索
+     * 执行搜索，关键字变化时上一次未完成的搜索会被取消
      */
     private void performSearch(String query, String searchType) {
         android.util.Log.d("HomeFragment", "开始搜索: " + query + ", 类型: " + searchType);
 
-        if (executorService == null) {
-            executorService = Executors.newCachedThreadPool();
+        if (searchRunner == null) {
+            searchRunner = new SearchRunner();
         }
 
-        executorService.execute(() -> {
-            try {
-                List<Song> songs = new ArrayList<>();
-                List<Album> albums = new ArrayList<>();
-                List<Artist> artists = new ArrayList<>();
-
-                switch (searchType) {
-                    case "all":
-                        // 搜索全部类型
-                        songs = searchAllSongs(query);
-                        albums = searchAllAlbums(query);
-                        artists = searchAllArtists(query);
-                        break;
-                    case "songs":
-                        songs = searchSongs(query);
-                        break;
-                    case "album":
-                        albums = searchAlbums(query);
-                        break;
-                    case "artist":
-                        artists = searchArtists(query);
-                        break;
-                    case "playlist":
-                        songs = searchByPlaylist(query);
-                        break;
-                }
-
-                // 创建final变量用于lambda表达式
-                final List<Song> finalSongs = songs;
-                final List<Album> finalAlbums = albums;
-                final List<Artist> finalArtists = artists;
-
-                // 在主线程中更新UI
-                if (mainHandler != null) {
-                    mainHandler.post(() -> {
+        searchRunner.submit(signal -> LibrarySearch.search(query, searchType, signal),
+                new SearchRunner.Callback<LibrarySearch.Results>() {
+                    @Override
+                    public void onResult(LibrarySearch.Results results) {
+                        searchResultAdapter.setHighlightQuery(query);
                         if (searchType.equals("all")) {
                             // 全部搜索：显示所有类型结果
-                            searchResultAdapter.updateSearchResults(finalSongs, finalAlbums, finalArtists);
+                            searchResultAdapter.updateSearchResults(results.songs, results.albums, results.artists);
                         } else {
                             // 单一类型搜索
                             switch (searchType) {
                                 case "songs":
-                                    searchResultAdapter.updateSingleTypeResults("songs", finalSongs);
+                                case "playlist":
+                                    searchResultAdapter.updateSingleTypeResults("songs", results.songs);
                                     break;
                                 case "album":
-                                    searchResultAdapter.updateSingleTypeResults("album", finalAlbums);
+                                    searchResultAdapter.updateSingleTypeResults("album", results.albums);
                                     break;
                                 case "artist":
-                                    searchResultAdapter.updateSingleTypeResults("artist", finalArtists);
-                                    break;
-                                case "playlist":
-                                    searchResultAdapter.updateSingleTypeResults("songs", finalSongs);
+                                    searchResultAdapter.updateSingleTypeResults("artist", results.artists);
                                     break;
                             }
                         }
 
                         // 检查是否有搜索结果
-                        boolean hasResults = !finalSongs.isEmpty() || !finalAlbums.isEmpty() || !finalArtists.isEmpty();
+                        boolean hasResults = !results.songs.isEmpty() || !results.albums.isEmpty() || !results.artists.isEmpty();
                         if (hasResults) {
                             binding.searchLayout.layoutEmpty.setVisibility(View.GONE);
                             binding.searchLayout.placeholder.setVisibility(View.GONE);
@@ -696,130 +679,15 @@ public class HomeFragment extends BaseFragment<FragmentHomeBinding> {
                             binding.searchLayout.layoutEmpty.setVisibility(View.VISIBLE);
                             binding.searchLayout.placeholder.setVisibility(View.GONE);
                         }
-                    });
-                }
-            } catch (Exception e) {
-                android.util.Log.e("HomeFragment", "搜索失败: " + e.getMessage(), e);
-                if (mainHandler != null) {
-                    mainHandler.post(() -> {
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
                         searchResultAdapter.updateSearchResults(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
                         binding.searchLayout.layoutEmpty.setVisibility(View.VISIBLE);
                         binding.searchLayout.placeholder.setVisibility(View.GONE);
-                    });
-                }
-            }
-        });
-    }
-
-    /**
-     * 搜索全部歌曲（包括标题、艺术家、专辑匹配）
-     */
-    private List<Song> searchAllSongs(String query) {
-        List<Song> results = new ArrayList<>();
-
-        // 搜索歌曲标题
-        List<Song> titleResults = LitePal.where("title like ?", "%" + query + "%").find(Song.class);
-        results.addAll(titleResults);
-
-        // 搜索艺术家
-        List<Song> artistResults = LitePal.where("artist like ?", "%" + query + "%").find(Song.class);
-        for (Song song : artistResults) {
-            if (!results.contains(song)) {
-                results.add(song);
-            }
-        }
-
-        // 搜索专辑
-        List<Song> albumResults = LitePal.where("album like ?", "%" + query + "%").find(Song.class);
-        for (Song song : albumResults) {
-            if (!results.contains(song)) {
-                results.add(song);
-            }
-        }
-
-        return results;
-    }
-
-    /**
-     * 搜索全部专辑
-     */
-    private List<Album> searchAllAlbums(String query) {
-        return LitePal.where("albumName like ?", "%" + query + "%").find(Album.class);
-    }
-
-    /**
-     * 搜索全部艺术家
-     */
-    private List<Artist> searchAllArtists(String query) {
-        return LitePal.where("artistName like ?", "%" + query + "%").find(Artist.class);
-    }
-
-    /**
-     * 搜索歌曲（包括标题、艺术家、专辑匹配）
-     */
-    private List<Song> searchSongs(String query) {
-        List<Song> results = new ArrayList<>();
-
-        // 搜索歌曲标题
-        List<Song> titleResults = LitePal.where("title like ?", "%" + query + "%").find(Song.class);
-        results.addAll(titleResults);
-
-        // 搜索艺术家
-        List<Song> artistResults = LitePal.where("artist like ?", "%" + query + "%").find(Song.class);
-        for (Song song : artistResults) {
-            if (!results.contains(song)) {
-                results.add(song);
-            }
-        }
-
-        // 搜索专辑
-        List<Song> albumResults = LitePal.where("album like ?", "%" + query + "%").find(Song.class);
-        for (Song song : albumResults) {
-            if (!results.contains(song)) {
-                results.add(song);
-            }
-        }
-
-        return results;
-    }
-
-    /**
-     * 搜索专辑
-     */
-    private List<Album> searchAlbums(String query) {
-        return LitePal.where("albumName like ?", "%" + query + "%").find(Album.class);
-    }
-
-    /**
-     * 搜索艺术家
-     */
-    private List<Artist> searchArtists(String query) {
-        return LitePal.where("artistName like ?", "%" + query + "%").find(Artist.class);
-    }
-
-    /**
-     * 按播放列表搜索
-     */
-    private List<Song> searchByPlaylist(String query) {
-        List<Song> results = new ArrayList<>();
-
-        // 先查找匹配的播放列表
-        List<Playlist> playlists = LitePal.where("name like ?", "%" + query + "%").find(Playlist.class);
-
-        for (Playlist playlist : playlists) {
-            // 查找播放列表中的歌曲
-            List<com.magicalstory.music.model.PlaylistSong> playlistSongs =
-                    LitePal.where("playlistId = ?", String.valueOf(playlist.getId())).find(com.magicalstory.music.model.PlaylistSong.class);
-
-            for (com.magicalstory.music.model.PlaylistSong playlistSong : playlistSongs) {
-                Song song = LitePal.find(Song.class, playlistSong.getSongId());
-                if (song != null && !results.contains(song)) {
-                    results.add(song);
-                }
-            }
-        }
-
-        return results;
+                    }
+                });
     }
 
     private void setupSearchView() {
@@ -998,16 +866,17 @@ public class HomeFragment extends BaseFragment<FragmentHomeBinding> {
     }
 
     /**
-     * 开始音乐扫描
+     * 开始音乐扫描（用户主动触发，执行全量扫描）
      */
     private void startMusicScan() {
         if (serviceBound && musicScanService != null) {
             if (!musicScanService.isScanning()) {
-                musicScanService.startMusicScan();
+                musicScanService.startMusicScan(true);
             }
         } else {
             // 服务未绑定，直接启动服务
             Intent serviceIntent = new Intent(getContext(), MusicScanService.class);
+            serviceIntent.putExtra(MusicScanService.EXTRA_FULL_RESCAN, true);
             getContext().startService(serviceIntent);
         }
     }
@@ -1141,59 +1010,83 @@ public class HomeFragment extends BaseFragment<FragmentHomeBinding> {
         //binding.rvMyFavorites.setLayoutFrozen(true);
     }
 
+    /**
+     * 扫描进行中收到批次写入进度，边扫描边填充首页
+     * 首个批次写入后立即刷新，之后按固定间隔节流
+     */
+    private void onScanProgress(int rowsWritten) {
+        if (rowsWritten <= 0 || binding == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastScanProgressRefreshTime < SCAN_PROGRESS_REFRESH_INTERVAL) {
+            return;
+        }
+        lastScanProgressRefreshTime = now;
+        binding.layoutEmpty.setVisibility(View.GONE);
+        loadMusicSections();
+    }
+
     /**
      * 加载音乐数据
      */
     private void loadMusicData() {
+        // 启动后台服务批量获取所有专辑和歌手的封面
+        CoverFetchService.startFetchAllCovers(getContext());
+
+        loadMusicSections();
+    }
+
+    /**
+     * 查询数据库并刷新首页各个分组
+     */
+    private void loadMusicSections() {
         // 在后台线程中进行数据库查询，避免ANR
         if (executorService == null) {
             executorService = Executors.newCachedThreadPool();
         }
 
-        // 启动后台服务批量获取所有专辑和歌手的封面
-        CoverFetchService.startFetchAllCovers(getContext());
-
         executorService.execute(() -> {
             try {
+                // 以下查询的结果按依赖的表缓存，没有播放、收藏或扫描时再次进入首页不需要查询
                 // 加载最近收听的歌曲（按播放时间倒序，取前10首）
-                List<Song> latestSongs = LitePal.order("lastplayed desc").limit(10).find(Song.class);
-
-                // 加载最近播放专辑（按lastplayed倒序排列，取前10个）
-                List<Album> recentAlbums = LitePal.order("lastplayed desc").limit(10).find(Album.class);
-
-                // 为专辑设置回退封面
-                if (recentAlbums != null && !recentAlbums.isEmpty()) {
-                    int albumCoverCount = CoverFallbackUtils.setAlbumsFallbackCover(recentAlbums);
-                    if (albumCoverCount > 0) {
-                        android.util.Log.d("HomeFragment", "为 " + albumCoverCount + " 个专辑设置了回退封面");
-                    }
-                }
-
-                // 加载最近听过的艺术家（按lastplayed倒序排列，取前10个）
-                List<Artist> recentArtists = LitePal.order("lastplayed desc").limit(10).find(Artist.class);
-
-                if (recentArtists != null && !recentArtists.isEmpty()) {
-                    int artistCoverCount = CoverFallbackUtils.setArtistsFallbackCover(recentArtists);
-                    if (artistCoverCount > 0) {
-                        android.util.Log.d("HomeFragment", "为 " + artistCoverCount + " 个艺术家设置了回退封面");
-                    }
-                }
+                List<Song> latestSongs = QueryCache.getList("home.songs.lastplayed",
+                        new String[]{QueryCache.SONG},
+                        () -> LitePal.order("lastplayed desc").limit(10).find(Song.class));
+
+                // 加载最近播放专辑（按lastplayed倒序排列，取前10个），并设置回退封面
+                List<Album> recentAlbums = QueryCache.getList("home.albums.lastplayed",
+                        new String[]{QueryCache.ALBUM, QueryCache.SONG}, () -> {
+                            List<Album> albums = LitePal.order("lastplayed desc").limit(10).find(Album.class);
+                            if (albums != null && !albums.isEmpty()) {
+                                int albumCoverCount = CoverFallbackUtils.setAlbumsFallbackCover(albums);
+                                if (albumCoverCount > 0) {
+                                    android.util.Log.d("HomeFragment", "为 " + albumCoverCount + " 个专辑设置了回退封面");
+                                }
+                            }
+                            return albums;
+                        });
+
+                // 加载最近听过的艺术家（按lastplayed倒序排列，取前10个），并设置回退封面
+                List<Artist> recentArtists = QueryCache.getList("home.artists.lastplayed",
+                        new String[]{QueryCache.ARTIST, QueryCache.SONG}, () -> {
+                            List<Artist> artists = LitePal.order("lastplayed desc").limit(10).find(Artist.class);
+                            if (artists != null && !artists.isEmpty()) {
+                                int artistCoverCount = CoverFallbackUtils.setArtistsFallbackCover(artists);
+                                if (artistCoverCount > 0) {
+                                    android.util.Log.d("HomeFragment", "为 " + artistCoverCount + " 个艺术家设置了回退封面");
+                                }
+                            }
+                            return artists;
+                        });
 
                 // 加载我的收藏（从FavoriteSong表查询真正的收藏歌曲）
-                List<FavoriteSong> favoriteSongList = LitePal.order("addTime desc").limit(10).find(FavoriteSong.class);
-                List<Song> favoriteSongs = new ArrayList<>();
-                if (favoriteSongList != null && !favoriteSongList.isEmpty()) {
-                    for (FavoriteSong favoriteSong : favoriteSongList) {
-                        // 根据songId查询对应的Song对象
-                        Song song = LitePal.find(Song.class, favoriteSong.getSongId());
-                        if (song != null) {
-                            favoriteSongs.add(song);
-                        }
-                    }
-                }
+                List<Song> favoriteSongs = QueryCache.getList("home.favorites",
+                        new String[]{QueryCache.FAVORITE_SONG, QueryCache.SONG},
+                        () -> SongResolver.resolveQuery("select songid from favoritesong order by addtime desc limit 10"));
 
-                // 加载随机推荐（随机获取10首歌曲）
-                List<Song> randomSongs = LitePal.order("random()").limit(10).find(Song.class);
+                // 加载随机推荐（随机抽取10首歌曲，只读取这10首）
+                List<Song> randomSongs = SongSampler.sample(10);
 
                 // 在主线程中更新UI
                 if (mainHandler != null) {
@@ -1368,8 +1261,8 @@ public class HomeFragment extends BaseFragment<FragmentHomeBinding> {
 
         executorService.execute(() -> {
             try {
-                // 从数据库随机获取歌曲
-                List<Song> randomSongs = LitePal.order("random()").find(Song.class);
+                // 打乱所有歌曲ID，歌曲在播放队列访问时才读取
+                List<Song> randomSongs = SongSampler.shuffleAll();
 
                 // 在主线程中处理播放
                 if (mainHandler != null) {
@@ -1425,6 +1318,12 @@ public class HomeFragment extends BaseFragment<FragmentHomeBinding> {
             serviceBound = false;
         }
 
+        // 取消未完成的搜索
+        if (searchRunner != null) {
+            searchRunner.shutdown();
+            searchRunner = null;
+        }
+
         // 清理ExecutorService
         if (executorService != null) {
             executorService.shutdown();
@@ -1477,6 +1376,7 @@ public class HomeFragment extends BaseFragment<FragmentHomeBinding> {
     private void registerScanCompleteReceiver() {
         try {
             IntentFilter filter = new IntentFilter(MusicScanService.ACTION_SCAN_COMPLETE);
+            filter.addAction(MusicScanService.ACTION_SCAN_PROGRESS);
             LocalBroadcastManager.getInstance(getContext()).registerReceiver(scanCompleteReceiver, filter);
             android.util.Log.d("HomeFragment", "扫描完成广播接收器注册成功");
         } catch (Exception e) {
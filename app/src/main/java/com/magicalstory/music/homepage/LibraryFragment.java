@@ -26,8 +26,9 @@ import com.magicalstory.music.adapter.SearchResultAdapter;
 import com.magicalstory.music.model.Song;
 import com.magicalstory.music.model.Album;
 import com.magicalstory.music.model.Artist;
-import com.magicalstory.music.model.Playlist;
 import com.magicalstory.music.utils.screen.DensityUtil;
+import com.magicalstory.music.utils.search.LibrarySearch;
+import com.magicalstory.music.utils.search.SearchRunner;
 
 import org.litepal.LitePal;
 
@@ -59,6 +60,7 @@ public class LibraryFragment extends BaseFragment<FragmentLibraryBinding> {
     // 网络请求相关
     private ExecutorService executorService;
     private Handler mainHandler;
+    private SearchRunner searchRunner;
 
     @Override
     protected FragmentLibraryBinding getViewBinding(LayoutInflater inflater, ViewGroup container) {
@@ -195,6 +197,9 @@ public class LibraryFragment extends BaseFragment<FragmentLibraryBinding> {
                     performSearch(currentSearchQuery, currentSearchType);
                 } else {
                     // 清空搜索结果，显示placeholder
+                    if (searchRunner != null) {
+                        searchRunner.cancel();
+                    }
                     searchResultAdapter.updateSearchResults(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
                     binding.searchLayout.layoutEmpty.setVisibility(View.GONE);
                     binding.searchLayout.placeholder.setVisibility(View.VISIBLE);
@@ -251,73 +256,41 @@ public class LibraryFragment extends BaseFragment<FragmentLibraryBinding> {
     }
 
     /**
-     * 执行搜索
+     * 执行搜索，关键字变化时上一次未完成的搜索会被取消
      */
     private void performSearch(String query, String searchType) {
         android.util.Log.d("LibraryFragment", "开始搜索: " + query + ", 类型: " + searchType);
 
-        if (executorService == null) {
-            executorService = Executors.newCachedThreadPool();
+        if (searchRunner == null) {
+            searchRunner = new SearchRunner();
         }
 
-        executorService.execute(() -> {
-            try {
-                List<Song> songs = new ArrayList<>();
-                List<Album> albums = new ArrayList<>();
-                List<Artist> artists = new ArrayList<>();
-
-                switch (searchType) {
-                    case "all":
-                        // 搜索全部类型
-                        songs = searchAllSongs(query);
-                        albums = searchAllAlbums(query);
-                        artists = searchAllArtists(query);
-                        break;
-                    case "songs":
-                        songs = searchSongs(query);
-                        break;
-                    case "album":
-                        albums = searchAlbums(query);
-                        break;
-                    case "artist":
-                        artists = searchArtists(query);
-                        break;
-                    case "playlist":
-                        songs = searchByPlaylist(query);
-                        break;
-                }
-
-                // 创建final变量用于lambda表达式
-                final List<Song> finalSongs = songs;
-                final List<Album> finalAlbums = albums;
-                final List<Artist> finalArtists = artists;
-
-                // 在主线程中更新UI
-                if (mainHandler != null) {
-                    mainHandler.post(() -> {
+        searchRunner.submit(signal -> LibrarySearch.search(query, searchType, signal),
+                new SearchRunner.Callback<LibrarySearch.Results>() {
+                    @Override
+                    public void onResult(LibrarySearch.Results results) {
+                        searchResultAdapter.setHighlightQuery(query);
                         if (searchType.equals("all")) {
                             // 全部搜索：显示所有类型结果
-                            searchResultAdapter.updateSearchResults(finalSongs, finalAlbums, finalArtists);
+                            searchResultAdapter.updateSearchResults(results.songs, results.albums, results.artists);
                         } else {
                             // 单一类型搜索
                             switch (searchType) {
                                 case "songs":
-                                    searchResultAdapter.updateSingleTypeResults("songs", finalSongs);
+                                case "playlist":
+                                    searchResultAdapter.updateSingleTypeResults("songs", results.songs);
                                     break;
                                 case "album":
-                                    searchResultAdapter.updateSingleTypeResults("album", finalAlbums);
+                                    searchResultAdapter.updateSingleTypeResults("album", results.albums);
                                     break;
                                 case "artist":
-                                    searchResultAdapter.updateSingleTypeResults("artist", finalArtists);
-                                    break;
-                                case "playlist":
-                                    searchResultAdapter.updateSingleTypeResults("songs", finalSongs);
+                                    searchResultAdapter.updateSingleTypeResults("artist", results.artists);
                                     break;
                             }
                         }
 
                         // 检查是否有搜索结果
-                        boolean hasResults = !finalSongs.isEmpty() || !finalAlbums.isEmpty() || !finalArtists.isEmpty();
+                        boolean hasResults = !results.songs.isEmpty() || !results.albums.isEmpty() || !results.artists.isEmpty();
                         if (hasResults) {
                             binding.searchLayout.layoutEmpty.setVisibility(View.GONE);
                             binding.searchLayout.placeholder.setVisibility(View.GONE);
@@ -325,130 +298,15 @@ public class LibraryFragment extends BaseFragment<FragmentLibraryBinding> {
                             binding.searchLayout.layoutEmpty.setVisibility(View.VISIBLE);
                             binding.searchLayout.placeholder.setVisibility(View.GONE);
                         }
-                    });
-                }
-            } catch (Exception e) {
-                android.util.Log.e("LibraryFragment", "搜索失败: " + e.getMessage(), e);
-                if (mainHandler != null) {
-                    mainHandler.post(() -> {
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
                         searchResultAdapter.updateSearchResults(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
                         binding.searchLayout.layoutEmpty.setVisibility(View.VISIBLE);
                         binding.searchLayout.placeholder.setVisibility(View.GONE);
-                    });
-                }
-            }
-        });
-    }
-
-    /**
-     * 搜索全部歌曲（包括标题、艺术家、专辑匹配）
-     */
-    private List<Song> searchAllSongs(String query) {
-        List<Song> results = new ArrayList<>();
-
-        // 搜索歌曲标题
-        List<Song> titleResults = LitePal.where("title like ?", "%" + query + "%").find(Song.class);
-        results.addAll(titleResults);
-
-        // 搜索艺术家
-        List<Song> artistResults = LitePal.where("artist like ?", "%" + query + "%").find(Song.class);
-        for (Song song : artistResults) {
-            if (!results.contains(song)) {
-                results.add(song);
-            }
-        }
-
-        // 搜索专辑
-        List<Song> albumResults = LitePal.where("album like ?", "%" + query + "%").find(Song.class);
-        for (Song song : albumResults) {
-            if (!results.contains(song)) {
-                results.add(song);
-            }
-        }
-
-        return results;
-    }
-
-    /**
-     * 搜索全部专辑
-     */
-    private List<Album> searchAllAlbums(String query) {
-        return LitePal.where("albumName like ?", "%" + query + "%").find(Album.class);
-    }
-
-    /**
-     * 搜索全部艺术家
-     */
-    private List<Artist> searchAllArtists(String query) {
-        return LitePal.where("artistName like ?", "%" + query + "%").find(Artist.class);
-    }
-
-    /**
-     * 搜索歌曲（包括标题、艺术家、专辑匹配）
-     */
-    private List<Song> searchSongs(String query) {
-        List<Song> results = new ArrayList<>();
-
-        // 搜索歌曲标题
-        List<Song> titleResults = LitePal.where("title like ?", "%" + query + "%").find(Song.class);
-        results.addAll(titleResults);
-
-        // 搜索艺术家
-        List<Song> artistResults = LitePal.where("artist like ?", "%" + query + "%").find(Song.class);
-        for (Song song : artistResults) {
-            if (!results.contains(song)) {
-                results.add(song);
-            }
-        }
-
-        // 搜索专辑
-        List<Song> albumResults = LitePal.where("album like ?", "%" + query + "%").find(Song.class);
-        for (Song song : albumResults) {
-            if (!results.contains(song)) {
-                results.add(song);
-            }
-        }
-
-        return results;
-    }
-
-    /**
-     * 搜索专辑
-     */
-    private List<Album> searchAlbums(String query) {
-        return LitePal.where("albumName like ?", "%" + query + "%").find(Album.class);
-    }
-
-    /**
-     * 搜索艺术家
-     */
-    private List<Artist> searchArtists(String query) {
-        return LitePal.where("artistName like ?", "%" + query + "%").find(Artist.class);
-    }
-
-    /**
-     * 按播放列表搜索
-     */
-    private List<Song> searchByPlaylist(String query) {
-        List<Song> results = new ArrayList<>();
-
-        // 先查找匹配的播放列表
-        List<Playlist> playlists = LitePal.where("name like ?", "%" + query + "%").find(Playlist.class);
-
-        for (Playlist playlist : playlists) {
-            // 查找播放列表中的歌曲
-            List<com.magicalstory.music.model.PlaylistSong> playlistSongs =
-                    LitePal.where("playlistId = ?", String.valueOf(playlist.getId())).find(com.magicalstory.music.model.PlaylistSong.class);
-
-            for (com.magicalstory.music.model.PlaylistSong playlistSong : playlistSongs) {
-                Song song = LitePal.find(Song.class, playlistSong.getSongId());
-                if (song != null && !results.contains(song)) {
-                    results.add(song);
-                }
-            }
-        }
-
-        return results;
+                    }
+                });
     }
 
     private void setupSearchView() {
@@ -652,6 +510,12 @@ public class LibraryFragment extends BaseFragment<FragmentLibraryBinding> {
     public void onDestroy() {
         super.onDestroy();
 
+        // 取消未完成的搜索
+        if (searchRunner != null) {
+            searchRunner.shutdown();
+            searchRunner = null;
+        }
+
         // 清理ExecutorService
         if (executorService != null) {
             executorService.shutdown();
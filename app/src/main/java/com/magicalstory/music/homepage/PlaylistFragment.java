@@ -1,9 +1,5 @@
 package com.magicalstory.music.homepage;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -15,9 +11,11 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 import androidx.media3.common.util.UnstableApi;
 import androidx.navigation.Navigation;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.GridLayoutManager;
 
 import com.google.android.material.chip.Chip;
@@ -38,7 +36,12 @@ import com.magicalstory.music.model.Artist;
 import com.magicalstory.music.model.Playlist;
 import com.magicalstory.music.model.Song;
 import com.magicalstory.music.utils.app.ToastUtils;
+import com.magicalstory.music.utils.query.ItemDiffs;
+import com.magicalstory.music.utils.query.ObservableQuery;
+import com.magicalstory.music.utils.query.QueryCache;
 import com.magicalstory.music.utils.screen.DensityUtil;
+import com.magicalstory.music.utils.search.LibrarySearch;
+import com.magicalstory.music.utils.search.SearchRunner;
 
 import org.litepal.LitePal;
 
@@ -68,18 +71,10 @@ public class PlaylistFragment extends BaseFragment<FragmentPlaylistBinding> {
     // 网络请求相关
     private ExecutorService executorService;
     private Handler mainHandler;
+    private SearchRunner searchRunner;
 
-    // 刷新广播接收器
-    private final BroadcastReceiver refreshReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            if ("com.magicalstory.music.REFRESH_PLAYLIST".equals(intent.getAction())) {
-                android.util.Log.d("PlaylistFragment", "收到刷新歌单列表广播");
-                // 重新加载歌单数据
-                loadPlaylistData();
-            }
-        }
-    };
+    // 歌单列表的查询，歌单或歌单歌曲变化后重新读取并按差异刷新
+    private ObservableQuery<Playlist> playlistQuery;
 
     @Override
     protected FragmentPlaylistBinding getViewBinding(LayoutInflater inflater, ViewGroup container) {
@@ -134,10 +129,6 @@ public class PlaylistFragment extends BaseFragment<FragmentPlaylistBinding> {
         binding.fabAddPlaylist.setOnClickListener(v -> {
             showCreatePlaylistDialog();
         });
-
-        // 注册刷新广播接收器
-        androidx.localbroadcastmanager.content.LocalBroadcastManager.getInstance(requireContext())
-                .registerReceiver(refreshReceiver, new IntentFilter("com.magicalstory.music.REFRESH_PLAYLIST"));
     }
 
     /**
@@ -212,6 +203,9 @@ public class PlaylistFragment extends BaseFragment<FragmentPlaylistBinding> {
                     performSearch(currentSearchQuery, currentSearchType);
                 } else {
                     // 清空搜索结果，显示placeholder
+                    if (searchRunner != null) {
+                        searchRunner.cancel();
+                    }
                     searchResultAdapter.updateSearchResults(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
                     binding.searchLayout.layoutEmpty.setVisibility(View.GONE);
                     binding.searchLayout.placeholder.setVisibility(View.VISIBLE);
@@ -268,73 +262,41 @@ public class PlaylistFragment extends BaseFragment<FragmentPlaylistBinding> {
     }
 
     /**
-     * 执行搜索
+     * 执行搜索，关键字变化时上一次未完成的搜索会被取消
      */
     private void performSearch(String query, String searchType) {
         android.util.Log.d("PlaylistFragment", "开始搜索: " + query + ", 类型: " + searchType);
 
-        if (executorService == null) {
-            executorService = Executors.newCachedThreadPool();
+        if (searchRunner == null) {
+            searchRunner = new SearchRunner();
         }
 
-        executorService.execute(() -> {
-            try {
-                List<Song> songs = new ArrayList<>();
-                List<Album> albums = new ArrayList<>();
-                List<Artist> artists = new ArrayList<>();
-
-                switch (searchType) {
-                    case "all":
-                        // 搜索全部类型
-                        songs = searchAllSongs(query);
-                        albums = searchAllAlbums(query);
-                        artists = searchAllArtists(query);
-                        break;
-                    case "songs":
-                        songs = searchSongs(query);
-                        break;
-                    case "album":
-                        albums = searchAlbums(query);
-                        break;
-                    case "artist":
-                        artists = searchArtists(query);
-                        break;
-                    case "playlist":
-                        songs = searchByPlaylist(query);
-                        break;
-                }
-
-                // 创建final变量用于lambda表达式
-                final List<Song> finalSongs = songs;
-                final List<Album> finalAlbums = albums;
-                final List<Artist> finalArtists = artists;
-
-                // 在主线程中更新UI
-                if (mainHandler != null) {
-                    mainHandler.post(() -> {
+        searchRunner.submit(signal -> LibrarySearch.search(query, searchType, signal),
+                new SearchRunner.Callback<LibrarySearch.Results>() {
+                    @Override
+                    public void onResult(LibrarySearch.Results results) {
+                        searchResultAdapter.setHighlightQuery(query);
                         if (searchType.equals("all")) {
                             // 全部搜索：显示所有类型结果
-                            searchResultAdapter.updateSearchResults(finalSongs, finalAlbums, finalArtists);
+                            searchResultAdapter.updateSearchResults(results.songs, results.albums, results.artists);
                         } else {
                             // 单一类型搜索
                             switch (searchType) {
                                 case "songs":
-                                    searchResultAdapter.updateSingleTypeResults("songs", finalSongs);
+                                case "playlist":
+                                    searchResultAdapter.updateSingleTypeResults("songs", results.songs);
                                     break;
                                 case "album":
-                                    searchResultAdapter.updateSingleTypeResults("album", finalAlbums);
+                                    searchResultAdapter.updateSingleTypeResults("album", results.albums);
                                     break;
                                 case "artist":
-                                    searchResultAdapter.updateSingleTypeResults("artist", finalArtists);
-                                    break;
-                                case "playlist":
-                                    searchResultAdapter.updateSingleTypeResults("songs", finalSongs);
+                                    searchResultAdapter.updateSingleTypeResults("artist", results.artists);
                                     break;
                             }
                         }
 
                         // 检查是否有搜索结果
-                        boolean hasResults = !finalSongs.isEmpty() || !finalAlbums.isEmpty() || !finalArtists.isEmpty();
+                        boolean hasResults = !results.songs.isEmpty() || !results.albums.isEmpty() || !results.artists.isEmpty();
                         if (hasResults) {
                             binding.searchLayout.layoutEmpty.setVisibility(View.GONE);
                             binding.searchLayout.placeholder.setVisibility(View.GONE);
@@ -342,130 +304,15 @@ public class PlaylistFragment extends BaseFragment<FragmentPlaylistBinding> {
                             binding.searchLayout.layoutEmpty.setVisibility(View.VISIBLE);
                             binding.searchLayout.placeholder.setVisibility(View.GONE);
                         }
-                    });
-                }
-            } catch (Exception e) {
-                android.util.Log.e("PlaylistFragment", "搜索失败: " + e.getMessage(), e);
-                if (mainHandler != null) {
-                    mainHandler.post(() -> {
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
                         searchResultAdapter.updateSearchResults(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
                         binding.searchLayout.layoutEmpty.setVisibility(View.VISIBLE);
                         binding.searchLayout.placeholder.setVisibility(View.GONE);
-                    });
-                }
-            }
-        });
-    }
-
-    /**
-     * 搜索全部歌曲（包括标题、艺术家、专辑匹配）
-     */
-    private List<Song> searchAllSongs(String query) {
-        List<Song> results = new ArrayList<>();
-
-        // 搜索歌曲标题
-        List<Song> titleResults = LitePal.where("title like ?", "%" + query + "%").find(Song.class);
-        results.addAll(titleResults);
-
-        // 搜索艺术家
-        List<Song> artistResults = LitePal.where("artist like ?", "%" + query + "%").find(Song.class);
-        for (Song song : artistResults) {
-            if (!results.contains(song)) {
-                results.add(song);
-            }
-        }
-
-        // 搜索专辑
-        List<Song> albumResults = LitePal.where("album like ?", "%" + query + "%").find(Song.class);
-        for (Song song : albumResults) {
-            if (!results.contains(song)) {
-                results.add(song);
-            }
-        }
-
-        return results;
-    }
-
-    /**
-     * 搜索全部专辑
-     */
-    private List<Album> searchAllAlbums(String query) {
-        return LitePal.where("albumName like ?", "%" + query + "%").find(Album.class);
-    }
-
-    /**
-     * 搜索全部艺术家
-     */
-    private List<Artist> searchAllArtists(String query) {
-        return LitePal.where("artistName like ?", "%" + query + "%").find(Artist.class);
-    }
-
-    /**
-     * 搜索歌曲（包括标题、艺术家、专辑匹配）
-     */
-    private List<Song> searchSongs(String query) {
-        List<Song> results = new ArrayList<>();
-
-        // 搜索歌曲标题
-        List<Song> titleResults = LitePal.where("title like ?", "%" + query + "%").find(Song.class);
-        results.addAll(titleResults);
-
-        // 搜索艺术家
-        List<Song> artistResults = LitePal.where("artist like ?", "%" + query + "%").find(Song.class);
-        for (Song song : artistResults) {
-            if (!results.contains(song)) {
-                results.add(song);
-            }
-        }
-
-        // 搜索专辑
-        List<Song> albumResults = LitePal.where("album like ?", "%" + query + "%").find(Song.class);
-        for (Song song : albumResults) {
-            if (!results.contains(song)) {
-                results.add(song);
-            }
-        }
-
-        return results;
-    }
-
-    /**
-     * 搜索专辑
-     */
-    private List<Album> searchAlbums(String query) {
-        return LitePal.where("albumName like ?", "%" + query + "%").find(Album.class);
-    }
-
-    /**
-     * 搜索艺术家
-     */
-    private List<Artist> searchArtists(String query) {
-        return LitePal.where("artistName like ?", "%" + query + "%").find(Artist.class);
-    }
-
-    /**
-     * 按播放列表搜索
-     */
-    private List<Song> searchByPlaylist(String query) {
-        List<Song> results = new ArrayList<>();
-
-        // 先查找匹配的播放列表
-        List<Playlist> playlists = LitePal.where("name like ?", "%" + query + "%").find(Playlist.class);
-
-        for (Playlist playlist : playlists) {
-            // 查找播放列表中的歌曲
-            List<com.magicalstory.music.model.PlaylistSong> playlistSongs =
-                    LitePal.where("playlistId = ?", String.valueOf(playlist.getId())).find(com.magicalstory.music.model.PlaylistSong.class);
-
-            for (com.magicalstory.music.model.PlaylistSong playlistSong : playlistSongs) {
-                Song song = LitePal.find(Song.class, playlistSong.getSongId());
-                if (song != null && !results.contains(song)) {
-                    results.add(song);
-                }
-            }
-        }
-
-        return results;
+                    }
+                });
     }
 
     private void setupSearchView() {
@@ -538,7 +385,7 @@ public class PlaylistFragment extends BaseFragment<FragmentPlaylistBinding> {
     }
 
     /**
-     * 加载歌单数据
+     * 按当前排序订阅歌单列表，歌单或歌单歌曲变化后只刷新变化的项
      */
     private void loadPlaylistData() {
         // 显示进度条
@@ -546,54 +393,55 @@ public class PlaylistFragment extends BaseFragment<FragmentPlaylistBinding> {
         binding.rvPlaylists.setVisibility(View.GONE);
         binding.layoutEmpty.setVisibility(View.GONE);
 
-        // 在后台线程中查询数据
-        if (executorService == null) {
-            executorService = Executors.newCachedThreadPool();
+        if (playlistQuery != null) {
+            playlistQuery.close();
         }
 
-        executorService.execute(() -> {
-            try {
-                // 根据当前排序类型构建查询
-                String orderBy = getOrderByClause();
-                List<Playlist> playlists = LitePal.where("isSystemPlaylist = ?", "0")
-                        .order(orderBy)
-                        .find(Playlist.class);
+        // 根据当前排序类型构建查询，结果按排序缓存
+        String orderBy = getOrderByClause();
+        String sortType = currentSortType;
+        String sortOrder = currentSortOrder;
+        String[] tables = {QueryCache.PLAYLIST, QueryCache.PLAYLIST_SONG};
+        ObservableQuery<Playlist> query = new ObservableQuery<>(tables, loadedCount ->
+                QueryCache.getList("playlists", tables, () -> {
+                    List<Playlist> result = LitePal.where("isSystemPlaylist = ?", "0")
+                            .order(orderBy)
+                            .find(Playlist.class);
+
+                    // 更新歌单的歌曲数量
+                    for (Playlist playlist : result) {
+                        int songCount = com.magicalstory.music.model.PlaylistSong.getPlaylistSongCount(playlist.getId());
+                        playlist.setSongCount(songCount);
+                    }
 
-                // 更新歌单的歌曲数量
-                for (Playlist playlist : playlists) {
-                    int songCount = com.magicalstory.music.model.PlaylistSong.getPlaylistSongCount(playlist.getId());
-                    playlist.setSongCount(songCount);
-                }
+                    // 如果按歌曲数量排序，需要重新排序
+                    if ("songCount".equals(sortType)) {
+                        sortPlaylistsBySongCount(result, sortOrder);
+                    }
+                    return result;
+                }, orderBy, sortType, sortOrder), ItemDiffs.PLAYLIST);
+        playlistQuery = query;
+        query.subscribe(new ObservableQuery.Callback<Playlist>() {
+            @Override
+            public void onChanged(@NonNull List<Playlist> playlists, @Nullable DiffUtil.DiffResult diff) {
+                binding.progressBar.setVisibility(View.GONE);
+                playlistAdapter.updateData(new ArrayList<>(playlists), diff);
 
-                // 如果按歌曲数量排序，需要重新排序
-                if ("songCount".equals(currentSortType)) {
-                    sortPlaylistsBySongCount(playlists);
+                if (!playlists.isEmpty()) {
+                    binding.rvPlaylists.setVisibility(View.VISIBLE);
+                    binding.layoutEmpty.setVisibility(View.GONE);
+                } else {
+                    binding.rvPlaylists.setVisibility(View.GONE);
+                    binding.layoutEmpty.setVisibility(View.VISIBLE);
                 }
+            }
 
-                // 在主线程中更新UI
-                if (mainHandler != null) {
-                    mainHandler.post(() -> {
-                        binding.progressBar.setVisibility(View.GONE);
-
-                        if (playlists != null && !playlists.isEmpty()) {
-                            playlistAdapter.updateData(playlists);
-                            binding.rvPlaylists.setVisibility(View.VISIBLE);
-                            binding.layoutEmpty.setVisibility(View.GONE);
-                        } else {
-                            binding.rvPlaylists.setVisibility(View.GONE);
-                            binding.layoutEmpty.setVisibility(View.VISIBLE);
-                        }
-                    });
-                }
-            } catch (Exception e) {
+            @Override
+            public void onError(Exception e) {
                 android.util.Log.e("PlaylistFragment", "加载歌单数据失败: " + e.getMessage(), e);
-                if (mainHandler != null) {
-                    mainHandler.post(() -> {
-                        binding.progressBar.setVisibility(View.GONE);
-                        binding.rvPlaylists.setVisibility(View.GONE);
-                        binding.layoutEmpty.setVisibility(View.VISIBLE);
-                    });
-                }
+                binding.progressBar.setVisibility(View.GONE);
+                binding.rvPlaylists.setVisibility(View.GONE);
+                binding.layoutEmpty.setVisibility(View.VISIBLE);
             }
         });
     }
@@ -624,8 +472,8 @@ public class PlaylistFragment extends BaseFragment<FragmentPlaylistBinding> {
     /**
      * 按歌曲数量排序歌单
      */
-    private void sortPlaylistsBySongCount(List<Playlist> playlists) {
-        if ("asc".equals(currentSortOrder)) {
+    private void sortPlaylistsBySongCount(List<Playlist> playlists, String sortOrder) {
+        if ("asc".equals(sortOrder)) {
             playlists.sort((p1, p2) -> Integer.compare(p1.getSongCount(), p2.getSongCount()));
         } else {
             playlists.sort((p1, p2) -> Integer.compare(p2.getSongCount(), p1.getSongCount()));
@@ -683,13 +531,13 @@ public class PlaylistFragment extends BaseFragment<FragmentPlaylistBinding> {
                 Playlist newPlaylist = new Playlist(playlistName, "");
                 newPlaylist.setSystemPlaylist(false);
                 boolean saved = newPlaylist.save();
+                QueryCache.invalidate(QueryCache.PLAYLIST);
 
                 if (mainHandler != null) {
                     mainHandler.post(() -> {
                         if (saved) {
+                            // 歌单列表由playlistQuery在歌单表变化后刷新
                             ToastUtils.showToast(getContext(), "歌单创建成功");
-                            // 重新加载歌单数据
-                            loadPlaylistData();
                         } else {
                             ToastUtils.showToast(getContext(), "歌单创建失败");
                         }
@@ -898,10 +746,7 @@ public class PlaylistFragment extends BaseFragment<FragmentPlaylistBinding> {
     @Override
     protected void performRefreshInBackground() {
         try {
-            // 重新加载歌单数据
-            loadPlaylistData();
-            
-            // 打印原始数据到控制台
+            // 歌单数据由playlistQuery在后台线程读取，这里不需要预先读取
             System.out.println("PlaylistFragment后台刷新完成");
             
         } catch (Exception e) {
@@ -918,8 +763,12 @@ public class PlaylistFragment extends BaseFragment<FragmentPlaylistBinding> {
         try {
             // 更新UI显示
             if (binding != null) {
-                // 重新加载歌单数据
-                loadPlaylistData();
+                // 重新查询歌单数据，只刷新变化的歌单
+                if (playlistQuery != null) {
+                    playlistQuery.refresh();
+                } else {
+                    loadPlaylistData();
+                }
             }
             
             System.out.println("PlaylistFragment UI更新完成");
@@ -947,14 +796,18 @@ public class PlaylistFragment extends BaseFragment<FragmentPlaylistBinding> {
     public void onDestroy() {
         super.onDestroy();
         
-        // 注销广播接收器
-        try {
-            androidx.localbroadcastmanager.content.LocalBroadcastManager.getInstance(requireContext())
-                    .unregisterReceiver(refreshReceiver);
-        } catch (Exception e) {
-            android.util.Log.e("PlaylistFragment", "注销广播接收器失败: " + e.getMessage(), e);
+        // 取消歌单列表的订阅
+        if (playlistQuery != null) {
+            playlistQuery.close();
+            playlistQuery = null;
         }
         
+        // 取消未完成的搜索
+        if (searchRunner != null) {
+            searchRunner.shutdown();
+            searchRunner = null;
+        }
+
         // 清理ExecutorService
         if (executorService != null) {
             executorService.shutdown();
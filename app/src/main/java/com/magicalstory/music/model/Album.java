@@ -1,5 +1,7 @@
 package com.magicalstory.music.model;
 
+import com.magicalstory.music.utils.text.PinyinUtils;
+
 import org.litepal.crud.LitePalSupport;
 
 /**
@@ -11,6 +13,7 @@ public class Album extends LitePalSupport {
     private String artist;          // 艺术家
     private int songCount;          // 歌曲数量
     private long albumId;           // 系统专辑ID
+    private long artistRowId;       // 艺术家在Artist表中的行ID，未关联为0
     private String albumArt;        // 专辑封面路径
     private int year;               // 年份
     private long firstYear;         // 首次发行年份
@@ -18,11 +21,12 @@ public class Album extends LitePalSupport {
     private long lastplayed;        // 最后播放时间
     private long dateAdded;         // 添加时间
     private String genre;           // 流派
+    private String albumNamePinyin; // 专辑名称的拼音转写，不含汉字为空字符串，未转写为null
 
     public Album() {}
 
     public Album(String albumName, String artist, int songCount, long albumId) {
-        this.albumName = albumName;
+        setAlbumName(albumName);
         this.artist = artist;
         this.songCount = songCount;
         this.albumId = albumId;
@@ -43,6 +47,19 @@ public class Album extends LitePalSupport {
 
     public void setAlbumName(String albumName) {
         this.albumName = albumName;
+        this.albumNamePinyin = PinyinUtils.transliterate(albumName);
+    }
+
+    /**
+     * 设置专辑名称和已保存的拼音转写（从数据库读取的行），不重新转写
+     */
+    public void setAlbumName(String albumName, String albumNamePinyin) {
+        this.albumName = albumName;
+        this.albumNamePinyin = albumNamePinyin;
+    }
+
+    public String getAlbumNamePinyin() {
+        return albumNamePinyin;
     }
 
     public String getArtist() {
@@ -69,6 +86,14 @@ public class Album extends LitePalSupport {
         this.albumId = albumId;
     }
 
+    public long getArtistRowId() {
+        return artistRowId;
+    }
+
+    public void setArtistRowId(long artistRowId) {
+        this.artistRowId = artistRowId;
+    }
+
     public String getAlbumArt() {
         return albumArt;
     }
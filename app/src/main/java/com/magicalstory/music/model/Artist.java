@@ -1,5 +1,7 @@
 package com.magicalstory.music.model;
 
+import com.magicalstory.music.utils.text.PinyinUtils;
+
 import org.litepal.crud.LitePalSupport;
 
 /**
@@ -15,11 +17,12 @@ public class Artist extends LitePalSupport {
     private boolean coverFetched;   // 是否已经尝试过获取封面
     private long lastplayed;        // 最后播放时间
     private long dateAdded;         // 添加时间
+    private String artistNamePinyin;    // 艺术家名称的拼音转写，不含汉字为空字符串，未转写为null
 
     public Artist() {}
 
     public Artist(String artistName, int songCount, int albumCount, long artistId) {
-        this.artistName = artistName;
+        setArtistName(artistName);
         this.songCount = songCount;
         this.albumCount = albumCount;
         this.artistId = artistId;
@@ -41,6 +44,19 @@ public class Artist extends LitePalSupport {
 
     public void setArtistName(String artistName) {
         this.artistName = artistName;
+        this.artistNamePinyin = PinyinUtils.transliterate(artistName);
+    }
+
+    /**
+     * 设置艺术家名称和已保存的拼音转写（从数据库读取的行），不重新转写
+     */
+    public void setArtistName(String artistName, String artistNamePinyin) {
+        this.artistName = artistName;
+        this.artistNamePinyin = artistNamePinyin;
+    }
+
+    public String getArtistNamePinyin() {
+        return artistNamePinyin;
     }
 
     public int getSongCount() {
@@ -1,5 +1,9 @@
 package com.magicalstory.music.model;
 
+import com.magicalstory.music.utils.db.PlayEventLog;
+import com.magicalstory.music.utils.query.QueryCache;
+import com.magicalstory.music.utils.query.SongResolver;
+
 import org.litepal.LitePal;
 import org.litepal.crud.LitePalSupport;
 
@@ -130,6 +134,7 @@ public class PlayHistory extends LitePalSupport {
                 newHistory.setPlayProgress(playProgress);
                 newHistory.saveThrows();
             }
+            QueryCache.invalidate(QueryCache.PLAY_HISTORY);
         } catch (Exception e) {
             android.util.Log.e("PlayHistory", "Error recording play history: " + e.getMessage(), e);
         }
@@ -152,6 +157,7 @@ public class PlayHistory extends LitePalSupport {
                 newHistory.setSkipCount(1);
                 newHistory.saveThrows();
             }
+            QueryCache.invalidate(QueryCache.PLAY_HISTORY);
         } catch (Exception e) {
             android.util.Log.e("PlayHistory", "Error recording skip: " + e.getMessage(), e);
         }
@@ -185,15 +191,10 @@ public class PlayHistory extends LitePalSupport {
     }
 
     /**
-     * 获取播放历史总数
+     * 获取播放历史总数（读取收听汇总中全部时间的总数）
      */
     public static int getTotalPlayCount() {
-        List<PlayHistory> histories = LitePal.findAll(PlayHistory.class);
-        int totalCount = 0;
-        for (PlayHistory history : histories) {
-            totalCount += history.getPlayCount();
-        }
-        return totalCount;
+        return (int) PlayEventLog.getTotal(PlayEventLog.PERIOD_ALL, 0).playCount;
     }
 
     /**
@@ -201,6 +202,7 @@ public class PlayHistory extends LitePalSupport {
      */
     public static void clearPlayHistory() {
         LitePal.deleteAll(PlayHistory.class);
+        QueryCache.invalidate(QueryCache.PLAY_HISTORY);
     }
 
     /**
@@ -208,13 +210,14 @@ public class PlayHistory extends LitePalSupport {
      */
     public static void deleteSongHistory(long songId) {
         LitePal.deleteAll(PlayHistory.class, "songId = ?", String.valueOf(songId));
+        QueryCache.invalidate(QueryCache.PLAY_HISTORY);
     }
 
     /**
      * 获取歌曲对象
      */
     public Song getSong() {
-        return LitePal.find(Song.class, this.songId);
+        return SongResolver.resolve(this.songId);
     }
 
     /**
@@ -1,5 +1,7 @@
 package com.magicalstory.music.model;
 
+import com.magicalstory.music.utils.query.QueryCache;
+
 import org.litepal.crud.LitePalSupport;
 
 import java.util.ArrayList;
@@ -137,6 +139,7 @@ public class Playlist extends LitePalSupport {
         updatePlaylistCover(song);
         
         this.save();
+        QueryCache.invalidate(QueryCache.PLAYLIST, QueryCache.PLAYLIST_SONG);
     }
 
     /**
@@ -158,6 +161,7 @@ public class Playlist extends LitePalSupport {
         if (latestSong != null) {
             updatePlaylistCover(latestSong);
             this.save();
+            QueryCache.invalidate(QueryCache.PLAYLIST);
         }
     }
 
@@ -169,6 +173,7 @@ public class Playlist extends LitePalSupport {
         this.songCount = Math.max(0, this.songCount - 1);
         this.updatedTime = System.currentTimeMillis();
         this.save();
+        QueryCache.invalidate(QueryCache.PLAYLIST, QueryCache.PLAYLIST_SONG);
     }
 
     /**
@@ -1,9 +1,11 @@
 package com.magicalstory.music.model;
 
+import com.magicalstory.music.utils.query.QueryCache;
+import com.magicalstory.music.utils.query.SongResolver;
+
 import org.litepal.LitePal;
 import org.litepal.crud.LitePalSupport;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -71,36 +73,16 @@ public class PlaylistSong extends LitePalSupport {
      * 获取播放列表中的所有歌曲（按添加时间倒序，最新添加的歌曲在前面）
      */
     public static List<Song> getPlaylistSongs(long playlistId) {
-        List<Song> songs = new ArrayList<>();
-        List<PlaylistSong> playlistSongs = LitePal.where("playlistId = ?", String.valueOf(playlistId))
-                .order("addedTime DESC")
-                .find(PlaylistSong.class);
-        
-        for (PlaylistSong playlistSong : playlistSongs) {
-            Song song = LitePal.find(Song.class, playlistSong.getSongId());
-            if (song != null) {
-                songs.add(song);
-            }
-        }
-        return songs;
+        return SongResolver.resolveQuery("select songid from playlistsong where playlistid = ? "
+                + "order by addedtime desc", String.valueOf(playlistId));
     }
 
     /**
      * 获取播放列表中的所有歌曲（按位置排序，用于播放顺序）
      */
     public static List<Song> getPlaylistSongsByPosition(long playlistId) {
-        List<Song> songs = new ArrayList<>();
-        List<PlaylistSong> playlistSongs = LitePal.where("playlistId = ?", String.valueOf(playlistId))
-                .order("position ASC, addedTime ASC")
-                .find(PlaylistSong.class);
-        
-        for (PlaylistSong playlistSong : playlistSongs) {
-            Song song = LitePal.find(Song.class, playlistSong.getSongId());
-            if (song != null) {
-                songs.add(song);
-            }
-        }
-        return songs;
+        return SongResolver.resolveQuery("select songid from playlistsong where playlistid = ? "
+                + "order by position asc, addedtime asc", String.valueOf(playlistId));
     }
 
     /**
@@ -118,6 +100,7 @@ public class PlaylistSong extends LitePalSupport {
     public static void deletePlaylistSong(long playlistId, long songId) {
         LitePal.deleteAll(PlaylistSong.class, "playlistId = ? AND songId = ?",
                 String.valueOf(playlistId), String.valueOf(songId));
+        QueryCache.invalidate(QueryCache.PLAYLIST_SONG);
     }
 
     /**
@@ -132,6 +115,7 @@ public class PlaylistSong extends LitePalSupport {
      */
     public static void deleteAllPlaylistSongs(long playlistId) {
         LitePal.deleteAll(PlaylistSong.class, "playlistId = ?", String.valueOf(playlistId));
+        QueryCache.invalidate(QueryCache.PLAYLIST_SONG);
     }
 
     /**
@@ -144,6 +128,7 @@ public class PlaylistSong extends LitePalSupport {
         if (playlistSong != null) {
             playlistSong.setPosition(position);
             playlistSong.save();
+            QueryCache.invalidate(QueryCache.PLAYLIST_SONG);
         }
     }
 
@@ -156,7 +141,7 @@ public class PlaylistSong extends LitePalSupport {
                 .findFirst(PlaylistSong.class);
         
         if (latestPlaylistSong != null) {
-            return LitePal.find(Song.class, latestPlaylistSong.getSongId());
+            return SongResolver.resolve(latestPlaylistSong.getSongId());
         }
         return null;
     }
@@ -0,0 +1,140 @@
+package com.magicalstory.music.model;
+
+import org.litepal.LitePal;
+import org.litepal.crud.LitePalSupport;
+
+/**
+ * 扫描检查点
+ * 扫描过程中每提交一个批次，就在同一个事务中更新检查点（只有一行），
+ * 进程在扫描中途被杀死后，下一次扫描从最后提交的批次之后继续
+ */
+public class ScanCheckpoint extends LitePalSupport {
+
+    // 检查点固定使用的行ID
+    public static final long ROW_ID = 1;
+
+    private long id;
+    private boolean incremental;        // 是否为增量扫描
+    private String mediaVersion;        // 开始扫描时的MediaStore版本，版本变化后检查点失效
+    private long baseGeneration;        // 增量扫描的起始generation（不含）
+    private long targetGeneration;      // 开始扫描时的generation，扫描完成后写入水位线
+    private long baseMaxDateModified;   // 增量扫描的起始DATE_MODIFIED（低版本系统）
+    private long baseMaxMediaId;        // 增量扫描的起始_ID（低版本系统）
+    private long lastMediaId;           // 最后提交的批次中最大的_ID，恢复时从它之后继续
+    private long maxDateModified;       // 已提交的行中最大的DATE_MODIFIED
+    private long maxMediaId;            // 已提交的行中最大的_ID
+    private int rowsWritten;            // 已提交的行数
+    private int newSongCount;           // 已提交的新增歌曲数
+    private long updatedTime;           // 最后更新时间
+
+    /**
+     * 读取未完成扫描的检查点，没有时返回null
+     */
+    public static ScanCheckpoint load() {
+        return LitePal.find(ScanCheckpoint.class, ROW_ID);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public String getMediaVersion() {
+        return mediaVersion;
+    }
+
+    public void setMediaVersion(String mediaVersion) {
+        this.mediaVersion = mediaVersion;
+    }
+
+    public long getBaseGeneration() {
+        return baseGeneration;
+    }
+
+    public void setBaseGeneration(long baseGeneration) {
+        this.baseGeneration = baseGeneration;
+    }
+
+    public long getTargetGeneration() {
+        return targetGeneration;
+    }
+
+    public void setTargetGeneration(long targetGeneration) {
+        this.targetGeneration = targetGeneration;
+    }
+
+    public long getBaseMaxDateModified() {
+        return baseMaxDateModified;
+    }
+
+    public void setBaseMaxDateModified(long baseMaxDateModified) {
+        this.baseMaxDateModified = baseMaxDateModified;
+    }
+
+    public long getBaseMaxMediaId() {
+        return baseMaxMediaId;
+    }
+
+    public void setBaseMaxMediaId(long baseMaxMediaId) {
+        this.baseMaxMediaId = baseMaxMediaId;
+    }
+
+    public long getLastMediaId() {
+        return lastMediaId;
+    }
+
+    public void setLastMediaId(long lastMediaId) {
+        this.lastMediaId = lastMediaId;
+    }
+
+    public long getMaxDateModified() {
+        return maxDateModified;
+    }
+
+    public void setMaxDateModified(long maxDateModified) {
+        this.maxDateModified = maxDateModified;
+    }
+
+    public long getMaxMediaId() {
+        return maxMediaId;
+    }
+
+    public void setMaxMediaId(long maxMediaId) {
+        this.maxMediaId = maxMediaId;
+    }
+
+    public int getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public void setRowsWritten(int rowsWritten) {
+        this.rowsWritten = rowsWritten;
+    }
+
+    public int getNewSongCount() {
+        return newSongCount;
+    }
+
+    public void setNewSongCount(int newSongCount) {
+        this.newSongCount = newSongCount;
+    }
+
+    public long getUpdatedTime() {
+        return updatedTime;
+    }
+
+    public void setUpdatedTime(long updatedTime) {
+        this.updatedTime = updatedTime;
+    }
+}
@@ -0,0 +1,46 @@
+package com.magicalstory.music.model;
+
+import org.litepal.LitePal;
+import org.litepal.annotation.Column;
+import org.litepal.crud.LitePalSupport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 扫描中歌曲已写入、但专辑/艺术家统计尚未更新的艺术家
+ * 与歌曲在同一个事务中写入，统计更新完成后清空；扫描中断后恢复时据此重新统计
+ */
+public class ScanDirtyArtist extends LitePalSupport {
+
+    private long id;
+    @Column(unique = true)
+    private String artistName;      // 艺术家名称
+
+    /**
+     * 读取所有待重新统计的艺术家
+     */
+    public static List<String> loadAll() {
+        List<String> names = new ArrayList<>();
+        for (ScanDirtyArtist artist : LitePal.findAll(ScanDirtyArtist.class)) {
+            names.add(artist.getArtistName());
+        }
+        return names;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getArtistName() {
+        return artistName;
+    }
+
+    public void setArtistName(String artistName) {
+        this.artistName = artistName;
+    }
+}
@@ -1,5 +1,7 @@
 package com.magicalstory.music.model;
 
+import com.magicalstory.music.utils.text.PinyinUtils;
+
 import org.litepal.crud.LitePalSupport;
 
 import java.io.Serializable;
@@ -18,6 +20,8 @@ public class Song extends LitePalSupport implements Serializable {
     private String displayName;     // 显示名称
     private long albumId;           // 专辑ID
     private long artistId;          // 艺术家ID
+    private long albumRowId;        // 所属专辑在Album表中的行ID，未关联为0
+    private long artistRowId;       // 艺术家在Artist表中的行ID，未关联为0
     private long dateAdded;         // 添加时间
     private long dateModified;      // 修改时间
     private String mimeType;        // MIME类型
@@ -26,12 +30,21 @@ public class Song extends LitePalSupport implements Serializable {
     private String genre;           // 流派
     private long lastplayed;        // 最后播放时间
     private long mediaStoreId;      // MediaStore ID，用于删除文件
+    private boolean hasEmbeddedLyrics;  // 是否有内嵌歌词
+    private boolean hasEmbeddedArt;     // 是否有内嵌封面
+    private float replayGainTrack;      // 音轨ReplayGain增益(dB)
+    private float replayGainAlbum;      // 专辑ReplayGain增益(dB)
+    private String tagFingerprint;      // 读取标签时的文件指纹(大小_修改时间)，未读取过为null
+    private String contentKey;          // 内容指纹(大小_时长区间_采样哈希)，相同内容的文件指纹相同
+    private String contentKeySource;    // 计算内容指纹时的文件指纹(大小_修改时间)
+    private String titlePinyin;         // 标题的拼音转写（全拼和首字母），不含汉字为空字符串，未转写为null
+    private String artistPinyin;        // 艺术家的拼音转写
 
     public Song() {}
 
     public Song(String title, String artist, String album, String path, long duration, long size) {
-        this.title = title;
-        this.artist = artist;
+        setTitle(title);
+        setArtist(artist);
         this.album = album;
         this.path = path;
         this.duration = duration;
@@ -53,6 +66,15 @@ public class Song extends LitePalSupport implements Serializable {
 
     public void setTitle(String title) {
         this.title = title;
+        this.titlePinyin = PinyinUtils.transliterate(title);
+    }
+
+    /**
+     * 设置标题和已保存的拼音转写（从数据库读取的行），不重新转写
+     */
+    public void setTitle(String title, String titlePinyin) {
+        this.title = title;
+        this.titlePinyin = titlePinyin;
     }
 
     public String getArtist() {
@@ -61,6 +83,15 @@ public class Song extends LitePalSupport implements Serializable {
 
     public void setArtist(String artist) {
         this.artist = artist;
+        this.artistPinyin = PinyinUtils.transliterate(artist);
+    }
+
+    /**
+     * 设置艺术家和已保存的拼音转写，不重新转写
+     */
+    public void setArtist(String artist, String artistPinyin) {
+        this.artist = artist;
+        this.artistPinyin = artistPinyin;
     }
 
     public String getAlbum() {
@@ -119,6 +150,22 @@ public class Song extends LitePalSupport implements Serializable {
         this.artistId = artistId;
     }
 
+    public long getAlbumRowId() {
+        return albumRowId;
+    }
+
+    public void setAlbumRowId(long albumRowId) {
+        this.albumRowId = albumRowId;
+    }
+
+    public long getArtistRowId() {
+        return artistRowId;
+    }
+
+    public void setArtistRowId(long artistRowId) {
+        this.artistRowId = artistRowId;
+    }
+
     public long getDateAdded() {
         return dateAdded;
     }
@@ -182,4 +229,68 @@ public class Song extends LitePalSupport implements Serializable {
     public void setMediaStoreId(long mediaStoreId) {
         this.mediaStoreId = mediaStoreId;
     }
+
+    public boolean hasEmbeddedLyrics() {
+        return hasEmbeddedLyrics;
+    }
+
+    public void setHasEmbeddedLyrics(boolean hasEmbeddedLyrics) {
+        this.hasEmbeddedLyrics = hasEmbeddedLyrics;
+    }
+
+    public boolean hasEmbeddedArt() {
+        return hasEmbeddedArt;
+    }
+
+    public void setHasEmbeddedArt(boolean hasEmbeddedArt) {
+        this.hasEmbeddedArt = hasEmbeddedArt;
+    }
+
+    public float getReplayGainTrack() {
+        return replayGainTrack;
+    }
+
+    public void setReplayGainTrack(float replayGainTrack) {
+        this.replayGainTrack = replayGainTrack;
+    }
+
+    public float getReplayGainAlbum() {
+        return replayGainAlbum;
+    }
+
+    public void setReplayGainAlbum(float replayGainAlbum) {
+        this.replayGainAlbum = replayGainAlbum;
+    }
+
+    public String getTagFingerprint() {
+        return tagFingerprint;
+    }
+
+    public void setTagFingerprint(String tagFingerprint) {
+        this.tagFingerprint = tagFingerprint;
+    }
+
+    public String getContentKey() {
+        return contentKey;
+    }
+
+    public void setContentKey(String contentKey) {
+        this.contentKey = contentKey;
+    }
+
+    public String getContentKeySource() {
+        return contentKeySource;
+    }
+
+    public void setContentKeySource(String contentKeySource) {
+        this.contentKeySource = contentKeySource;
+    }
+
+    public String getTitlePinyin() {
+        return titlePinyin;
+    }
+
+    public String getArtistPinyin() {
+        return artistPinyin;
+    }
 }
\ No newline at end of file
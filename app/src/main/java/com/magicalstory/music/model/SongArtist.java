@@ -0,0 +1,48 @@
+package com.magicalstory.music.model;
+
+import org.litepal.crud.LitePalSupport;
+
+/**
+ * 歌曲与艺术家的关联（按行ID）
+ * 一首歌曲可以关联多位艺术家，position为署名顺序，0为主艺术家。
+ * 由LibraryBulkWriter在专辑/艺术家统计更新时重建，不通过LitePal逐行写入
+ */
+public class SongArtist extends LitePalSupport {
+
+    private long id;
+    private long songId;            // 歌曲行ID
+    private long artistId;          // 艺术家行ID（Artist.id，不是系统艺术家ID）
+    private int position;           // 署名顺序
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getSongId() {
+        return songId;
+    }
+
+    public void setSongId(long songId) {
+        this.songId = songId;
+    }
+
+    public long getArtistId() {
+        return artistId;
+    }
+
+    public void setArtistId(long artistId) {
+        this.artistId = artistId;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+}
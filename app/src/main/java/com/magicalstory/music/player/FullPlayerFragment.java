@@ -733,6 +733,15 @@ public class FullPlayerFragment extends BaseFragment<FragmentFullPlayerBinding>
             }
         });
 
+        // 长按随机播放按钮重新打乱剩余歌曲
+        binding.btnShuffle.setOnLongClickListener(v -> {
+            if (controllerHelper != null && controllerHelper.reshuffleRemaining()) {
+                ToastUtils.showToast(getContext(), getString(R.string.shuffle_remaining_reshuffled));
+                return true;
+            }
+            return false;
+        });
+
         // 循环播放按钮
         binding.btnRepeat.setOnClickListener(v -> {
             Log.d(TAG, "循环播放按钮被点击");
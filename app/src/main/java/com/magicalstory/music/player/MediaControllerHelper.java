@@ -18,11 +18,14 @@ import com.hjq.gson.factory.GsonFactory;
 import com.magicalstory.music.R;
 import com.magicalstory.music.model.Song;
 import com.magicalstory.music.utils.app.ToastUtils;
+import com.magicalstory.music.utils.query.LazySongList;
 import com.tencent.mmkv.MMKV;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -45,6 +48,7 @@ public class MediaControllerHelper implements Player.Listener {
     // 懒加载窗口大小配置
     private static final int WINDOW_SIZE = 3; // 当前播放歌曲 + 前后各1首
     private static final int PRELOAD_THRESHOLD = 1; // 当播放位置距离边界还有1首时开始预加载
+    private static final int PREFETCH_DISTANCE = 10; // 窗口移动后在后台读取窗口前后各10首（按需读取的列表）
 
     private MediaController mediaController;
     private final PlaylistManager playlistManager;
@@ -53,11 +57,12 @@ public class MediaControllerHelper implements Player.Listener {
     private final List<PlaybackStateListener> playbackStateListeners = new CopyOnWriteArrayList<>();
 
     // 懒加载相关字段
-    private ArrayList<Song> fullPlaylist = new ArrayList<>(); // 完整播放列表
+    private List<Song> fullPlaylist = new ArrayList<>(); // 完整播放列表（随机播放全部时为按需读取的LazySongList）
     private int currentPlaylistIndex = 0; // 当前播放在完整列表中的索引
-    private int windowStart = 0; // 当前窗口在完整列表中的起始位置
-    private int windowEnd = 0; // 当前窗口在完整列表中的结束位置
+    private int windowStart = 0; // 当前窗口在播放顺序中的起始位置（未开启随机播放时即完整列表中的索引）
+    private int windowEnd = 0; // 当前窗口在播放顺序中的结束位置
     private boolean isWindowLoading = false; // 是否正在加载窗口
+    private SmartShuffleOrder shuffleOrder; // 随机播放顺序，未开启随机播放时为null
     private Context context;
 
     /**
@@ -128,6 +133,11 @@ public class MediaControllerHelper implements Player.Listener {
             // 将新歌曲插入到当前播放歌曲的后面
             int insertIndex = currentIndex + 1;
             fullPlaylist.addAll(insertIndex, songs);
+            if (shuffleOrder != null) {
+                // 随机播放时同样排在当前歌曲之后
+                int insertPosition = currentIndex >= 0 ? positionOf(currentIndex) + 1 : 0;
+                shuffleOrder.insert(insertIndex, songs.size(), insertPosition, true);
+            }
             
             // 更新当前播放索引（如果插入位置在当前播放位置之前，需要调整索引）
             if (insertIndex <= currentPlaylistIndex) {
@@ -135,7 +145,7 @@ public class MediaControllerHelper implements Player.Listener {
             }
             
             // 更新窗口范围
-            updateWindowAfterInsertion(insertIndex, songs.size());
+            updateWindowAfterInsertion(positionOf(insertIndex), songs.size());
             
             // 刷新播放列表
             refreshPlaylistAfterInsertion(insertIndex, songs.size());
@@ -168,6 +178,11 @@ public class MediaControllerHelper implements Player.Listener {
             
             // 将新歌曲添加到播放列表末尾
             fullPlaylist.addAll(songs);
+            if (shuffleOrder != null) {
+                // 随机播放时排在播放顺序的末尾
+                shuffleOrder.insert(originalSize, songs.size(), originalSize, false);
+                spreadIfLoaded();
+            }
             
             // 更新窗口范围
             updateWindowAfterInsertion(originalSize, songs.size());
@@ -188,9 +203,9 @@ public class MediaControllerHelper implements Player.Listener {
     /**
      * 插入歌曲后更新窗口范围
      */
-    private void updateWindowAfterInsertion(int insertIndex, int insertCount) {
+    private void updateWindowAfterInsertion(int insertPosition, int insertCount) {
         // 如果插入位置在窗口范围内，需要调整窗口
-        if (insertIndex <= windowEnd) {
+        if (insertPosition <= windowEnd) {
             windowEnd += insertCount;
         }
         
@@ -210,51 +225,163 @@ public class MediaControllerHelper implements Player.Listener {
 
             Log.d(TAG, "当前MediaIndex: " + currentMediaIndex + ", 媒体数量: " + mediaItemCount);
 
-            // 移除除了当前播放媒体外的所有媒体
-            while (mediaController.getMediaItemCount() > 1) {
-                if (mediaController.getCurrentMediaItemIndex() == 0) {
-                    // 如果当前播放的是第一个，移除最后一个
-                    mediaController.removeMediaItem(mediaController.getMediaItemCount() - 1);
-                } else {
-                    // 否则移除第一个
-                    mediaController.removeMediaItem(0);
-                }
+            rebuildWindowAroundCurrent();
+
+        } catch (Exception e) {
+            Log.e(TAG, "插入歌曲后刷新播放列表时发生错误", e);
+        }
+    }
+
+    /**
+     * 只保留当前播放的媒体，按播放顺序重新添加前后各一首，不中断当前播放
+     */
+    private void rebuildWindowAroundCurrent() {
+        // 移除除了当前播放媒体外的所有媒体
+        while (mediaController.getMediaItemCount() > 1) {
+            if (mediaController.getCurrentMediaItemIndex() == 0) {
+                // 如果当前播放的是第一个，移除最后一个
+                mediaController.removeMediaItem(mediaController.getMediaItemCount() - 1);
+            } else {
+                // 否则移除第一个
+                mediaController.removeMediaItem(0);
             }
-            Log.d(TAG, "移除其他媒体后，剩余媒体数量: " + mediaController.getMediaItemCount());
-
-            // 计算需要添加的前后歌曲索引
-            int prevIndex = currentPlaylistIndex - 1;
-            int nextIndex = currentPlaylistIndex + 1;
-
-            // 添加前一首歌（如果存在）
-            if (prevIndex >= 0 && prevIndex < fullPlaylist.size()) {
-                Song prevSong = fullPlaylist.get(prevIndex);
-                MediaItem prevMediaItem = playlistManager.createMediaItem(prevSong);
-                if (prevMediaItem != null) {
-                    mediaController.addMediaItem(0, prevMediaItem);
-                    Log.d(TAG, "添加前一首歌: " + prevSong.getTitle() + " (索引: " + prevIndex + ")");
-                }
+        }
+        Log.d(TAG, "移除其他媒体后，剩余媒体数量: " + mediaController.getMediaItemCount());
+
+        // 计算需要添加的前后歌曲在播放顺序中的位置
+        int currentPosition = settlePosition(currentPlaylistIndex);
+        int prevPosition = currentPosition - 1;
+        int nextPosition = currentPosition + 1;
+
+        // 添加前一首歌（如果存在）
+        if (prevPosition >= 0) {
+            Song prevSong = fullPlaylist.get(indexAt(prevPosition));
+            MediaItem prevMediaItem = playlistManager.createMediaItem(prevSong);
+            if (prevMediaItem != null) {
+                mediaController.addMediaItem(0, prevMediaItem);
+                Log.d(TAG, "添加前一首歌: " + prevSong.getTitle() + " (位置: " + prevPosition + ")");
             }
+        }
 
-            // 添加后一首歌（如果存在）
-            if (nextIndex >= 0 && nextIndex < fullPlaylist.size()) {
-                Song nextSong = fullPlaylist.get(nextIndex);
-                MediaItem nextMediaItem = playlistManager.createMediaItem(nextSong);
-                if (nextMediaItem != null) {
-                    mediaController.addMediaItem(nextMediaItem);
-                    Log.d(TAG, "添加后一首歌: " + nextSong.getTitle() + " (索引: " + nextIndex + ")");
-                }
+        // 添加后一首歌（如果存在）
+        if (nextPosition < fullPlaylist.size()) {
+            Song nextSong = fullPlaylist.get(indexAt(nextPosition));
+            MediaItem nextMediaItem = playlistManager.createMediaItem(nextSong);
+            if (nextMediaItem != null) {
+                mediaController.addMediaItem(nextMediaItem);
+                Log.d(TAG, "添加后一首歌: " + nextSong.getTitle() + " (位置: " + nextPosition + ")");
             }
+        }
 
-            // 刷新窗口范围
-            windowStart = Math.max(0, currentPlaylistIndex - 1);
-            windowEnd = Math.min(fullPlaylist.size() - 1, currentPlaylistIndex + 1);
+        // 刷新窗口范围
+        windowStart = Math.max(0, currentPosition - 1);
+        windowEnd = Math.min(fullPlaylist.size() - 1, currentPosition + 1);
 
-            Log.d(TAG, "更新窗口范围: [" + windowStart + ", " + windowEnd + "]");
-            Log.d(TAG, "最终媒体数量: " + mediaController.getMediaItemCount());
+        Log.d(TAG, "更新窗口范围: [" + windowStart + ", " + windowEnd + "]");
+        Log.d(TAG, "最终媒体数量: " + mediaController.getMediaItemCount());
+        prefetchAroundWindow();
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "插入歌曲后刷新播放列表时发生错误", e);
+    /**
+     * 按需读取的列表在后台读取窗口前后即将进入窗口的歌曲，之后切歌扩展窗口时不需要在主线程读取数据库
+     * 随机播放时窗口外的位置可能在打散时交换，此时只是多读取了几首
+     */
+    private void prefetchAroundWindow() {
+        if (!(fullPlaylist instanceof LazySongList) || fullPlaylist.isEmpty()) {
+            return;
+        }
+        int from = Math.max(0, windowStart - PREFETCH_DISTANCE);
+        int to = Math.min(fullPlaylist.size() - 1, windowEnd + PREFETCH_DISTANCE);
+        int[] indexes = new int[to - from + 1];
+        for (int p = from; p <= to; p++) {
+            indexes[p - from] = indexAt(p);
+        }
+        ((LazySongList) fullPlaylist).prefetch(indexes, null);
+    }
+
+    /**
+     * 播放顺序中位置上的歌曲在完整列表中的索引，未开启随机播放时两者相同
+     */
+    private int indexAt(int position) {
+        return shuffleOrder != null ? shuffleOrder.indexAt(position) : position;
+    }
+
+    /**
+     * 完整列表中的索引在播放顺序中的位置
+     */
+    private int positionOf(int index) {
+        return shuffleOrder != null ? shuffleOrder.positionOf(index) : index;
+    }
+
+    /**
+     * 完整列表中索引上的歌曲ID，按需读取的列表不读取歌曲
+     */
+    private long songIdAt(int index) {
+        if (fullPlaylist instanceof LazySongList) {
+            return ((LazySongList) fullPlaylist).getIdAt(index);
+        }
+        return fullPlaylist.get(index).getId();
+    }
+
+    /**
+     * 歌曲在完整播放列表中的索引，不在列表中时返回-1；按ID比较，按需读取的列表不读取歌曲
+     */
+    public int indexOfSong(long songId) {
+        for (int i = 0; i < fullPlaylist.size(); i++) {
+            if (songIdAt(i) == songId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 从完整列表中移除标记的歌曲，按需读取的列表不读取歌曲
+     */
+    private void removeFlaggedSongs(boolean[] removed) {
+        if (fullPlaylist instanceof LazySongList) {
+            ((LazySongList) fullPlaylist).removeFlagged(removed);
+            return;
+        }
+        for (int i = removed.length - 1; i >= 0; i--) {
+            if (removed[i]) {
+                fullPlaylist.remove(i);
+            }
+        }
+    }
+
+    /**
+     * 固定歌曲在播放顺序中的位置并打散它的下一首，返回位置；之后加载窗口不会再改变这两个位置
+     * 还没播放的歌曲移到已播放部分之后播放，移动后重新打散之后的位置
+     */
+    private int settlePosition(int index) {
+        if (shuffleOrder == null) {
+            return index;
+        }
+        int position = shuffleOrder.pin(index);
+        shuffleOrder.spreadTo(fullPlaylist, position + 1);
+        spreadIfLoaded();
+        return position;
+    }
+
+    /**
+     * 开启随机播放时按当前歌曲重新生成播放顺序（当前歌曲排在第一位），否则清除
+     */
+    private void resetShuffleOrder(boolean enabled) {
+        if (enabled && currentPlaylistIndex >= 0 && currentPlaylistIndex < fullPlaylist.size()) {
+            shuffleOrder = new SmartShuffleOrder(fullPlaylist.size(), currentPlaylistIndex);
+            spreadIfLoaded();
+        } else {
+            shuffleOrder = null;
+        }
+    }
+
+    /**
+     * 歌曲都在内存中时一次打散整个随机播放顺序，LazySongList在位置进入窗口前才打散
+     */
+    private void spreadIfLoaded() {
+        if (shuffleOrder != null && !(fullPlaylist instanceof LazySongList)) {
+            shuffleOrder.spreadTo(fullPlaylist, fullPlaylist.size() - 1);
         }
     }
 
@@ -454,6 +581,19 @@ public class MediaControllerHelper implements Player.Listener {
     public void onShuffleModeEnabledChanged(boolean shuffleModeEnabled) {
         Log.d(TAG, "随机模式改变: " + shuffleModeEnabled);
 
+        // 播放器只按窗口顺序播放，随机顺序由SmartShuffleOrder决定；设置播放列表时已按当前模式生成过的不再重新生成
+        if (shuffleModeEnabled != (shuffleOrder != null)) {
+            try {
+                resetShuffleOrder(shuffleModeEnabled);
+                if (currentPlaylistIndex >= 0 && currentPlaylistIndex < fullPlaylist.size()
+                        && mediaController.getMediaItemCount() > 0) {
+                    rebuildWindowAroundCurrent();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "切换随机播放顺序时发生错误", e);
+            }
+        }
+
         // 通知所有监听器
         for (PlaybackStateListener listener : playbackStateListeners) {
             try {
@@ -490,9 +630,10 @@ public class MediaControllerHelper implements Player.Listener {
                 startIndex = 0;
             }
 
-            // 保存完整播放列表
-            fullPlaylist = new ArrayList<>(songs);
+            // 保存完整播放列表，LazySongList只复制ID
+            fullPlaylist = LazySongList.copyOf(songs);
             currentPlaylistIndex = startIndex;
+            resetShuffleOrder(getShuffleModeEnabled());
 
             Log.d(TAG, "完整播放列表大小: " + fullPlaylist.size() + ", 当前索引: " + currentPlaylistIndex);
 
@@ -518,20 +659,21 @@ public class MediaControllerHelper implements Player.Listener {
         Log.d(TAG, "加载初始窗口，起始索引: " + startIndex);
 
         try {
-            // 计算窗口范围
-            windowStart = Math.max(0, startIndex - 1);
-            windowEnd = Math.min(fullPlaylist.size() - 1, startIndex + 1);
+            // 计算窗口范围（播放顺序中的位置）
+            int startPosition = settlePosition(startIndex);
+            windowStart = Math.max(0, startPosition - 1);
+            windowEnd = Math.min(fullPlaylist.size() - 1, startPosition + 1);
 
             Log.d(TAG, "窗口范围: [" + windowStart + ", " + windowEnd + "]");
 
             // 创建窗口内的MediaItem列表
             List<MediaItem> windowMediaItems = new ArrayList<>();
             for (int i = windowStart; i <= windowEnd; i++) {
-                Song song = fullPlaylist.get(i);
+                Song song = fullPlaylist.get(indexAt(i));
                 MediaItem mediaItem = playlistManager.createMediaItem(song);
                 if (mediaItem != null) {
                     windowMediaItems.add(mediaItem);
-                    Log.d(TAG, "添加MediaItem到窗口: " + song.getTitle() + " (索引: " + i + ")");
+                    Log.d(TAG, "添加MediaItem到窗口: " + song.getTitle() + " (位置: " + i + ")");
                 } else {
                     Log.w(TAG, "创建MediaItem失败: " + song.getTitle());
                 }
@@ -539,7 +681,7 @@ public class MediaControllerHelper implements Player.Listener {
 
             if (!windowMediaItems.isEmpty()) {
                 // 计算在窗口中的起始位置
-                int windowStartIndex = startIndex - windowStart;
+                int windowStartIndex = startPosition - windowStart;
 
                 Log.d(TAG, "设置MediaItems，窗口大小: " + windowMediaItems.size() + ", 窗口起始索引: " + windowStartIndex);
 
@@ -550,6 +692,7 @@ public class MediaControllerHelper implements Player.Listener {
                 mediaController.prepare();
 
                 Log.d(TAG, "初始窗口加载完成，窗口范围: [" + windowStart + ", " + windowEnd + "]");
+                prefetchAroundWindow();
             } else {
                 Log.w(TAG, "没有有效的MediaItem创建");
             }
@@ -571,7 +714,10 @@ public class MediaControllerHelper implements Player.Listener {
             int currentMediaIndex = mediaController.getCurrentMediaItemIndex();
             if (currentMediaIndex >= 0) {
                 // 根据窗口位置计算在完整列表中的索引
-                currentPlaylistIndex = windowStart + currentMediaIndex;
+                currentPlaylistIndex = indexAt(windowStart + currentMediaIndex);
+                if (shuffleOrder != null) {
+                    shuffleOrder.markPlayed(windowStart + currentMediaIndex);
+                }
                 Log.d(TAG, "更新当前播放索引: " + currentPlaylistIndex + " (MediaController索引: " + currentMediaIndex + ")");
             }
         } catch (Exception e) {
@@ -628,31 +774,36 @@ public class MediaControllerHelper implements Player.Listener {
                 // 向后扩展
                 int newEnd = Math.min(fullPlaylist.size() - 1, windowEnd + 1);
                 if (newEnd > windowEnd) {
-                    Song song = fullPlaylist.get(newEnd);
+                    // 随机播放时先打散这个位置，进入窗口后不再变化
+                    if (shuffleOrder != null) {
+                        shuffleOrder.spreadTo(fullPlaylist, newEnd);
+                    }
+                    Song song = fullPlaylist.get(indexAt(newEnd));
                     MediaItem mediaItem = playlistManager.createMediaItem(song);
                     if (mediaItem != null) {
                         // 添加到列表末尾
                         mediaController.addMediaItem(mediaItem);
                         windowEnd = newEnd;
-                        Log.d(TAG, "向后扩展窗口，添加歌曲: " + song.getTitle() + " (索引: " + newEnd + ")");
+                        Log.d(TAG, "向后扩展窗口，添加歌曲: " + song.getTitle() + " (位置: " + newEnd + ")");
                     }
                 }
             } else {
                 // 向前扩展
                 int newStart = Math.max(0, windowStart - 1);
                 if (newStart < windowStart) {
-                    Song song = fullPlaylist.get(newStart);
+                    Song song = fullPlaylist.get(indexAt(newStart));
                     MediaItem mediaItem = playlistManager.createMediaItem(song);
                     if (mediaItem != null) {
                         // 添加到列表开头
                         mediaController.addMediaItem(0, mediaItem);
                         windowStart = newStart;
-                        Log.d(TAG, "向前扩展窗口，添加歌曲: " + song.getTitle() + " (索引: " + newStart + ")");
+                        Log.d(TAG, "向前扩展窗口，添加歌曲: " + song.getTitle() + " (位置: " + newStart + ")");
                     }
                 }
             }
 
             Log.d(TAG, "窗口扩展完成，当前窗口范围: [" + windowStart + ", " + windowEnd + "]");
+            prefetchAroundWindow();
 
         } catch (Exception e) {
             Log.e(TAG, "扩展窗口时发生错误", e);
@@ -676,9 +827,10 @@ public class MediaControllerHelper implements Player.Listener {
             Log.d(TAG, "播放指定索引的歌曲: " + index);
 
             // 检查目标索引是否在当前窗口内
-            if (index >= windowStart && index <= windowEnd) {
+            int position = positionOf(index);
+            if (position >= windowStart && position <= windowEnd) {
                 // 在当前窗口内，直接播放
-                int mediaIndex = index - windowStart;
+                int mediaIndex = position - windowStart;
                 mediaController.seekTo(mediaIndex, 0);
                 mediaController.play();
                 Log.d(TAG, "在当前窗口内播放，MediaIndex: " + mediaIndex);
@@ -747,6 +899,27 @@ public class MediaControllerHelper implements Player.Listener {
         }
     }
 
+    /**
+     * 重新打乱当前歌曲之后的随机播放顺序，已播放的部分和当前歌曲不变
+     *
+     * @return 未开启随机播放时返回false
+     */
+    public boolean reshuffleRemaining() {
+        if (shuffleOrder == null || currentPlaylistIndex < 0 || currentPlaylistIndex >= fullPlaylist.size()) {
+            return false;
+        }
+        try {
+            shuffleOrder.reshuffleAfter(positionOf(currentPlaylistIndex));
+            spreadIfLoaded();
+            rebuildWindowAroundCurrent();
+            Log.d(TAG, "已重新打乱剩余歌曲");
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "重新打乱剩余歌曲时发生错误", e);
+            return false;
+        }
+    }
+
     /**
      * 清除播放列表
      */
@@ -755,6 +928,7 @@ public class MediaControllerHelper implements Player.Listener {
             mediaController.clearMediaItems();
             playlistManager.clearPlaylist();
             fullPlaylist.clear();
+            shuffleOrder = null;
             currentPlaylistIndex = 0;
             windowStart = 0;
             windowEnd = 0;
@@ -773,11 +947,14 @@ public class MediaControllerHelper implements Player.Listener {
             if (index >= 0 && index < fullPlaylist.size()) {
                 Log.d(TAG, "删除播放列表中的歌曲，索引: " + index);
                 
-                // 记录被删除的歌曲
-                Song removedSong = fullPlaylist.get(index);
+                // 记录被删除歌曲的播放顺序位置
+                int removedPosition = positionOf(index);
                 
                 // 从完整播放列表中移除
                 fullPlaylist.remove(index);
+                if (shuffleOrder != null) {
+                    shuffleOrder.remove(index);
+                }
                 
                 // 更新当前播放索引
                 boolean wasCurrentSongDeleted = (index == currentPlaylistIndex);
@@ -796,14 +973,8 @@ public class MediaControllerHelper implements Player.Listener {
                         return;
                     }
                     
-                    // 如果删除的是最后一首，播放前一首
-                    if (index >= fullPlaylist.size()) {
-                        currentPlaylistIndex = fullPlaylist.size() - 1;
-                    }
-                    // 否则播放下一首（如果存在）
-                    else {
-                        currentPlaylistIndex = index;
-                    }
+                    // 如果删除的是播放顺序中的最后一首，播放前一首；否则播放下一首（删除后前移到这个位置）
+                    currentPlaylistIndex = indexAt(Math.min(removedPosition, fullPlaylist.size() - 1));
                     
                     // 重新加载播放窗口
                     loadInitialWindow(currentPlaylistIndex);
@@ -846,6 +1017,9 @@ public class MediaControllerHelper implements Player.Listener {
 
                 // 同步更新fullPlaylist
                 Collections.swap(fullPlaylist, fromIndex, toIndex);
+                if (shuffleOrder != null) {
+                    shuffleOrder.swapIndices(fromIndex, toIndex);
+                }
 
                 // 更新当前播放索引
                 if (currentPlaylistIndex == fromIndex) {
@@ -886,48 +1060,7 @@ public class MediaControllerHelper implements Player.Listener {
 
             Log.d(TAG, "当前MediaIndex: " + currentMediaIndex + ", 媒体数量: " + mediaItemCount);
 
-            // 移除除了当前播放媒体外的所有媒体
-            while (mediaController.getMediaItemCount() > 1) {
-                if (mediaController.getCurrentMediaItemIndex() == 0) {
-                    // 如果当前播放的是第一个，移除最后一个
-                    mediaController.removeMediaItem(mediaController.getMediaItemCount() - 1);
-                } else {
-                    // 否则移除第一个
-                    mediaController.removeMediaItem(0);
-                }
-            }
-            Log.d(TAG, "移除其他媒体后，剩余媒体数量: " + mediaController.getMediaItemCount());
-
-            // 计算需要添加的前后歌曲索引
-            int prevIndex = currentPlaylistIndex - 1;
-            int nextIndex = currentPlaylistIndex + 1;
-
-            // 添加前一首歌（如果存在）
-            if (prevIndex >= 0 && prevIndex < fullPlaylist.size()) {
-                Song prevSong = fullPlaylist.get(prevIndex);
-                MediaItem prevMediaItem = playlistManager.createMediaItem(prevSong);
-                if (prevMediaItem != null) {
-                    mediaController.addMediaItem(0, prevMediaItem);
-                    Log.d(TAG, "添加前一首歌: " + prevSong.getTitle() + " (索引: " + prevIndex + ")");
-                }
-            }
-
-            // 添加后一首歌（如果存在）
-            if (nextIndex >= 0 && nextIndex < fullPlaylist.size()) {
-                Song nextSong = fullPlaylist.get(nextIndex);
-                MediaItem nextMediaItem = playlistManager.createMediaItem(nextSong);
-                if (nextMediaItem != null) {
-                    mediaController.addMediaItem(nextMediaItem);
-                    Log.d(TAG, "添加后一首歌: " + nextSong.getTitle() + " (索引: " + nextIndex + ")");
-                }
-            }
-
-            // 刷新窗口范围
-            windowStart = Math.max(0, currentPlaylistIndex - 1);
-            windowEnd = Math.min(fullPlaylist.size() - 1, currentPlaylistIndex + 1);
-
-            Log.d(TAG, "更新窗口范围: [" + windowStart + ", " + windowEnd + "]");
-            Log.d(TAG, "最终媒体数量: " + mediaController.getMediaItemCount());
+            rebuildWindowAroundCurrent();
 
         } catch (Exception e) {
             Log.e(TAG, "使用replaceMediaItem更新播放列表时发生错误", e);
@@ -952,48 +1085,7 @@ public class MediaControllerHelper implements Player.Listener {
 
             Log.d(TAG, "当前MediaIndex: " + currentMediaIndex + ", 媒体数量: " + mediaItemCount);
 
-            // 移除除了当前播放媒体外的所有媒体
-            while (mediaController.getMediaItemCount() > 1) {
-                if (mediaController.getCurrentMediaItemIndex() == 0) {
-                    // 如果当前播放的是第一个，移除最后一个
-                    mediaController.removeMediaItem(mediaController.getMediaItemCount() - 1);
-                } else {
-                    // 否则移除第一个
-                    mediaController.removeMediaItem(0);
-                }
-            }
-            Log.d(TAG, "移除其他媒体后，剩余媒体数量: " + mediaController.getMediaItemCount());
-
-            // 计算需要添加的前后歌曲索引
-            int prevIndex = currentPlaylistIndex - 1;
-            int nextIndex = currentPlaylistIndex + 1;
-
-            // 添加前一首歌（如果存在）
-            if (prevIndex >= 0 && prevIndex < fullPlaylist.size()) {
-                Song prevSong = fullPlaylist.get(prevIndex);
-                MediaItem prevMediaItem = playlistManager.createMediaItem(prevSong);
-                if (prevMediaItem != null) {
-                    mediaController.addMediaItem(0, prevMediaItem);
-                    Log.d(TAG, "添加前一首歌: " + prevSong.getTitle() + " (索引: " + prevIndex + ")");
-                }
-            }
-
-            // 添加后一首歌（如果存在）
-            if (nextIndex >= 0 && nextIndex < fullPlaylist.size()) {
-                Song nextSong = fullPlaylist.get(nextIndex);
-                MediaItem nextMediaItem = playlistManager.createMediaItem(nextSong);
-                if (nextMediaItem != null) {
-                    mediaController.addMediaItem(nextMediaItem);
-                    Log.d(TAG, "添加后一首歌: " + nextSong.getTitle() + " (索引: " + nextIndex + ")");
-                }
-            }
-
-            // 刷新窗口范围
-            windowStart = Math.max(0, currentPlaylistIndex - 1);
-            windowEnd = Math.min(fullPlaylist.size() - 1, currentPlaylistIndex + 1);
-
-            Log.d(TAG, "更新窗口范围: [" + windowStart + ", " + windowEnd + "]");
-            Log.d(TAG, "最终媒体数量: " + mediaController.getMediaItemCount());
+            rebuildWindowAroundCurrent();
 
         } catch (Exception e) {
             Log.e(TAG, "删除歌曲后更新播放列表时发生错误", e);
@@ -1015,6 +1107,9 @@ public class MediaControllerHelper implements Player.Listener {
             Log.d(TAG, "开始处理设备删除歌曲后的播放列表刷新，删除歌曲数量: " + deletedSongIds.size());
             Log.d(TAG, "当前播放列表大小: " + fullPlaylist.size() + ", 当前播放索引: " + currentPlaylistIndex);
 
+            // 按ID匹配，按需读取的列表不需要读取歌曲
+            Set<Long> deletedIds = new HashSet<>(deletedSongIds);
+
             // 获取当前播放歌曲
             Song currentSong = getCurrentSong();
             boolean currentSongDeleted = false;
@@ -1022,20 +1117,20 @@ public class MediaControllerHelper implements Player.Listener {
             Log.d(TAG, "当前播放歌曲: " + (currentSong != null ? currentSong.getTitle() : "null"));
             
             // 检查当前播放歌曲是否在删除列表中
-            if (currentSong != null && deletedSongIds.contains(currentSong.getId())) {
+            if (currentSong != null && deletedIds.contains(currentSong.getId())) {
                 currentSongDeleted = true;
                 Log.d(TAG, "当前播放歌曲已被删除: " + currentSong.getTitle());
             } else if (currentSong == null) {
                 Log.d(TAG, "当前播放歌曲为null，尝试通过索引检查");
                 // 如果当前播放歌曲为null，但当前索引有效，检查该索引的歌曲是否被删除
                 if (currentPlaylistIndex >= 0 && currentPlaylistIndex < fullPlaylist.size()) {
-                    Song songAtIndex = fullPlaylist.get(currentPlaylistIndex);
-                    Log.d(TAG, "通过索引获取的歌曲: " + songAtIndex.getTitle() + " (ID: " + songAtIndex.getId() + ")");
-                    if (deletedSongIds.contains(songAtIndex.getId())) {
+                    long songIdAtIndex = songIdAt(currentPlaylistIndex);
+                    Log.d(TAG, "通过索引获取的歌曲ID: " + songIdAtIndex);
+                    if (deletedIds.contains(songIdAtIndex)) {
                         currentSongDeleted = true;
-                        Log.d(TAG, "通过索引检查发现当前播放歌曲已被删除: " + songAtIndex.getTitle());
+                        Log.d(TAG, "通过索引检查发现当前播放歌曲已被删除: " + songIdAtIndex);
                     } else {
-                        Log.d(TAG, "通过索引检查发现当前播放歌曲未被删除: " + songAtIndex.getTitle());
+                        Log.d(TAG, "通过索引检查发现当前播放歌曲未被删除: " + songIdAtIndex);
                     }
                 } else {
                     Log.d(TAG, "当前播放索引无效: " + currentPlaylistIndex + ", 播放列表大小: " + fullPlaylist.size());
@@ -1044,21 +1139,35 @@ public class MediaControllerHelper implements Player.Listener {
                 Log.d(TAG, "当前播放歌曲未被删除: " + currentSong.getTitle());
             }
 
-            // 从完整播放列表中移除已删除的歌曲
-            List<Song> songsToRemove = new ArrayList<>();
-            for (Song song : fullPlaylist) {
-                if (deletedSongIds.contains(song.getId())) {
-                    songsToRemove.add(song);
-                    Log.d(TAG, "找到要删除的歌曲: " + song.getTitle() + " (ID: " + song.getId() + ")");
+            // 标记完整播放列表中已删除的歌曲，记录当前歌曲之前被删除的数量
+            boolean[] removedFlags = new boolean[fullPlaylist.size()];
+            boolean currentIndexValid = currentPlaylistIndex >= 0 && currentPlaylistIndex < fullPlaylist.size();
+            int currentPosition = currentIndexValid ? positionOf(currentPlaylistIndex) : -1;
+            int removedCount = 0;
+            int deletedBeforeCurrent = 0;
+            int deletedBeforeCurrentPosition = 0;
+            for (int i = 0; i < removedFlags.length; i++) {
+                if (deletedIds.contains(songIdAt(i))) {
+                    removedFlags[i] = true;
+                    removedCount++;
+                    if (i < currentPlaylistIndex) {
+                        deletedBeforeCurrent++;
+                    }
+                    if (positionOf(i) < currentPosition) {
+                        deletedBeforeCurrentPosition++;
+                    }
                 }
             }
             
-            Log.d(TAG, "要删除的歌曲数量: " + songsToRemove.size());
+            Log.d(TAG, "要删除的歌曲数量: " + removedCount);
 
-            if (!songsToRemove.isEmpty()) {
-                // 移除被删除的歌曲
-                fullPlaylist.removeAll(songsToRemove);
-                Log.d(TAG, "从完整播放列表中移除 " + songsToRemove.size() + " 首已删除的歌曲");
+            if (removedCount > 0) {
+                // 按标记移除被删除的歌曲
+                removeFlaggedSongs(removedFlags);
+                if (shuffleOrder != null) {
+                    shuffleOrder.removeAll(removedFlags);
+                }
+                Log.d(TAG, "从完整播放列表中移除 " + removedCount + " 首已删除的歌曲");
 
                 // 如果当前播放歌曲被删除，参考removeFromPlaylist的处理逻辑
                 if (currentSongDeleted) {
@@ -1086,15 +1195,10 @@ public class MediaControllerHelper implements Player.Listener {
                         }
                     } else {
                         // 播放列表不为空，选择新的播放位置
-                        // 参考removeFromPlaylist的逻辑：如果删除的是最后一首，播放前一首，否则播放下一首
-                        int newPlayIndex;
-                        if (currentPlaylistIndex >= fullPlaylist.size()) {
-                            // 如果当前索引超出范围，播放最后一首
-                            newPlayIndex = fullPlaylist.size() - 1;
-                        } else {
-                            // 否则播放当前位置的歌曲（删除后，后面的歌曲会前移）
-                            newPlayIndex = currentPlaylistIndex;
-                        }
+                        // 参考removeFromPlaylist的逻辑：如果删除的是播放顺序中的最后一首，播放前一首，
+                        // 否则播放当前位置的歌曲（删除后，后面的歌曲会前移）
+                        int newPosition = Math.max(0, currentPosition - deletedBeforeCurrentPosition);
+                        int newPlayIndex = indexAt(Math.min(newPosition, fullPlaylist.size() - 1));
                         
                         Log.d(TAG, "选择新的播放位置: " + newPlayIndex);
                         currentPlaylistIndex = newPlayIndex;
@@ -1109,19 +1213,7 @@ public class MediaControllerHelper implements Player.Listener {
                     // 当前播放歌曲未被删除，需要调整索引
                     Log.d(TAG, "当前播放歌曲未被删除，调整播放索引");
                     
-                    // 计算在当前播放索引之前被删除的歌曲数量
-                    int deletedBeforeCurrent = 0;
-                    for (Song removedSong : songsToRemove) {
-                        // 这里需要更精确的计算，暂时使用简化版本
-                        // 由于我们无法直接知道被删除歌曲在原始列表中的确切位置，
-                        // 我们使用一个简化的方法来调整索引
-                        if (currentPlaylistIndex > 0) {
-                            // 简化处理：假设被删除的歌曲平均分布，调整索引
-                            deletedBeforeCurrent = Math.min(deletedBeforeCurrent + 1, currentPlaylistIndex);
-                        }
-                    }
-                    
-                    // 调整当前播放索引
+                    // 调整当前播放索引（减去在它之前被删除的歌曲数量）
                     if (currentPlaylistIndex > 0) {
                         currentPlaylistIndex = Math.max(0, currentPlaylistIndex - deletedBeforeCurrent);
                     }
@@ -1165,7 +1257,7 @@ public class MediaControllerHelper implements Player.Listener {
      */
     @NonNull
     public List<Song> getPlaylist() {
-        return new ArrayList<>(fullPlaylist);
+        return LazySongList.copyOf(fullPlaylist);
     }
 
     /**
@@ -1343,7 +1435,7 @@ public class MediaControllerHelper implements Player.Listener {
      */
     public void skipToNext() {
         try {
-            if (currentPlaylistIndex == fullPlaylist.size() - 1) {
+            if (positionOf(currentPlaylistIndex) == fullPlaylist.size() - 1) {
                 ToastUtils.showToast(context, context.getResources().getString(R.string.songs_lastest));
                 return;
             }
@@ -1497,9 +1589,10 @@ public class MediaControllerHelper implements Player.Listener {
                 position = 0;
             }
 
-            // 保存完整播放列表
-            fullPlaylist = new ArrayList<>(songs);
+            // 保存完整播放列表，LazySongList只复制ID
+            fullPlaylist = LazySongList.copyOf(songs);
             currentPlaylistIndex = position;
+            resetShuffleOrder(getShuffleModeEnabled());
 
             Log.d(TAG, "完整播放列表大小: " + fullPlaylist.size() + ", 当前索引: " + currentPlaylistIndex);
             mediaController.setPlayWhenReady(false);
@@ -1544,9 +1637,10 @@ public class MediaControllerHelper implements Player.Listener {
             Log.d(TAG, "设置位置和进度，位置: " + position + ", 进度: " + progressMs + "ms");
 
             // 检查目标索引是否在当前窗口内
-            if (position >= windowStart && position <= windowEnd) {
+            int orderPosition = positionOf(position);
+            if (orderPosition >= windowStart && orderPosition <= windowEnd) {
                 // 在当前窗口内，直接跳转
-                int mediaIndex = position - windowStart;
+                int mediaIndex = orderPosition - windowStart;
                 mediaController.seekTo(mediaIndex, progressMs);
                 mediaController.addListener(new Player.Listener() {
                     @Override
@@ -1574,7 +1668,7 @@ public class MediaControllerHelper implements Player.Listener {
                     public void onPlaybackStateChanged(int playbackState) {
                         System.out.println("playbackState = " + playbackState);
                         if (playbackState == Player.STATE_READY) {
-                            int mediaIndex = position - windowStart;
+                            int mediaIndex = positionOf(position) - windowStart;
                             mediaController.seekTo(mediaIndex, progressMs);
                             mediaController.pause();
                             notifyProgressBarInit(mediaController.getDuration(), progressMs);
@@ -7,10 +7,12 @@ import android.view.ViewGroup;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
 import com.magicalstory.music.R;
 import com.magicalstory.music.databinding.ItemMiniPlayerBinding;
 import com.magicalstory.music.model.Song;
 import com.magicalstory.music.utils.glide.GlideUtils;
+import com.magicalstory.music.utils.query.LazySongList;
 
 import java.util.List;
 
@@ -48,14 +50,27 @@ public class MiniPlayerAdapter extends RecyclerView.Adapter<MiniPlayerAdapter.Vi
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        Song song = playlist.get(position);
-        
-        // 设置歌曲信息
-        holder.binding.songName.setText(song.getTitle());
-        holder.binding.artistName.setText(song.getArtist());
-        
-        // 加载封面
-        GlideUtils.loadAlbumCover(context, song.getAlbumId(), holder.binding.coverImage);
+        Song song = peekSong(position);
+        if (song != null) {
+            // 设置歌曲信息
+            holder.binding.songName.setText(song.getTitle());
+            holder.binding.artistName.setText(song.getArtist());
+
+            // 加载封面
+            GlideUtils.loadAlbumCover(context, song.getAlbumId(), holder.binding.coverImage);
+        } else {
+            // 按需读取的列表尚未读取这一段：先显示空白，后台读取完成后刷新
+            holder.binding.songName.setText("");
+            holder.binding.artistName.setText("");
+            Glide.with(context).clear(holder.binding.coverImage);
+            holder.binding.coverImage.setImageResource(R.drawable.place_holder_album);
+            LazySongList lazyPlaylist = (LazySongList) playlist;
+            lazyPlaylist.prefetchChunk(position, () -> {
+                if (playlist == lazyPlaylist) {
+                    notifyDataSetChanged();
+                }
+            });
+        }
         
         // 设置渐变动画（当前播放的歌曲高亮显示）
         if (position == currentPosition) {
@@ -70,12 +85,22 @@ public class MiniPlayerAdapter extends RecyclerView.Adapter<MiniPlayerAdapter.Vi
         
         // 设置点击事件
         holder.itemView.setOnClickListener(v -> {
-            if (onSongChangeListener != null) {
-                onSongChangeListener.onSongItemClicked(song, position);
+            if (onSongChangeListener != null && position < playlist.size()) {
+                onSongChangeListener.onSongItemClicked(playlist.get(position), position);
             }
         });
     }
 
+    /**
+     * 位置上的歌曲，按需读取的列表尚未读取时返回null，绑定时不在主线程读取数据库
+     */
+    private Song peekSong(int position) {
+        if (playlist instanceof LazySongList) {
+            return ((LazySongList) playlist).peek(position);
+        }
+        return playlist.get(position);
+    }
+
     @Override
     public int getItemCount() {
         return playlist != null ? playlist.size() : 0;
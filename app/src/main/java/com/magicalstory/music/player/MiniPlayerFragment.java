@@ -30,6 +30,7 @@ import com.magicalstory.music.base.BaseFragment;
 import com.magicalstory.music.databinding.FragmentMiniPlayerBinding;
 import com.magicalstory.music.model.Song;
 import com.magicalstory.music.utils.MusicSyncUtils;
+import com.magicalstory.music.utils.query.LazySongList;
 import com.tencent.mmkv.MMKV;
 
 import java.util.ArrayList;
@@ -102,7 +103,7 @@ public class MiniPlayerFragment extends BaseFragment<FragmentMiniPlayerBinding>
     private MiniPlayerAdapter miniPlayerAdapter;
     private LinearLayoutManager layoutManager;
     private PagerSnapHelper pagerSnapHelper;
-    private final List<Song> playlist = new ArrayList<>();
+    private List<Song> playlist = new ArrayList<>();
     private int currentPosition = 0;
     private boolean isUserScrolling = false;
 
@@ -541,15 +542,13 @@ public class MiniPlayerFragment extends BaseFragment<FragmentMiniPlayerBinding>
      * 更新播放列表
      */
     public void updatePlaylist(List<Song> newPlaylist) {
-        this.playlist.clear();
         //pagerSnapHelper.attachToRecyclerView(null);
         binding.miniPlayerRecyclerView.setVisibility(View.VISIBLE);
         binding.itemPlaceholder.setVisibility(View.GONE);
         binding.miniPlayPause.setVisibility(View.VISIBLE);
         binding.miniPlayerRecyclerView.setBackgroundColor(Color.TRANSPARENT);
-        if (newPlaylist != null) {
-            this.playlist.addAll(newPlaylist);
-        }
+        // getPlaylist()返回的已是副本，直接使用，按需读取的列表不会被整体读取
+        this.playlist = newPlaylist != null ? newPlaylist : new ArrayList<>();
 
         if (miniPlayerAdapter != null) {
             miniPlayerAdapter.updatePlaylist(this.playlist);
@@ -588,12 +587,23 @@ public class MiniPlayerFragment extends BaseFragment<FragmentMiniPlayerBinding>
                 List<Song> currentPlaylist = controllerHelper.getPlaylist();
                 if (!currentPlaylist.isEmpty()) {
                     // 重新查询数据库获取最新的歌曲信息
-                    List<Song> updatedPlaylist = new ArrayList<>();
-                    for (Song song : currentPlaylist) {
-                        // 根据歌曲ID重新查询数据库获取最新信息
-                        Song updatedSong = org.litepal.LitePal.find(Song.class, song.getId());
-                        // 如果找不到更新后的歌曲，保留原歌曲
-                        updatedPlaylist.add(Objects.requireNonNullElse(updatedSong, song));
+                    List<Song> updatedPlaylist;
+                    if (currentPlaylist instanceof LazySongList) {
+                        // 按需读取的列表只复制ID，访问时再读取最新信息，不逐首查询整个列表
+                        LazySongList lazyPlaylist = (LazySongList) currentPlaylist;
+                        long[] ids = new long[lazyPlaylist.size()];
+                        for (int i = 0; i < ids.length; i++) {
+                            ids[i] = lazyPlaylist.getIdAt(i);
+                        }
+                        updatedPlaylist = new LazySongList(ids);
+                    } else {
+                        updatedPlaylist = new ArrayList<>();
+                        for (Song song : currentPlaylist) {
+                            // 根据歌曲ID重新查询数据库获取最新信息
+                            Song updatedSong = org.litepal.LitePal.find(Song.class, song.getId());
+                            // 如果找不到更新后的歌曲，保留原歌曲
+                            updatedPlaylist.add(Objects.requireNonNullElse(updatedSong, song));
+                        }
                     }
 
                     // 获取当前播放索引
@@ -13,11 +13,9 @@ import androidx.media3.common.MediaItem;
 import androidx.media3.common.PlaybackException;
 import androidx.media3.common.Player;
 
-import com.magicalstory.music.model.PlayHistory;
 import com.magicalstory.music.model.Song;
-
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import com.magicalstory.music.utils.db.PlayEventLog;
+import com.magicalstory.music.utils.db.PlaybackJournal;
 
 /**
  * 播放状态管理器
@@ -47,18 +45,19 @@ public class PlaybackStateManager {
     
     private final Context context;
     private final LocalBroadcastManager broadcastManager;
-    private final ExecutorService backgroundExecutor;
+    private final PlaybackJournal journal;
     private final Handler mainHandler;
     
     // 播放历史记录相关
     private long playStartTime;
     private long totalPlayTime;
+    private long songStartTime;
     private Song currentSong;
     
     public PlaybackStateManager(@NonNull Context context) {
         this.context = context;
         this.broadcastManager = LocalBroadcastManager.getInstance(context);
-        this.backgroundExecutor = Executors.newSingleThreadExecutor();
+        this.journal = PlaybackJournal.getInstance(context);
         this.mainHandler = new Handler(Looper.getMainLooper());
     }
     
@@ -97,6 +96,8 @@ public class PlaybackStateManager {
             startPlayTimeTracking();
         } else {
             pausePlayTimeTracking();
+            // 暂停时写入累积的播放记录
+            journal.flush();
         }
     }
     
@@ -198,6 +199,7 @@ public class PlaybackStateManager {
                 // 重置播放时间跟踪
                 playStartTime = 0;
                 totalPlayTime = 0;
+                songStartTime = System.currentTimeMillis();
             } catch (NumberFormatException e) {
                 Log.e(TAG, "Invalid media ID: " + mediaItem.mediaId, e);
                 currentSong = null;
@@ -216,88 +218,28 @@ public class PlaybackStateManager {
         // 更新播放时间
         pausePlayTimeTracking();
         
-        final long songId = currentSong.getId();
-        final long playTime = totalPlayTime;
-        final long albumId = currentSong.getAlbumId();
-        final long artistId = currentSong.getArtistId();
-        final boolean completed = isCompleted;
-        
-        // 在后台线程中记录播放历史
-        backgroundExecutor.execute(() -> {
-            try {
-                // 记录播放历史
-                PlayHistory.recordPlay(songId, playTime, completed, completed ? 1.0 : 0.0);
-                
-                // 更新歌曲、专辑、艺术家的最后播放时间
-                updateLastPlayedTime(songId, albumId, artistId);
-                
-                Log.d(TAG, "Play history recorded for song: " + currentSong.getTitle());
-            } catch (Exception e) {
-                Log.e(TAG, "Error recording play history", e);
-            }
-        });
+        // 记录播放历史和本次收听，并更新歌曲、专辑、艺术家的最后播放时间（合并后延迟写入）
+        journal.recordListen(currentSong.getId(), currentSong.getAlbumRowId(), currentSong.getArtistRowId(),
+                songStartTime, totalPlayTime,
+                isCompleted ? PlayEventLog.END_COMPLETED : PlayEventLog.END_SKIPPED);
+        Log.d(TAG, "Play history recorded for song: " + currentSong.getTitle());
     }
     
     /**
-     * 更新最后播放时间
+     * 歌曲开始播放时立即更新播放时间和记录播放历史
      */
-    private void updateLastPlayedTime(long songId, long albumId, long artistId) {
-        long currentTime = System.currentTimeMillis();
+    private void updateLastPlayedTimeOnPlayStart() {
+        if (currentSong == null) return;
         
-        try {
-            // 更新歌曲最后播放时间
-            Song song = org.litepal.LitePal.find(Song.class, songId);
-            if (song != null) {
-                song.setLastplayed(currentTime);
-                song.saveThrows();
-            }
-            
-            // 更新专辑最后播放时间
-            com.magicalstory.music.model.Album album = org.litepal.LitePal
-                    .where("albumId = ?", String.valueOf(albumId))
-                    .findFirst(com.magicalstory.music.model.Album.class);
-            if (album != null) {
-                album.setLastplayed(currentTime);
-                album.saveThrows();
-            }
-            
-            // 更新艺术家最后播放时间
-            com.magicalstory.music.model.Artist artist = org.litepal.LitePal
-                    .where("artistId = ?", String.valueOf(artistId))
-                    .findFirst(com.magicalstory.music.model.Artist.class);
-            if (artist != null) {
-                artist.setLastplayed(currentTime);
-                artist.saveThrows();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error updating last played time", e);
-        }
+        // 开始播放时记录，播放时间为0，完成度为0
+        journal.recordPlay(currentSong.getId(), currentSong.getAlbumRowId(), currentSong.getArtistRowId());
     }
     
     /**
-     * 歌曲开始播放时立即更新播放时间和记录播放历史
+     * 立即写入尚未写入的播放记录，服务销毁时调用
      */
-    private void updateLastPlayedTimeOnPlayStart() {
-        if (currentSong == null) return;
-        
-        final long songId = currentSong.getId();
-        final long albumId = currentSong.getAlbumId();
-        final long artistId = currentSong.getArtistId();
-        
-        // 在后台线程中更新播放时间和记录播放历史
-        backgroundExecutor.execute(() -> {
-            try {
-                // 更新播放时间
-                updateLastPlayedTime(songId, albumId, artistId);
-                
-                // 记录播放历史（开始播放时记录，播放时间为0，完成度为0）
-                PlayHistory.recordPlay(songId, 0, false, 0.0);
-                
-                Log.d(TAG, "Play history and last played time updated for song: " + currentSong.getTitle());
-            } catch (Exception e) {
-                Log.e(TAG, "Error updating last played time and play history on play start", e);
-            }
-        });
+    public void flushPlayHistory() {
+        journal.flush();
     }
 
 } 
\ No newline at end of file
@@ -13,9 +13,11 @@ import androidx.media3.common.util.UnstableApi;
 
 import com.hjq.gson.factory.GsonFactory;
 import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.file.FilePresenceCache;
+import com.magicalstory.music.utils.query.LazySongList;
+import com.magicalstory.music.utils.query.SongResolver;
 import com.tencent.mmkv.MMKV;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -95,8 +97,12 @@ public class PlaylistManager {
         long updatePlaylistEnd = System.currentTimeMillis();
         Log.d(TAG, "更新播放列表耗时: " + (updatePlaylistEnd - updatePlaylistStart) + "ms");
 
-        // 创建MediaItem列表
+        // 预先批量并行校验文件，后续创建MediaItem时直接命中缓存
         long createMediaItemsStart = System.currentTimeMillis();
+        FilePresenceCache.getInstance().checkSongs(songs);
+        Log.d(TAG, "批量校验文件耗时: " + (System.currentTimeMillis() - createMediaItemsStart) + "ms");
+
+        // 创建MediaItem列表
         List<MediaItem> mediaItems = new ArrayList<>();
         int validItemCount = 0;
         int skippedItemCount = 0;
@@ -195,8 +201,7 @@ public class PlaylistManager {
                 return null;
             }
 
-            File songFile = new File(song.getPath());
-            if (!songFile.exists()) {
+            if (!FilePresenceCache.getInstance().exists(song)) {
                 Log.w(TAG, "歌曲文件不存在: " + song.getPath());
                 return null;
             }
@@ -267,7 +272,7 @@ public class PlaylistManager {
         // 尝试从数据库查找
         try {
             long songId = Long.parseLong(mediaItem.mediaId);
-            return org.litepal.LitePal.find(Song.class, songId);
+            return SongResolver.resolve(songId);
         } catch (NumberFormatException e) {
             Log.e(TAG, "无效的媒体ID: " + mediaItem.mediaId, e);
         }
@@ -280,19 +285,8 @@ public class PlaylistManager {
      */
     @NonNull
     public List<MediaItem> addMediaItems(@NonNull List<MediaItem> mediaItems) {
-        List<MediaItem> validMediaItems = new ArrayList<>();
-
-        for (MediaItem mediaItem : mediaItems) {
-            if (mediaItem != null && isValidMediaItem(mediaItem)) {
-                validMediaItems.add(mediaItem);
-
-                // 尝试从MediaItem获取Song信息
-                Song song = getSongFromMediaItem(mediaItem);
-                if (song != null) {
-                    currentPlaylist.add(song);
-                }
-            }
-        }
+        List<MediaItem> validMediaItems = collectValidMediaItems(mediaItems);
+        currentPlaylist.addAll(getSongsFromMediaItems(validMediaItems));
 
         Log.d(TAG, "添加 " + validMediaItems.size() + " 个有效媒体项");
         return validMediaItems;
@@ -306,22 +300,55 @@ public class PlaylistManager {
         // 清理旧数据
         currentPlaylist.clear();
 
-        List<MediaItem> validMediaItems = new ArrayList<>();
+        List<MediaItem> validMediaItems = collectValidMediaItems(mediaItems);
+        currentPlaylist.addAll(getSongsFromMediaItems(validMediaItems));
 
+        Log.d(TAG, "设置 " + validMediaItems.size() + " 个有效媒体项");
+        return validMediaItems;
+    }
+
+    /**
+     * 过滤出文件存在的媒体项
+     */
+    @NonNull
+    private List<MediaItem> collectValidMediaItems(@NonNull List<MediaItem> mediaItems) {
+        List<MediaItem> validMediaItems = new ArrayList<>();
+        prefetchFilePresence(mediaItems);
         for (MediaItem mediaItem : mediaItems) {
             if (mediaItem != null && isValidMediaItem(mediaItem)) {
                 validMediaItems.add(mediaItem);
+            }
+        }
+        return validMediaItems;
+    }
 
-                // 尝试从MediaItem获取Song信息
-                Song song = getSongFromMediaItem(mediaItem);
-                if (song != null) {
-                    currentPlaylist.add(song);
-                }
+    /**
+     * 批量获取MediaItem对应的Song对象，保持顺序，找不到的跳过
+     */
+    @NonNull
+    private List<Song> getSongsFromMediaItems(@NonNull List<MediaItem> mediaItems) {
+        List<Long> songIds = new ArrayList<>(mediaItems.size());
+        for (MediaItem mediaItem : mediaItems) {
+            try {
+                songIds.add(Long.parseLong(mediaItem.mediaId));
+            } catch (NumberFormatException e) {
+                Log.e(TAG, "无效的媒体ID: " + mediaItem.mediaId, e);
             }
         }
+        return SongResolver.resolve(songIds);
+    }
 
-        Log.d(TAG, "设置 " + validMediaItems.size() + " 个有效媒体项");
-        return validMediaItems;
+    /**
+     * 批量并行校验媒体项对应的文件，结果写入缓存供isValidMediaItem使用
+     */
+    private void prefetchFilePresence(@NonNull List<MediaItem> mediaItems) {
+        List<String> paths = new ArrayList<>(mediaItems.size());
+        for (MediaItem mediaItem : mediaItems) {
+            if (mediaItem != null && mediaItem.localConfiguration != null) {
+                paths.add(mediaItem.localConfiguration.uri.getPath());
+            }
+        }
+        FilePresenceCache.getInstance().checkAll(paths, null);
     }
 
     /**
@@ -342,8 +369,7 @@ public class PlaylistManager {
         // 验证文件是否存在
         String path = mediaItem.localConfiguration.uri.getPath();
         if (path != null) {
-            File file = new File(path);
-            if (!file.exists()) {
+            if (!FilePresenceCache.getInstance().exists(path, FilePresenceCache.UNKNOWN_DATE_MODIFIED)) {
                 Log.w(TAG, "MediaItem文件不存在: " + path);
                 return false;
             }
@@ -413,13 +439,51 @@ public class PlaylistManager {
         return MMKV.defaultMMKV().decodeString("playList","");
     }
 
-    public void savePlayList(ArrayList<Song> songs,int pos) {
-        MMKV.defaultMMKV().encode("playList", GsonFactory.getSingletonGson().toJson(songs));
+    public void savePlayList(List<Song> songs,int pos) {
+        if (songs instanceof LazySongList) {
+            // 按需读取的列表（随机播放全部）只保存歌曲ID，不读取整个列表
+            LazySongList lazySongs = (LazySongList) songs;
+            StringBuilder ids = new StringBuilder();
+            for (int i = 0; i < lazySongs.size(); i++) {
+                if (i > 0) {
+                    ids.append(',');
+                }
+                ids.append(lazySongs.getIdAt(i));
+            }
+            MMKV.defaultMMKV().encode("playListIds", ids.toString());
+            MMKV.defaultMMKV().encode("playList", "");
+        } else {
+            MMKV.defaultMMKV().encode("playList", GsonFactory.getSingletonGson().toJson(songs));
+            MMKV.defaultMMKV().encode("playListIds", "");
+        }
         MMKV.defaultMMKV().encode("playListIndex", pos);
     }
 
+    /**
+     * 上次保存的按需读取的播放列表的歌曲ID，没有时为空数组
+     */
+    @NonNull
+    public long[] getPlayListIds() {
+        String saved = MMKV.defaultMMKV().decodeString("playListIds", "");
+        if (saved == null || saved.isEmpty()) {
+            return new long[0];
+        }
+        String[] parts = saved.split(",");
+        long[] ids = new long[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                ids[i] = Long.parseLong(parts[i]);
+            }
+        } catch (NumberFormatException e) {
+            Log.e(TAG, "解析保存的播放列表失败", e);
+            return new long[0];
+        }
+        return ids;
+    }
+
     public void cleanLocalPlayList() {
         MMKV.defaultMMKV().encode("playList","");
+        MMKV.defaultMMKV().encode("playListIds", "");
     }
 
     public int getPlayListIndex() {
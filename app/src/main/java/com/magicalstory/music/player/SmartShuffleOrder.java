@@ -0,0 +1,258 @@
+package com.magicalstory.music.player;
+
+import com.magicalstory.music.model.Song;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 完整播放列表上的随机播放顺序
+ * Media3自带的随机只作用于MediaControllerHelper已加载的3首窗口，这里在整个列表上预先生成排列，窗口按排列中的位置加载：
+ * <ul>
+ *     <li>生成时用Fisher-Yates打乱列表下标（O(n)，不读取歌曲），当前歌曲排在第一位</li>
+ *     <li>相邻两首是同一艺术家或同一专辑时，从后面随机换一首过来；歌曲都在内存中时生成后一次打散整个排列，
+ *     按需读取的LazySongList在位置进入窗口前才打散，只读取快要播放的歌曲</li>
+ *     <li>同时保存位置到下标、下标到位置两个数组，上一首/下一首都是O(1)</li>
+ *     <li>打散过的位置（已进入窗口或已播放）不再变化，窗口扩展时顺序保持稳定；重新打乱只影响当前位置之后的部分</li>
+ *     <li>已播放的位置单独记录：点击还没播放的歌曲时把它移到已播放部分之后，中间的歌曲顺序后移，不会被跳过；
+ *     移动处之后的位置重新打散</li>
+ * </ul>
+ * 非线程安全，和MediaControllerHelper一样只在主线程使用。
+ */
+final class SmartShuffleOrder {
+
+    // 打散一个位置时最多尝试的候选数，找不到不冲突的歌曲时保留原顺序
+    private static final int SPREAD_PROBES = 8;
+
+    private final Random random = new Random();
+
+    private int[] order;        // 位置 -> 列表下标
+    private int[] positions;    // 列表下标 -> 位置
+    private int size;
+    // [0, fixedEnd)的位置已打散，之后不再交换
+    private int fixedEnd;
+    // [0, playedEnd)的位置已播放过，playedEnd <= fixedEnd；歌曲都在内存中时fixedEnd是整个列表，两者不同
+    private int playedEnd;
+
+    /**
+     * @param startIndex 当前歌曲的下标，排在第一位
+     */
+    SmartShuffleOrder(int size, int startIndex) {
+        this.order = new int[size];
+        this.positions = new int[size];
+        this.size = size;
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        shuffleRange(0);
+        if (size > 0) {
+            rebuildPositions();
+            swapPositions(0, positions[startIndex]);
+            fixedEnd = 1;
+            playedEnd = 1;
+        }
+    }
+
+    /**
+     * 位置上的列表下标
+     */
+    int indexAt(int position) {
+        return order[position];
+    }
+
+    /**
+     * 列表下标在播放顺序中的位置
+     */
+    int positionOf(int index) {
+        return positions[index];
+    }
+
+    /**
+     * 打散到指定位置（包含），之后这些位置不再变化
+     */
+    void spreadTo(List<Song> songs, int position) {
+        int end = Math.min(position + 1, size);
+        for (int p = Math.max(fixedEnd, 1); p < end; p++) {
+            if (!clashes(songs, order[p - 1], order[p])) {
+                continue;
+            }
+            for (int probe = 0; probe < SPREAD_PROBES && p + 1 < size; probe++) {
+                int candidate = p + 1 + random.nextInt(size - p - 1);
+                if (!clashes(songs, order[p - 1], order[candidate])) {
+                    swapPositions(p, candidate);
+                    break;
+                }
+            }
+        }
+        fixedEnd = Math.max(fixedEnd, end);
+    }
+
+    /**
+     * 位置成为当前播放的歌曲，之前的位置都算已播放
+     */
+    void markPlayed(int position) {
+        playedEnd = Math.max(playedEnd, position + 1);
+        fixedEnd = Math.max(fixedEnd, playedEnd);
+    }
+
+    /**
+     * 播放一首歌并返回它的位置：还没播放的歌曲移到已播放部分的后面，原来在它之前的歌曲依次后移
+     * （例如在播放队列中点击了后面的歌曲）；已播放的歌曲保持原位置。移动后之后的位置需要重新打散。
+     */
+    int pin(int index) {
+        int position = positions[index];
+        if (position > playedEnd) {
+            System.arraycopy(order, playedEnd, order, playedEnd + 1, position - playedEnd);
+            order[playedEnd] = index;
+            for (int p = playedEnd; p <= position; p++) {
+                positions[order[p]] = p;
+            }
+            position = playedEnd;
+            // 移动处前后的相邻歌曲变了
+            fixedEnd = position + 1;
+        }
+        markPlayed(position);
+        return position;
+    }
+
+    /**
+     * 重新打乱位置之后的部分，位置本身和之前的顺序不变
+     */
+    void reshuffleAfter(int position) {
+        shuffleRange(position + 1);
+        for (int p = position + 1; p < size; p++) {
+            positions[order[p]] = p;
+        }
+        fixedEnd = Math.min(fixedEnd, position + 1);
+        playedEnd = Math.min(playedEnd, position + 1);
+    }
+
+    /**
+     * 列表在index处插入了count首歌曲，它们按列表顺序排在播放顺序的position处
+     *
+     * @param fixed 是否固定这些位置（下一首播放），否则之后可能被打散
+     */
+    void insert(int index, int count, int position, boolean fixed) {
+        ensureCapacity(size + count);
+        for (int p = 0; p < size; p++) {
+            if (order[p] >= index) {
+                order[p] += count;
+            }
+        }
+        System.arraycopy(order, position, order, position + count, size - position);
+        for (int i = 0; i < count; i++) {
+            order[position + i] = index + i;
+        }
+        size += count;
+        // 插入到已打散部分中间的歌曲也需要固定
+        if (position < fixedEnd || (fixed && position == fixedEnd)) {
+            fixedEnd += count;
+        }
+        if (position < playedEnd) {
+            playedEnd += count;
+        }
+        rebuildPositions();
+    }
+
+    /**
+     * 列表移除了index处的歌曲
+     */
+    void remove(int index) {
+        boolean[] removed = new boolean[size];
+        removed[index] = true;
+        removeAll(removed);
+    }
+
+    /**
+     * 列表移除了标记的歌曲，其余歌曲的先后顺序不变
+     */
+    void removeAll(boolean[] removed) {
+        // 移除后每个下标的新下标 = 之前未移除的歌曲数
+        int[] newIndex = new int[size];
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            newIndex[i] = kept;
+            if (!removed[i]) {
+                kept++;
+            }
+        }
+        int count = 0;
+        int newFixedEnd = 0;
+        int newPlayedEnd = 0;
+        for (int p = 0; p < size; p++) {
+            int index = order[p];
+            if (removed[index]) {
+                continue;
+            }
+            if (p < fixedEnd) {
+                newFixedEnd++;
+            }
+            if (p < playedEnd) {
+                newPlayedEnd++;
+            }
+            order[count++] = newIndex[index];
+        }
+        size = count;
+        fixedEnd = newFixedEnd;
+        playedEnd = newPlayedEnd;
+        rebuildPositions();
+    }
+
+    /**
+     * 列表交换了两首歌曲，两首歌各自在播放顺序中的位置不变
+     */
+    void swapIndices(int a, int b) {
+        int positionA = positions[a];
+        int positionB = positions[b];
+        order[positionA] = b;
+        order[positionB] = a;
+        positions[a] = positionB;
+        positions[b] = positionA;
+    }
+
+    /**
+     * Fisher-Yates打乱[from, size)的位置
+     */
+    private void shuffleRange(int from) {
+        for (int p = size - 1; p > from; p--) {
+            int q = from + random.nextInt(p - from + 1);
+            int index = order[p];
+            order[p] = order[q];
+            order[q] = index;
+        }
+    }
+
+    private void swapPositions(int p, int q) {
+        int index = order[p];
+        order[p] = order[q];
+        order[q] = index;
+        positions[order[p]] = p;
+        positions[order[q]] = q;
+    }
+
+    private void rebuildPositions() {
+        if (positions.length < order.length) {
+            positions = new int[order.length];
+        }
+        for (int p = 0; p < size; p++) {
+            positions[order[p]] = p;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (order.length < capacity) {
+            order = Arrays.copyOf(order, Math.max(capacity, order.length + (order.length >> 1)));
+        }
+    }
+
+    /**
+     * 两首歌是否是同一艺术家或同一专辑（按行ID，未关联的歌曲不算）
+     */
+    private static boolean clashes(List<Song> songs, int a, int b) {
+        Song first = songs.get(a);
+        Song second = songs.get(b);
+        return (first.getArtistRowId() != 0 && first.getArtistRowId() == second.getArtistRowId())
+                || (first.getAlbumRowId() != 0 && first.getAlbumRowId() == second.getAlbumRowId());
+    }
+}
@@ -14,6 +14,8 @@ import com.magicalstory.music.model.Album;
 import com.magicalstory.music.model.Artist;
 import com.magicalstory.music.utils.glide.CoverFallbackUtils;
 import com.magicalstory.music.utils.network.NetUtils;
+import com.magicalstory.music.utils.query.LibrarySnapshot;
+import com.magicalstory.music.utils.text.ArtistCredits;
 import com.magicalstory.music.utils.text.RawTextReader;
 
 import org.litepal.LitePal;
@@ -167,6 +169,9 @@ public class CoverFetchService extends IntentService {
             }
         }
 
+        if (successCount > 0) {
+            LibrarySnapshot.invalidate();
+        }
         Log.d(TAG, "专辑封面处理完成: 处理了 " + processedCount + " 个专辑，成功设置 " + successCount + " 个封面");
     }
 
@@ -192,8 +197,8 @@ public class CoverFetchService extends IntentService {
             // 检查歌手是否已经有封面或已经尝试过获取封面
             if (TextUtils.isEmpty(artist.getCoverUrl()) && !artist.isCoverFetched()) {
                 Log.d(TAG, "处理歌手封面: " + artist.getArtistName() + " (" + processedCount + "/" + artists.size() + ")");
-                if (singerName.contains(artist.getArtistName().split(";")[0])) {
-                    artist.setCoverUrl("https://cdn.magicalapk.com/singerCover/singerCover/" + artist.getArtistName().split(";")[0] + ".png");
+                if (singerName.contains(ArtistCredits.primary(artist.getArtistName()))) {
+                    artist.setCoverUrl("https://cdn.magicalapk.com/singerCover/singerCover/" + ArtistCredits.primary(artist.getArtistName()) + ".png");
                     artist.setCoverFetched(true);
                     System.out.println("歌手 = " + artist.getArtistName() + " 有CDN封面");
                     successCount++;
@@ -225,6 +230,9 @@ public class CoverFetchService extends IntentService {
         }
 
         singerName = null;
+        if (successCount > 0) {
+            LibrarySnapshot.invalidate();
+        }
         Log.d(TAG, "歌手封面处理完成: 处理了 " + processedCount + " 个歌手，成功设置 " + successCount + " 个封面 (API请求: " + apiRequestCount + ")");
     }
 
@@ -234,7 +242,7 @@ public class CoverFetchService extends IntentService {
     private boolean fetchArtistCoverFromAPI(Artist artist) {
         try {
             String artistName = artist.getArtistName();
-            String encodedArtistName = java.net.URLEncoder.encode(artistName.split(";")[0], "UTF-8");
+            String encodedArtistName = java.net.URLEncoder.encode(ArtistCredits.primary(artistName), "UTF-8");
             String url = "https://music.163.com/api/search/get/web?s=" + encodedArtistName + "&type=100";
 
             // 构建完整的浏览器请求头
@@ -0,0 +1,745 @@
+package com.magicalstory.music.service;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.magicalstory.music.model.ScanCheckpoint;
+import com.magicalstory.music.model.ScanDirtyArtist;
+import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.db.LibraryAggregates;
+import com.magicalstory.music.utils.db.LibraryBulkWriter;
+import com.magicalstory.music.utils.db.LibrarySchema;
+import com.magicalstory.music.utils.file.FilePresenceCache;
+
+import org.litepal.LitePal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流水线式音乐扫描
+ * 扫描分为三个阶段，阶段之间通过有界队列连接，内存占用不随音乐库大小增长：
+ * <ol>
+ *     <li>读取：遍历MediaStore游标，把每一行转换为Song</li>
+ *     <li>映射/聚合：按批次并行校验文件是否存在，与数据库已有歌曲匹配，决定插入还是更新，记录受影响的专辑和艺术家，按批次打包</li>
+ *     <li>写入：每个批次在一个事务中写入数据库，并回调进度</li>
+ * </ol>
+ * 所有歌曲写入后，再删除设备中已不存在的歌曲并重新统计受影响的专辑和艺术家。
+ * <p>
+ * MediaStore按_ID升序读取，每个批次与扫描检查点（{@link ScanCheckpoint}）和受影响的艺术家在同一个事务中提交。
+ * 扫描中途进程被杀死时，已提交的歌曲保留在数据库中，下一次扫描从最后提交的_ID之后继续，
+ * 并重新统计检查点中记录的艺术家；扫描完成后才清除检查点并更新水位线。
+ */
+public class MusicScanPipeline {
+    private static final String TAG = "MusicScanPipeline";
+
+    // 最小歌曲时长（毫秒），小于此时长的歌曲将被过滤
+    private static final long MIN_SONG_DURATION = 60000; // 60秒
+
+    static final String BASE_SELECTION = MediaStore.Audio.Media.IS_MUSIC + " = 1 AND " +
+            MediaStore.Audio.Media.DURATION + " > " + MIN_SONG_DURATION; // 大于1分钟的音频文件
+
+    private static final String[] PROJECTION = {
+            MediaStore.Audio.Media._ID,
+            MediaStore.Audio.Media.TITLE,
+            MediaStore.Audio.Media.ARTIST,
+            MediaStore.Audio.Media.ALBUM,
+            MediaStore.Audio.Media.DATA,
+            MediaStore.Audio.Media.DURATION,
+            MediaStore.Audio.Media.SIZE,
+            MediaStore.Audio.Media.DISPLAY_NAME,
+            MediaStore.Audio.Media.ALBUM_ID,
+            MediaStore.Audio.Media.ARTIST_ID,
+            MediaStore.Audio.Media.DATE_ADDED,
+            MediaStore.Audio.Media.DATE_MODIFIED,
+            MediaStore.Audio.Media.MIME_TYPE,
+            MediaStore.Audio.Media.TRACK,
+            MediaStore.Audio.Media.YEAR
+    };
+
+    // 读取阶段与映射阶段之间的队列容量（行）
+    private static final int ROW_QUEUE_CAPACITY = 1024;
+    // 映射阶段与写入阶段之间的队列容量（批）
+    private static final int BATCH_QUEUE_CAPACITY = 4;
+    // 扫描结束后等待读取、映射阶段退出的时间，之后才关闭游标
+    private static final long STAGE_SHUTDOWN_TIMEOUT_MS = 5000;
+
+    // 按ID查询时每条SQL中IN参数的最大数量
+    private static final int ID_CHUNK_SIZE = 500;
+
+    // 扫描和增量同步共用的写锁，避免两者同时插入同一首歌曲
+    private static final Object LIBRARY_WRITE_LOCK = new Object();
+
+    // 读取、映射阶段的线程名
+    static final String STAGE_THREAD_NAME = "MusicScanPipeline-stage";
+
+    // 队列结束标记
+    private static final Song END_OF_ROWS = new Song();
+    private static final ScanBatch END_OF_BATCHES = new ScanBatch(new ArrayList<>(), new HashSet<>(), 0);
+
+    /**
+     * 扫描进度回调，在写入线程中调用
+     */
+    public interface ProgressListener {
+        /**
+         * @param rowsRead    已读取的行数
+         * @param rowsWritten 已写入数据库的行数
+         * @param totalRows   本次需要处理的总行数
+         * @param etaMs       预计剩余时间（毫秒），无法估算时为-1
+         */
+        void onProgress(int rowsRead, int rowsWritten, int totalRows, long etaMs);
+    }
+
+    /**
+     * 单行写入操作
+     */
+    private static class ScanOp {
+        final Song song;    // null表示删除dbId对应的歌曲
+        final long dbId;    // 0表示插入新歌曲
+
+        ScanOp(Song song, long dbId) {
+            this.song = song;
+            this.dbId = dbId;
+        }
+    }
+
+    /**
+     * 一个批次的写入操作，以及提交后检查点需要记录的进度
+     */
+    private static class ScanBatch {
+        final List<ScanOp> ops;
+        final Set<String> artists;      // 批次中受影响的艺术家
+        final int newSongCount;         // 批次中新增的歌曲数
+        long lastMediaId;               // 批次中最大的_ID
+        long maxDateModified;           // 截至本批次的最大DATE_MODIFIED
+        long maxMediaId;                // 截至本批次的最大_ID
+
+        ScanBatch(List<ScanOp> ops, Set<String> artists, int newSongCount) {
+            this.ops = ops;
+            this.artists = artists;
+            this.newSongCount = newSongCount;
+        }
+    }
+
+    private final Context context;
+    private final boolean fullRescan;
+    private final int batchSize;
+    @Nullable
+    private final ProgressListener progressListener;
+
+    private volatile int totalRows = 0;
+    private volatile int rowsRead = 0;
+    private int rowsWritten = 0;
+    // 中断前已提交的行数
+    private int resumedRows = 0;
+
+    // 以下状态只在映射阶段写入，流水线结束后才在写入线程读取
+    private final Set<Long> matchedDbIds = new HashSet<>();
+    private final LibraryAggregates aggregates = new LibraryAggregates();
+    private long maxDateModified;
+    private long maxMediaId;
+    private int newSongCount = 0;
+    private int updatedCount = 0;
+    private int missingCount = 0;
+
+    public MusicScanPipeline(Context context, boolean fullRescan, @Nullable ProgressListener progressListener) {
+        this(context, fullRescan, LibraryBulkWriter.DEFAULT_BATCH_SIZE, progressListener);
+    }
+
+    public MusicScanPipeline(Context context, boolean fullRescan, int batchSize,
+                             @Nullable ProgressListener progressListener) {
+        this.context = context.getApplicationContext();
+        this.fullRescan = fullRescan;
+        this.batchSize = Math.max(1, batchSize);
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * 执行扫描，在调用线程中完成写入阶段
+     *
+     * @return 新增歌曲数量
+     */
+    public int run() throws Exception {
+        LibrarySchema.awaitMigrated();
+        synchronized (LIBRARY_WRITE_LOCK) {
+            return runLocked();
+        }
+    }
+
+    private int runLocked() throws Exception {
+        ContentResolver contentResolver = context.getContentResolver();
+        Uri uri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+
+        ScanWatermark watermark = ScanWatermark.load();
+        String mediaVersion = ScanWatermark.currentMediaVersion(context);
+        ScanCheckpoint checkpoint = ScanCheckpoint.load();
+        // MediaStore版本变化后_ID不再可比；要求全量扫描时不继续中断的增量扫描
+        boolean resumed = checkpoint != null && TextUtils.equals(checkpoint.getMediaVersion(), mediaVersion)
+                && !(fullRescan && checkpoint.isIncremental());
+        if (!resumed) {
+            checkpoint = createCheckpoint(watermark, mediaVersion);
+        }
+        boolean incremental = checkpoint.isIncremental();
+        resumedRows = resumed ? checkpoint.getRowsWritten() : 0;
+        rowsRead = resumedRows;
+        rowsWritten = resumedRows;
+        Log.d(TAG, "开始扫描音乐文件, 增量: " + incremental + ", 继续中断的扫描: " + resumed
+                + (resumed ? " (_ID > " + checkpoint.getLastMediaId() + ")" : "")
+                + ", generation: " + checkpoint.getBaseGeneration() + " -> " + checkpoint.getTargetGeneration());
+
+        maxDateModified = checkpoint.getMaxDateModified();
+        maxMediaId = checkpoint.getMaxMediaId();
+
+        // 中断前已写入歌曲、但还没有重新统计的艺术家
+        for (String artist : ScanDirtyArtist.loadAll()) {
+            aggregates.touchArtist(artist);
+        }
+
+        // 数据库中已有歌曲的索引，只读取匹配所需的列
+        List<Song> dbSongs = LitePal.select("id", "mediaStoreId", "path", "album", "artist").find(Song.class);
+        Map<Long, Song> dbSongByMediaId = new HashMap<>();
+        Map<String, Song> dbSongByPath = new HashMap<>();
+        for (Song dbSong : dbSongs) {
+            if (dbSong.getMediaStoreId() > 0) {
+                dbSongByMediaId.put(dbSong.getMediaStoreId(), dbSong);
+            }
+            if (dbSong.getPath() != null) {
+                dbSongByPath.put(dbSong.getPath(), dbSong);
+            }
+        }
+
+        String selection = BASE_SELECTION;
+        List<String> selectionArgs = new ArrayList<>();
+        if (incremental) {
+            if (ScanWatermark.supportsGeneration()) {
+                selection += " AND " + MediaStore.MediaColumns.GENERATION_MODIFIED + " > ?";
+                selectionArgs.add(String.valueOf(checkpoint.getBaseGeneration()));
+            } else {
+                // DATE_MODIFIED精度为秒，使用>=避免遗漏同一秒内的修改；新插入但保留旧修改时间的文件由_ID兜底
+                selection += " AND (" + MediaStore.Audio.Media.DATE_MODIFIED + " >= ? OR "
+                        + MediaStore.Audio.Media._ID + " > ?)";
+                selectionArgs.add(String.valueOf(checkpoint.getBaseMaxDateModified()));
+                selectionArgs.add(String.valueOf(checkpoint.getBaseMaxMediaId()));
+            }
+        }
+        if (resumed) {
+            selection += " AND " + MediaStore.Audio.Media._ID + " > ?";
+            selectionArgs.add(String.valueOf(checkpoint.getLastMediaId()));
+        }
+
+        // 按_ID升序读取，检查点只需记录最后提交的_ID
+        Cursor cursor = contentResolver.query(uri, PROJECTION, selection,
+                selectionArgs.isEmpty() ? null : selectionArgs.toArray(new String[0]),
+                MediaStore.Audio.Media._ID + " ASC");
+        if (cursor == null) {
+            // 查询失败时不更新水位线，也不做删除判断，避免误删数据库
+            Log.w(TAG, "查询音乐文件失败，cursor为null");
+            return 0;
+        }
+        totalRows = resumedRows + cursor.getCount();
+        Log.d(TAG, "查询到 " + totalRows + " 个变化的音乐文件");
+
+        BlockingQueue<Song> rowQueue = new ArrayBlockingQueue<>(ROW_QUEUE_CAPACITY);
+        BlockingQueue<ScanBatch> batchQueue = new ArrayBlockingQueue<>(BATCH_QUEUE_CAPACITY);
+        ExecutorService stages = Executors.newFixedThreadPool(2, runnable -> new Thread(runnable, STAGE_THREAD_NAME));
+        long startTime = SystemClock.elapsedRealtime();
+        int deletedCount = 0;
+        int touchedAlbumCount;
+        int touchedArtistCount;
+
+        try (LibraryBulkWriter writer = new LibraryBulkWriter(batchSize)) {
+            Future<?> reader = stages.submit(() -> {
+                readRows(cursor, rowQueue);
+                return null;
+            });
+            Future<?> mapper = stages.submit(() -> {
+                mapRows(rowQueue, batchQueue, dbSongByMediaId, dbSongByPath);
+                return null;
+            });
+
+            // 写入阶段
+            while (true) {
+                ScanBatch batch = batchQueue.take();
+                if (batch == END_OF_BATCHES) {
+                    break;
+                }
+                writeBatch(writer, batch, checkpoint);
+                reportProgress(startTime);
+            }
+
+            // 传递读取和映射阶段的异常：先检查映射阶段，它失败后没有人再读取rowQueue，
+            // 读取阶段会一直阻塞在put上，需要先取消读取阶段再抛出
+            try {
+                mapper.get();
+            } catch (ExecutionException e) {
+                reader.cancel(true);
+                throw e;
+            }
+            reader.get();
+
+            // 处理已从设备移除的歌曲
+            Set<Long> deviceMediaIds = queryDeviceMediaIds(contentResolver, uri);
+            if (deviceMediaIds != null) {
+                for (Song dbSong : dbSongs) {
+                    if (matchedDbIds.contains(dbSong.getId()) || deviceMediaIds.contains(dbSong.getMediaStoreId())) {
+                        continue;
+                    }
+                    // 删除阶段不记录进度，中断后重新执行即可，但受影响的艺术家要先记录下来
+                    writer.markArtistDirty(dbSong.getArtist());
+                    writer.deleteSong(dbSong.getId());
+                    aggregates.touch(dbSong);
+                    FilePresenceCache.getInstance().invalidate(dbSong.getPath());
+                    deletedCount++;
+                }
+            }
+
+            // 歌曲写入完成后再统计专辑和艺术家
+            writer.flush();
+
+            // 只重新统计受影响的专辑和艺术家，保留封面、最后播放时间等状态
+            touchedAlbumCount = aggregates.getTouchedAlbumCount();
+            touchedArtistCount = aggregates.getTouchedArtistCount();
+            aggregates.apply(writer);
+
+            // 统计完成后扫描才算完成
+            writer.clearScanCheckpoint();
+            writer.flush();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        } finally {
+            // 写入阶段失败时中断读取和映射阶段，等它们退出后再关闭游标（游标只在这个线程中关闭）
+            stages.shutdownNow();
+            try {
+                if (!stages.awaitTermination(STAGE_SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    Log.w(TAG, "读取/映射阶段没有及时退出");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!cursor.isClosed()) {
+                cursor.close();
+            }
+        }
+
+        watermark.hasScanned = true;
+        watermark.mediaVersion = mediaVersion;
+        watermark.generation = checkpoint.getTargetGeneration();
+        watermark.maxDateModified = checkpoint.getMaxDateModified();
+        watermark.maxMediaId = checkpoint.getMaxMediaId();
+        watermark.save();
+
+        Log.d(TAG, "扫描完成: 新增 " + newSongCount + ", 更新 " + updatedCount + ", 删除 " + deletedCount
+                + ", 中断前已写入 " + resumedRows
+                + ", 文件缺失 " + missingCount
+                + ", 专辑 " + touchedAlbumCount + ", 艺术家 " + touchedArtistCount
+                + ", 耗时 " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+
+        return checkpoint.getNewSongCount();
+    }
+
+    /**
+     * 创建新的检查点，记录本次扫描的起点
+     */
+    private ScanCheckpoint createCheckpoint(ScanWatermark watermark, String mediaVersion) {
+        ScanCheckpoint checkpoint = new ScanCheckpoint();
+        checkpoint.setIncremental(!fullRescan && watermark.isUsable(context));
+        checkpoint.setMediaVersion(mediaVersion);
+        checkpoint.setBaseGeneration(watermark.generation);
+        // 在查询之前读取generation，扫描期间发生的修改会在下一次扫描中重新读取
+        checkpoint.setTargetGeneration(ScanWatermark.currentGeneration(context));
+        checkpoint.setBaseMaxDateModified(watermark.maxDateModified);
+        checkpoint.setBaseMaxMediaId(watermark.maxMediaId);
+        checkpoint.setMaxDateModified(watermark.maxDateModified);
+        checkpoint.setMaxMediaId(watermark.maxMediaId);
+        return checkpoint;
+    }
+
+    /**
+     * 只同步指定MediaStore ID的歌曲，用于响应MediaStore变化通知
+     * 在MediaStore中仍存在的ID执行upsert，不存在（或已不满足过滤条件）的ID从数据库删除；
+     * 不更新扫描水位线，下一次增量扫描仍会覆盖这些变化
+     *
+     * @return 新增、更新和删除的歌曲总数
+     */
+    public int runDelta(Collection<Long> mediaIds) {
+        if (mediaIds.isEmpty()) {
+            return 0;
+        }
+        LibrarySchema.awaitMigrated();
+        synchronized (LIBRARY_WRITE_LOCK) {
+            ContentResolver contentResolver = context.getContentResolver();
+            Uri uri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+            List<Long> ids = new ArrayList<>(mediaIds);
+            int changedCount = 0;
+
+            try (LibraryBulkWriter writer = new LibraryBulkWriter(batchSize)) {
+                for (int start = 0; start < ids.size(); start += ID_CHUNK_SIZE) {
+                    List<Long> chunk = ids.subList(start, Math.min(ids.size(), start + ID_CHUNK_SIZE));
+                    String inClause = joinIds(chunk);
+
+                    // 数据库中对应的歌曲
+                    Map<Long, Song> dbSongByMediaId = new HashMap<>();
+                    List<Song> dbSongs = LitePal.select("id", "mediaStoreId", "path", "album", "artist")
+                            .where("mediaStoreId in (" + inClause + ")")
+                            .find(Song.class);
+                    for (Song dbSong : dbSongs) {
+                        dbSongByMediaId.put(dbSong.getMediaStoreId(), dbSong);
+                    }
+
+                    Cursor cursor = contentResolver.query(uri, PROJECTION,
+                            BASE_SELECTION + " AND " + MediaStore.Audio.Media._ID + " IN (" + inClause + ")",
+                            null, null);
+                    if (cursor == null) {
+                        Log.w(TAG, "增量同步查询失败，cursor为null");
+                        continue;
+                    }
+
+                    List<Song> deviceSongs = new ArrayList<>();
+                    try {
+                        ColumnIndexes columns = new ColumnIndexes(cursor);
+                        while (cursor.moveToNext()) {
+                            Song song = createSongFromCursor(cursor, columns);
+                            if (song != null && !TextUtils.isEmpty(song.getPath())) {
+                                deviceSongs.add(song);
+                            }
+                        }
+                    } finally {
+                        cursor.close();
+                    }
+
+                    // 文件已不存在的记录按删除处理
+                    Set<Long> foundMediaIds = new HashSet<>();
+                    for (Song song : FilePresenceCache.getInstance().filterExisting(deviceSongs)) {
+                        foundMediaIds.add(song.getMediaStoreId());
+
+                        Song dbSong = dbSongByMediaId.get(song.getMediaStoreId());
+                        if (dbSong == null) {
+                            dbSong = LitePal.select("id", "mediaStoreId", "path", "album", "artist")
+                                    .where("path = ?", song.getPath())
+                                    .findFirst(Song.class);
+                        }
+                        if (dbSong == null) {
+                            writer.insertSong(song);
+                        } else {
+                            aggregates.touch(dbSong);
+                            writer.updateSong(dbSong.getId(), song);
+                        }
+                        aggregates.touch(song);
+                        changedCount++;
+                    }
+
+                    // MediaStore中已不存在的歌曲
+                    for (Song dbSong : dbSongs) {
+                        if (!foundMediaIds.contains(dbSong.getMediaStoreId())) {
+                            writer.deleteSong(dbSong.getId());
+                            aggregates.touch(dbSong);
+                            FilePresenceCache.getInstance().invalidate(dbSong.getPath());
+                            changedCount++;
+                        }
+                    }
+                }
+                writer.flush();
+
+                aggregates.apply(writer);
+                writer.flush();
+            }
+
+            Log.d(TAG, "增量同步完成: " + mediaIds.size() + " 个ID, 变化 " + changedCount + " 首歌曲");
+            return changedCount;
+        }
+    }
+
+    private static String joinIds(List<Long> ids) {
+        StringBuilder builder = new StringBuilder(ids.size() * 8);
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(ids.get(i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 读取阶段：遍历游标，把每一行转换为Song放入队列
+     */
+    private void readRows(Cursor cursor, BlockingQueue<Song> rowQueue) throws InterruptedException {
+        boolean interrupted = false;
+        try {
+            ColumnIndexes columns = new ColumnIndexes(cursor);
+            while (cursor.moveToNext()) {
+                Song song = createSongFromCursor(cursor, columns);
+                rowsRead++;
+                if (song != null && !TextUtils.isEmpty(song.getPath())) {
+                    rowQueue.put(song);
+                }
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+            throw e;
+        } finally {
+            // 无论成功与否都要通知映射阶段结束，避免写入阶段一直等待
+            endQueue(rowQueue, END_OF_ROWS, interrupted);
+        }
+    }
+
+    /**
+     * 映射/聚合阶段：按批次并行校验文件是否存在，再与数据库已有歌曲匹配并打包成批次
+     */
+    private void mapRows(BlockingQueue<Song> rowQueue, BlockingQueue<ScanBatch> batchQueue,
+                         Map<Long, Song> dbSongByMediaId, Map<String, Song> dbSongByPath) throws InterruptedException {
+        List<Song> pending = new ArrayList<>(batchSize);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                Song song = rowQueue.take();
+                if (song == END_OF_ROWS) {
+                    break;
+                }
+
+                maxDateModified = Math.max(maxDateModified, song.getDateModified());
+                maxMediaId = Math.max(maxMediaId, song.getMediaStoreId());
+
+                pending.add(song);
+                if (pending.size() >= batchSize) {
+                    batchQueue.put(mapBatch(pending, dbSongByMediaId, dbSongByPath));
+                    pending = new ArrayList<>(batchSize);
+                }
+            }
+            if (!pending.isEmpty()) {
+                batchQueue.put(mapBatch(pending, dbSongByMediaId, dbSongByPath));
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+            throw e;
+        } finally {
+            endQueue(batchQueue, END_OF_BATCHES, interrupted);
+        }
+    }
+
+    /**
+     * 放入结束标记
+     * 阶段被中断（写入阶段失败或扫描被取消）时下游可能已不再读取队列，只尝试放入，不阻塞；
+     * 中断标志在抛出InterruptedException时已被清除，需要由调用方传入
+     */
+    private static <T> void endQueue(BlockingQueue<T> queue, T endMarker, boolean interrupted)
+            throws InterruptedException {
+        if (interrupted || Thread.currentThread().isInterrupted()) {
+            queue.offer(endMarker);
+        } else {
+            queue.put(endMarker);
+        }
+    }
+
+    /**
+     * 把一批设备歌曲映射为写入操作
+     * MediaStore中仍有记录但文件已不存在的歌曲不写入，数据库中对应的歌曲会被删除
+     */
+    private ScanBatch mapBatch(List<Song> songs, Map<Long, Song> dbSongByMediaId, Map<String, Song> dbSongByPath) {
+        boolean[] exists = FilePresenceCache.getInstance().checkSongs(songs);
+        List<ScanOp> batch = new ArrayList<>(songs.size());
+        Set<String> artists = new HashSet<>();
+        int batchNewSongCount = 0;
+        for (int i = 0; i < songs.size(); i++) {
+            Song song = songs.get(i);
+            Song dbSong = dbSongByMediaId.get(song.getMediaStoreId());
+            if (dbSong == null) {
+                dbSong = dbSongByPath.get(song.getPath());
+            }
+
+            if (!exists[i]) {
+                missingCount++;
+                if (dbSong != null && matchedDbIds.add(dbSong.getId())) {
+                    aggregates.touch(dbSong);
+                    addArtist(artists, dbSong);
+                    batch.add(new ScanOp(null, dbSong.getId()));
+                }
+                continue;
+            }
+
+            if (dbSong == null) {
+                batch.add(new ScanOp(song, 0));
+                newSongCount++;
+                batchNewSongCount++;
+            } else {
+                // 旧的专辑/艺术家也需要重新统计
+                aggregates.touch(dbSong);
+                addArtist(artists, dbSong);
+                batch.add(new ScanOp(song, dbSong.getId()));
+                matchedDbIds.add(dbSong.getId());
+                updatedCount++;
+            }
+            aggregates.touch(song);
+            addArtist(artists, song);
+        }
+
+        ScanBatch scanBatch = new ScanBatch(batch, artists, batchNewSongCount);
+        // 按_ID升序读取，最后一行的_ID就是批次中最大的_ID
+        scanBatch.lastMediaId = songs.get(songs.size() - 1).getMediaStoreId();
+        scanBatch.maxDateModified = maxDateModified;
+        scanBatch.maxMediaId = maxMediaId;
+        return scanBatch;
+    }
+
+    private static void addArtist(Set<String> artists, Song song) {
+        if (song.getArtist() != null) {
+            artists.add(song.getArtist());
+        }
+    }
+
+    /**
+     * 写入阶段：一个批次对应一个事务，检查点随批次一起提交
+     * 受影响的艺术家最先写入，即使批次超过写入器的事务大小被拆分提交，
+     * 已写入的歌曲也一定能在恢复时被重新统计；重复写入同一批次只会更新为相同的值
+     */
+    private void writeBatch(LibraryBulkWriter writer, ScanBatch batch, ScanCheckpoint checkpoint) {
+        for (String artist : batch.artists) {
+            writer.markArtistDirty(artist);
+        }
+        for (ScanOp op : batch.ops) {
+            if (op.song == null) {
+                writer.deleteSong(op.dbId);
+            } else if (op.dbId == 0) {
+                writer.insertSong(op.song);
+            } else {
+                writer.updateSong(op.dbId, op.song);
+            }
+        }
+        rowsWritten += batch.ops.size();
+
+        checkpoint.setLastMediaId(Math.max(checkpoint.getLastMediaId(), batch.lastMediaId));
+        checkpoint.setMaxDateModified(batch.maxDateModified);
+        checkpoint.setMaxMediaId(batch.maxMediaId);
+        checkpoint.setRowsWritten(rowsWritten);
+        checkpoint.setNewSongCount(checkpoint.getNewSongCount() + batch.newSongCount);
+        checkpoint.setUpdatedTime(System.currentTimeMillis());
+        writer.saveScanCheckpoint(checkpoint);
+        writer.flush();
+    }
+
+    private void reportProgress(long startTime) {
+        if (progressListener == null) {
+            return;
+        }
+        long elapsed = SystemClock.elapsedRealtime() - startTime;
+        long etaMs = -1;
+        // 只按本次写入的行数估算速度
+        int writtenThisRun = rowsWritten - resumedRows;
+        if (writtenThisRun > 0 && totalRows > rowsWritten) {
+            etaMs = elapsed * (totalRows - rowsWritten) / writtenThisRun;
+        } else if (writtenThisRun > 0) {
+            etaMs = 0;
+        }
+        progressListener.onProgress(rowsRead, rowsWritten, totalRows, etaMs);
+    }
+
+    /**
+     * 查询设备中所有音乐的MediaStore ID，只读取_ID列
+     *
+     * @return 查询失败时返回null
+     */
+    @Nullable
+    private Set<Long> queryDeviceMediaIds(ContentResolver contentResolver, Uri uri) {
+        Cursor cursor = contentResolver.query(uri, new String[]{MediaStore.Audio.Media._ID},
+                BASE_SELECTION, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        Set<Long> ids = new HashSet<>(Math.max(16, cursor.getCount() * 2));
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    /**
+     * 游标列索引，只在读取开始时解析一次
+     */
+    private static class ColumnIndexes {
+        final int id, title, artist, album, data, duration, size, displayName,
+                albumId, artistId, dateAdded, dateModified, mimeType, track, year;
+
+        ColumnIndexes(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media._ID);
+            title = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.TITLE);
+            artist = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.ARTIST);
+            album = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.ALBUM);
+            data = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DATA);
+            duration = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DURATION);
+            size = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.SIZE);
+            displayName = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DISPLAY_NAME);
+            albumId = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.ALBUM_ID);
+            artistId = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.ARTIST_ID);
+            dateAdded = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DATE_ADDED);
+            dateModified = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DATE_MODIFIED);
+            mimeType = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.MIME_TYPE);
+            track = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.TRACK);
+            year = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.YEAR);
+        }
+    }
+
+    /**
+     * 从Cursor创建Song对象
+     */
+    private static Song createSongFromCursor(Cursor cursor, ColumnIndexes columns) {
+        try {
+            Song song = new Song();
+
+            // 保存MediaStore ID，用于删除文件
+            song.setMediaStoreId(cursor.getLong(columns.id));
+
+            // 获取并处理标题，将<unknown>替换为unknown
+            String title = cursor.getString(columns.title);
+            song.setTitle("<unknown>".equals(title) ? "unknown" : title);
+
+            // 获取并处理艺术家，将<unknown>替换为unknown
+            String artist = cursor.getString(columns.artist);
+            song.setArtist("<unknown>".equals(artist) ? "unknown" : artist);
+
+            // 获取并处理专辑，将<unknown>替换为unknown
+            String album = cursor.getString(columns.album);
+            song.setAlbum("<unknown>".equals(album) ? "unknown" : album);
+            song.setPath(cursor.getString(columns.data));
+            song.setDuration(cursor.getLong(columns.duration));
+            song.setSize(cursor.getLong(columns.size));
+            song.setDisplayName(cursor.getString(columns.displayName));
+            song.setAlbumId(cursor.getLong(columns.albumId));
+            song.setArtistId(cursor.getLong(columns.artistId));
+            song.setDateAdded(cursor.getLong(columns.dateAdded));
+            song.setDateModified(cursor.getLong(columns.dateModified));
+            song.setMimeType(cursor.getString(columns.mimeType));
+            song.setTrack(cursor.getInt(columns.track));
+            song.setYear(cursor.getInt(columns.year));
+
+            return song;
+        } catch (Exception e) {
+            Log.e(TAG, "创建Song对象时出错", e);
+            return null;
+        }
+    }
+}
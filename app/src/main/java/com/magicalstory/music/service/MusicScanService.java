@@ -1,44 +1,42 @@
 package com.magicalstory.music.service;
 
 import android.app.Service;
-import android.content.ContentResolver;
 import android.content.Intent;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Binder;
 import android.os.IBinder;
-import android.provider.MediaStore;
-import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
-import com.magicalstory.music.model.Album;
-import com.magicalstory.music.model.Artist;
-import com.magicalstory.music.model.Song;
-
-import org.litepal.LitePal;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import com.magicalstory.music.base.BaseFragment;
+import com.magicalstory.music.utils.db.ContentFingerprintIndex;
+import com.magicalstory.music.utils.db.SearchIndex;
+import com.magicalstory.music.utils.db.TransliterationIndex;
+import com.magicalstory.music.utils.query.LibrarySnapshot;
 
 /**
  * 音乐扫描服务
+ * 默认执行增量扫描，只读取上次扫描后MediaStore中变化的歌曲；全量扫描只在用户主动触发时执行
+ * 扫描过程见{@link MusicScanPipeline}，每写入一个批次发送一次进度广播，扫描结束后发送完成广播，
+ * 随后计算内容指纹（{@link ContentFingerprintIndex}）并执行{@link TagEnrichmentPass}补全文件标签
  */
 public class MusicScanService extends Service {
     private static final String TAG = "MusicScanService";
 
     public static final String ACTION_SCAN_COMPLETE = "com.magicalstory.music.SCAN_COMPLETE";
     public static final String EXTRA_SCAN_COUNT = "scan_count";
-
-    // 最小歌曲时长（毫秒），小于此时长的歌曲将被过滤
-    private static final long MIN_SONG_DURATION = 60000; // 60秒
+    // 扫描进度广播，每写入一个批次发送一次
+    public static final String ACTION_SCAN_PROGRESS = "com.magicalstory.music.SCAN_PROGRESS";
+    public static final String EXTRA_ROWS_READ = "rows_read";
+    public static final String EXTRA_ROWS_WRITTEN = "rows_written";
+    public static final String EXTRA_TOTAL_ROWS = "total_rows";
+    public static final String EXTRA_ETA_MS = "eta_ms";
+    // 是否执行全量扫描（默认增量扫描）
+    public static final String EXTRA_FULL_RESCAN = "full_rescan";
 
     private final IBinder binder = new MusicScanBinder();
-    private boolean isScanning = false;
+    private volatile boolean isScanning = false;
 
     public class MusicScanBinder extends Binder {
         public MusicScanService getService() {
@@ -55,32 +53,46 @@ public class MusicScanService extends Service {
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (!isScanning) {
-            startMusicScan();
+            boolean fullRescan = intent != null && intent.getBooleanExtra(EXTRA_FULL_RESCAN, false);
+            startMusicScan(fullRescan);
         }
         return START_NOT_STICKY;
     }
 
     /**
-     * 开始扫描音乐
+     * 开始扫描音乐（增量扫描）
      */
     public void startMusicScan() {
+        startMusicScan(false);
+    }
+
+    /**
+     * 开始扫描音乐
+     *
+     * @param fullRescan true表示忽略水位线重新扫描全部音乐，false表示只扫描上次扫描后变化的音乐
+     */
+    public void startMusicScan(boolean fullRescan) {
         if (isScanning) {
             Log.d(TAG, "扫描已在进行中");
             return;
         }
 
         isScanning = true;
-        Log.d(TAG, "开始扫描音乐文件");
+        Log.d(TAG, "开始扫描音乐文件, 全量扫描: " + fullRescan);
 
         new Thread(() -> {
             int newSongCount = 0;
             try {
-                newSongCount = scanMusicFiles();
+                MusicScanPipeline pipeline = new MusicScanPipeline(this, fullRescan, this::sendProgressBroadcast);
+                newSongCount = pipeline.run();
                 Log.d(TAG, "音乐扫描完成，新增歌曲: " + newSongCount);
             } catch (Exception e) {
                 Log.e(TAG, "扫描音乐文件时出错", e);
                 newSongCount = 0;
             } finally {
+                // 扫描中断时也可能已经写入了部分批次
+                LibrarySnapshot.invalidate();
+
                 // 无论扫描成功还是失败，都发送广播
                 try {
                     Intent broadcastIntent = new Intent(ACTION_SCAN_COMPLETE);
@@ -92,6 +104,8 @@ public class MusicScanService extends Service {
                     Log.e(TAG, "发送广播时出错", e);
                 }
 
+                runPostScanPasses();
+
                 isScanning = false;
                 stopSelf();
             }
@@ -99,170 +113,49 @@ public class MusicScanService extends Service {
     }
 
     /**
-     * 扫描音乐文件
+     * 扫描完成后更新搜索索引、计算内容指纹并补全文件标签，歌曲列表已经可以显示，补全结果写入后再通知刷新
      */
-    private int scanMusicFiles() {
-        Log.d(TAG, "开始扫描音乐文件");
-        ContentResolver contentResolver = getContentResolver();
-        Uri uri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
-
-        String[] projection = {
-                MediaStore.Audio.Media._ID,
-                MediaStore.Audio.Media.TITLE,
-                MediaStore.Audio.Media.ARTIST,
-                MediaStore.Audio.Media.ALBUM,
-                MediaStore.Audio.Media.DATA,
-                MediaStore.Audio.Media.DURATION,
-                MediaStore.Audio.Media.SIZE,
-                MediaStore.Audio.Media.DISPLAY_NAME,
-                MediaStore.Audio.Media.ALBUM_ID,
-                MediaStore.Audio.Media.ARTIST_ID,
-                MediaStore.Audio.Media.DATE_ADDED,
-                MediaStore.Audio.Media.DATE_MODIFIED,
-                MediaStore.Audio.Media.MIME_TYPE,
-                MediaStore.Audio.Media.TRACK,
-                MediaStore.Audio.Media.YEAR
-        };
-
-        String selection = MediaStore.Audio.Media.IS_MUSIC + " = 1 AND " +
-                MediaStore.Audio.Media.DURATION + " > " + MIN_SONG_DURATION; // 大于1分钟的音频文件
-
-        String sortOrder = MediaStore.Audio.Media.TITLE + " ASC";
-
-        List<Song> newSongs = new ArrayList<>();
-        Map<String, Album> albumMap = new HashMap<>();
-        Map<String, Artist> artistMap = new HashMap<>();
-
-        // 清空现有数据
-        Log.d(TAG, "清空现有数据");
-        LitePal.deleteAll(Song.class);
-        LitePal.deleteAll(Album.class);
-        LitePal.deleteAll(Artist.class);
-
-        Cursor cursor = contentResolver.query(uri, projection, selection, null, sortOrder);
-
-        if (cursor != null) {
-            Log.d(TAG, "查询到 " + cursor.getCount() + " 个音乐文件");
-            try {
-                while (cursor.moveToNext()) {
-                    Song song = createSongFromCursor(cursor);
-                    if (song != null && !TextUtils.isEmpty(song.getPath())) {
-                        newSongs.add(song);
-
-                        // 处理专辑信息
-                        processAlbumInfo(song, albumMap);
-
-                        // 处理艺术家信息
-                        processArtistInfo(song, artistMap);
-                    }
-                }
-            } finally {
-                cursor.close();
-            }
-        } else {
-            Log.w(TAG, "查询音乐文件失败，cursor为null");
+    private void runPostScanPasses() {
+        try {
+            // 提前建立索引，避免第一次搜索时才处理整个音乐库
+            TransliterationIndex.backfillPending();
+            SearchIndex.syncPending();
+        } catch (Exception e) {
+            Log.e(TAG, "更新搜索索引时出错", e);
         }
 
-        // 批量保存到数据库
-        Log.d(TAG, "保存数据到数据库");
-        LitePal.saveAll(newSongs);
-        LitePal.saveAll(new ArrayList<>(albumMap.values()));
-        LitePal.saveAll(new ArrayList<>(artistMap.values()));
-
-        Log.d(TAG, "扫描完成: 歌曲 " + newSongs.size() + ", 专辑 " + albumMap.size() + ", 艺术家 " + artistMap.size());
-
-        return newSongs.size();
-    }
-
-    /**
-     * 从Cursor创建Song对象
-     */
-    private Song createSongFromCursor(Cursor cursor) {
         try {
-            Song song = new Song();
-
-            // 保存MediaStore ID，用于删除文件
-            song.setMediaStoreId(cursor.getLong(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media._ID)));
-
-            // 获取并处理标题，将<unknown>替换为unknown
-            String title = cursor.getString(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.TITLE));
-            song.setTitle("<unknown>".equals(title) ? "unknown" : title);
-
-            // 获取并处理艺术家，将<unknown>替换为unknown
-            String artist = cursor.getString(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.ARTIST));
-            song.setArtist("<unknown>".equals(artist) ? "unknown" : artist);
-
-            // 获取并处理专辑，将<unknown>替换为unknown
-            String album = cursor.getString(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.ALBUM));
-            song.setAlbum("<unknown>".equals(album) ? "unknown" : album);
-            song.setPath(cursor.getString(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DATA)));
-            song.setDuration(cursor.getLong(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DURATION)));
-            song.setSize(cursor.getLong(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.SIZE)));
-            song.setDisplayName(cursor.getString(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DISPLAY_NAME)));
-            song.setAlbumId(cursor.getLong(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.ALBUM_ID)));
-            song.setArtistId(cursor.getLong(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.ARTIST_ID)));
-            song.setDateAdded(cursor.getLong(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DATE_ADDED)));
-            song.setDateModified(cursor.getLong(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DATE_MODIFIED)));
-            song.setMimeType(cursor.getString(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.MIME_TYPE)));
-            song.setTrack(cursor.getInt(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.TRACK)));
-            song.setYear(cursor.getInt(cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.YEAR)));
-
-            return song;
+            ContentFingerprintIndex.indexPending();
         } catch (Exception e) {
-            Log.e(TAG, "创建Song对象时出错", e);
-            return null;
+            Log.e(TAG, "计算内容指纹时出错", e);
         }
-    }
-
-    /**
-     * 处理专辑信息
-     */
-    private void processAlbumInfo(Song song, Map<String, Album> albumMap) {
-        String albumKey = song.getAlbum() + "_" + song.getArtist();
-        Album album = albumMap.get(albumKey);
 
-        if (album == null) {
-            album = new Album();
-            album.setAlbumName(song.getAlbum());
-            album.setArtist(song.getArtist());
-            album.setAlbumId(song.getAlbumId());
-            album.setSongCount(1);
-            album.setYear(song.getYear());
-            // 设置专辑的添加时间为当前歌曲的添加时间
-            album.setDateAdded(song.getDateAdded());
-            albumMap.put(albumKey, album);
-        } else {
-            album.setSongCount(album.getSongCount() + 1);
-            // 如果当前歌曲的添加时间更晚，更新专辑的添加时间
-            if (song.getDateAdded() > album.getDateAdded()) {
-                album.setDateAdded(song.getDateAdded());
+        if (!TagEnrichmentPass.isEnabled()) {
+            return;
+        }
+        try {
+            int enrichedCount = new TagEnrichmentPass().run();
+            if (enrichedCount > 0) {
+                LibrarySnapshot.invalidate();
+                LocalBroadcastManager.getInstance(this)
+                        .sendBroadcast(new Intent(BaseFragment.ACTION_REFRESH_MUSIC_LIST));
             }
+        } catch (Exception e) {
+            Log.e(TAG, "补全歌曲标签时出错", e);
         }
     }
 
     /**
-     * 处理艺术家信息
+     * 发送扫描进度广播
      */
-    private void processArtistInfo(Song song, Map<String, Artist> artistMap) {
-        String artistName = song.getArtist();
-        Artist artist = artistMap.get(artistName);
-
-        if (artist == null) {
-            artist = new Artist();
-            artist.setArtistName(artistName);
-            artist.setArtistId(song.getArtistId());
-            artist.setSongCount(1);
-            artist.setAlbumCount(1);
-            // 设置艺术家的添加时间为当前歌曲的添加时间
-            artist.setDateAdded(song.getDateAdded());
-            artistMap.put(artistName, artist);
-        } else {
-            artist.setSongCount(artist.getSongCount() + 1);
-            // 如果当前歌曲的添加时间更晚，更新艺术家的添加时间
-            if (song.getDateAdded() > artist.getDateAdded()) {
-                artist.setDateAdded(song.getDateAdded());
-            }
-        }
+    private void sendProgressBroadcast(int rowsRead, int rowsWritten, int totalRows, long etaMs) {
+        Intent progressIntent = new Intent(ACTION_SCAN_PROGRESS);
+        progressIntent.putExtra(EXTRA_ROWS_READ, rowsRead);
+        progressIntent.putExtra(EXTRA_ROWS_WRITTEN, rowsWritten);
+        progressIntent.putExtra(EXTRA_TOTAL_ROWS, totalRows);
+        progressIntent.putExtra(EXTRA_ETA_MS, etaMs);
+        LocalBroadcastManager.getInstance(this).sendBroadcast(progressIntent);
+        Log.d(TAG, "扫描进度: 读取 " + rowsRead + ", 写入 " + rowsWritten + "/" + totalRows + ", 剩余 " + etaMs + "ms");
     }
 
     /**
@@ -15,6 +15,7 @@ import androidx.media3.common.PlaybackException;
 import androidx.media3.common.Player;
 import androidx.media3.common.util.UnstableApi;
 import androidx.media3.exoplayer.ExoPlayer;
+import androidx.media3.exoplayer.source.ShuffleOrder;
 import androidx.media3.session.MediaSession;
 import androidx.media3.session.MediaSessionService;
 import androidx.media3.session.SessionCommand;
@@ -106,6 +107,8 @@ public class MusicService extends MediaSessionService implements Player.Listener
                 .setAudioAttributes(audioAttributes, true)
                 .setHandleAudioBecomingNoisy(true)
                 .build();
+        // 随机播放顺序由MediaControllerHelper在完整播放列表上生成，窗口已按该顺序加载，播放器自身不再打乱窗口
+        player.setShuffleOrder(new ShuffleOrder.UnshuffledShuffleOrder(0));
 
         Log.d(TAG, "ExoPlayer创建完成");
 
@@ -171,6 +174,11 @@ public class MusicService extends MediaSessionService implements Player.Listener
     public void onDestroy() {
         Log.d(TAG, "MusicService开始销毁");
 
+        // 写入尚未写入的播放记录
+        if (playbackStateManager != null) {
+            playbackStateManager.flushPlayHistory();
+        }
+
         // 释放资源
         if (mediaSession != null) {
             Log.d(TAG, "释放MediaSession");
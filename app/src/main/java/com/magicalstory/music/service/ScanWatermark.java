@@ -0,0 +1,155 @@
+package com.magicalstory.music.service;
+
+import android.content.Context;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.tencent.mmkv.MMKV;
+
+/**
+ * 扫描水位线
+ * 记录上一次扫描已经处理到的MediaStore位置，用于增量扫描
+ * Android 11+ 使用MediaStore generation，低版本使用DATE_MODIFIED/_ID最大值
+ */
+public class ScanWatermark {
+    private static final String TAG = "ScanWatermark";
+
+    private static final String KEY_HAS_SCANNED = "scan_has_scanned";
+    private static final String KEY_MEDIA_VERSION = "scan_media_version";
+    private static final String KEY_GENERATION = "scan_generation";
+    private static final String KEY_MAX_DATE_MODIFIED = "scan_max_date_modified";
+    private static final String KEY_MAX_MEDIA_ID = "scan_max_media_id";
+
+    public boolean hasScanned;       // 是否完成过至少一次扫描
+    public String mediaVersion;      // MediaStore版本，版本变化时generation会重置
+    public long generation;          // 上次扫描时的MediaStore generation（API 30+）
+    public long maxDateModified;     // 上次扫描到的最大DATE_MODIFIED（秒）
+    public long maxMediaId;          // 上次扫描到的最大_ID
+
+    /**
+     * 水位线存储
+     */
+    public interface Store {
+        ScanWatermark load();
+
+        void save(ScanWatermark watermark);
+
+        void reset();
+    }
+
+    private static volatile Store store = new MmkvStore();
+
+    /**
+     * 替换水位线存储，用于在没有MMKV的JVM测试中运行扫描
+     */
+    @VisibleForTesting
+    public static void setStore(Store newStore) {
+        store = newStore;
+    }
+
+    /**
+     * 读取保存的水位线
+     */
+    public static ScanWatermark load() {
+        return store.load();
+    }
+
+    /**
+     * 保存水位线，只应在扫描成功写入数据库之后调用
+     */
+    public void save() {
+        store.save(this);
+    }
+
+    /**
+     * 清除水位线，下次扫描将执行全量扫描
+     */
+    public static void reset() {
+        store.reset();
+    }
+
+    /**
+     * 默认使用MMKV保存水位线
+     */
+    private static class MmkvStore implements Store {
+        @Override
+        public ScanWatermark load() {
+            MMKV mmkv = MMKV.defaultMMKV();
+            ScanWatermark watermark = new ScanWatermark();
+            watermark.hasScanned = mmkv.decodeBool(KEY_HAS_SCANNED, false);
+            watermark.mediaVersion = mmkv.decodeString(KEY_MEDIA_VERSION, "");
+            watermark.generation = mmkv.decodeLong(KEY_GENERATION, 0);
+            watermark.maxDateModified = mmkv.decodeLong(KEY_MAX_DATE_MODIFIED, 0);
+            watermark.maxMediaId = mmkv.decodeLong(KEY_MAX_MEDIA_ID, 0);
+            return watermark;
+        }
+
+        @Override
+        public void save(ScanWatermark watermark) {
+            MMKV mmkv = MMKV.defaultMMKV();
+            mmkv.encode(KEY_HAS_SCANNED, watermark.hasScanned);
+            mmkv.encode(KEY_MEDIA_VERSION, watermark.mediaVersion == null ? "" : watermark.mediaVersion);
+            mmkv.encode(KEY_GENERATION, watermark.generation);
+            mmkv.encode(KEY_MAX_DATE_MODIFIED, watermark.maxDateModified);
+            mmkv.encode(KEY_MAX_MEDIA_ID, watermark.maxMediaId);
+        }
+
+        @Override
+        public void reset() {
+            MMKV mmkv = MMKV.defaultMMKV();
+            mmkv.remove(KEY_HAS_SCANNED);
+            mmkv.remove(KEY_MEDIA_VERSION);
+            mmkv.remove(KEY_GENERATION);
+            mmkv.remove(KEY_MAX_DATE_MODIFIED);
+            mmkv.remove(KEY_MAX_MEDIA_ID);
+        }
+    }
+
+    /**
+     * 当前系统是否支持generation水位线
+     */
+    public static boolean supportsGeneration() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+    }
+
+    /**
+     * 获取当前MediaStore版本
+     */
+    public static String currentMediaVersion(Context context) {
+        try {
+            return MediaStore.getVersion(context);
+        } catch (Exception e) {
+            Log.e(TAG, "获取MediaStore版本失败", e);
+            return "";
+        }
+    }
+
+    /**
+     * 获取当前外部存储卷的generation（API 30+）
+     */
+    public static long currentGeneration(Context context) {
+        if (!supportsGeneration()) {
+            return 0;
+        }
+        try {
+            return MediaStore.getGeneration(context, MediaStore.VOLUME_EXTERNAL);
+        } catch (Exception e) {
+            Log.e(TAG, "获取MediaStore generation失败", e);
+            return 0;
+        }
+    }
+
+    /**
+     * 判断水位线是否可用于增量扫描
+     * MediaStore版本变化（例如数据库重建）时generation不再可比，需要全量扫描
+     */
+    public boolean isUsable(Context context) {
+        if (!hasScanned) {
+            return false;
+        }
+        return mediaVersion != null && mediaVersion.equals(currentMediaVersion(context));
+    }
+}
@@ -0,0 +1,247 @@
+package com.magicalstory.music.service;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.db.LibraryBulkWriter;
+import com.tencent.mmkv.MMKV;
+
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.TagField;
+import org.jaudiotagger.tag.TagTextField;
+import org.jaudiotagger.tag.id3.AbstractID3v2Frame;
+import org.jaudiotagger.tag.id3.framebody.FrameBodyTXXX;
+import org.litepal.LitePal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 标签补全
+ * MediaStore不提供流派、内嵌歌词/封面和ReplayGain，这些信息需要用jaudiotagger读取文件标签。
+ * 扫描完成后在有界的多核线程池中并行读取，结果写回Song表，专辑流派和发行年份也随之补全，
+ * 之后歌词、封面和流派相关功能直接读数据库列，不必在运行时打开音频文件。
+ * <p>
+ * 每首歌读取后记录文件指纹（大小_修改时间），指纹不变的文件不会被重复读取。
+ */
+public class TagEnrichmentPass {
+    private static final String TAG = "TagEnrichmentPass";
+
+    // 是否在扫描后补全标签
+    private static final String KEY_ENABLED = "tag_enrichment_enabled";
+
+    // 每页从数据库读取的待补全歌曲数量，同时也是内存中最多保留的结果数量
+    private static final int PAGE_SIZE = 256;
+    // 每个任务读取的文件数量
+    private static final int TASK_SIZE = 16;
+    // 读取线程数上限，标签读取同时受CPU和存储I/O限制
+    private static final int MAX_THREADS = 4;
+
+    private static final String REPLAYGAIN_TRACK_GAIN = "REPLAYGAIN_TRACK_GAIN";
+    private static final String REPLAYGAIN_ALBUM_GAIN = "REPLAYGAIN_ALBUM_GAIN";
+
+    // 补全和扫描可能同时被触发，同一时间只执行一次补全
+    private static final Object RUN_LOCK = new Object();
+
+    /**
+     * 是否启用扫描后的标签补全
+     */
+    public static boolean isEnabled() {
+        return MMKV.defaultMMKV().decodeBool(KEY_ENABLED, true);
+    }
+
+    public static void setEnabled(boolean enabled) {
+        MMKV.defaultMMKV().encode(KEY_ENABLED, enabled);
+    }
+
+    /**
+     * 文件指纹，与数据库中的size和datemodified列对应
+     */
+    public static String fingerprint(long size, long dateModified) {
+        return size + "_" + dateModified;
+    }
+
+    /**
+     * 读取所有指纹发生变化（或从未读取过）的歌曲标签并写回数据库
+     *
+     * @return 补全的歌曲数量
+     */
+    public int run() throws Exception {
+        synchronized (RUN_LOCK) {
+            return runLocked();
+        }
+    }
+
+    private int runLocked() throws Exception {
+        int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        long startTime = SystemClock.elapsedRealtime();
+        int enrichedCount = 0;
+        // 流派可能变化的专辑：专辑key -> {专辑名, 艺术家}
+        Map<String, String[]> touchedAlbums = new HashMap<>();
+
+        try (LibraryBulkWriter writer = new LibraryBulkWriter(PAGE_SIZE)) {
+            long lastId = 0;
+            while (true) {
+                List<Song> page = loadPage(lastId);
+                if (page.isEmpty()) {
+                    break;
+                }
+                lastId = page.get(page.size() - 1).getId();
+
+                List<Callable<List<Song>>> tasks = new ArrayList<>();
+                for (int start = 0; start < page.size(); start += TASK_SIZE) {
+                    List<Song> chunk = page.subList(start, Math.min(page.size(), start + TASK_SIZE));
+                    tasks.add(() -> {
+                        for (Song song : chunk) {
+                            readTags(song);
+                        }
+                        return chunk;
+                    });
+                }
+
+                // 写入只在当前线程进行，一页对应一个事务
+                for (Future<List<Song>> future : workers.invokeAll(tasks)) {
+                    for (Song song : future.get()) {
+                        writer.updateSongTags(song);
+                        if (!TextUtils.isEmpty(song.getGenre()) && song.getAlbum() != null && song.getArtist() != null) {
+                            touchedAlbums.put(song.getAlbum() + "_" + song.getArtist(),
+                                    new String[]{song.getAlbum(), song.getArtist()});
+                        }
+                        enrichedCount++;
+                    }
+                }
+                writer.flush();
+            }
+
+            for (String[] album : touchedAlbums.values()) {
+                writer.fillAlbumGenre(album[0], album[1]);
+            }
+            writer.flush();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        } finally {
+            workers.shutdownNow();
+        }
+
+        if (enrichedCount > 0) {
+            Log.d(TAG, "标签补全完成: " + enrichedCount + " 首歌曲, " + touchedAlbums.size() + " 个专辑, 线程数 "
+                    + threads + ", 耗时 " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        }
+        return enrichedCount;
+    }
+
+    /**
+     * 按ID顺序读取一页需要补全的歌曲，只读取补全所需的列
+     */
+    private List<Song> loadPage(long afterId) {
+        List<Song> page = new ArrayList<>(PAGE_SIZE);
+        Cursor cursor = LitePal.findBySQL("select id, path, size, datemodified, album, artist, genre from song "
+                        + "where id > ? and (tagfingerprint is null or tagfingerprint != size || '_' || datemodified) "
+                        + "order by id limit " + PAGE_SIZE,
+                String.valueOf(afterId));
+        if (cursor == null) {
+            return page;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                Song song = new Song();
+                song.setId(cursor.getLong(0));
+                song.setPath(cursor.getString(1));
+                song.setSize(cursor.getLong(2));
+                song.setDateModified(cursor.getLong(3));
+                song.setAlbum(cursor.getString(4));
+                song.setArtist(cursor.getString(5));
+                song.setGenre(cursor.getString(6));
+                page.add(song);
+            }
+        } finally {
+            cursor.close();
+        }
+        return page;
+    }
+
+    /**
+     * 读取单个文件的标签，在工作线程中执行
+     * 读取失败（文件损坏、格式不支持等）时也记录指纹，避免每次扫描都重试
+     */
+    private static void readTags(Song song) {
+        song.setTagFingerprint(fingerprint(song.getSize(), song.getDateModified()));
+        if (TextUtils.isEmpty(song.getPath())) {
+            return;
+        }
+        try {
+            AudioFile audioFile = AudioFileIO.read(new File(song.getPath()));
+            Tag tag = audioFile.getTag();
+            if (tag == null) {
+                return;
+            }
+
+            String genre = tag.getFirst(FieldKey.GENRE);
+            if (!TextUtils.isEmpty(genre)) {
+                song.setGenre(genre.trim());
+            }
+            song.setHasEmbeddedLyrics(!TextUtils.isEmpty(tag.getFirst(FieldKey.LYRICS)));
+            song.setHasEmbeddedArt(tag.getFirstArtwork() != null);
+            song.setReplayGainTrack(readReplayGain(tag, REPLAYGAIN_TRACK_GAIN));
+            song.setReplayGainAlbum(readReplayGain(tag, REPLAYGAIN_ALBUM_GAIN));
+        } catch (Exception e) {
+            Log.w(TAG, "读取标签失败: " + song.getPath() + ", " + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取ReplayGain增益，没有该字段时返回0
+     * FLAC/Ogg使用同名的Vorbis注释，MP3使用描述为该名称的TXXX帧，M4A使用iTunes自定义字段
+     */
+    private static float readReplayGain(Tag tag, String name) {
+        Iterator<TagField> fields = tag.getFields();
+        while (fields.hasNext()) {
+            TagField field = fields.next();
+            String value = null;
+            if (field instanceof AbstractID3v2Frame
+                    && ((AbstractID3v2Frame) field).getBody() instanceof FrameBodyTXXX) {
+                FrameBodyTXXX body = (FrameBodyTXXX) ((AbstractID3v2Frame) field).getBody();
+                if (name.equalsIgnoreCase(body.getDescription())) {
+                    value = body.getFirstTextValue();
+                }
+            } else if (field.getId() != null && field.getId().toUpperCase(Locale.ROOT).endsWith(name)
+                    && field instanceof TagTextField) {
+                value = ((TagTextField) field).getContent();
+            }
+            if (value != null) {
+                return parseGain(value);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 解析"-6.54 dB"格式的增益值
+     */
+    private static float parseGain(String value) {
+        String number = value.trim().toUpperCase(Locale.ROOT).replace("DB", "").trim();
+        try {
+            return Float.parseFloat(number);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
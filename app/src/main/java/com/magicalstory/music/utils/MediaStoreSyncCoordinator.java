@@ -0,0 +1,222 @@
+package com.magicalstory.music.utils;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.Intent;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+
+import com.magicalstory.music.base.BaseFragment;
+import com.magicalstory.music.model.ScanCheckpoint;
+import com.magicalstory.music.service.MusicScanPipeline;
+import com.magicalstory.music.service.TagEnrichmentPass;
+import com.magicalstory.music.utils.db.ContentFingerprintIndex;
+import com.magicalstory.music.utils.db.LibrarySchema;
+import com.magicalstory.music.utils.db.SearchIndex;
+import com.magicalstory.music.utils.db.TransliterationIndex;
+import com.magicalstory.music.utils.query.LibrarySnapshot;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * MediaStore实时同步协调器
+ * 监听MediaStore音频表的变化通知，把短时间内的连续通知合并（防抖）后，
+ * 只同步发生变化的歌曲ID，无需重新读取整个设备游标和整张Song表
+ * <p>
+ * 通知中无法解析出具体ID时（例如整表变化），退化为一次基于水位线的增量扫描
+ */
+public class MediaStoreSyncCoordinator {
+    private static final String TAG = "MediaStoreSyncCoordinator";
+
+    // 防抖间隔：最后一次变化通知后等待的时间
+    private static final long DEBOUNCE_DELAY_MS = 500;
+    // 持续收到通知时的最长等待时间，避免下载大量文件时迟迟不同步
+    private static final long MAX_PENDING_DELAY_MS = 3000;
+
+    private static volatile MediaStoreSyncCoordinator instance;
+
+    private final Context context;
+    private final HandlerThread workerThread;
+    private final Handler workerHandler;
+    private final ContentObserver observer;
+
+    // 以下状态只在workerThread中访问
+    private final Set<Long> pendingMediaIds = new HashSet<>();
+    private boolean pendingFullDelta = false;
+    private long firstPendingTime = 0;
+    private boolean registered = false;
+
+    private final Runnable flushRunnable = this::flushPendingChanges;
+
+    private MediaStoreSyncCoordinator(Context context) {
+        this.context = context.getApplicationContext();
+        this.workerThread = new HandlerThread("MediaStoreSync");
+        this.workerThread.start();
+        this.workerHandler = new Handler(workerThread.getLooper());
+        this.observer = new ContentObserver(workerHandler) {
+            @Override
+            public void onChange(boolean selfChange, @Nullable Uri uri) {
+                onMediaStoreChanged(uri);
+            }
+
+            @Override
+            public void onChange(boolean selfChange, @NonNull Collection<Uri> uris, int flags) {
+                for (Uri uri : uris) {
+                    onMediaStoreChanged(uri);
+                }
+            }
+        };
+    }
+
+    public static MediaStoreSyncCoordinator getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MediaStoreSyncCoordinator.class) {
+                if (instance == null) {
+                    instance = new MediaStoreSyncCoordinator(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 开始监听MediaStore变化
+     */
+    public void start() {
+        workerHandler.post(() -> {
+            if (registered) {
+                return;
+            }
+            // 同步依赖迁移创建的表和索引
+            LibrarySchema.awaitMigrated();
+            context.getContentResolver().registerContentObserver(
+                    MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, true, observer);
+            registered = true;
+            Log.d(TAG, "开始监听MediaStore变化");
+
+            // 上一次扫描被中断（例如进程被杀死），从最后提交的批次继续
+            if (ScanCheckpoint.load() != null) {
+                Log.d(TAG, "发现未完成的扫描，继续扫描");
+                pendingFullDelta = true;
+                workerHandler.post(flushRunnable);
+            }
+
+            // 升级前写入的行还没有拼音转写，补全后更新搜索索引
+            try {
+                if (TransliterationIndex.backfillPending() > 0) {
+                    SearchIndex.syncPending();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "补全拼音转写时出错", e);
+            }
+        });
+    }
+
+    /**
+     * 停止监听MediaStore变化，未同步的变化会被丢弃（下一次增量扫描会补上）
+     */
+    public void stop() {
+        workerHandler.post(() -> {
+            if (!registered) {
+                return;
+            }
+            context.getContentResolver().unregisterContentObserver(observer);
+            registered = false;
+            workerHandler.removeCallbacks(flushRunnable);
+            pendingMediaIds.clear();
+            pendingFullDelta = false;
+            firstPendingTime = 0;
+            Log.d(TAG, "停止监听MediaStore变化");
+        });
+    }
+
+    /**
+     * 记录一次变化通知并重新安排同步时间
+     */
+    private void onMediaStoreChanged(@Nullable Uri uri) {
+        long mediaId = parseMediaId(uri);
+        if (mediaId > 0) {
+            pendingMediaIds.add(mediaId);
+        } else {
+            pendingFullDelta = true;
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        if (firstPendingTime == 0) {
+            firstPendingTime = now;
+        }
+
+        workerHandler.removeCallbacks(flushRunnable);
+        long delay = Math.min(DEBOUNCE_DELAY_MS, Math.max(0, firstPendingTime + MAX_PENDING_DELAY_MS - now));
+        workerHandler.postDelayed(flushRunnable, delay);
+    }
+
+    /**
+     * 同步合并后的变化
+     */
+    private void flushPendingChanges() {
+        Set<Long> mediaIds = new HashSet<>(pendingMediaIds);
+        boolean fullDelta = pendingFullDelta;
+        pendingMediaIds.clear();
+        pendingFullDelta = false;
+        firstPendingTime = 0;
+
+        try {
+            MusicScanPipeline pipeline = new MusicScanPipeline(context, false, null);
+            int changedCount;
+            if (fullDelta) {
+                // 无法确定具体变化的歌曲，使用水位线增量扫描
+                changedCount = pipeline.run();
+            } else {
+                changedCount = pipeline.runDelta(mediaIds);
+            }
+
+            // 新增或修改的文件指纹发生变化，只会处理这些文件
+            if (changedCount > 0 || fullDelta) {
+                TransliterationIndex.backfillPending();
+                SearchIndex.syncPending();
+                ContentFingerprintIndex.indexPending();
+                if (TagEnrichmentPass.isEnabled()) {
+                    changedCount += new TagEnrichmentPass().run();
+                }
+            }
+
+            if (changedCount > 0 || fullDelta) {
+                LibrarySnapshot.invalidate();
+                LibrarySnapshot.get();
+                LocalBroadcastManager.getInstance(context)
+                        .sendBroadcast(new Intent(BaseFragment.ACTION_REFRESH_MUSIC_LIST));
+            }
+        } catch (SecurityException e) {
+            // 尚未获得存储权限
+            Log.w(TAG, "没有读取音乐的权限，跳过同步");
+        } catch (Exception e) {
+            Log.e(TAG, "同步MediaStore变化时出错", e);
+        }
+    }
+
+    /**
+     * 从变化通知的Uri中解析MediaStore ID，无法解析时返回-1
+     */
+    private static long parseMediaId(@Nullable Uri uri) {
+        if (uri == null) {
+            return -1;
+        }
+        try {
+            return ContentUris.parseId(uri);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
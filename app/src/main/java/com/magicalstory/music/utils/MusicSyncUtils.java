@@ -8,17 +8,21 @@ import android.provider.MediaStore;
 import android.text.TextUtils;
 import android.util.Log;
 
-import com.magicalstory.music.model.Album;
-import com.magicalstory.music.model.Artist;
 import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.db.ContentFingerprintIndex;
+import com.magicalstory.music.utils.db.LibraryAggregates;
+import com.magicalstory.music.utils.db.LibraryBulkWriter;
+import com.magicalstory.music.utils.file.FilePresenceCache;
 
 import org.litepal.LitePal;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 音乐同步工具类
@@ -37,6 +41,7 @@ public class MusicSyncUtils {
         public int addedSongs = 0;      // 新增歌曲数量
         public int deletedSongs = 0;    // 删除歌曲数量
         public int updatedSongs = 0;    // 更新歌曲数量
+        public int movedSongs = 0;      // 移动/重命名的歌曲数量
         public int addedAlbums = 0;     // 新增专辑数量
         public int deletedAlbums = 0;   // 删除专辑数量
         public int addedArtists = 0;    // 新增艺术家数量
@@ -46,8 +51,8 @@ public class MusicSyncUtils {
         
         @Override
         public String toString() {
-            return String.format("同步完成 - 歌曲: +%d/-%d/更新%d, 专辑: +%d/-%d/更新%d, 艺术家: +%d/-%d/更新%d",
-                    addedSongs, deletedSongs, updatedSongs,
+            return String.format("同步完成 - 歌曲: +%d/-%d/更新%d/移动%d, 专辑: +%d/-%d/更新%d, 艺术家: +%d/-%d/更新%d",
+                    addedSongs, deletedSongs, updatedSongs, movedSongs,
                     addedAlbums, deletedAlbums, updatedAlbums,
                     addedArtists, deletedArtists, updatedArtists);
         }
@@ -91,6 +96,8 @@ public class MusicSyncUtils {
             // 4. 处理新增和更新的歌曲
             List<Song> songsToAdd = new ArrayList<>();
             List<Song> songsToUpdate = new ArrayList<>();
+            // 记录受影响的专辑和艺术家，只对它们重新统计
+            LibraryAggregates aggregates = new LibraryAggregates();
             
             for (Song deviceSong : deviceSongs) {
                 Song dbSong = dbSongMap.get(deviceSong.getPath());
@@ -98,13 +105,16 @@ public class MusicSyncUtils {
                 if (dbSong == null) {
                     // 新增歌曲
                     songsToAdd.add(deviceSong);
+                    aggregates.touch(deviceSong);
                     result.addedSongs++;
                     Log.d(TAG, "新增歌曲: " + deviceSong.getTitle() + " - " + deviceSong.getArtist());
                 } else {
                     // 检查是否需要更新（根据修改时间）
                     if (deviceSong.getDateModified() > dbSong.getDateModified()) {
-                        // 更新歌曲信息
+                        // 更新歌曲信息，旧的专辑/艺术家也需要重新统计
+                        aggregates.touch(dbSong);
                         updateSongFromDevice(dbSong, deviceSong);
+                        aggregates.touch(dbSong);
                         songsToUpdate.add(dbSong);
                         result.updatedSongs++;
                         Log.d(TAG, "更新歌曲: " + deviceSong.getTitle() + " - " + deviceSong.getArtist());
@@ -117,38 +127,49 @@ public class MusicSyncUtils {
             for (Song dbSong : dbSongs) {
                 if (!deviceSongMap.containsKey(dbSong.getPath())) {
                     songsToDelete.add(dbSong);
+                    aggregates.touch(dbSong);
                     result.deletedSongs++;
                     Log.d(TAG, "删除歌曲: " + dbSong.getTitle() + " - " + dbSong.getArtist());
                 }
             }
             
-            // 6. 保存新增歌曲
-            if (!songsToAdd.isEmpty()) {
-                LitePal.saveAll(songsToAdd);
-                Log.d(TAG, "保存了 " + songsToAdd.size() + " 首新歌曲");
+            // 5.1 识别移动/重命名的文件，更新原有记录以保留收藏、播放记录和歌单
+            if (!songsToAdd.isEmpty() && !songsToDelete.isEmpty()) {
+                int movedCount = detectMovedSongs(songsToAdd, songsToDelete, songsToUpdate);
+                result.movedSongs = movedCount;
+                result.addedSongs -= movedCount;
+                result.deletedSongs -= movedCount;
             }
             
-            // 7. 更新修改的歌曲
-            if (!songsToUpdate.isEmpty()) {
+            try (LibraryBulkWriter writer = new LibraryBulkWriter()) {
+                // 6. 保存新增歌曲
+                for (Song song : songsToAdd) {
+                    writer.insertSong(song);
+                }
+
+                // 7. 更新修改的歌曲
                 for (Song song : songsToUpdate) {
-                    song.save();
+                    writer.updateSong(song.getId(), song);
                 }
-                Log.d(TAG, "更新了 " + songsToUpdate.size() + " 首歌曲");
-            }
-            
-            // 8. 删除不存在的歌曲
-            if (!songsToDelete.isEmpty()) {
+
+                // 8. 删除不存在的歌曲
                 for (Song song : songsToDelete) {
-                    song.delete();
+                    writer.deleteSong(song.getId());
                 }
-                Log.d(TAG, "删除了 " + songsToDelete.size() + " 首歌曲");
+                writer.flush();
+                Log.d(TAG, "保存了 " + songsToAdd.size() + " 首新歌曲, 更新了 " + songsToUpdate.size()
+                        + " 首歌曲, 删除了 " + songsToDelete.size() + " 首歌曲");
+
+                // 9. 只重新统计受影响的专辑和艺术家
+                LibraryAggregates.Result aggregateResult = aggregates.apply(writer);
+                result.addedAlbums = aggregateResult.addedAlbums;
+                result.updatedAlbums = aggregateResult.updatedAlbums;
+                result.deletedAlbums = aggregateResult.deletedAlbums;
+                result.addedArtists = aggregateResult.addedArtists;
+                result.updatedArtists = aggregateResult.updatedArtists;
+                result.deletedArtists = aggregateResult.deletedArtists;
+                writer.flush();
             }
-            
-            // 9. 同步专辑信息
-            syncAlbums(result);
-            
-            // 10. 同步艺术家信息
-            syncArtists(result);
 
             listener.onSyncComplete(result);
 
@@ -198,11 +219,7 @@ public class MusicSyncUtils {
                 while (cursor.moveToNext()) {
                     Song song = createSongFromCursor(cursor);
                     if (song != null && !TextUtils.isEmpty(song.getPath())) {
-                        // 验证文件是否存在
-                        File file = new File(song.getPath());
-                        if (file.exists()) {
-                            songs.add(song);
-                        }
+                        songs.add(song);
                     }
                 }
             } finally {
@@ -210,7 +227,8 @@ public class MusicSyncUtils {
             }
         }
         
-        return songs;
+        // 批量并行验证文件是否存在
+        return FilePresenceCache.getInstance().filterExisting(songs);
     }
     
     /**
@@ -254,6 +272,60 @@ public class MusicSyncUtils {
         }
     }
     
+    /**
+     * 识别移动/重命名的文件
+     * 新出现的文件与消失的文件内容指纹相同时，认为是同一首歌换了位置：
+     * 从新增和删除列表中移除，改为更新原有记录的路径和信息
+     *
+     * @return 识别出的移动数量
+     */
+    private static int detectMovedSongs(List<Song> songsToAdd, List<Song> songsToDelete,
+                                        List<Song> songsToUpdate) throws InterruptedException {
+        Map<String, List<Song>> deletedByContentKey = new HashMap<>();
+        for (Song dbSong : songsToDelete) {
+            if (!TextUtils.isEmpty(dbSong.getContentKey())) {
+                List<Song> candidates = deletedByContentKey.get(dbSong.getContentKey());
+                if (candidates == null) {
+                    candidates = new ArrayList<>();
+                    deletedByContentKey.put(dbSong.getContentKey(), candidates);
+                }
+                candidates.add(dbSong);
+            }
+        }
+        if (deletedByContentKey.isEmpty()) {
+            return 0;
+        }
+
+        // 只需要为新增的文件计算指纹，结果随插入一起保存
+        ContentFingerprintIndex.computeAll(songsToAdd);
+
+        Set<Long> movedIds = new HashSet<>();
+        Iterator<Song> addIterator = songsToAdd.iterator();
+        while (addIterator.hasNext()) {
+            Song deviceSong = addIterator.next();
+            List<Song> candidates = deviceSong.getContentKey() == null
+                    ? null : deletedByContentKey.get(deviceSong.getContentKey());
+            if (candidates == null || candidates.isEmpty()) {
+                continue;
+            }
+            Song dbSong = candidates.remove(0);
+            Log.d(TAG, "移动歌曲: " + dbSong.getPath() + " -> " + deviceSong.getPath());
+            updateSongFromDevice(dbSong, deviceSong);
+            dbSong.setPath(deviceSong.getPath());
+            songsToUpdate.add(dbSong);
+            movedIds.add(dbSong.getId());
+            addIterator.remove();
+        }
+
+        Iterator<Song> deleteIterator = songsToDelete.iterator();
+        while (deleteIterator.hasNext()) {
+            if (movedIds.contains(deleteIterator.next().getId())) {
+                deleteIterator.remove();
+            }
+        }
+        return movedIds.size();
+    }
+
     /**
      * 从设备歌曲更新数据库歌曲信息
      */
@@ -273,190 +345,4 @@ public class MusicSyncUtils {
         dbSong.setYear(deviceSong.getYear());
         dbSong.setMediaStoreId(deviceSong.getMediaStoreId());
     }
-    
-    /**
-     * 同步专辑信息
-     */
-    private static void syncAlbums(SyncResult result) {
-        Log.d(TAG, "开始同步专辑信息");
-        
-        // 获取所有歌曲
-        List<Song> allSongs = LitePal.findAll(Song.class);
-        
-        // 按专辑分组统计
-        Map<String, List<Song>> albumGroups = new HashMap<>();
-        for (Song song : allSongs) {
-            String albumKey = song.getAlbum() + "_" + song.getArtist();
-            if (!albumGroups.containsKey(albumKey)) {
-                albumGroups.put(albumKey, new ArrayList<>());
-            }
-            albumGroups.get(albumKey).add(song);
-        }
-        
-        // 获取现有专辑
-        List<Album> existingAlbums = LitePal.findAll(Album.class);
-        Map<String, Album> existingAlbumMap = new HashMap<>();
-        for (Album album : existingAlbums) {
-            String key = album.getAlbumName() + "_" + album.getArtist();
-            existingAlbumMap.put(key, album);
-        }
-        
-        // 处理新增和更新的专辑
-        for (Map.Entry<String, List<Song>> entry : albumGroups.entrySet()) {
-            String albumKey = entry.getKey();
-            List<Song> songs = entry.getValue();
-            
-            if (songs.isEmpty()) continue;
-            
-            Song firstSong = songs.get(0);
-            Album existingAlbum = existingAlbumMap.get(albumKey);
-            
-            if (existingAlbum == null) {
-                // 新增专辑
-                Album newAlbum = new Album();
-                newAlbum.setAlbumName(firstSong.getAlbum());
-                newAlbum.setArtist(firstSong.getArtist());
-                newAlbum.setAlbumId(firstSong.getAlbumId());
-                newAlbum.setSongCount(songs.size());
-                newAlbum.setYear(firstSong.getYear());
-                // 设置专辑的添加时间为该专辑中最新歌曲的添加时间
-                long latestDateAdded = 0;
-                for (Song song : songs) {
-                    if (song.getDateAdded() > latestDateAdded) {
-                        latestDateAdded = song.getDateAdded();
-                    }
-                }
-                newAlbum.setDateAdded(latestDateAdded);
-                newAlbum.save();
-                result.addedAlbums++;
-                Log.d(TAG, "新增专辑: " + firstSong.getAlbum() + " - " + firstSong.getArtist());
-            } else {
-                // 检查是否需要更新
-                boolean needUpdate = false;
-                
-                if (existingAlbum.getSongCount() != songs.size()) {
-                    existingAlbum.setSongCount(songs.size());
-                    needUpdate = true;
-                }
-                
-                if (existingAlbum.getYear() != firstSong.getYear()) {
-                    existingAlbum.setYear(firstSong.getYear());
-                    needUpdate = true;
-                }
-                
-                if (needUpdate) {
-                    existingAlbum.save();
-                    result.updatedAlbums++;
-                    Log.d(TAG, "更新专辑: " + firstSong.getAlbum() + " - " + firstSong.getArtist());
-                }
-            }
-        }
-        
-        // 处理删除的专辑
-        for (Album album : existingAlbums) {
-            String albumKey = album.getAlbumName() + "_" + album.getArtist();
-            if (!albumGroups.containsKey(albumKey)) {
-                album.delete();
-                result.deletedAlbums++;
-                Log.d(TAG, "删除专辑: " + album.getAlbumName() + " - " + album.getArtist());
-            }
-        }
-    }
-    
-    /**
-     * 同步艺术家信息
-     */
-    private static void syncArtists(SyncResult result) {
-        Log.d(TAG, "开始同步艺术家信息");
-        
-        // 获取所有歌曲
-        List<Song> allSongs = LitePal.findAll(Song.class);
-        
-        // 按艺术家分组统计
-        Map<String, List<Song>> artistGroups = new HashMap<>();
-        Map<String, List<String>> artistAlbumGroups = new HashMap<>();
-        
-        for (Song song : allSongs) {
-            String artistName = song.getArtist();
-            
-            if (!artistGroups.containsKey(artistName)) {
-                artistGroups.put(artistName, new ArrayList<>());
-                artistAlbumGroups.put(artistName, new ArrayList<>());
-            }
-            
-            artistGroups.get(artistName).add(song);
-            
-            String albumKey = song.getAlbum() + "_" + song.getArtist();
-            if (!artistAlbumGroups.get(artistName).contains(albumKey)) {
-                artistAlbumGroups.get(artistName).add(albumKey);
-            }
-        }
-        
-        // 获取现有艺术家
-        List<Artist> existingArtists = LitePal.findAll(Artist.class);
-        Map<String, Artist> existingArtistMap = new HashMap<>();
-        for (Artist artist : existingArtists) {
-            existingArtistMap.put(artist.getArtistName(), artist);
-        }
-        
-        // 处理新增和更新的艺术家
-        for (Map.Entry<String, List<Song>> entry : artistGroups.entrySet()) {
-            String artistName = entry.getKey();
-            List<Song> songs = entry.getValue();
-            List<String> albums = artistAlbumGroups.get(artistName);
-            
-            if (songs.isEmpty()) continue;
-            
-            Song firstSong = songs.get(0);
-            Artist existingArtist = existingArtistMap.get(artistName);
-            
-            if (existingArtist == null) {
-                // 新增艺术家
-                Artist newArtist = new Artist();
-                newArtist.setArtistName(artistName);
-                newArtist.setArtistId(firstSong.getArtistId());
-                newArtist.setSongCount(songs.size());
-                newArtist.setAlbumCount(albums.size());
-                // 设置艺术家的添加时间为该艺术家中最新歌曲的添加时间
-                long latestDateAdded = 0;
-                for (Song song : songs) {
-                    if (song.getDateAdded() > latestDateAdded) {
-                        latestDateAdded = song.getDateAdded();
-                    }
-                }
-                newArtist.setDateAdded(latestDateAdded);
-                newArtist.save();
-                result.addedArtists++;
-                Log.d(TAG, "新增艺术家: " + artistName);
-            } else {
-                // 检查是否需要更新
-                boolean needUpdate = false;
-                
-                if (existingArtist.getSongCount() != songs.size()) {
-                    existingArtist.setSongCount(songs.size());
-                    needUpdate = true;
-                }
-                
-                if (existingArtist.getAlbumCount() != albums.size()) {
-                    existingArtist.setAlbumCount(albums.size());
-                    needUpdate = true;
-                }
-                
-                if (needUpdate) {
-                    existingArtist.save();
-                    result.updatedArtists++;
-                    Log.d(TAG, "更新艺术家: " + artistName);
-                }
-            }
-        }
-        
-        // 处理删除的艺术家
-        for (Artist artist : existingArtists) {
-            if (!artistGroups.containsKey(artist.getArtistName())) {
-                artist.delete();
-                result.deletedArtists++;
-                Log.d(TAG, "删除艺术家: " + artist.getArtistName());
-            }
-        }
-    }
-} 
\ No newline at end of file
+}
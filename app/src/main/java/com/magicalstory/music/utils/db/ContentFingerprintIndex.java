@@ -0,0 +1,268 @@
+package com.magicalstory.music.utils.db;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.magicalstory.music.model.Song;
+
+import org.litepal.LitePal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内容指纹索引
+ * 内容指纹由 文件大小 + 时长区间 + 文件开头/中间/结尾三段采样数据的哈希 组成，保存在Song.contentKey列（有索引）。
+ * 内容相同的文件（复制到多个目录、被移动或重命名）指纹相同，因此：
+ * <ul>
+ *     <li>查找重复歌曲只需按contentKey分组，不需要两两比较</li>
+ *     <li>同步时新出现的文件如果与刚消失的文件指纹相同，可以认定为移动/重命名，保留原有记录</li>
+ * </ul>
+ * 指纹在扫描后由后台线程池增量计算，文件大小和修改时间不变的歌曲不会重新计算。
+ */
+public class ContentFingerprintIndex {
+    private static final String TAG = "ContentFingerprintIndex";
+
+    // 每段采样的字节数
+    private static final int SAMPLE_BYTES = 8 * 1024;
+    // 时长区间（毫秒），不同容器对同一音频计算的时长可能有细微差别
+    private static final long DURATION_BUCKET_MS = 2000;
+    // 每页从数据库读取的待计算歌曲数量
+    private static final int PAGE_SIZE = 256;
+    // 每个任务计算的文件数量
+    private static final int TASK_SIZE = 32;
+    // 计算线程数，采样读取以I/O为主
+    private static final int THREADS = 2;
+    // 每条SQL中IN参数的最大数量
+    private static final int MAX_SQL_ARGS = 500;
+
+    private static volatile ExecutorService executor;
+
+    private ContentFingerprintIndex() {
+    }
+
+    /**
+     * 计算单个文件的内容指纹
+     *
+     * @return 文件无法读取时返回null
+     */
+    @Nullable
+    public static String compute(String path, long size, long durationMs) {
+        if (TextUtils.isEmpty(path)) {
+            return null;
+        }
+        File file = new File(path);
+        long length = file.length();
+        if (length <= 0) {
+            return null;
+        }
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[SAMPLE_BYTES];
+            long[] offsets = {0, Math.max(0, length / 2 - SAMPLE_BYTES / 2), Math.max(0, length - SAMPLE_BYTES)};
+            for (long offset : offsets) {
+                input.seek(offset);
+                int read = input.read(buffer, 0, (int) Math.min(SAMPLE_BYTES, length - offset));
+                if (read > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            StringBuilder key = new StringBuilder(64);
+            key.append(size > 0 ? size : length).append('_').append(durationMs / DURATION_BUCKET_MS).append('_');
+            byte[] hash = digest.digest();
+            for (byte b : hash) {
+                key.append(String.format(Locale.ROOT, "%02x", b & 0xff));
+            }
+            return key.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            Log.w(TAG, "计算内容指纹失败: " + path + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 计算指纹时使用的文件指纹，大小或修改时间变化后需要重新计算
+     */
+    public static String sourceOf(long size, long dateModified) {
+        return size + "_" + dateModified;
+    }
+
+    /**
+     * 并行计算一组歌曲的内容指纹，结果写入每首歌的contentKey/contentKeySource，不写数据库
+     */
+    public static void computeAll(@NonNull List<Song> songs) throws InterruptedException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int start = 0; start < songs.size(); start += TASK_SIZE) {
+            List<Song> chunk = songs.subList(start, Math.min(songs.size(), start + TASK_SIZE));
+            tasks.add(() -> {
+                for (Song song : chunk) {
+                    song.setContentKey(compute(song.getPath(), song.getSize(), song.getDuration()));
+                    song.setContentKeySource(sourceOf(song.getSize(), song.getDateModified()));
+                }
+                return null;
+            });
+        }
+        for (Future<Void> future : getExecutor().invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Log.e(TAG, "计算内容指纹时出错", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * 为新增或文件发生变化的歌曲计算内容指纹并写入数据库
+     *
+     * @return 计算的歌曲数量
+     */
+    public static int indexPending() throws InterruptedException {
+        long startTime = SystemClock.elapsedRealtime();
+        int indexedCount = 0;
+        try (LibraryBulkWriter writer = new LibraryBulkWriter(PAGE_SIZE)) {
+            long lastId = 0;
+            while (true) {
+                List<Song> page = loadPendingPage(lastId);
+                if (page.isEmpty()) {
+                    break;
+                }
+                lastId = page.get(page.size() - 1).getId();
+
+                computeAll(page);
+                for (Song song : page) {
+                    writer.updateSongContentKey(song.getId(), song.getContentKey(), song.getContentKeySource());
+                }
+                writer.flush();
+                indexedCount += page.size();
+            }
+        }
+        if (indexedCount > 0) {
+            Log.d(TAG, "内容指纹计算完成: " + indexedCount + " 首歌曲, 耗时 "
+                    + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        }
+        return indexedCount;
+    }
+
+    /**
+     * 查找内容完全相同的歌曲，每组至少两首
+     * 先按contentKey分组得到重复的指纹，再通过索引读取这些歌曲
+     */
+    @NonNull
+    public static List<List<Song>> findDuplicateGroups() {
+        List<String> keys = new ArrayList<>();
+        Cursor cursor = LitePal.findBySQL("select contentkey from song where contentkey is not null "
+                + "group by contentkey having count(*) > 1");
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    keys.add(cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        List<List<Song>> groups = new ArrayList<>();
+        for (int start = 0; start < keys.size(); start += MAX_SQL_ARGS) {
+            List<String> chunk = keys.subList(start, Math.min(keys.size(), start + MAX_SQL_ARGS));
+            String[] conditions = new String[chunk.size() + 1];
+            conditions[0] = "contentKey in (" + placeholders(chunk.size()) + ")";
+            for (int i = 0; i < chunk.size(); i++) {
+                conditions[i + 1] = chunk.get(i);
+            }
+            List<Song> songs = LitePal.where(conditions).order("contentKey, id").find(Song.class);
+            groupByContentKey(songs, groups);
+        }
+        return groups;
+    }
+
+    private static void groupByContentKey(List<Song> songs, List<List<Song>> groups) {
+        List<Song> group = null;
+        String groupKey = null;
+        for (Song song : songs) {
+            if (group == null || !song.getContentKey().equals(groupKey)) {
+                group = new ArrayList<>();
+                groupKey = song.getContentKey();
+                groups.add(group);
+            }
+            group.add(song);
+        }
+    }
+
+    /**
+     * 读取一页需要计算指纹的歌曲，只读取计算所需的列
+     */
+    private static List<Song> loadPendingPage(long afterId) {
+        List<Song> page = new ArrayList<>(PAGE_SIZE);
+        Cursor cursor = LitePal.findBySQL("select id, path, size, duration, datemodified from song "
+                        + "where id > ? and (contentkeysource is null or contentkeysource != size || '_' || datemodified) "
+                        + "order by id limit " + PAGE_SIZE,
+                String.valueOf(afterId));
+        if (cursor == null) {
+            return page;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                Song song = new Song();
+                song.setId(cursor.getLong(0));
+                song.setPath(cursor.getString(1));
+                song.setSize(cursor.getLong(2));
+                song.setDuration(cursor.getLong(3));
+                song.setDateModified(cursor.getLong(4));
+                page.add(song);
+            }
+        } finally {
+            cursor.close();
+        }
+        return page;
+    }
+
+    private static ExecutorService getExecutor() {
+        if (executor == null) {
+            synchronized (ContentFingerprintIndex.class) {
+                if (executor == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS,
+                            30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "ContentFingerprint-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append('?');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,412 @@
+package com.magicalstory.music.utils.db;
+
+import android.database.Cursor;
+
+import com.magicalstory.music.model.Album;
+import com.magicalstory.music.model.Artist;
+import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.text.ArtistCredits;
+
+import org.litepal.LitePal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 专辑/艺术家统计的增量维护
+ * 扫描或同步时记录被新增、更新、删除的歌曲所涉及的专辑和艺术家，
+ * 最后只对这些专辑和艺术家执行GROUP BY统计并写回，不再加载整张Song表重新分组。
+ * <p>
+ * 歌曲和专辑的artist列是署名，可能包含多位艺术家（见{@link ArtistCredits}）。
+ * 艺术家按拆分后的名称各保存一行，受影响的署名重新关联（{@link LibraryBulkWriter#linkCredit}）后，
+ * 艺术家的歌曲数、专辑数按歌曲-艺术家关联行统计
+ */
+public class LibraryAggregates {
+
+    // 每条SQL中IN参数的最大数量（SQLite默认上限为999）
+    private static final int MAX_SQL_ARGS = 500;
+
+    // 艺术家统计：署名的歌曲数、专辑数和最近添加时间
+    private static final String SQL_ARTIST_STATS = "select count(*), count(distinct s.albumrowid), max(s.dateadded) "
+            + "from songartist sa join song s on s.id = sa.songid where sa.artistid = ?";
+    // 所有署名标记为待重新统计，下一次扫描开始时处理（分隔符修改后需要执行）
+    static final String SQL_MARK_ALL_CREDITS_DIRTY = "insert or ignore into scandirtyartist (artistname) "
+            + "select distinct artist from song where artist is not null";
+    private static final String SQL_LINKED_ARTIST_IDS = "select distinct artistid from songartist "
+            + "where songid in (select id from song where artist = ?)";
+
+    /**
+     * 统计变化结果
+     */
+    public static class Result {
+        public int addedAlbums = 0;
+        public int updatedAlbums = 0;
+        public int deletedAlbums = 0;
+        public int addedArtists = 0;
+        public int updatedArtists = 0;
+        public int deletedArtists = 0;
+    }
+
+    /**
+     * 专辑统计值
+     */
+    private static class AlbumStats {
+        String albumName;
+        String artist;
+        int songCount;
+        long albumId;
+        int year;
+        long firstYear;
+        long lastYear;
+        long dateAdded;
+    }
+
+    // 专辑key -> {专辑名, 艺术家}
+    private final Map<String, String[]> touchedAlbums = new HashMap<>();
+    private final Set<String> touchedArtists = new HashSet<>();
+    // 所有专辑都需要重新统计的艺术家
+    private final Set<String> wholeArtists = new HashSet<>();
+
+    /**
+     * 记录歌曲所属的专辑和艺术家需要重新统计
+     * 歌曲被更新时，旧值和新值都需要记录
+     */
+    public void touch(Song song) {
+        String album = song.getAlbum();
+        String artist = song.getArtist();
+        if (artist == null) {
+            return;
+        }
+        touchedArtists.add(artist);
+        if (album != null) {
+            touchedAlbums.put(albumKey(album, artist), new String[]{album, artist});
+        }
+    }
+
+    /**
+     * 记录艺术家及其所有专辑需要重新统计
+     * 用于恢复中断的扫描：此时只知道艺术家，不知道具体涉及哪些专辑
+     */
+    public void touchArtist(String artist) {
+        if (artist == null) {
+            return;
+        }
+        touchedArtists.add(artist);
+        wholeArtists.add(artist);
+    }
+
+    public boolean isEmpty() {
+        return touchedAlbums.isEmpty() && touchedArtists.isEmpty();
+    }
+
+    public int getTouchedAlbumCount() {
+        return touchedAlbums.size();
+    }
+
+    public int getTouchedArtistCount() {
+        return touchedArtists.size();
+    }
+
+    /**
+     * 重新统计受影响的专辑和艺术家并写入数据库
+     * 调用前歌曲的变化必须已经写入（或在同一线程的事务中写入）
+     */
+    public Result apply(LibraryBulkWriter writer) {
+        Result result = new Result();
+        if (isEmpty()) {
+            return result;
+        }
+
+        // 受影响的专辑一定属于受影响的署名，按署名分块查询
+        List<String> artists = new ArrayList<>(touchedArtists);
+        for (int start = 0; start < artists.size(); start += MAX_SQL_ARGS) {
+            List<String> chunk = artists.subList(start, Math.min(artists.size(), start + MAX_SQL_ARGS));
+            applyAlbums(writer, chunk, result);
+            applyArtists(writer, chunk, result);
+        }
+
+        touchedAlbums.clear();
+        touchedArtists.clear();
+        wholeArtists.clear();
+        return result;
+    }
+
+    /**
+     * 重新统计并关联指定署名的专辑、艺术家和歌曲，用于标签编辑等不经过扫描的修改，需要在后台线程调用
+     */
+    public static Result refreshArtists(String... artists) {
+        LibraryAggregates aggregates = new LibraryAggregates();
+        for (String artist : artists) {
+            aggregates.touchArtist(artist);
+        }
+        try (LibraryBulkWriter writer = new LibraryBulkWriter()) {
+            Result result = aggregates.apply(writer);
+            writer.flush();
+            return result;
+        }
+    }
+
+    /**
+     * 所有署名标记为待重新统计，修改分隔符（{@link ArtistCredits#setSeparators}）后调用，
+     * 下一次扫描开始时按新的分隔符重新拆分
+     */
+    public static void markAllCreditsDirty() {
+        LitePal.getDatabase().execSQL(SQL_MARK_ALL_CREDITS_DIRTY);
+    }
+
+    private void applyAlbums(LibraryBulkWriter writer, List<String> artists, Result result) {
+        String placeholders = placeholders(artists.size());
+
+        Map<String, AlbumStats> stats = new HashMap<>();
+        // 年份为0表示未知，不参与首次发行年份的计算
+        Cursor cursor = LitePal.findBySQL(withArgs("select album, artist, count(*), max(albumid), max(year), "
+                + "max(dateadded), min(case when year > 0 then year end) from song where artist in ("
+                + placeholders + ") group by album, artist", artists));
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    String key = albumKey(cursor.getString(0), cursor.getString(1));
+                    if (!isAlbumTouched(key, cursor.getString(1))) {
+                        continue;
+                    }
+                    AlbumStats albumStats = new AlbumStats();
+                    albumStats.albumName = cursor.getString(0);
+                    albumStats.artist = cursor.getString(1);
+                    albumStats.songCount = cursor.getInt(2);
+                    albumStats.albumId = cursor.getLong(3);
+                    albumStats.year = cursor.getInt(4);
+                    albumStats.dateAdded = cursor.getLong(5);
+                    albumStats.firstYear = cursor.isNull(6) ? 0 : cursor.getLong(6);
+                    albumStats.lastYear = albumStats.year;
+                    stats.put(key, albumStats);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        // 已有专辑：更新或删除
+        Set<String> existingKeys = new HashSet<>();
+        List<Album> existingAlbums = LitePal.where(withArgs("artist in (" + placeholders + ")", artists))
+                .find(Album.class);
+        for (Album album : existingAlbums) {
+            String key = albumKey(album.getAlbumName(), album.getArtist());
+            if (!isAlbumTouched(key, album.getArtist())) {
+                continue;
+            }
+            existingKeys.add(key);
+            AlbumStats albumStats = stats.get(key);
+            if (albumStats == null) {
+                writer.deleteAlbum(album.getId());
+                result.deletedAlbums++;
+            } else if (album.getSongCount() != albumStats.songCount || album.getYear() != albumStats.year
+                    || album.getFirstYear() != albumStats.firstYear || album.getLastYear() != albumStats.lastYear
+                    || album.getDateAdded() != albumStats.dateAdded) {
+                album.setSongCount(albumStats.songCount);
+                album.setYear(albumStats.year);
+                album.setFirstYear(albumStats.firstYear);
+                album.setLastYear(albumStats.lastYear);
+                album.setDateAdded(albumStats.dateAdded);
+                writer.updateAlbum(album);
+                result.updatedAlbums++;
+            }
+        }
+
+        // 新专辑
+        for (Map.Entry<String, AlbumStats> entry : stats.entrySet()) {
+            if (existingKeys.contains(entry.getKey())) {
+                continue;
+            }
+            AlbumStats albumStats = entry.getValue();
+            Album album = new Album();
+            album.setAlbumName(albumStats.albumName);
+            album.setArtist(albumStats.artist);
+            album.setAlbumId(albumStats.albumId);
+            album.setSongCount(albumStats.songCount);
+            album.setYear(albumStats.year);
+            album.setFirstYear(albumStats.firstYear);
+            album.setLastYear(albumStats.lastYear);
+            album.setDateAdded(albumStats.dateAdded);
+            writer.insertAlbum(album);
+            result.addedAlbums++;
+        }
+    }
+
+    private void applyArtists(LibraryBulkWriter writer, List<String> credits, Result result) {
+        // 署名 -> 拆分后的艺术家名称
+        Map<String, List<String>> namesByCredit = new LinkedHashMap<>();
+        Set<String> names = new LinkedHashSet<>();
+        for (String credit : credits) {
+            List<String> creditNames = ArtistCredits.split(credit);
+            namesByCredit.put(credit, creditNames);
+            names.addAll(creditNames);
+        }
+
+        // 仍有歌曲的署名及其系统艺术家ID
+        Map<String, Long> mediaIdByCredit = new HashMap<>();
+        Cursor cursor = LitePal.findBySQL(withArgs("select artist, min(artistid) from song where artist in ("
+                + placeholders(credits.size()) + ") group by artist", credits));
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    mediaIdByCredit.put(cursor.getString(0), cursor.getLong(1));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        // 已有艺术家；仍有歌曲署名的新艺术家先插入空行，统计值在关联后计算
+        Map<String, Artist> artistsByName = findArtistsByName(new ArrayList<>(names));
+        Set<Long> addedIds = new HashSet<>();
+        for (Map.Entry<String, List<String>> entry : namesByCredit.entrySet()) {
+            Long mediaId = mediaIdByCredit.get(entry.getKey());
+            if (mediaId == null) {
+                continue;
+            }
+            for (String name : entry.getValue()) {
+                if (artistsByName.containsKey(name)) {
+                    continue;
+                }
+                Artist artist = new Artist();
+                artist.setArtistName(name);
+                artist.setArtistId(mediaId);
+                writer.insertArtist(artist);
+                artistsByName.put(name, artist);
+                addedIds.add(artist.getId());
+                result.addedArtists++;
+            }
+        }
+
+        // 重新关联署名，关联前后涉及的艺术家都需要重新统计
+        Set<Long> affectedIds = new LinkedHashSet<>();
+        for (Map.Entry<String, List<String>> entry : namesByCredit.entrySet()) {
+            String credit = entry.getKey();
+            affectedIds.addAll(findLinkedArtistIds(credit));
+            List<Long> rowIds = new ArrayList<>();
+            if (mediaIdByCredit.containsKey(credit)) {
+                for (String name : entry.getValue()) {
+                    rowIds.add(artistsByName.get(name).getId());
+                }
+            }
+            writer.linkCredit(credit, rowIds);
+            affectedIds.addAll(rowIds);
+        }
+        for (Artist artist : artistsByName.values()) {
+            affectedIds.add(artist.getId());
+        }
+
+        // 按关联行统计，没有歌曲的艺术家删除
+        Map<Long, Artist> artistsById = new HashMap<>();
+        for (Artist artist : artistsByName.values()) {
+            artistsById.put(artist.getId(), artist);
+        }
+        for (long id : affectedIds) {
+            Artist artist = artistsById.get(id);
+            if (artist == null) {
+                artist = LitePal.find(Artist.class, id);
+                if (artist == null) {
+                    continue;
+                }
+            }
+            int songCount = 0;
+            int albumCount = 0;
+            long dateAdded = 0;
+            Cursor stats = LitePal.findBySQL(SQL_ARTIST_STATS, String.valueOf(id));
+            if (stats != null) {
+                try {
+                    if (stats.moveToFirst()) {
+                        songCount = stats.getInt(0);
+                        albumCount = stats.getInt(1);
+                        dateAdded = stats.isNull(2) ? 0 : stats.getLong(2);
+                    }
+                } finally {
+                    stats.close();
+                }
+            }
+            if (songCount == 0) {
+                writer.deleteArtist(id);
+                result.deletedArtists++;
+            } else if (artist.getSongCount() != songCount || artist.getAlbumCount() != albumCount
+                    || artist.getDateAdded() != dateAdded) {
+                artist.setSongCount(songCount);
+                artist.setAlbumCount(albumCount);
+                artist.setDateAdded(dateAdded);
+                writer.updateArtist(artist);
+                if (!addedIds.contains(id)) {
+                    result.updatedArtists++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 按名称读取艺术家，名称较多时分块查询
+     */
+    private static Map<String, Artist> findArtistsByName(List<String> names) {
+        Map<String, Artist> artists = new HashMap<>();
+        for (int start = 0; start < names.size(); start += MAX_SQL_ARGS) {
+            List<String> chunk = names.subList(start, Math.min(names.size(), start + MAX_SQL_ARGS));
+            for (Artist artist : LitePal.where(withArgs("artistName in (" + placeholders(chunk.size()) + ")", chunk))
+                    .find(Artist.class)) {
+                artists.put(artist.getArtistName(), artist);
+            }
+        }
+        return artists;
+    }
+
+    /**
+     * 署名相同的歌曲当前关联的艺术家行ID
+     */
+    private static List<Long> findLinkedArtistIds(String credit) {
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = LitePal.findBySQL(SQL_LINKED_ARTIST_IDS, credit);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return ids;
+    }
+
+    private boolean isAlbumTouched(String key, String artist) {
+        return touchedAlbums.containsKey(key) || wholeArtists.contains(artist);
+    }
+
+    private static String albumKey(String album, String artist) {
+        return album + "_" + artist;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append('?');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 组装LitePal需要的参数数组：第一个元素为SQL/条件，其后为参数
+     */
+    private static String[] withArgs(String sql, List<String> args) {
+        String[] result = new String[args.size() + 1];
+        result[0] = sql;
+        for (int i = 0; i < args.size(); i++) {
+            result[i + 1] = args.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,615 @@
+package com.magicalstory.music.utils.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.magicalstory.music.model.Album;
+import com.magicalstory.music.model.Artist;
+import com.magicalstory.music.model.ScanCheckpoint;
+import com.magicalstory.music.model.Song;
+
+import org.litepal.LitePal;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 音乐库批量写入器
+ * 用于扫描和同步时大批量写入Song/Album/Artist：
+ * 每批数据在一个SQLite事务中提交，插入/更新/删除语句只编译一次并重复使用，
+ * 避免LitePal逐行save()/delete()带来的反射开销和逐行事务。
+ * <p>
+ * 非线程安全，只能在创建它的线程中使用。正常结束时调用{@link #flush()}提交最后一批数据，再调用{@link #close()}；
+ * close()时还没提交的批次会被回滚，出错时直接退出try-with-resources即可，不会提交写了一半的批次。
+ */
+public class LibraryBulkWriter implements Closeable {
+    private static final String TAG = "LibraryBulkWriter";
+
+    // 默认每批写入的行数
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final String SQL_INSERT_SONG = "insert into song (title, artist, album, path, duration, size, "
+            + "displayname, albumid, artistid, dateadded, datemodified, mimetype, track, year, mediastoreid, "
+            + "titlepinyin, artistpinyin, contentkey, contentkeysource) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // 只更新MediaStore提供的字段，保留lastplayed、genre等应用自己维护的字段
+    private static final String SQL_UPDATE_SONG = "update song set title = ?, artist = ?, album = ?, path = ?, "
+            + "duration = ?, size = ?, displayname = ?, albumid = ?, artistid = ?, dateadded = ?, datemodified = ?, "
+            + "mimetype = ?, track = ?, year = ?, mediastoreid = ?, titlepinyin = ?, artistpinyin = ? where id = ?";
+    private static final String SQL_DELETE_SONG = "delete from song where id = ?";
+    // 标签补全结果，只在读取过文件标签后写入
+    private static final String SQL_UPDATE_SONG_TAGS = "update song set genre = ?, hasembeddedlyrics = ?, "
+            + "hasembeddedart = ?, replaygaintrack = ?, replaygainalbum = ?, tagfingerprint = ? where id = ?";
+    // 内容指纹，由ContentFingerprintIndex计算
+    private static final String SQL_UPDATE_SONG_CONTENT_KEY = "update song set contentkey = ?, contentkeysource = ? "
+            + "where id = ?";
+    // 拼音转写，由TransliterationIndex为升级前写入的行补全
+    private static final String SQL_UPDATE_SONG_PINYIN = "update song set titlepinyin = ?, artistpinyin = ? where id = ?";
+
+    private static final String SQL_INSERT_ALBUM = "insert into album (albumname, artist, songcount, albumid, year, "
+            + "firstyear, lastyear, dateadded, albumnamepinyin) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // 只更新统计字段，保留封面、最后播放时间等状态
+    private static final String SQL_UPDATE_ALBUM = "update album set songcount = ?, year = ?, firstyear = ?, "
+            + "lastyear = ?, dateadded = ? where id = ?";
+    // 专辑没有流派时，使用专辑内歌曲出现次数最多的流派；已有流派（例如用户编辑过）时保留
+    private static final String SQL_FILL_ALBUM_GENRE = "update album set genre = (select genre from song "
+            + "where song.album = album.albumname and song.artist = album.artist and genre is not null and genre != '' "
+            + "group by genre order by count(*) desc limit 1) "
+            + "where albumname = ? and artist = ? and (genre is null or genre = '')";
+    private static final String SQL_DELETE_ALBUM = "delete from album where id = ?";
+    private static final String SQL_UPDATE_ALBUM_PINYIN = "update album set albumnamepinyin = ? where id = ?";
+
+    private static final String SQL_INSERT_ARTIST = "insert into artist (artistname, songcount, albumcount, artistid, "
+            + "coverfetched, dateadded, artistnamepinyin) values (?, ?, ?, ?, 0, ?, ?)";
+    private static final String SQL_UPDATE_ARTIST = "update artist set songcount = ?, albumcount = ?, dateadded = ? where id = ?";
+    private static final String SQL_DELETE_ARTIST = "delete from artist where id = ?";
+    private static final String SQL_UPDATE_ARTIST_PINYIN = "update artist set artistnamepinyin = ? where id = ?";
+
+    // 按行ID关联：署名的专辑、歌曲所属的专辑和主艺术家，以及歌曲与每位署名艺术家的关联行
+    private static final String SQL_LINK_CREDIT_ALBUMS = "update album set artistrowid = ? where artist = ?";
+    private static final String SQL_LINK_CREDIT_SONGS = "update song set artistrowid = ?, albumrowid = "
+            + "ifnull((select a.id from album a where a.albumname = song.album and a.artist = song.artist), 0) "
+            + "where artist = ?";
+    private static final String SQL_UNLINK_SONG_ARTISTS = "delete from songartist where songid in "
+            + "(select id from song where artist = ?)";
+    private static final String SQL_LINK_SONG_ARTISTS = "insert into songartist (songid, artistid, position) "
+            + "select id, ?, ? from song where artist = ?";
+
+    // 扫描检查点只有一行，与同一批次的歌曲在一个事务中写入
+    private static final String SQL_SAVE_SCAN_CHECKPOINT = "insert or replace into scancheckpoint (id, incremental, "
+            + "mediaversion, basegeneration, targetgeneration, basemaxdatemodified, basemaxmediaid, lastmediaid, "
+            + "maxdatemodified, maxmediaid, rowswritten, newsongcount, updatedtime) "
+            + "values (" + ScanCheckpoint.ROW_ID + ", ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_MARK_ARTIST_DIRTY = "insert or ignore into scandirtyartist (artistname) values (?)";
+
+    // 所有写入器累计执行的语句数和提交的事务数，用于基准测试统计
+    private static final AtomicLong totalStatements = new AtomicLong();
+    private static final AtomicLong totalTransactions = new AtomicLong();
+
+    private final SQLiteDatabase db;
+    private final int batchSize;
+
+    private SQLiteStatement insertSong;
+    private SQLiteStatement updateSong;
+    private SQLiteStatement deleteSong;
+    private SQLiteStatement updateSongTags;
+    private SQLiteStatement updateSongContentKey;
+    private SQLiteStatement updateSongPinyin;
+    private SQLiteStatement insertAlbum;
+    private SQLiteStatement updateAlbum;
+    private SQLiteStatement deleteAlbum;
+    private SQLiteStatement fillAlbumGenre;
+    private SQLiteStatement updateAlbumPinyin;
+    private SQLiteStatement insertArtist;
+    private SQLiteStatement updateArtist;
+    private SQLiteStatement deleteArtist;
+    private SQLiteStatement updateArtistPinyin;
+    private SQLiteStatement linkCreditAlbums;
+    private SQLiteStatement linkCreditSongs;
+    private SQLiteStatement unlinkSongArtists;
+    private SQLiteStatement linkSongArtists;
+    private SQLiteStatement saveScanCheckpoint;
+    private SQLiteStatement markArtistDirty;
+
+    private boolean inTransaction = false;
+    // 写入语句执行中，语句抛出异常时保持为true，当前批次不能提交
+    private boolean writing = false;
+    private int pendingCount = 0;
+    private int writtenCount = 0;
+
+    public LibraryBulkWriter() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize 每个事务提交的行数
+     */
+    public LibraryBulkWriter(int batchSize) {
+        this.db = LitePal.getDatabase();
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * 插入歌曲，插入成功后会把行ID写回song
+     */
+    public long insertSong(Song song) {
+        if (insertSong == null) {
+            insertSong = db.compileStatement(SQL_INSERT_SONG);
+        }
+        beforeWrite();
+        bindSongColumns(insertSong, song);
+        bindString(insertSong, 18, song.getContentKey());
+        bindString(insertSong, 19, song.getContentKeySource());
+        long id = insertSong.executeInsert();
+        song.setId(id);
+        afterWrite();
+        return id;
+    }
+
+    /**
+     * 使用设备中的歌曲信息更新指定ID的歌曲
+     */
+    public void updateSong(long id, Song song) {
+        if (updateSong == null) {
+            updateSong = db.compileStatement(SQL_UPDATE_SONG);
+        }
+        beforeWrite();
+        bindSongColumns(updateSong, song);
+        updateSong.bindLong(18, id);
+        updateSong.executeUpdateDelete();
+        afterWrite();
+    }
+
+    /**
+     * 删除歌曲
+     */
+    public void deleteSong(long id) {
+        if (deleteSong == null) {
+            deleteSong = db.compileStatement(SQL_DELETE_SONG);
+        }
+        executeDelete(deleteSong, id);
+    }
+
+    /**
+     * 写入从文件标签读取的流派、内嵌歌词/封面标记、ReplayGain和文件指纹
+     */
+    public void updateSongTags(Song song) {
+        if (updateSongTags == null) {
+            updateSongTags = db.compileStatement(SQL_UPDATE_SONG_TAGS);
+        }
+        beforeWrite();
+        updateSongTags.clearBindings();
+        bindString(updateSongTags, 1, song.getGenre());
+        updateSongTags.bindLong(2, song.hasEmbeddedLyrics() ? 1 : 0);
+        updateSongTags.bindLong(3, song.hasEmbeddedArt() ? 1 : 0);
+        updateSongTags.bindDouble(4, song.getReplayGainTrack());
+        updateSongTags.bindDouble(5, song.getReplayGainAlbum());
+        bindString(updateSongTags, 6, song.getTagFingerprint());
+        updateSongTags.bindLong(7, song.getId());
+        updateSongTags.executeUpdateDelete();
+        afterWrite();
+    }
+
+    /**
+     * 写入内容指纹
+     */
+    public void updateSongContentKey(long id, String contentKey, String contentKeySource) {
+        if (updateSongContentKey == null) {
+            updateSongContentKey = db.compileStatement(SQL_UPDATE_SONG_CONTENT_KEY);
+        }
+        beforeWrite();
+        updateSongContentKey.clearBindings();
+        bindString(updateSongContentKey, 1, contentKey);
+        bindString(updateSongContentKey, 2, contentKeySource);
+        updateSongContentKey.bindLong(3, id);
+        updateSongContentKey.executeUpdateDelete();
+        afterWrite();
+    }
+
+    /**
+     * 写入标题和艺术家的拼音转写
+     */
+    public void updateSongPinyin(long id, String titlePinyin, String artistPinyin) {
+        if (updateSongPinyin == null) {
+            updateSongPinyin = db.compileStatement(SQL_UPDATE_SONG_PINYIN);
+        }
+        beforeWrite();
+        updateSongPinyin.clearBindings();
+        bindString(updateSongPinyin, 1, titlePinyin);
+        bindString(updateSongPinyin, 2, artistPinyin);
+        updateSongPinyin.bindLong(3, id);
+        updateSongPinyin.executeUpdateDelete();
+        afterWrite();
+    }
+
+    /**
+     * 插入专辑，插入成功后会把行ID写回album
+     */
+    public long insertAlbum(Album album) {
+        if (insertAlbum == null) {
+            insertAlbum = db.compileStatement(SQL_INSERT_ALBUM);
+        }
+        beforeWrite();
+        insertAlbum.clearBindings();
+        bindString(insertAlbum, 1, album.getAlbumName());
+        bindString(insertAlbum, 2, album.getArtist());
+        insertAlbum.bindLong(3, album.getSongCount());
+        insertAlbum.bindLong(4, album.getAlbumId());
+        insertAlbum.bindLong(5, album.getYear());
+        insertAlbum.bindLong(6, album.getFirstYear());
+        insertAlbum.bindLong(7, album.getLastYear());
+        insertAlbum.bindLong(8, album.getDateAdded());
+        bindString(insertAlbum, 9, album.getAlbumNamePinyin());
+        long id = insertAlbum.executeInsert();
+        album.setId(id);
+        afterWrite();
+        return id;
+    }
+
+    /**
+     * 更新专辑统计信息
+     */
+    public void updateAlbum(Album album) {
+        if (updateAlbum == null) {
+            updateAlbum = db.compileStatement(SQL_UPDATE_ALBUM);
+        }
+        beforeWrite();
+        updateAlbum.bindLong(1, album.getSongCount());
+        updateAlbum.bindLong(2, album.getYear());
+        updateAlbum.bindLong(3, album.getFirstYear());
+        updateAlbum.bindLong(4, album.getLastYear());
+        updateAlbum.bindLong(5, album.getDateAdded());
+        updateAlbum.bindLong(6, album.getId());
+        updateAlbum.executeUpdateDelete();
+        afterWrite();
+    }
+
+    /**
+     * 删除专辑
+     */
+    public void deleteAlbum(long id) {
+        if (deleteAlbum == null) {
+            deleteAlbum = db.compileStatement(SQL_DELETE_ALBUM);
+        }
+        executeDelete(deleteAlbum, id);
+    }
+
+    /**
+     * 写入专辑名称的拼音转写
+     */
+    public void updateAlbumPinyin(long id, String albumNamePinyin) {
+        if (updateAlbumPinyin == null) {
+            updateAlbumPinyin = db.compileStatement(SQL_UPDATE_ALBUM_PINYIN);
+        }
+        beforeWrite();
+        updateAlbumPinyin.clearBindings();
+        bindString(updateAlbumPinyin, 1, albumNamePinyin);
+        updateAlbumPinyin.bindLong(2, id);
+        updateAlbumPinyin.executeUpdateDelete();
+        afterWrite();
+    }
+
+    /**
+     * 用专辑内歌曲的流派补全没有流派的专辑
+     */
+    public void fillAlbumGenre(String albumName, String artist) {
+        if (albumName == null || artist == null) {
+            return;
+        }
+        if (fillAlbumGenre == null) {
+            fillAlbumGenre = db.compileStatement(SQL_FILL_ALBUM_GENRE);
+        }
+        beforeWrite();
+        fillAlbumGenre.bindString(1, albumName);
+        fillAlbumGenre.bindString(2, artist);
+        fillAlbumGenre.executeUpdateDelete();
+        afterWrite();
+    }
+
+    /**
+     * 插入艺术家，插入成功后会把行ID写回artist
+     */
+    public long insertArtist(Artist artist) {
+        if (insertArtist == null) {
+            insertArtist = db.compileStatement(SQL_INSERT_ARTIST);
+        }
+        beforeWrite();
+        insertArtist.clearBindings();
+        bindString(insertArtist, 1, artist.getArtistName());
+        insertArtist.bindLong(2, artist.getSongCount());
+        insertArtist.bindLong(3, artist.getAlbumCount());
+        insertArtist.bindLong(4, artist.getArtistId());
+        insertArtist.bindLong(5, artist.getDateAdded());
+        bindString(insertArtist, 6, artist.getArtistNamePinyin());
+        long id = insertArtist.executeInsert();
+        artist.setId(id);
+        afterWrite();
+        return id;
+    }
+
+    /**
+     * 更新艺术家统计信息
+     */
+    public void updateArtist(Artist artist) {
+        if (updateArtist == null) {
+            updateArtist = db.compileStatement(SQL_UPDATE_ARTIST);
+        }
+        beforeWrite();
+        updateArtist.bindLong(1, artist.getSongCount());
+        updateArtist.bindLong(2, artist.getAlbumCount());
+        updateArtist.bindLong(3, artist.getDateAdded());
+        updateArtist.bindLong(4, artist.getId());
+        updateArtist.executeUpdateDelete();
+        afterWrite();
+    }
+
+    /**
+     * 写入艺术家名称的拼音转写
+     */
+    public void updateArtistPinyin(long id, String artistNamePinyin) {
+        if (updateArtistPinyin == null) {
+            updateArtistPinyin = db.compileStatement(SQL_UPDATE_ARTIST_PINYIN);
+        }
+        beforeWrite();
+        updateArtistPinyin.clearBindings();
+        bindString(updateArtistPinyin, 1, artistNamePinyin);
+        updateArtistPinyin.bindLong(2, id);
+        updateArtistPinyin.executeUpdateDelete();
+        afterWrite();
+    }
+
+    /**
+     * 删除艺术家
+     */
+    public void deleteArtist(long id) {
+        if (deleteArtist == null) {
+            deleteArtist = db.compileStatement(SQL_DELETE_ARTIST);
+        }
+        executeDelete(deleteArtist, id);
+    }
+
+    /**
+     * 重新关联署名（歌曲和专辑的artist列）相同的专辑和歌曲：
+     * 专辑和歌曲的艺术家行ID为第一位艺术家，歌曲与每位艺术家各有一行关联，position为署名顺序。
+     * 需要在艺术家和专辑的行写入之后调用
+     *
+     * @param artistRowIds 署名拆分后每位艺术家的行ID，为空时只清除关联
+     */
+    public void linkCredit(String credit, List<Long> artistRowIds) {
+        if (credit == null) {
+            return;
+        }
+        if (linkCreditAlbums == null) {
+            linkCreditAlbums = db.compileStatement(SQL_LINK_CREDIT_ALBUMS);
+            linkCreditSongs = db.compileStatement(SQL_LINK_CREDIT_SONGS);
+            unlinkSongArtists = db.compileStatement(SQL_UNLINK_SONG_ARTISTS);
+            linkSongArtists = db.compileStatement(SQL_LINK_SONG_ARTISTS);
+        }
+        long primaryRowId = artistRowIds.isEmpty() ? 0 : artistRowIds.get(0);
+        beforeWrite();
+        linkCreditAlbums.bindLong(1, primaryRowId);
+        linkCreditAlbums.bindString(2, credit);
+        linkCreditAlbums.executeUpdateDelete();
+        linkCreditSongs.bindLong(1, primaryRowId);
+        linkCreditSongs.bindString(2, credit);
+        linkCreditSongs.executeUpdateDelete();
+        unlinkSongArtists.bindString(1, credit);
+        unlinkSongArtists.executeUpdateDelete();
+        for (int position = 0; position < artistRowIds.size(); position++) {
+            linkSongArtists.bindLong(1, artistRowIds.get(position));
+            linkSongArtists.bindLong(2, position);
+            linkSongArtists.bindString(3, credit);
+            linkSongArtists.executeInsert();
+        }
+        afterWrite();
+    }
+
+    /**
+     * 保存扫描检查点
+     */
+    public void saveScanCheckpoint(ScanCheckpoint checkpoint) {
+        if (saveScanCheckpoint == null) {
+            saveScanCheckpoint = db.compileStatement(SQL_SAVE_SCAN_CHECKPOINT);
+        }
+        beforeWrite();
+        saveScanCheckpoint.clearBindings();
+        saveScanCheckpoint.bindLong(1, checkpoint.isIncremental() ? 1 : 0);
+        bindString(saveScanCheckpoint, 2, checkpoint.getMediaVersion());
+        saveScanCheckpoint.bindLong(3, checkpoint.getBaseGeneration());
+        saveScanCheckpoint.bindLong(4, checkpoint.getTargetGeneration());
+        saveScanCheckpoint.bindLong(5, checkpoint.getBaseMaxDateModified());
+        saveScanCheckpoint.bindLong(6, checkpoint.getBaseMaxMediaId());
+        saveScanCheckpoint.bindLong(7, checkpoint.getLastMediaId());
+        saveScanCheckpoint.bindLong(8, checkpoint.getMaxDateModified());
+        saveScanCheckpoint.bindLong(9, checkpoint.getMaxMediaId());
+        saveScanCheckpoint.bindLong(10, checkpoint.getRowsWritten());
+        saveScanCheckpoint.bindLong(11, checkpoint.getNewSongCount());
+        saveScanCheckpoint.bindLong(12, checkpoint.getUpdatedTime());
+        saveScanCheckpoint.executeInsert();
+        afterWrite();
+    }
+
+    /**
+     * 记录艺术家的专辑/艺术家统计需要在扫描结束时重新计算
+     */
+    public void markArtistDirty(String artistName) {
+        if (artistName == null) {
+            return;
+        }
+        if (markArtistDirty == null) {
+            markArtistDirty = db.compileStatement(SQL_MARK_ARTIST_DIRTY);
+        }
+        beforeWrite();
+        markArtistDirty.bindString(1, artistName);
+        markArtistDirty.executeInsert();
+        afterWrite();
+    }
+
+    /**
+     * 扫描完成后清除检查点和待统计的艺术家
+     */
+    public void clearScanCheckpoint() {
+        beforeWrite();
+        db.execSQL("delete from scancheckpoint");
+        db.execSQL("delete from scandirtyartist");
+        afterWrite();
+    }
+
+    /**
+     * 提交当前批次
+     *
+     * @throws IllegalStateException 当前批次中有语句执行失败，批次已回滚
+     */
+    public void flush() {
+        if (!inTransaction) {
+            return;
+        }
+        if (writing) {
+            abort();
+            throw new IllegalStateException("批次中有写入失败，已回滚");
+        }
+        try {
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            totalTransactions.incrementAndGet();
+            inTransaction = false;
+            writtenCount += pendingCount;
+            pendingCount = 0;
+        }
+    }
+
+    /**
+     * 回滚当前批次，之前已提交的批次不受影响
+     */
+    public void abort() {
+        if (!inTransaction) {
+            return;
+        }
+        try {
+            db.endTransaction();
+        } finally {
+            inTransaction = false;
+            writing = false;
+            pendingCount = 0;
+        }
+    }
+
+    /**
+     * 已提交的行数
+     */
+    public int getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * 进程内所有写入器累计执行的写入语句数
+     */
+    public static long getTotalStatementCount() {
+        return totalStatements.get();
+    }
+
+    /**
+     * 进程内所有写入器累计提交的事务数
+     */
+    public static long getTotalTransactionCount() {
+        return totalTransactions.get();
+    }
+
+    /**
+     * 回滚没有提交的批次并释放编译好的语句
+     */
+    @Override
+    public void close() {
+        try {
+            if (inTransaction) {
+                Log.w(TAG, "回滚未提交的 " + pendingCount + " 行");
+                abort();
+            }
+        } finally {
+            closeStatement(insertSong);
+            closeStatement(updateSong);
+            closeStatement(deleteSong);
+            closeStatement(updateSongTags);
+            closeStatement(updateSongContentKey);
+            closeStatement(updateSongPinyin);
+            closeStatement(insertAlbum);
+            closeStatement(updateAlbum);
+            closeStatement(deleteAlbum);
+            closeStatement(fillAlbumGenre);
+            closeStatement(updateAlbumPinyin);
+            closeStatement(insertArtist);
+            closeStatement(updateArtist);
+            closeStatement(deleteArtist);
+            closeStatement(updateArtistPinyin);
+            closeStatement(linkCreditAlbums);
+            closeStatement(linkCreditSongs);
+            closeStatement(unlinkSongArtists);
+            closeStatement(linkSongArtists);
+            closeStatement(saveScanCheckpoint);
+            closeStatement(markArtistDirty);
+            Log.d(TAG, "批量写入完成，共写入 " + writtenCount + " 行");
+        }
+    }
+
+    private void executeDelete(SQLiteStatement statement, long id) {
+        beforeWrite();
+        statement.bindLong(1, id);
+        statement.executeUpdateDelete();
+        afterWrite();
+    }
+
+    private void beforeWrite() {
+        if (!inTransaction) {
+            db.beginTransaction();
+            inTransaction = true;
+        }
+        writing = true;
+    }
+
+    private void afterWrite() {
+        writing = false;
+        totalStatements.incrementAndGet();
+        pendingCount++;
+        if (pendingCount >= batchSize) {
+            flush();
+        }
+    }
+
+    private static void bindSongColumns(SQLiteStatement statement, Song song) {
+        statement.clearBindings();
+        bindString(statement, 1, song.getTitle());
+        bindString(statement, 2, song.getArtist());
+        bindString(statement, 3, song.getAlbum());
+        bindString(statement, 4, song.getPath());
+        statement.bindLong(5, song.getDuration());
+        statement.bindLong(6, song.getSize());
+        bindString(statement, 7, song.getDisplayName());
+        statement.bindLong(8, song.getAlbumId());
+        statement.bindLong(9, song.getArtistId());
+        statement.bindLong(10, song.getDateAdded());
+        statement.bindLong(11, song.getDateModified());
+        bindString(statement, 12, song.getMimeType());
+        statement.bindLong(13, song.getTrack());
+        statement.bindLong(14, song.getYear());
+        statement.bindLong(15, song.getMediaStoreId());
+        bindString(statement, 16, song.getTitlePinyin());
+        bindString(statement, 17, song.getArtistPinyin());
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static void closeStatement(SQLiteStatement statement) {
+        if (statement != null) {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.magicalstory.music.utils.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.litepal.LitePal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 数据库结构迁移
+ * LitePal只根据litepal.xml的版本号增删表和列，不维护二级索引；列变化时LitePal会重建整张表，原有索引随之丢失。
+ * 这里在LitePal之上维护一个独立的结构版本：
+ * <ul>
+ *     <li>{@link #MIGRATIONS}按版本号顺序执行，每个版本在一个事务中完成，执行后记录到schemaversion表</li>
+ *     <li>{@link #INDEXES}声明热点查询依赖的索引，{@link #searchObjects()}声明全文索引表和维护它的触发器，
+ *     {@link #relationObjects()}声明维护歌曲与艺术家关联行的触发器，{@link #stateObjects()}声明不属于LitePal的状态表和统计表，
+ *     每次启动检查是否存在，缺失（被LitePal重建表时删除）则重新创建</li>
+ * </ul>
+ * 新增索引只需加入{@link #INDEXES}；需要改写数据的变更追加一个新的迁移版本。
+ * <p>
+ * 应用启动时用{@link #migrateInBackground()}在后台线程执行（包括LitePal自身的升级和整表迁移），不阻塞主线程；
+ * 同步、扫描和音乐库查询在访问数据库前调用{@link #awaitMigrated()}等待迁移完成。
+ */
+public final class LibrarySchema {
+    private static final String TAG = "LibrarySchema";
+
+    // 后台迁移完成后计数归零
+    private static final CountDownLatch migrated = new CountDownLatch(1);
+    private static volatile boolean backgroundMigrationStarted = false;
+
+    /**
+     * 需要保证存在的索引、表或触发器
+     */
+    static final class SchemaObject {
+        final String name;
+        final String table;         // 依赖的LitePal表，表尚未创建时跳过；为null表示不依赖
+        final String createSql;
+
+        SchemaObject(String name, String table, String createSql) {
+            this.name = name;
+            this.table = table;
+            this.createSql = createSql;
+        }
+
+        static SchemaObject index(String name, String table, String columns) {
+            return new SchemaObject(name, table,
+                    "create index if not exists " + name + " on " + table + " (" + columns + ")");
+        }
+    }
+
+    /**
+     * 一个结构版本包含的语句
+     */
+    private static final class Migration {
+        final int version;
+        final String[] statements;
+
+        Migration(int version, String... statements) {
+            this.version = version;
+            this.statements = statements;
+        }
+    }
+
+    // 热点查询依赖的索引，表名和列名与LitePal生成的一致（小写）
+    static final SchemaObject[] INDEXES = {
+            // 艺术家详情、专辑详情、扫描匹配
+            SchemaObject.index("idx_song_artist", "song", "artist"),
+            SchemaObject.index("idx_song_album_artist", "song", "album, artist"),
+            SchemaObject.index("idx_song_albumid_artist", "song", "albumid, artist"),
+            SchemaObject.index("idx_song_mediastoreid", "song", "mediastoreid"),
+            SchemaObject.index("idx_song_path", "song", "path"),
+            // 最近添加、最近播放
+            SchemaObject.index("idx_song_dateadded", "song", "dateadded"),
+            SchemaObject.index("idx_song_lastplayed", "song", "lastplayed"),
+            // 分页列表按(排序键, id)定位下一页
+            SchemaObject.index("idx_song_artist_dateadded", "song", "artist, dateadded"),
+            SchemaObject.index("idx_favoritesong_addtime", "favoritesong", "addtime"),
+            SchemaObject.index("idx_playhistory_playcount", "playhistory", "playcount"),
+            SchemaObject.index("idx_playlistsong_playlistid_addedtime", "playlistsong", "playlistid, addedtime"),
+            SchemaObject.index("idx_album_artist", "album", "artist"),
+            SchemaObject.index("idx_album_albumname_artist", "album", "albumname, artist"),
+            SchemaObject.index("idx_album_albumid", "album", "albumid"),
+            SchemaObject.index("idx_artist_artistname", "artist", "artistname"),
+            SchemaObject.index("idx_artist_artistid", "artist", "artistid"),
+            SchemaObject.index("idx_playhistory_songid", "playhistory", "songid"),
+            SchemaObject.index("idx_playhistory_lastplaytime", "playhistory", "lastplaytime"),
+            SchemaObject.index("idx_favoritesong_songid", "favoritesong", "songid"),
+            // 歌单内容按playlistId查询，包含/删除单曲按(playlistId, songId)查询，删除歌曲时按songId清理
+            SchemaObject.index("idx_playlistsong_playlistid_songid", "playlistsong", "playlistid, songid"),
+            SchemaObject.index("idx_playlistsong_songid", "playlistsong", "songid"),
+            // 按行ID关联：专辑详情、艺术家详情和计数，艺术家歌曲分页
+            SchemaObject.index("idx_song_albumrowid", "song", "albumrowid, track"),
+            SchemaObject.index("idx_song_artistrowid_dateadded", "song", "artistrowid, dateadded"),
+            SchemaObject.index("idx_album_artistrowid", "album", "artistrowid"),
+            SchemaObject.index("idx_songartist_artistid_songid", "songartist", "artistid, songid"),
+            SchemaObject.index("idx_songartist_songid", "songartist", "songid"),
+            // 内容指纹：查找重复文件，同步时匹配移动的文件
+            SchemaObject.index("idx_song_contentkey", "song", "contentkey"),
+    };
+
+    // 结构版本，只能追加，不能修改已发布的版本
+    private static final Migration[] MIGRATIONS = {
+            // 1：首次创建索引后更新统计信息，让查询优化器选择新索引
+            new Migration(1, "analyze"),
+            // 2：为已有数据建立全文索引
+            new Migration(2,
+                    "insert or ignore into searchdirty (kind, itemid) select " + SearchIndex.KIND_SONG + ", id from song",
+                    "insert or ignore into searchdirty (kind, itemid) select " + SearchIndex.KIND_ALBUM + ", id from album",
+                    "insert or ignore into searchdirty (kind, itemid) select " + SearchIndex.KIND_ARTIST + ", id from artist",
+                    "insert or ignore into searchdirty (kind, itemid) select " + SearchIndex.KIND_PLAYLIST + ", id from playlist"),
+            // 3：全文索引增加拼音转写列，删除旧的索引表和更新触发器（迁移后按新的列重新创建）并重建索引
+            new Migration(3,
+                    "drop table if exists songsearch",
+                    "drop table if exists albumsearch",
+                    "drop table if exists artistsearch",
+                    "drop trigger if exists trg_song_search_update",
+                    "drop trigger if exists trg_album_search_update",
+                    "drop trigger if exists trg_artist_search_update",
+                    "insert or ignore into searchdirty (kind, itemid) select " + SearchIndex.KIND_SONG + ", id from song",
+                    "insert or ignore into searchdirty (kind, itemid) select " + SearchIndex.KIND_ALBUM + ", id from album",
+                    "insert or ignore into searchdirty (kind, itemid) select " + SearchIndex.KIND_ARTIST + ", id from artist"),
+            // 4：分页列表的索引创建后更新统计信息
+            new Migration(4, "analyze"),
+            // 5：按名称为已有数据填充专辑/艺术家行ID，并为每首歌曲建立主艺术家的关联行
+            new Migration(5,
+                    "update album set artistrowid = ifnull((select r.id from artist r "
+                            + "where r.artistname = album.artist), 0)",
+                    "update song set artistrowid = ifnull((select r.id from artist r "
+                            + "where r.artistname = song.artist), 0), albumrowid = ifnull((select a.id from album a "
+                            + "where a.albumname = song.album and a.artist = song.artist), 0)",
+                    "delete from songartist",
+                    "insert into songartist (songid, artistid, position) "
+                            + "select id, artistrowid, 0 from song where artistrowid > 0",
+                    "analyze"),
+            // 6：按分隔符拆分多艺术家署名，所有署名标记为待重新统计，下一次扫描时拆分并删除未拆分的组合艺术家
+            new Migration(6, LibraryAggregates.SQL_MARK_ALL_CREDITS_DIRTY),
+            // 7：收听汇总以PlayHistory已有的累计次数作为全部时间的初始值（开始和结束各计一次，折半后写入）
+            new Migration(7, PlayEventLog.SQL_SEED_ROLLUPS_FROM_HISTORY),
+            // 8：内容指纹的索引改为在INDEXES中声明，删除LitePal按注解创建的同列索引
+            new Migration(8, "drop index if exists song_contentkey_index"),
+    };
+
+    private static final String SQL_CREATE_VERSION_TABLE =
+            "create table if not exists schemaversion (version integer primary key, appliedtime integer)";
+
+    private LibrarySchema() {
+    }
+
+    /**
+     * 全文索引表、待索引队列，以及源表上记录变化的触发器
+     */
+    static List<SchemaObject> searchObjects() {
+        List<SchemaObject> objects = new ArrayList<>();
+        objects.add(new SchemaObject("searchdirty", null, SearchIndex.SQL_CREATE_DIRTY_TABLE));
+        for (SearchIndex.Source source : SearchIndex.SOURCES) {
+            objects.add(new SchemaObject(source.ftsTable, null, "create virtual table if not exists "
+                    + source.ftsTable + " using fts4(" + TextUtils.join(", ", source.columns) + ")"));
+
+            String mark = " begin insert or ignore into searchdirty (kind, itemid) values (" + source.kind + ", ";
+            String insertTrigger = "trg_" + source.table + "_search_insert";
+            objects.add(new SchemaObject(insertTrigger, source.table, "create trigger if not exists " + insertTrigger
+                    + " after insert on " + source.table + mark + "new.id); end"));
+            String updateTrigger = "trg_" + source.table + "_search_update";
+            objects.add(new SchemaObject(updateTrigger, source.table, "create trigger if not exists " + updateTrigger
+                    + " after update of " + TextUtils.join(", ", source.columns) + " on " + source.table
+                    + mark + "new.id); end"));
+            String deleteTrigger = "trg_" + source.table + "_search_delete";
+            objects.add(new SchemaObject(deleteTrigger, source.table, "create trigger if not exists " + deleteTrigger
+                    + " after delete on " + source.table + mark + "old.id); end"));
+        }
+        return objects;
+    }
+
+    /**
+     * 删除歌曲时清理它的艺术家关联行（LitePal逐行删除和批量写入器的删除都会触发）
+     */
+    static List<SchemaObject> relationObjects() {
+        List<SchemaObject> objects = new ArrayList<>();
+        objects.add(new SchemaObject("trg_song_songartist_delete", "song", "create trigger if not exists "
+                + "trg_song_songartist_delete after delete on song begin "
+                + "delete from songartist where songid = old.id; end"));
+        return objects;
+    }
+
+    /**
+     * 不由LitePal管理的状态表：播放记录日志的写入位置、收听记录和收听汇总
+     */
+    static List<SchemaObject> stateObjects() {
+        List<SchemaObject> objects = new ArrayList<>();
+        objects.add(new SchemaObject("playbackjournal", null, PlaybackJournal.SQL_CREATE_STATE_TABLE));
+        objects.add(new SchemaObject("playevent", null, PlayEventLog.SQL_CREATE_EVENT_TABLE));
+        objects.add(new SchemaObject("playrollup", null, PlayEventLog.SQL_CREATE_ROLLUP_TABLE));
+        objects.add(new SchemaObject("idx_playrollup_rank", "playrollup", PlayEventLog.SQL_CREATE_ROLLUP_RANK_INDEX));
+        return objects;
+    }
+
+    /**
+     * 执行未完成的迁移并补齐缺失的索引，应在LitePal初始化后、访问音乐库之前调用
+     */
+    public static void migrate() {
+        migrate(LitePal.getDatabase());
+    }
+
+    /**
+     * 在后台线程执行{@link #migrate()}，只执行一次；应在LitePal初始化后调用
+     */
+    public static synchronized void migrateInBackground() {
+        if (backgroundMigrationStarted) {
+            return;
+        }
+        backgroundMigrationStarted = true;
+        new Thread(() -> {
+            try {
+                migrate();
+            } finally {
+                migrated.countDown();
+            }
+        }, "LibrarySchema").start();
+    }
+
+    /**
+     * 等待后台迁移完成，没有启动后台迁移（例如测试中直接调用{@link #migrate()}）时立即返回。
+     * 迁移可能执行整表更新，不要在主线程调用
+     */
+    public static void awaitMigrated() {
+        if (!backgroundMigrationStarted) {
+            return;
+        }
+        try {
+            migrated.await();
+        } catch (InterruptedException e) {
+            // 被中断时不再等待，迁移失败同样只影响查询速度
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void migrate(SQLiteDatabase db) {
+        long startTime = SystemClock.elapsedRealtime();
+        try {
+            int createdObjects = ensureObjects(db);
+
+            db.execSQL(SQL_CREATE_VERSION_TABLE);
+            int currentVersion = getVersion(db);
+            boolean migrated = false;
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= currentVersion) {
+                    continue;
+                }
+                db.beginTransaction();
+                try {
+                    for (String statement : migration.statements) {
+                        db.execSQL(statement);
+                    }
+                    db.execSQL("insert into schemaversion (version, appliedtime) values (?, ?)",
+                            new Object[]{migration.version, System.currentTimeMillis()});
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                currentVersion = migration.version;
+                migrated = true;
+                Log.d(TAG, "数据库结构已迁移到版本 " + currentVersion);
+            }
+            // 迁移可能删除了需要按新定义重建的对象
+            if (migrated) {
+                createdObjects += ensureObjects(db);
+            }
+
+            if (createdObjects > 0) {
+                Log.d(TAG, "创建索引/触发器 " + createdObjects + " 个, 耗时 " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+            }
+        } catch (Exception e) {
+            // 迁移失败不影响使用，只是查询变慢，下次启动会重试
+            Log.e(TAG, "数据库结构迁移失败", e);
+        }
+    }
+
+    /**
+     * 当前结构版本，没有执行过迁移时为0
+     */
+    static int getVersion(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("select max(version) from schemaversion", null);
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 创建缺失的索引、表和触发器，已存在的不做处理
+     *
+     * @return 新创建的数量
+     */
+    private static int ensureObjects(SQLiteDatabase db) {
+        Set<String> existing = new HashSet<>();
+        Cursor cursor = db.rawQuery("select name from sqlite_master", null);
+        try {
+            while (cursor.moveToNext()) {
+                existing.add(cursor.getString(0).toLowerCase(Locale.ROOT));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        List<SchemaObject> objects = new ArrayList<>(Arrays.asList(INDEXES));
+        // 触发器引用searchdirty，必须排在它之后
+        objects.addAll(searchObjects());
+        objects.addAll(relationObjects());
+        objects.addAll(stateObjects());
+        int created = 0;
+        for (SchemaObject object : objects) {
+            // 表由LitePal在第一次访问时创建，getDatabase()之后应当都已存在
+            if (existing.contains(object.name) || (object.table != null && !existing.contains(object.table))) {
+                continue;
+            }
+            db.execSQL(object.createSql);
+            existing.add(object.name);
+            created++;
+        }
+        return created;
+    }
+}
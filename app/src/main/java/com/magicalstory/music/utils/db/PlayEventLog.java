@@ -0,0 +1,266 @@
+package com.magicalstory.music.utils.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.NonNull;
+
+import org.litepal.LitePal;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * 收听记录和按周期汇总的统计
+ * PlayHistory每首歌只有一行，每次播放覆盖上一次的时长和进度，统计总播放次数需要读取整张表。这里另外维护：
+ * <ul>
+ *     <li>playevent：只追加的收听记录，每次收听一行（歌曲ID、开始时间、收听时长、结束原因），都是定长的整数列，不修改不删除</li>
+ *     <li>playrollup：按天、周、月和全部时间汇总的播放次数和收听时长，分别统计总数、每首歌、每张专辑（行ID）
+ *     和每位署名艺术家（行ID），写入收听记录时在同一个事务中累加</li>
+ * </ul>
+ * 统计页面和"最常播放"直接读取汇总行，按(周期, 时间段, 类型, 播放次数)的索引读取前k项。
+ * 写入由{@link PlaybackJournal}在合并写入的事务中完成。
+ */
+public final class PlayEventLog {
+
+    // 结束原因
+    public static final int END_COMPLETED = 0;      // 播放完成
+    public static final int END_SKIPPED = 1;        // 未播放完切换到其他歌曲
+
+    // 汇总周期
+    public static final int PERIOD_DAY = 0;
+    public static final int PERIOD_WEEK = 1;
+    public static final int PERIOD_MONTH = 2;
+    public static final int PERIOD_ALL = 3;         // 全部时间，时间段固定为0
+
+    // 汇总类型
+    public static final int KIND_TOTAL = 0;         // 所有收听的总数，itemid固定为0
+    public static final int KIND_SONG = 1;
+    public static final int KIND_ALBUM = 2;
+    public static final int KIND_ARTIST = 3;
+
+    private static final int[] PERIODS = {PERIOD_DAY, PERIOD_WEEK, PERIOD_MONTH, PERIOD_ALL};
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    static final String SQL_CREATE_EVENT_TABLE = "create table if not exists playevent "
+            + "(id integer primary key, songid integer not null, starttime integer not null, "
+            + "listenedms integer not null, endreason integer not null)";
+    static final String SQL_CREATE_ROLLUP_TABLE = "create table if not exists playrollup "
+            + "(period integer not null, bucket integer not null, kind integer not null, itemid integer not null, "
+            + "playcount integer not null, listenedms integer not null, primary key (period, bucket, kind, itemid))";
+    // 按播放次数读取前k项
+    static final String SQL_CREATE_ROLLUP_RANK_INDEX = "create index if not exists idx_playrollup_rank "
+            + "on playrollup (period, bucket, kind, playcount, itemid)";
+
+    // 升级前只有PlayHistory的累计次数，作为全部时间的汇总（没有收听时长）
+    // PlayHistory每次播放在开始和结束时各加一次，按(playcount + 1) / 2折算为收听次数（只开始未结束的也算一次）
+    static final String[] SQL_SEED_ROLLUPS_FROM_HISTORY = {
+            "insert or ignore into playrollup (period, bucket, kind, itemid, playcount, listenedms) "
+                    + "select " + PERIOD_ALL + ", 0, " + KIND_TOTAL + ", 0, ifnull(sum((playcount + 1) / 2), 0), 0 "
+                    + "from playhistory",
+            "insert or ignore into playrollup (period, bucket, kind, itemid, playcount, listenedms) "
+                    + "select " + PERIOD_ALL + ", 0, " + KIND_SONG + ", songid, sum((playcount + 1) / 2), 0 "
+                    + "from playhistory group by songid",
+            "insert or ignore into playrollup (period, bucket, kind, itemid, playcount, listenedms) "
+                    + "select " + PERIOD_ALL + ", 0, " + KIND_ALBUM + ", s.albumrowid, sum((h.playcount + 1) / 2), 0 "
+                    + "from playhistory h join song s on s.id = h.songid where s.albumrowid > 0 group by s.albumrowid",
+            "insert or ignore into playrollup (period, bucket, kind, itemid, playcount, listenedms) "
+                    + "select " + PERIOD_ALL + ", 0, " + KIND_ARTIST + ", sa.artistid, sum((h.playcount + 1) / 2), 0 "
+                    + "from playhistory h join songartist sa on sa.songid = h.songid group by sa.artistid",
+    };
+
+    private static final String SQL_INSERT_EVENT = "insert into playevent (songid, starttime, listenedms, endreason) "
+            + "values (?, ?, ?, ?)";
+    // 没有汇总行时先插入空行，再累加
+    private static final String SQL_ENSURE_ROLLUP = "insert or ignore into playrollup "
+            + "(period, bucket, kind, itemid, playcount, listenedms) values (?, ?, ?, ?, 0, 0)";
+    private static final String SQL_ADD_ROLLUP = "update playrollup set playcount = playcount + 1, "
+            + "listenedms = listenedms + ? where period = ? and bucket = ? and kind = ? and itemid = ?";
+    private static final String SQL_ENSURE_ARTIST_ROLLUPS = "insert or ignore into playrollup "
+            + "(period, bucket, kind, itemid, playcount, listenedms) "
+            + "select ?, ?, " + KIND_ARTIST + ", artistid, 0, 0 from songartist where songid = ?";
+    private static final String SQL_ADD_ARTIST_ROLLUPS = "update playrollup set playcount = playcount + 1, "
+            + "listenedms = listenedms + ? where period = ? and bucket = ? and kind = " + KIND_ARTIST
+            + " and itemid in (select artistid from songartist where songid = ?)";
+
+    private static final String SQL_DELETE_MOST_PLAYED = "delete from playrollup where period = " + PERIOD_ALL
+            + " and bucket = 0 and kind = " + KIND_SONG;
+
+    private static final String SQL_SELECT_ROLLUP = "select itemid, playcount, listenedms from playrollup "
+            + "where period = ? and bucket = ? and kind = ? and itemid = ?";
+    private static final String SQL_SELECT_TOP = "select itemid, playcount, listenedms from playrollup "
+            + "where period = ? and bucket = ? and kind = ? order by playcount desc, itemid desc limit ?";
+
+    /**
+     * 一行汇总
+     */
+    public static final class Rollup {
+        public final long itemId;
+        public final long playCount;
+        public final long listenedMs;
+
+        Rollup(long itemId, long playCount, long listenedMs) {
+            this.itemId = itemId;
+            this.playCount = playCount;
+            this.listenedMs = listenedMs;
+        }
+    }
+
+    private PlayEventLog() {
+    }
+
+    /**
+     * 收听时间所在的时间段：天和周按本地时区从1970-01-01起计数（周从周一开始），月为 年 * 12 + 月（0-11）
+     */
+    public static long bucketOf(int period, long time) {
+        TimeZone timeZone = TimeZone.getDefault();
+        long day = floorDiv(time + timeZone.getOffset(time), DAY_MS);
+        switch (period) {
+            case PERIOD_DAY:
+                return day;
+            case PERIOD_WEEK:
+                // 1970-01-01是周四
+                return floorDiv(day + 3, 7);
+            case PERIOD_MONTH:
+                Calendar calendar = Calendar.getInstance(timeZone);
+                calendar.setTimeInMillis(time);
+                return calendar.get(Calendar.YEAR) * 12L + calendar.get(Calendar.MONTH);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 时间所在时间段的总播放次数和收听时长，没有收听时都为0
+     */
+    @NonNull
+    public static Rollup getTotal(int period, long time) {
+        Cursor cursor = LitePal.getDatabase().rawQuery(SQL_SELECT_ROLLUP, new String[]{String.valueOf(period),
+                String.valueOf(bucketOf(period, time)), String.valueOf(KIND_TOTAL), "0"});
+        try {
+            return cursor.moveToFirst() ? read(cursor) : new Rollup(0, 0, 0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 时间所在时间段播放次数最多的歌曲/专辑/艺术家，按播放次数倒序
+     *
+     * @param kind {@link #KIND_SONG}、{@link #KIND_ALBUM}或{@link #KIND_ARTIST}
+     */
+    @NonNull
+    public static List<Rollup> getTop(int period, long time, int kind, int limit) {
+        List<Rollup> rollups = new ArrayList<>(limit);
+        Cursor cursor = LitePal.getDatabase().rawQuery(SQL_SELECT_TOP, new String[]{String.valueOf(period),
+                String.valueOf(bucketOf(period, time)), String.valueOf(kind), String.valueOf(limit)});
+        try {
+            while (cursor.moveToNext()) {
+                rollups.add(read(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return rollups;
+    }
+
+    /**
+     * 从"最常播放"中移除歌曲：删除全部时间的歌曲汇总，收听记录和其他周期的汇总保留
+     */
+    public static void removeFromMostPlayed(long songId) {
+        LitePal.getDatabase().execSQL(SQL_DELETE_MOST_PLAYED + " and itemid = ?", new Object[]{songId});
+    }
+
+    /**
+     * 清空"最常播放"，收听记录和其他周期的汇总保留
+     */
+    public static void clearMostPlayed() {
+        LitePal.getDatabase().execSQL(SQL_DELETE_MOST_PLAYED);
+    }
+
+    // Math.floorDiv需要API 24
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+
+    private static Rollup read(Cursor cursor) {
+        return new Rollup(cursor.getLong(0), cursor.getLong(1), cursor.getLong(2));
+    }
+
+    /**
+     * 在调用方的事务中写入收听记录并累加汇总，语句只编译一次；用完需要调用{@link #close()}
+     */
+    static final class Writer {
+        private final SQLiteStatement insertEvent;
+        private final SQLiteStatement ensureRollup;
+        private final SQLiteStatement addRollup;
+        private final SQLiteStatement ensureArtistRollups;
+        private final SQLiteStatement addArtistRollups;
+
+        Writer(SQLiteDatabase db) {
+            insertEvent = db.compileStatement(SQL_INSERT_EVENT);
+            ensureRollup = db.compileStatement(SQL_ENSURE_ROLLUP);
+            addRollup = db.compileStatement(SQL_ADD_ROLLUP);
+            ensureArtistRollups = db.compileStatement(SQL_ENSURE_ARTIST_ROLLUPS);
+            addArtistRollups = db.compileStatement(SQL_ADD_ARTIST_ROLLUPS);
+        }
+
+        /**
+         * 写入一次收听
+         *
+         * @param albumRowId 歌曲所属专辑的行ID，没有时为0
+         */
+        void append(long songId, long albumRowId, long startTime, long listenedMs, int endReason) {
+            insertEvent.bindLong(1, songId);
+            insertEvent.bindLong(2, startTime);
+            insertEvent.bindLong(3, listenedMs);
+            insertEvent.bindLong(4, endReason);
+            insertEvent.executeInsert();
+
+            for (int period : PERIODS) {
+                long bucket = bucketOf(period, startTime);
+                add(period, bucket, KIND_TOTAL, 0, listenedMs);
+                add(period, bucket, KIND_SONG, songId, listenedMs);
+                if (albumRowId > 0) {
+                    add(period, bucket, KIND_ALBUM, albumRowId, listenedMs);
+                }
+                // 每位署名艺术家各累加一次
+                ensureArtistRollups.bindLong(1, period);
+                ensureArtistRollups.bindLong(2, bucket);
+                ensureArtistRollups.bindLong(3, songId);
+                ensureArtistRollups.executeInsert();
+                addArtistRollups.bindLong(1, listenedMs);
+                addArtistRollups.bindLong(2, period);
+                addArtistRollups.bindLong(3, bucket);
+                addArtistRollups.bindLong(4, songId);
+                addArtistRollups.executeUpdateDelete();
+            }
+        }
+
+        private void add(int period, long bucket, int kind, long itemId, long listenedMs) {
+            ensureRollup.bindLong(1, period);
+            ensureRollup.bindLong(2, bucket);
+            ensureRollup.bindLong(3, kind);
+            ensureRollup.bindLong(4, itemId);
+            ensureRollup.executeInsert();
+            addRollup.bindLong(1, listenedMs);
+            addRollup.bindLong(2, period);
+            addRollup.bindLong(3, bucket);
+            addRollup.bindLong(4, kind);
+            addRollup.bindLong(5, itemId);
+            addRollup.executeUpdateDelete();
+        }
+
+        void close() {
+            insertEvent.close();
+            ensureRollup.close();
+            addRollup.close();
+            ensureArtistRollups.close();
+            addArtistRollups.close();
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.magicalstory.music.utils.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.magicalstory.music.utils.query.LibrarySnapshot;
+import com.magicalstory.music.utils.query.QueryCache;
+
+import org.litepal.LitePal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 播放记录的延迟写入日志
+ * 每次切歌原本要同步写入播放历史和歌曲、专辑、艺术家的最后播放时间（每项先查再写），快速切歌时后台线程被写入占满。
+ * 这里先把播放事件追加到一个小的日志文件，再合并到内存中，定时在一个事务中写入数据库：
+ * <ul>
+ *     <li>同一首歌的多次播放合并为一行：播放次数累加，最后播放时间、播放时长和进度取最后一次</li>
+ *     <li>每次收听结束的记录不合并，逐条写入{@link PlayEventLog}并累加收听汇总</li>
+ *     <li>第一个事件之后{@link #FLUSH_DELAY_MS}写入一次，累积的歌曲数达到{@link #MAX_PENDING_SONGS}时立即写入；
+ *     暂停播放、服务销毁、应用进入后台时调用{@link #flush()}</li>
+ *     <li>进程在写入前被杀死时，下次启动从日志文件恢复未写入的事件；
+ *     每个事件有递增的序号，已写入的最大序号与数据在同一个事务中保存到playbackjournal表，恢复时跳过已写入的事件</li>
+ * </ul>
+ * 写入完成后才更新快照并通知表变化，读取方在写入前看到的是上一次写入的数据。
+ * 所有状态只在journalThread中访问。
+ */
+public final class PlaybackJournal {
+    private static final String TAG = "PlaybackJournal";
+
+    // 第一个事件之后等待的时间
+    static final long FLUSH_DELAY_MS = 5000;
+    // 累积的歌曲数达到上限时不再等待
+    static final int MAX_PENDING_SONGS = 50;
+
+    private static final String FILE_NAME = "playback_journal.log";
+
+    // 已写入的最大序号，只有一行
+    static final String SQL_CREATE_STATE_TABLE = "create table if not exists playbackjournal "
+            + "(id integer primary key, flushedseq integer not null)";
+    private static final String SQL_SAVE_FLUSHED_SEQ = "insert or replace into playbackjournal (id, flushedseq) "
+            + "values (1, ?)";
+
+    private static final String SQL_UPDATE_SONG_LAST_PLAYED = "update song set lastplayed = ? where id = ?";
+    private static final String SQL_UPDATE_ALBUM_LAST_PLAYED = "update album set lastplayed = ? where id = ?";
+    private static final String SQL_UPDATE_ARTIST_LAST_PLAYED = "update artist set lastplayed = ? where id = ?";
+    // 与PlayHistory.recordPlay一致：已有记录时累加播放次数，没有时新建一行（歌曲已删除时不新建）
+    private static final String SQL_UPDATE_HISTORY = "update playhistory set playcount = playcount + ?, "
+            + "lastplaytime = ?, playduration = ?, iscompleted = ?, playprogress = ? where songid = ?";
+    private static final String SQL_INSERT_HISTORY = "insert into playhistory (songid, playtime, lastplaytime, "
+            + "playcount, playduration, iscompleted, playprogress, skipcount) "
+            + "select ?, ?, ?, ?, ?, ?, ?, 0 where exists (select 1 from song where id = ?)";
+
+    private static volatile PlaybackJournal instance;
+
+    // 开始播放的事件没有结束原因
+    private static final int NO_END_REASON = -1;
+
+    /**
+     * 一首歌合并后的播放记录
+     */
+    private static final class PendingPlay {
+        final long songId;
+        long albumRowId;
+        long artistRowId;
+        int playCount;
+        long lastPlayTime;
+        long playDuration;
+        boolean completed;
+        double playProgress;
+
+        PendingPlay(long songId) {
+            this.songId = songId;
+        }
+    }
+
+    private final File file;
+    private final Handler journalHandler;
+
+    // 以下状态只在journalThread中访问
+    private final Map<Long, PendingPlay> pending = new LinkedHashMap<>();
+    // 收听结束的事件，long[]{歌曲ID, 专辑行ID, 开始时间, 收听时长, 结束原因}
+    private final List<long[]> pendingListens = new ArrayList<>();
+    private FileOutputStream output;
+    private long nextSeq = 1;
+    private long pendingMaxSeq = 0;
+    private boolean flushScheduled = false;
+    // 上次写入后最后播放时间最新的歌曲、专辑、艺术家，-1表示未知
+    private long recentSongId = -1;
+    private long recentAlbumRowId = -1;
+    private long recentArtistRowId = -1;
+
+    private final Runnable flushRunnable = this::flushPending;
+
+    private PlaybackJournal(Context context) {
+        this.file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+        HandlerThread journalThread = new HandlerThread("PlaybackJournal");
+        journalThread.start();
+        this.journalHandler = new Handler(journalThread.getLooper());
+        // 恢复上次未写入的事件
+        journalHandler.post(this::recover);
+    }
+
+    public static PlaybackJournal getInstance(Context context) {
+        if (instance == null) {
+            synchronized (PlaybackJournal.class) {
+                if (instance == null) {
+                    instance = new PlaybackJournal(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 记录开始播放：播放次数加一，更新歌曲、专辑（行ID）和艺术家（行ID）的最后播放时间
+     */
+    public void recordPlay(long songId, long albumRowId, long artistRowId) {
+        record(songId, albumRowId, artistRowId, 0, 0, false, 0.0, NO_END_REASON);
+    }
+
+    /**
+     * 记录一次收听结束：与{@link #recordPlay}相同地更新播放历史，并追加一条收听记录
+     *
+     * @param startTime  开始播放的时间
+     * @param listenedMs 实际收听的时长（毫秒，不含暂停）
+     * @param endReason  {@link PlayEventLog#END_COMPLETED}或{@link PlayEventLog#END_SKIPPED}
+     */
+    public void recordListen(long songId, long albumRowId, long artistRowId, long startTime, long listenedMs,
+                             int endReason) {
+        boolean completed = endReason == PlayEventLog.END_COMPLETED;
+        record(songId, albumRowId, artistRowId, startTime, listenedMs, completed, completed ? 1.0 : 0.0, endReason);
+    }
+
+    private void record(long songId, long albumRowId, long artistRowId, long startTime, long listenedMs,
+                        boolean completed, double playProgress, int endReason) {
+        long time = System.currentTimeMillis();
+        journalHandler.post(() -> {
+            long seq = nextSeq++;
+            append(seq + "," + songId + "," + albumRowId + "," + artistRowId + "," + time + "," + listenedMs + ","
+                    + (completed ? 1 : 0) + "," + playProgress + "," + startTime + "," + endReason + "\n");
+            merge(seq, songId, albumRowId, artistRowId, time, listenedMs, completed, playProgress, startTime,
+                    endReason);
+            scheduleFlush();
+        });
+    }
+
+    /**
+     * 立即写入累积的事件（不等待完成）
+     */
+    public void flush() {
+        journalHandler.post(() -> {
+            journalHandler.removeCallbacks(flushRunnable);
+            flushPending();
+        });
+    }
+
+    private void merge(long seq, long songId, long albumRowId, long artistRowId, long time, long playDuration,
+                       boolean completed, double playProgress, long startTime, int endReason) {
+        PendingPlay play = pending.get(songId);
+        if (play == null) {
+            play = new PendingPlay(songId);
+            pending.put(songId, play);
+        }
+        play.albumRowId = albumRowId;
+        play.artistRowId = artistRowId;
+        play.playCount++;
+        play.lastPlayTime = Math.max(play.lastPlayTime, time);
+        play.playDuration = playDuration;
+        play.completed = completed;
+        play.playProgress = playProgress;
+        pendingMaxSeq = Math.max(pendingMaxSeq, seq);
+        if (endReason != NO_END_REASON) {
+            pendingListens.add(new long[]{songId, albumRowId, startTime, playDuration, endReason});
+        }
+    }
+
+    private void scheduleFlush() {
+        if (pending.size() >= MAX_PENDING_SONGS) {
+            journalHandler.removeCallbacks(flushRunnable);
+            flushPending();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            journalHandler.postDelayed(flushRunnable, FLUSH_DELAY_MS);
+        }
+    }
+
+    /**
+     * 在一个事务中写入累积的事件，失败时保留，下一次事件后重试
+     */
+    private void flushPending() {
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+        long startTime = SystemClock.elapsedRealtime();
+        // 按最后播放时间排序，多首歌属于同一专辑或艺术家时保留最后一次的时间
+        List<PendingPlay> plays = new ArrayList<>(pending.values());
+        Collections.sort(plays, (a, b) -> Long.compare(a.lastPlayTime, b.lastPlayTime));
+
+        SQLiteDatabase db = LitePal.getDatabase();
+        SQLiteStatement updateSong = null;
+        SQLiteStatement updateAlbum = null;
+        SQLiteStatement updateArtist = null;
+        SQLiteStatement updateHistory = null;
+        SQLiteStatement insertHistory = null;
+        SQLiteStatement saveSeq = null;
+        PlayEventLog.Writer eventWriter = null;
+        db.beginTransaction();
+        try {
+            updateSong = db.compileStatement(SQL_UPDATE_SONG_LAST_PLAYED);
+            updateAlbum = db.compileStatement(SQL_UPDATE_ALBUM_LAST_PLAYED);
+            updateArtist = db.compileStatement(SQL_UPDATE_ARTIST_LAST_PLAYED);
+            updateHistory = db.compileStatement(SQL_UPDATE_HISTORY);
+            insertHistory = db.compileStatement(SQL_INSERT_HISTORY);
+            saveSeq = db.compileStatement(SQL_SAVE_FLUSHED_SEQ);
+            for (PendingPlay play : plays) {
+                updateLastPlayed(updateSong, play.songId, play.lastPlayTime);
+                if (play.albumRowId > 0) {
+                    updateLastPlayed(updateAlbum, play.albumRowId, play.lastPlayTime);
+                }
+                if (play.artistRowId > 0) {
+                    updateLastPlayed(updateArtist, play.artistRowId, play.lastPlayTime);
+                }
+
+                updateHistory.bindLong(1, play.playCount);
+                updateHistory.bindLong(2, play.lastPlayTime);
+                updateHistory.bindLong(3, play.playDuration);
+                updateHistory.bindLong(4, play.completed ? 1 : 0);
+                updateHistory.bindDouble(5, play.playProgress);
+                updateHistory.bindLong(6, play.songId);
+                if (updateHistory.executeUpdateDelete() == 0) {
+                    insertHistory.bindLong(1, play.songId);
+                    insertHistory.bindLong(2, play.lastPlayTime);
+                    insertHistory.bindLong(3, play.lastPlayTime);
+                    insertHistory.bindLong(4, play.playCount);
+                    insertHistory.bindLong(5, play.playDuration);
+                    insertHistory.bindLong(6, play.completed ? 1 : 0);
+                    insertHistory.bindDouble(7, play.playProgress);
+                    insertHistory.bindLong(8, play.songId);
+                    insertHistory.executeInsert();
+                }
+            }
+            eventWriter = new PlayEventLog.Writer(db);
+            for (long[] listen : pendingListens) {
+                eventWriter.append(listen[0], listen[1], listen[2], listen[3], (int) listen[4]);
+            }
+            saveSeq.bindLong(1, pendingMaxSeq);
+            saveSeq.executeUpdateDelete();
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.e(TAG, "写入播放记录失败", e);
+            return;
+        } finally {
+            db.endTransaction();
+            closeQuietly(updateSong, updateAlbum, updateArtist, updateHistory, insertHistory, saveSeq);
+            if (eventWriter != null) {
+                eventWriter.close();
+            }
+        }
+
+        boolean hasListens = !pendingListens.isEmpty();
+        pending.clear();
+        pendingListens.clear();
+        // 事件都已写入数据库，日志从头开始
+        truncate();
+
+        // 快照已就地更新；只有按最后播放时间的顺序变化时（播放了不是最新的那一项）才通知歌曲、专辑、艺术家表变化，
+        // 一直播放同一首歌、同一张专辑时不让"最近播放"列表重新加载
+        boolean songOrderChanged = false;
+        boolean albumOrderChanged = false;
+        boolean artistOrderChanged = false;
+        for (PendingPlay play : plays) {
+            LibrarySnapshot.updateLastPlayed(play.songId, play.albumRowId, play.artistRowId, play.lastPlayTime);
+            if (play.songId != recentSongId) {
+                songOrderChanged = true;
+                recentSongId = play.songId;
+            }
+            if (play.albumRowId > 0 && play.albumRowId != recentAlbumRowId) {
+                albumOrderChanged = true;
+                recentAlbumRowId = play.albumRowId;
+            }
+            if (play.artistRowId > 0 && play.artistRowId != recentArtistRowId) {
+                artistOrderChanged = true;
+                recentArtistRowId = play.artistRowId;
+            }
+        }
+        List<String> tables = new ArrayList<>();
+        tables.add(QueryCache.PLAY_HISTORY);
+        if (hasListens) {
+            tables.add(QueryCache.PLAY_ROLLUP);
+        }
+        if (songOrderChanged) {
+            tables.add(QueryCache.SONG);
+        }
+        if (albumOrderChanged) {
+            tables.add(QueryCache.ALBUM);
+        }
+        if (artistOrderChanged) {
+            tables.add(QueryCache.ARTIST);
+        }
+        QueryCache.invalidate(tables.toArray(new String[0]));
+        Log.d(TAG, "写入播放记录 " + plays.size() + " 首, 耗时 " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+    }
+
+    private static void updateLastPlayed(SQLiteStatement statement, long id, long time) {
+        statement.bindLong(1, time);
+        statement.bindLong(2, id);
+        statement.executeUpdateDelete();
+    }
+
+    /**
+     * 读取日志中尚未写入数据库的事件
+     */
+    private void recover() {
+        // 状态表和收听记录表由迁移创建
+        LibrarySchema.awaitMigrated();
+        long flushedSeq = 0;
+        try {
+            // 状态表由LibrarySchema创建
+            Cursor cursor = LitePal.getDatabase().rawQuery("select flushedseq from playbackjournal where id = 1", null);
+            try {
+                if (cursor.moveToFirst()) {
+                    flushedSeq = cursor.getLong(0);
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "读取播放记录日志状态失败", e);
+            return;
+        }
+
+        long maxSeq = flushedSeq;
+        int recovered = 0;
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(",");
+                    // 进程在写入一行的过程中被杀死时，最后一行不完整
+                    if (fields.length != 10) {
+                        continue;
+                    }
+                    try {
+                        long seq = Long.parseLong(fields[0]);
+                        maxSeq = Math.max(maxSeq, seq);
+                        if (seq <= flushedSeq) {
+                            continue;
+                        }
+                        merge(seq, Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+                                Long.parseLong(fields[4]), Long.parseLong(fields[5]), "1".equals(fields[6]),
+                                Double.parseDouble(fields[7]), Long.parseLong(fields[8]),
+                                Integer.parseInt(fields[9]));
+                        recovered++;
+                    } catch (NumberFormatException e) {
+                        Log.w(TAG, "跳过无法解析的播放记录: " + line);
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "读取播放记录日志失败", e);
+            }
+        }
+        nextSeq = Math.max(nextSeq, maxSeq + 1);
+
+        if (recovered > 0) {
+            Log.d(TAG, "恢复未写入的播放记录 " + recovered + " 条");
+            flushPending();
+        } else {
+            truncate();
+        }
+    }
+
+    private void append(@NonNull String line) {
+        try {
+            if (output == null) {
+                output = new FileOutputStream(file, true);
+            }
+            // 不经过缓冲直接写入，进程被杀死时已写入的行保留在系统缓存中
+            output.write(line.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // 只影响崩溃后的恢复，事件仍在内存中等待写入
+            Log.e(TAG, "追加播放记录日志失败", e);
+        }
+    }
+
+    private void truncate() {
+        try {
+            if (output != null) {
+                output.close();
+            }
+            output = new FileOutputStream(file, false);
+        } catch (IOException e) {
+            Log.e(TAG, "清空播放记录日志失败", e);
+            output = null;
+        }
+    }
+
+    private static void closeQuietly(SQLiteStatement... statements) {
+        for (SQLiteStatement statement : statements) {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+    }
+}
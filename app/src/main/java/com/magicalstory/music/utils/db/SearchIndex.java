@@ -0,0 +1,330 @@
+package com.magicalstory.music.utils.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.litepal.LitePal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 音乐库全文索引
+ * 歌曲（标题/艺术家/专辑）、专辑、艺术家和歌单名称分别保存在一张FTS4表中。
+ * 源表上的触发器把新增、修改、删除的行记录到searchdirty表，这里再把这些行重新写入索引，
+ * 因此扫描、同步、标签编辑等所有写入路径都不需要单独维护索引。
+ * <p>
+ * 写入索引前文本统一转换为小写，中日韩文字每个字单独作为一个词，
+ * 查询时连续的中日韩文字组成短语，与LIKE '%关键字%'一样可以匹配词中间的部分。
+ * 歌曲、专辑、艺术家还索引了名称的拼音转写（全拼和首字母），输入"zjl"、"zhoujielun"可以找到"周杰伦"。
+ */
+public final class SearchIndex {
+    private static final String TAG = "SearchIndex";
+
+    public static final int KIND_SONG = 0;
+    public static final int KIND_ALBUM = 1;
+    public static final int KIND_ARTIST = 2;
+    public static final int KIND_PLAYLIST = 3;
+
+    // 每个事务处理的待索引行数
+    private static final int SYNC_BATCH_SIZE = 512;
+
+    /**
+     * 被索引的源表
+     */
+    static final class Source {
+        final int kind;
+        final String table;         // 源表
+        final String ftsTable;      // 索引表
+        final String[] columns;     // 被索引的列，按搜索优先级排列
+
+        Source(int kind, String table, String ftsTable, String... columns) {
+            this.kind = kind;
+            this.table = table;
+            this.ftsTable = ftsTable;
+            this.columns = columns;
+        }
+    }
+
+    static final Source[] SOURCES = {
+            new Source(KIND_SONG, "song", "songsearch", "title", "artist", "album", "titlepinyin", "artistpinyin"),
+            new Source(KIND_ALBUM, "album", "albumsearch", "albumname", "artist", "albumnamepinyin"),
+            new Source(KIND_ARTIST, "artist", "artistsearch", "artistname", "artistnamepinyin"),
+            new Source(KIND_PLAYLIST, "playlist", "playlistsearch", "name"),
+    };
+
+    static final String SQL_CREATE_DIRTY_TABLE = "create table if not exists searchdirty "
+            + "(kind integer not null, itemid integer not null, primary key (kind, itemid))";
+
+    /**
+     * 一条匹配结果
+     */
+    public static final class Match {
+        public final long id;
+        public final int column;    // 匹配的列在Source.columns中的位置，-1表示跨列匹配
+        public final String text;   // 匹配列的索引文本（已规范化），跨列匹配时为null
+
+        Match(long id, int column, String text) {
+            this.id = id;
+            this.column = column;
+            this.text = text;
+        }
+    }
+
+    private static final Object SYNC_LOCK = new Object();
+
+    private SearchIndex() {
+    }
+
+    /**
+     * 把searchdirty中记录的行写入索引
+     *
+     * @return 重新索引的行数
+     */
+    public static int syncPending() {
+        LibrarySchema.awaitMigrated();
+        synchronized (SYNC_LOCK) {
+            SQLiteDatabase db = LitePal.getDatabase();
+            if (!hasPending(db)) {
+                return 0;
+            }
+            long startTime = SystemClock.elapsedRealtime();
+            int syncedCount = 0;
+            while (true) {
+                int count = syncBatch(db);
+                if (count == 0) {
+                    break;
+                }
+                syncedCount += count;
+            }
+            Log.d(TAG, "全文索引更新: " + syncedCount + " 行, 耗时 " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+            return syncedCount;
+        }
+    }
+
+    /**
+     * 被索引的列数，列按搜索优先级排列
+     */
+    public static int columnCount(int kind) {
+        return SOURCES[kind].columns.length;
+    }
+
+    /**
+     * 查询匹配的行
+     *
+     * @param column 只匹配该列（Source.columns中的位置），-1表示不限列
+     * @param limit  最多返回的行数
+     */
+    @NonNull
+    public static List<Match> match(int kind, int column, @NonNull String query, int limit) {
+        List<Match> matches = new ArrayList<>();
+        Source source = SOURCES[kind];
+        String expression = buildMatchExpression(query, column < 0 ? null : source.columns[column]);
+        if (expression == null) {
+            return matches;
+        }
+
+        String textColumn = column < 0 ? "null" : source.columns[column];
+        Cursor cursor = LitePal.getDatabase().rawQuery("select docid, " + textColumn + " from " + source.ftsTable
+                + " where " + source.ftsTable + " match ? limit " + limit, new String[]{expression});
+        try {
+            while (cursor.moveToNext()) {
+                matches.add(new Match(cursor.getLong(0), column, cursor.getString(1)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return matches;
+    }
+
+    /**
+     * 规范化索引和查询文本：转为小写，标点和空白替换为空格，中日韩文字之间插入空格
+     */
+    @NonNull
+    public static String normalize(String text) {
+        if (TextUtils.isEmpty(text)) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder builder = new StringBuilder(lower.length() * 2);
+        boolean lastSpace = true;
+        for (int i = 0; i < lower.length(); ) {
+            int codePoint = lower.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (isCjk(codePoint)) {
+                if (!lastSpace) {
+                    builder.append(' ');
+                }
+                builder.appendCodePoint(codePoint).append(' ');
+                lastSpace = true;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                builder.appendCodePoint(codePoint);
+                lastSpace = false;
+            } else if (!lastSpace) {
+                builder.append(' ');
+                lastSpace = true;
+            }
+        }
+        return builder.toString().trim();
+    }
+
+    /**
+     * 构建FTS查询表达式：连续的中日韩文字组成短语，其他词按前缀匹配，各部分之间为AND
+     * 例如限定title列时，"周杰伦 jay"转换为 "周 杰 伦" title:周 title:杰 title:伦 title:jay*
+     *
+     * @return 查询中没有可搜索的字符时返回null
+     */
+    static String buildMatchExpression(String query, String column) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        String prefix = column == null ? "" : column + ":";
+        StringBuilder expression = new StringBuilder();
+        StringBuilder phrase = new StringBuilder();
+        for (String token : normalized.split(" ")) {
+            if (isCjk(token.codePointAt(0))) {
+                if (phrase.length() > 0) {
+                    phrase.append(' ');
+                }
+                phrase.append(token);
+                continue;
+            }
+            appendPhrase(expression, prefix, phrase);
+            if (expression.length() > 0) {
+                expression.append(' ');
+            }
+            expression.append(prefix).append(token).append('*');
+        }
+        appendPhrase(expression, prefix, phrase);
+        return expression.toString();
+    }
+
+    private static void appendPhrase(StringBuilder expression, String prefix, StringBuilder phrase) {
+        if (phrase.length() == 0) {
+            return;
+        }
+        if (expression.length() > 0) {
+            expression.append(' ');
+        }
+        String[] chars = phrase.toString().split(" ");
+        if (chars.length > 1) {
+            expression.append('"').append(phrase).append('"');
+        }
+        // FTS4不支持对短语使用列过滤，限定列时再要求每个字都出现在该列中
+        if (chars.length == 1 || !prefix.isEmpty()) {
+            for (String c : chars) {
+                if (expression.length() > 0 && expression.charAt(expression.length() - 1) != ' ') {
+                    expression.append(' ');
+                }
+                expression.append(prefix).append(c);
+            }
+        }
+        phrase.setLength(0);
+    }
+
+    static boolean isCjk(int codePoint) {
+        if (Character.isIdeographic(codePoint)) {
+            return true;
+        }
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(codePoint);
+        return block == Character.UnicodeBlock.HIRAGANA
+                || block == Character.UnicodeBlock.KATAKANA
+                || block == Character.UnicodeBlock.HANGUL_SYLLABLES;
+    }
+
+    private static boolean hasPending(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("select 1 from searchdirty limit 1", null);
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 在一个事务中处理一批待索引的行
+     * 读取和删除searchdirty都在事务中，期间其他线程的写入会等待事务结束，不会丢失变化
+     */
+    private static int syncBatch(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            List<List<Long>> idsByKind = new ArrayList<>();
+            for (int i = 0; i < SOURCES.length; i++) {
+                idsByKind.add(new ArrayList<>());
+            }
+            int count = 0;
+            Cursor cursor = db.rawQuery("select kind, itemid from searchdirty limit " + SYNC_BATCH_SIZE, null);
+            try {
+                while (cursor.moveToNext()) {
+                    idsByKind.get(cursor.getInt(0)).add(cursor.getLong(1));
+                    count++;
+                }
+            } finally {
+                cursor.close();
+            }
+
+            for (Source source : SOURCES) {
+                List<Long> ids = idsByKind.get(source.kind);
+                if (ids.isEmpty()) {
+                    continue;
+                }
+                String inClause = joinIds(ids);
+                reindex(db, source, inClause);
+                db.execSQL("delete from searchdirty where kind = " + source.kind + " and itemid in (" + inClause + ")");
+            }
+            db.setTransactionSuccessful();
+            return count;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 删除索引中的旧文本，再写入源表中仍存在的行
+     */
+    private static void reindex(SQLiteDatabase db, Source source, String inClause) {
+        db.execSQL("delete from " + source.ftsTable + " where docid in (" + inClause + ")");
+
+        String columns = TextUtils.join(", ", source.columns);
+        StringBuilder placeholders = new StringBuilder("?");
+        for (int i = 0; i < source.columns.length; i++) {
+            placeholders.append(", ?");
+        }
+        SQLiteStatement insert = db.compileStatement("insert into " + source.ftsTable + " (docid, " + columns
+                + ") values (" + placeholders + ")");
+        Cursor cursor = db.rawQuery("select id, " + columns + " from " + source.table
+                + " where id in (" + inClause + ")", null);
+        try {
+            while (cursor.moveToNext()) {
+                insert.clearBindings();
+                insert.bindLong(1, cursor.getLong(0));
+                for (int i = 0; i < source.columns.length; i++) {
+                    insert.bindString(i + 2, normalize(cursor.getString(i + 1)));
+                }
+                insert.executeInsert();
+            }
+        } finally {
+            cursor.close();
+            insert.close();
+        }
+    }
+
+    private static String joinIds(List<Long> ids) {
+        StringBuilder builder = new StringBuilder(ids.size() * 8);
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(ids.get(i));
+        }
+        return builder.toString();
+    }
+}
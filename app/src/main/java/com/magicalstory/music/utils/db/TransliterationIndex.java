@@ -0,0 +1,126 @@
+package com.magicalstory.music.utils.db;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.magicalstory.music.utils.text.PinyinUtils;
+
+import org.litepal.LitePal;
+
+/**
+ * 拼音转写索引
+ * 新写入的歌曲、专辑和艺术家在设置名称时就会转写（见{@link PinyinUtils}），
+ * 这里只为升级前已存在、转写列仍为null的行补全，补全后的行由触发器重新写入全文索引。
+ */
+public final class TransliterationIndex {
+    private static final String TAG = "TransliterationIndex";
+
+    // 每页读取的行数，同时也是每个事务写入的行数
+    private static final int PAGE_SIZE = 500;
+
+    private TransliterationIndex() {
+    }
+
+    /**
+     * 补全缺少拼音转写的行
+     *
+     * @return 补全的行数
+     */
+    public static int backfillPending() {
+        long startTime = SystemClock.elapsedRealtime();
+        int count = 0;
+        try (LibraryBulkWriter writer = new LibraryBulkWriter(PAGE_SIZE)) {
+            count += backfillSongs(writer);
+            count += backfillAlbums(writer);
+            count += backfillArtists(writer);
+        }
+        if (count > 0) {
+            Log.d(TAG, "补全拼音转写: " + count + " 行, 耗时 " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        }
+        return count;
+    }
+
+    private static int backfillSongs(LibraryBulkWriter writer) {
+        int count = 0;
+        long lastId = 0;
+        while (true) {
+            Cursor cursor = LitePal.findBySQL("select id, title, artist from song where id > ? "
+                    + "and (titlepinyin is null or artistpinyin is null) order by id limit " + PAGE_SIZE,
+                    String.valueOf(lastId));
+            if (cursor == null) {
+                return count;
+            }
+            int pageCount = 0;
+            try {
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0);
+                    writer.updateSongPinyin(lastId, PinyinUtils.transliterate(cursor.getString(1)),
+                            PinyinUtils.transliterate(cursor.getString(2)));
+                    pageCount++;
+                }
+            } finally {
+                cursor.close();
+            }
+            writer.flush();
+            count += pageCount;
+            if (pageCount < PAGE_SIZE) {
+                return count;
+            }
+        }
+    }
+
+    private static int backfillAlbums(LibraryBulkWriter writer) {
+        int count = 0;
+        long lastId = 0;
+        while (true) {
+            Cursor cursor = LitePal.findBySQL("select id, albumname from album where id > ? "
+                    + "and albumnamepinyin is null order by id limit " + PAGE_SIZE, String.valueOf(lastId));
+            if (cursor == null) {
+                return count;
+            }
+            int pageCount = 0;
+            try {
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0);
+                    writer.updateAlbumPinyin(lastId, PinyinUtils.transliterate(cursor.getString(1)));
+                    pageCount++;
+                }
+            } finally {
+                cursor.close();
+            }
+            writer.flush();
+            count += pageCount;
+            if (pageCount < PAGE_SIZE) {
+                return count;
+            }
+        }
+    }
+
+    private static int backfillArtists(LibraryBulkWriter writer) {
+        int count = 0;
+        long lastId = 0;
+        while (true) {
+            Cursor cursor = LitePal.findBySQL("select id, artistname from artist where id > ? "
+                    + "and artistnamepinyin is null order by id limit " + PAGE_SIZE, String.valueOf(lastId));
+            if (cursor == null) {
+                return count;
+            }
+            int pageCount = 0;
+            try {
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0);
+                    writer.updateArtistPinyin(lastId, PinyinUtils.transliterate(cursor.getString(1)));
+                    pageCount++;
+                }
+            } finally {
+                cursor.close();
+            }
+            writer.flush();
+            count += pageCount;
+            if (pageCount < PAGE_SIZE) {
+                return count;
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import android.widget.Toast;
 
 import com.magicalstory.music.model.FavoriteSong;
 import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.query.QueryCache;
 
 import org.litepal.LitePal;
 
@@ -49,7 +50,9 @@ public class FavoriteManager {
             
             // 创建收藏记录
             FavoriteSong favoriteSong = new FavoriteSong(songId, maxSortOrder + 1);
-            return favoriteSong.save();
+            boolean saved = favoriteSong.save();
+            QueryCache.invalidate(QueryCache.FAVORITE_SONG);
+            return saved;
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -62,7 +65,9 @@ public class FavoriteManager {
      */
     public boolean removeFromFavorite(long songId) {
         try {
-            return LitePal.deleteAll(FavoriteSong.class, "songId = ?", String.valueOf(songId)) > 0;
+            int deleted = LitePal.deleteAll(FavoriteSong.class, "songId = ?", String.valueOf(songId));
+            QueryCache.invalidate(QueryCache.FAVORITE_SONG);
+            return deleted > 0;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -154,7 +159,9 @@ public class FavoriteManager {
             
             if (favoriteSong != null) {
                 favoriteSong.setSortOrder(newSortOrder);
-                return favoriteSong.save();
+                boolean saved = favoriteSong.save();
+                QueryCache.invalidate(QueryCache.FAVORITE_SONG);
+                return saved;
             }
             
             return false;
@@ -169,7 +176,9 @@ public class FavoriteManager {
      */
     public boolean clearAllFavorites() {
         try {
-            return LitePal.deleteAll(FavoriteSong.class) > 0;
+            int deleted = LitePal.deleteAll(FavoriteSong.class);
+            QueryCache.invalidate(QueryCache.FAVORITE_SONG);
+            return deleted > 0;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
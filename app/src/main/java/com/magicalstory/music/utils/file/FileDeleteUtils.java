@@ -17,6 +17,9 @@ import com.magicalstory.music.model.Album;
 import com.magicalstory.music.model.Artist;
 import com.magicalstory.music.player.MediaControllerHelper;
 import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.query.LibrarySnapshot;
+import com.magicalstory.music.utils.query.QueryCache;
+import com.magicalstory.music.utils.text.ArtistCredits;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -224,6 +227,9 @@ public class FileDeleteUtils {
             for (Song song : songs) {
                 // 删除歌曲记录
                 org.litepal.LitePal.delete(Song.class, song.getId());
+
+                // 文件已删除，清除文件存在性缓存
+                FilePresenceCache.getInstance().invalidate(song.getPath());
                 
                 // 删除相关的收藏记录
                 org.litepal.LitePal.deleteAll(
@@ -239,6 +245,8 @@ public class FileDeleteUtils {
                         String.valueOf(song.getId())
                 );
             }
+            LibrarySnapshot.invalidate();
+            QueryCache.invalidate(QueryCache.FAVORITE_SONG, QueryCache.PLAY_HISTORY);
             Log.d(TAG, "从数据库删除歌曲记录成功，删除数量: " + songs.size());
             
             // 删除完成后，刷新专辑和歌手的歌曲数量
@@ -285,6 +293,7 @@ public class FileDeleteUtils {
      */
     private static void sendRefreshBroadcast(Context context) {
         try {
+            LibrarySnapshot.invalidate();
             Intent refreshIntent = new Intent(ACTION_REFRESH_MUSIC_LIST);
             LocalBroadcastManager.getInstance(context).sendBroadcast(refreshIntent);
             Log.d(TAG, "已发送刷新音乐列表广播");
@@ -370,24 +379,20 @@ public class FileDeleteUtils {
             try {
                 Log.d(TAG, "开始刷新专辑和歌手歌曲数量，删除歌曲数量: " + deletedSongs.size());
                 
-                // 收集需要更新的专辑和歌手信息
-                java.util.Set<String> albumKeys = new java.util.HashSet<>();
+                // 收集需要更新的专辑行ID和歌手名称（关联行已随歌曲删除，按署名拆分出每位歌手）
+                java.util.Set<Long> albumRowIds = new java.util.HashSet<>();
                 java.util.Set<String> artistNames = new java.util.HashSet<>();
                 
                 for (Song song : deletedSongs) {
-                    if (song.getAlbum() != null && song.getArtist() != null) {
-                        // 专辑键：专辑名_艺术家名
-                        String albumKey = song.getAlbum() + "_" + song.getArtist();
-                        albumKeys.add(albumKey);
+                    if (song.getAlbumRowId() > 0) {
+                        albumRowIds.add(song.getAlbumRowId());
                     }
                     
-                    if (song.getArtist() != null) {
-                        artistNames.add(song.getArtist());
-                    }
+                    artistNames.addAll(ArtistCredits.split(song.getArtist()));
                 }
 
                 // 更新专辑歌曲数量
-                refreshAlbumSongCounts(albumKeys);
+                refreshAlbumSongCounts(albumRowIds);
                 
                 // 更新歌手歌曲数量
                 refreshArtistSongCounts(artistNames);
@@ -403,41 +408,20 @@ public class FileDeleteUtils {
     /**
      * 刷新专辑歌曲数量
      * 
-     * @param albumKeys 需要更新的专辑键集合（专辑名_艺术家名）
+     * @param albumRowIds 需要更新的专辑行ID集合
      */
-    private static void refreshAlbumSongCounts(java.util.Set<String> albumKeys) {
-        if (albumKeys.isEmpty()) {
+    private static void refreshAlbumSongCounts(java.util.Set<Long> albumRowIds) {
+        if (albumRowIds.isEmpty()) {
             return;
         }
 
         try {
-            for (String albumKey : albumKeys) {
-                String[] parts = albumKey.split("_", 2);
-                if (parts.length == 2) {
-                    String albumName = parts[0];
-                    String artistName = parts[1];
-                    
-                    // 查询该专辑的歌曲数量
-                    int songCount = org.litepal.LitePal.where(
-                            "album = ? AND artist = ?", 
-                            albumName, 
-                            artistName
-                    ).count(Song.class);
-                    
-                    // 更新专辑记录
-                    List<com.magicalstory.music.model.Album> albums = org.litepal.LitePal.where(
-                            "albumName = ? AND artist = ?", 
-                            albumName, 
-                            artistName
-                    ).find(com.magicalstory.music.model.Album.class);
-                    
-                    for (com.magicalstory.music.model.Album album : albums) {
-                        album.setSongCount(songCount);
-                        album.save();
-                    }
-                    
-                    Log.d(TAG, "更新专辑歌曲数量: " + albumName + " - " + artistName + " = " + songCount);
-                }
+            android.database.sqlite.SQLiteDatabase db = org.litepal.LitePal.getDatabase();
+            for (Long albumRowId : albumRowIds) {
+                // 按专辑行ID统计剩余歌曲数量并写回
+                db.execSQL("update album set songcount = (select count(*) from song where albumrowid = ?) "
+                        + "where id = ?", new Object[]{albumRowId, albumRowId});
+                Log.d(TAG, "更新专辑歌曲数量: " + albumRowId);
             }
         } catch (Exception e) {
             Log.e(TAG, "刷新专辑歌曲数量时发生错误: " + e.getMessage(), e);
@@ -455,40 +439,15 @@ public class FileDeleteUtils {
         }
 
         try {
+            android.database.sqlite.SQLiteDatabase db = org.litepal.LitePal.getDatabase();
             for (String artistName : artistNames) {
-                // 查询该歌手的歌曲数量
-                int songCount = org.litepal.LitePal.where(
-                        "artist = ?", 
-                        artistName
-                ).count(Song.class);
-                
-                // 查询该歌手的专辑数量（去重）
-                List<Song> artistSongs = org.litepal.LitePal.where(
-                        "artist = ?", 
-                        artistName
-                ).find(Song.class);
-                
-                java.util.Set<String> uniqueAlbums = new java.util.HashSet<>();
-                for (Song song : artistSongs) {
-                    if (song.getAlbum() != null) {
-                        uniqueAlbums.add(song.getAlbum());
-                    }
-                }
-                int albumCount = uniqueAlbums.size();
-                
-                // 更新歌手记录
-                List<com.magicalstory.music.model.Artist> artists = org.litepal.LitePal.where(
-                        "artistName = ?", 
-                        artistName
-                ).find(com.magicalstory.music.model.Artist.class);
-                
-                for (com.magicalstory.music.model.Artist artist : artists) {
-                    artist.setSongCount(songCount);
-                    artist.setAlbumCount(albumCount);
-                    artist.save();
-                }
-                
-                Log.d(TAG, "更新歌手歌曲数量: " + artistName + " = " + songCount + " 首歌曲, " + albumCount + " 张专辑");
+                // 歌曲数量和专辑数量都按歌曲-艺术家关联行统计
+                db.execSQL("update artist set songcount = (select count(*) from songartist where artistid = artist.id), "
+                        + "albumcount = (select count(distinct s.albumrowid) from songartist sa "
+                        + "join song s on s.id = sa.songid where sa.artistid = artist.id) "
+                        + "where artistname = ?",
+                        new Object[]{artistName});
+                Log.d(TAG, "更新歌手歌曲数量: " + artistName);
             }
         } catch (Exception e) {
             Log.e(TAG, "刷新歌手歌曲数量时发生错误: " + e.getMessage(), e);
@@ -0,0 +1,265 @@
+package com.magicalstory.music.utils.file;
+
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+import com.magicalstory.music.model.Song;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文件存在性校验服务
+ * 在模拟存储/FUSE上每次File.exists()都是一次较慢的系统调用，扫描、同步和构建播放队列时
+ * 逐个串行校验会成为主要耗时。这里把路径分批放到有界的I/O线程池中并行校验，
+ * 并按 路径 + DATE_MODIFIED 缓存结果：文件修改时间不变时直接使用缓存，删除文件时使缓存失效。
+ * <p>
+ * 线程安全，可在任意线程调用；批量校验会阻塞调用线程直到全部完成，不要在主线程校验大量路径。
+ */
+public class FilePresenceCache {
+    private static final String TAG = "FilePresenceCache";
+
+    // 不知道文件修改时间时使用，命中任意修改时间的缓存
+    public static final long UNKNOWN_DATE_MODIFIED = -1;
+
+    // I/O线程数，存储设备的并发能力有限，线程过多反而变慢
+    private static final int IO_THREADS = 4;
+    // 每个任务校验的路径数量
+    private static final int BATCH_SIZE = 64;
+    // 缓存的最大路径数量
+    private static final int MAX_ENTRIES = 20000;
+    // 文件不存在的结果只缓存一段时间，存储卡重新挂载后文件可能恢复
+    private static final long MISSING_TTL_MS = 60 * 1000;
+
+    private static volatile FilePresenceCache instance;
+
+    /**
+     * 缓存项
+     */
+    private static class Entry {
+        final long dateModified;
+        final boolean exists;
+        final long checkedAt;
+
+        Entry(long dateModified, boolean exists, long checkedAt) {
+            this.dateModified = dateModified;
+            this.exists = exists;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private final LruCache<String, Entry> cache = new LruCache<>(MAX_ENTRIES);
+    private final ExecutorService ioExecutor;
+
+    private FilePresenceCache() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(IO_THREADS, IO_THREADS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "FilePresence-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 空闲时释放线程
+        executor.allowCoreThreadTimeOut(true);
+        this.ioExecutor = executor;
+    }
+
+    public static FilePresenceCache getInstance() {
+        if (instance == null) {
+            synchronized (FilePresenceCache.class) {
+                if (instance == null) {
+                    instance = new FilePresenceCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 校验单个文件是否存在
+     *
+     * @param dateModified 文件的DATE_MODIFIED，未知时传{@link #UNKNOWN_DATE_MODIFIED}
+     */
+    public boolean exists(String path, long dateModified) {
+        if (TextUtils.isEmpty(path)) {
+            return false;
+        }
+        Entry entry = getValidEntry(path, dateModified);
+        if (entry != null) {
+            return entry.exists;
+        }
+        return checkAndCache(path, dateModified);
+    }
+
+    /**
+     * 校验歌曲文件是否存在
+     */
+    public boolean exists(@NonNull Song song) {
+        return exists(song.getPath(), song.getDateModified());
+    }
+
+    /**
+     * 批量校验文件是否存在，未命中缓存的路径分批并行校验
+     *
+     * @param dateModified 与paths一一对应的DATE_MODIFIED，为null时视为全部未知
+     * @return 与paths一一对应的校验结果
+     */
+    @NonNull
+    public boolean[] checkAll(@NonNull List<String> paths, long[] dateModified) {
+        int count = paths.size();
+        boolean[] results = new boolean[count];
+
+        // 先查缓存，只校验未命中的路径
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String path = paths.get(i);
+            if (TextUtils.isEmpty(path)) {
+                continue;
+            }
+            Entry entry = getValidEntry(path, dateModifiedAt(dateModified, i));
+            if (entry != null) {
+                results[i] = entry.exists;
+            } else {
+                pending.add(i);
+            }
+        }
+        if (pending.isEmpty()) {
+            return results;
+        }
+
+        // 数量较少时直接在调用线程校验，省去线程切换
+        if (pending.size() <= BATCH_SIZE) {
+            for (int index : pending) {
+                results[index] = checkAndCache(paths.get(index), dateModifiedAt(dateModified, index));
+            }
+            return results;
+        }
+
+        long startTime = SystemClock.elapsedRealtime();
+        List<Callable<Void>> tasks = new ArrayList<>(pending.size() / BATCH_SIZE + 1);
+        for (int start = 0; start < pending.size(); start += BATCH_SIZE) {
+            List<Integer> batch = pending.subList(start, Math.min(pending.size(), start + BATCH_SIZE));
+            tasks.add(() -> {
+                // 每个任务写入不同的下标，无需同步
+                for (int index : batch) {
+                    results[index] = checkAndCache(paths.get(index), dateModifiedAt(dateModified, index));
+                }
+                return null;
+            });
+        }
+
+        try {
+            ioExecutor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // 被中断时未校验完的文件按存在处理，避免误删数据
+            for (int index : pending) {
+                Entry entry = cache.get(paths.get(index));
+                results[index] = entry == null || entry.exists;
+            }
+            Log.w(TAG, "批量校验文件被中断");
+        }
+
+        Log.d(TAG, "并行校验 " + pending.size() + " 个文件（共 " + count + " 个），耗时: "
+                + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        return results;
+    }
+
+    /**
+     * 批量校验歌曲文件，返回文件存在的歌曲，保持原有顺序
+     */
+    @NonNull
+    public List<Song> filterExisting(@NonNull List<Song> songs) {
+        boolean[] results = checkSongs(songs);
+        List<Song> existing = new ArrayList<>(songs.size());
+        for (int i = 0; i < songs.size(); i++) {
+            if (results[i]) {
+                existing.add(songs.get(i));
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * 批量校验歌曲文件，返回与songs一一对应的校验结果
+     */
+    @NonNull
+    public boolean[] checkSongs(@NonNull List<Song> songs) {
+        List<String> paths = new ArrayList<>(songs.size());
+        long[] dateModified = new long[songs.size()];
+        for (int i = 0; i < songs.size(); i++) {
+            Song song = songs.get(i);
+            paths.add(song.getPath());
+            dateModified[i] = song.getDateModified();
+        }
+        return checkAll(paths, dateModified);
+    }
+
+    /**
+     * 文件被删除或移动后使缓存失效
+     */
+    public void invalidate(String path) {
+        if (!TextUtils.isEmpty(path)) {
+            cache.remove(path);
+        }
+    }
+
+    /**
+     * 使一组歌曲文件的缓存失效
+     */
+    public void invalidateSongs(@NonNull Collection<Song> songs) {
+        for (Song song : songs) {
+            invalidate(song.getPath());
+        }
+    }
+
+    /**
+     * 清空全部缓存
+     */
+    public void clear() {
+        cache.evictAll();
+    }
+
+    private Entry getValidEntry(String path, long dateModified) {
+        Entry entry = cache.get(path);
+        if (entry == null) {
+            return null;
+        }
+        if (dateModified != UNKNOWN_DATE_MODIFIED && entry.dateModified != dateModified) {
+            return null;
+        }
+        if (!entry.exists && SystemClock.elapsedRealtime() - entry.checkedAt > MISSING_TTL_MS) {
+            return null;
+        }
+        return entry;
+    }
+
+    private boolean checkAndCache(String path, long dateModified) {
+        boolean exists = new File(path).exists();
+        if (dateModified == UNKNOWN_DATE_MODIFIED) {
+            // 保留已知的修改时间，避免按路径校验时覆盖按修改时间缓存的结果
+            Entry old = cache.get(path);
+            if (old != null) {
+                dateModified = old.dateModified;
+            }
+        }
+        cache.put(path, new Entry(dateModified, exists, SystemClock.elapsedRealtime()));
+        return exists;
+    }
+
+    private static long dateModifiedAt(long[] dateModified, int index) {
+        return dateModified == null ? UNKNOWN_DATE_MODIFIED : dateModified[index];
+    }
+}
@@ -6,6 +6,7 @@ import android.text.TextUtils;
 import com.magicalstory.music.model.Album;
 import com.magicalstory.music.model.Artist;
 import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.query.LibrarySnapshot;
 import com.magicalstory.music.utils.query.MusicQueryUtils;
 
 import org.litepal.LitePal;
@@ -48,9 +49,8 @@ public class CoverFallbackUtils {
         }
 
         // 2. 如果歌曲中没有封面，尝试从对应的歌手中获取封面
-        if (!TextUtils.isEmpty(album.getArtist())) {
-            Artist artist = LitePal.where("artistName = ?", album.getArtist())
-                    .findFirst(Artist.class);
+        if (album.getArtistRowId() > 0) {
+            Artist artist = LitePal.find(Artist.class, album.getArtistRowId());
             if (artist != null && !TextUtils.isEmpty(artist.getCoverUrl())) {
                 album.setAlbumArt(artist.getCoverUrl());
                 album.save();
@@ -92,7 +92,7 @@ public class CoverFallbackUtils {
         }
 
         // 2. 如果歌曲中没有封面，尝试从歌手的专辑中获取封面
-        List<Album> artistAlbums = LitePal.where("artist = ?", artist.getArtistName())
+        List<Album> artistAlbums = LitePal.where("artistRowId = ?", String.valueOf(artist.getId()))
                 .find(Album.class);
         if (artistAlbums != null && !artistAlbums.isEmpty()) {
             for (Album album : artistAlbums) {
@@ -166,6 +166,9 @@ public class CoverFallbackUtils {
             }
         }
 
+        if (successCount > 0) {
+            LibrarySnapshot.invalidate();
+        }
         return successCount;
     }
 
@@ -186,6 +189,9 @@ public class CoverFallbackUtils {
             }
         }
 
+        if (successCount > 0) {
+            LibrarySnapshot.invalidate();
+        }
         return successCount;
     }
 
@@ -7,11 +7,14 @@ import android.provider.MediaStore;
 import android.util.Log;
 
 import com.magicalstory.music.model.LyricLine;
+import com.magicalstory.music.model.Song;
+import com.magicalstory.music.service.TagEnrichmentPass;
 
 import org.jaudiotagger.audio.AudioFile;
 import org.jaudiotagger.audio.AudioFileIO;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.Tag;
+import org.litepal.LitePal;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -45,9 +48,11 @@ public class LyricsParser {
         try {
             Log.d(TAG, "开始解析歌词，歌曲路径: " + songPath);
 
-            // 1. 首先尝试从歌曲文件本身提取内嵌歌词
-            lyrics = extractLyricsFromAudioFile(context, songPath);
-            Log.d(TAG, "从音频文件提取歌词结果: " + lyrics.size() + " 行");
+            // 1. 首先尝试从歌曲文件本身提取内嵌歌词（标签补全已确认没有内嵌歌词时跳过）
+            if (mayHaveEmbeddedLyrics(songPath)) {
+                lyrics = extractLyricsFromAudioFile(context, songPath);
+                Log.d(TAG, "从音频文件提取歌词结果: " + lyrics.size() + " 行");
+            }
 
             // 2. 如果歌曲文件没有内嵌歌词，尝试查找同名的.lrc文件
             if (lyrics.isEmpty()) {
@@ -67,6 +72,29 @@ public class LyricsParser {
     }
 
 
+    /**
+     * 根据标签补全的结果判断文件是否可能有内嵌歌词
+     * 文件尚未补全，或补全后文件被修改过（例如刚编辑过歌词）时无法确定，返回true
+     */
+    private static boolean mayHaveEmbeddedLyrics(String songPath) {
+        try {
+            Song song = LitePal.select("hasEmbeddedLyrics", "tagFingerprint")
+                    .where("path = ?", songPath)
+                    .findFirst(Song.class);
+            if (song == null || song.getTagFingerprint() == null) {
+                return true;
+            }
+            // 与当前文件的大小和修改时间比较，只需一次stat，不必解析整个文件
+            File file = new File(songPath);
+            if (!song.getTagFingerprint().equals(TagEnrichmentPass.fingerprint(file.length(), file.lastModified() / 1000))) {
+                return true;
+            }
+            return song.hasEmbeddedLyrics();
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
     /**
      * 从音频文件中提取内嵌歌词
      */
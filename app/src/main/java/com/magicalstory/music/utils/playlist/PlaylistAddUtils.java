@@ -1,19 +1,17 @@
 package com.magicalstory.music.utils.playlist;
 
 import android.content.Context;
-import android.content.Intent;
 import android.os.Handler;
 import android.os.Looper;
 import android.text.TextUtils;
 import android.util.Log;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
-
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.magicalstory.music.dialog.dialogUtils;
 import com.magicalstory.music.model.Playlist;
 import com.magicalstory.music.model.Song;
 import com.magicalstory.music.utils.app.ToastUtils;
+import com.magicalstory.music.utils.query.QueryCache;
 
 import org.litepal.LitePal;
 
@@ -29,7 +27,6 @@ import java.util.concurrent.Executors;
 public class PlaylistAddUtils {
     
     private static final String TAG = "PlaylistAddUtils";
-    private static final String REFRESH_PLAYLIST_ACTION = "com.magicalstory.music.REFRESH_PLAYLIST";
     
     private static final ExecutorService executorService = Executors.newCachedThreadPool();
     private static final Handler mainHandler = new Handler(Looper.getMainLooper());
@@ -155,6 +152,7 @@ public class PlaylistAddUtils {
                 Playlist newPlaylist = new Playlist(playlistName, "");
                 newPlaylist.setSystemPlaylist(false);
                 boolean saved = newPlaylist.save();
+                QueryCache.invalidate(QueryCache.PLAYLIST);
 
                 if (saved) {
                     // 添加歌曲到新歌单
@@ -166,9 +164,6 @@ public class PlaylistAddUtils {
                         } else {
                             ToastUtils.showToast(context, "歌单创建成功，但歌曲添加失败");
                         }
-                        
-                        // 通知PlaylistFragment刷新列表
-                        notifyPlaylistFragmentRefresh(context);
                     });
                 } else {
                     mainHandler.post(() -> {
@@ -203,9 +198,6 @@ public class PlaylistAddUtils {
                     } else {
                         ToastUtils.showToast(context, "该歌曲已存在此歌单中");
                     }
-                    
-                    // 通知PlaylistFragment刷新列表
-                    notifyPlaylistFragmentRefresh(context);
                 });
                 
             } catch (Exception e) {
@@ -254,21 +246,6 @@ public class PlaylistAddUtils {
         return addedCount;
     }
     
-    /**
-     * 通知PlaylistFragment刷新列表
-     */
-    private static void notifyPlaylistFragmentRefresh(Context context) {
-        try {
-            // 发送广播通知PlaylistFragment刷新
-            Intent intent = new Intent(REFRESH_PLAYLIST_ACTION);
-            LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
-            
-            Log.d(TAG, "已发送刷新歌单列表广播");
-        } catch (Exception e) {
-            Log.e(TAG, "发送刷新广播失败: " + e.getMessage(), e);
-        }
-    }
-    
     /**
      * 直接添加歌曲到指定歌单（不显示对话框）
      * 
@@ -301,9 +278,6 @@ public class PlaylistAddUtils {
                     } else {
                         ToastUtils.showToast(context, "该歌曲已存在此歌单中");
                     }
-                    
-                    // 通知PlaylistFragment刷新列表
-                    notifyPlaylistFragmentRefresh(context);
                 });
                 
             } catch (Exception e) {
@@ -0,0 +1,49 @@
+package com.magicalstory.music.utils.query;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.magicalstory.music.model.Playlist;
+import com.magicalstory.music.model.Song;
+
+import java.util.Objects;
+
+/**
+ * 列表项的比较规则，用于{@link ObservableQuery}计算列表差异
+ * 按行ID判断是否为同一项，只比较列表中显示的字段
+ */
+public final class ItemDiffs {
+
+    private ItemDiffs() {
+    }
+
+    public static final DiffUtil.ItemCallback<Song> SONG = new DiffUtil.ItemCallback<Song>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Song oldItem, @NonNull Song newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Song oldItem, @NonNull Song newItem) {
+            return Objects.equals(oldItem.getTitle(), newItem.getTitle())
+                    && Objects.equals(oldItem.getArtist(), newItem.getArtist())
+                    && Objects.equals(oldItem.getAlbum(), newItem.getAlbum())
+                    && oldItem.getDuration() == newItem.getDuration()
+                    && oldItem.getAlbumId() == newItem.getAlbumId();
+        }
+    };
+
+    public static final DiffUtil.ItemCallback<Playlist> PLAYLIST = new DiffUtil.ItemCallback<Playlist>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Playlist oldItem, @NonNull Playlist newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Playlist oldItem, @NonNull Playlist newItem) {
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && oldItem.getSongCount() == newItem.getSongCount()
+                    && Objects.equals(oldItem.getCoverPath(), newItem.getCoverPath());
+        }
+    };
+}
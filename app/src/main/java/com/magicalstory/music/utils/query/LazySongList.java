@@ -0,0 +1,279 @@
+package com.magicalstory.music.utils.query;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.magicalstory.music.model.Song;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 按ID保存、按需读取歌曲的列表
+ * 随机播放全部等很长的播放队列只保存歌曲ID，访问某一项时才通过{@link SongResolver}读取它所在的一段
+ * （{@link #RESOLVE_CHUNK}首，快照有效时不访问数据库），读取过的歌曲缓存在列表中。
+ * <ul>
+ *     <li>支持增删和替换，播放队列的插入、删除、交换位置都不需要读取其他歌曲；
+ *     按ID查找和批量删除用{@link #getIdAt}、{@link #removeFlagged}，同样不读取</li>
+ *     <li>读取时歌曲已被删除的位置返回只有ID的歌曲（路径和标题为空），由播放队列的删除同步移除</li>
+ *     <li>{@link #copyOf}复制ID和已读取的歌曲，不会读取整个列表</li>
+ *     <li>主线程上即将访问的位置先用{@link #prefetch}在后台读取，界面绑定用{@link #peek}，
+ *     避免在切歌和滑动时读取数据库</li>
+ * </ul>
+ * 非线程安全，需要在同一个线程（主线程）访问；访问未读取的项可能读取数据库。
+ */
+public final class LazySongList extends AbstractList<Song> implements RandomAccess {
+    private static final String TAG = "LazySongList";
+
+    // 每次读取的歌曲数，按位置对齐
+    static final int RESOLVE_CHUNK = 50;
+
+    // 所有列表共用的预读线程，读取结果回到主线程写入
+    private static final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private long[] ids;
+    private Song[] songs;
+    private int size;
+    // 正在预读的歌曲ID，避免重复提交
+    private final Set<Long> prefetching = new HashSet<>();
+
+    /**
+     * @param ids 歌曲ID，列表持有这个数组，调用方之后不要修改
+     */
+    public LazySongList(@NonNull long[] ids) {
+        this.ids = ids;
+        this.songs = new Song[ids.length];
+        this.size = ids.length;
+    }
+
+    private LazySongList(LazySongList source) {
+        this.ids = Arrays.copyOf(source.ids, source.size);
+        this.songs = Arrays.copyOf(source.songs, source.size);
+        this.size = source.size;
+    }
+
+    /**
+     * 复制列表：LazySongList只复制ID和已读取的歌曲，其他列表复制为ArrayList
+     */
+    @NonNull
+    public static List<Song> copyOf(@NonNull List<Song> list) {
+        if (list instanceof LazySongList) {
+            return new LazySongList((LazySongList) list);
+        }
+        return new ArrayList<>(list);
+    }
+
+    /**
+     * 位置上的歌曲ID，不读取歌曲
+     */
+    public long getIdAt(int index) {
+        checkIndex(index);
+        return ids[index];
+    }
+
+    /**
+     * 位置上已读取的歌曲，尚未读取时返回null，不读取数据库
+     */
+    @Nullable
+    public Song peek(int index) {
+        checkIndex(index);
+        return songs[index];
+    }
+
+    @Override
+    public Song get(int index) {
+        checkIndex(index);
+        Song song = songs[index];
+        if (song == null) {
+            resolveChunk(index);
+            song = songs[index];
+        }
+        return song;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Song set(int index, Song song) {
+        Song previous = get(index);
+        ids[index] = song.getId();
+        songs[index] = song;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Song song) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == ids.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            songs = Arrays.copyOf(songs, capacity);
+        }
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        System.arraycopy(songs, index, songs, index + 1, size - index);
+        ids[index] = song.getId();
+        songs[index] = song;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Song remove(int index) {
+        Song previous = get(index);
+        int moved = size - index - 1;
+        System.arraycopy(ids, index + 1, ids, index, moved);
+        System.arraycopy(songs, index + 1, songs, index, moved);
+        size--;
+        songs[size] = null;
+        modCount++;
+        return previous;
+    }
+
+    /**
+     * 移除标记的位置，其余歌曲的先后顺序不变，不读取歌曲
+     *
+     * @param removed 与列表等长，true表示移除该位置
+     */
+    public void removeFlagged(@NonNull boolean[] removed) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!removed[i]) {
+                ids[kept] = ids[i];
+                songs[kept] = songs[i];
+                kept++;
+            }
+        }
+        Arrays.fill(songs, kept, size, null);
+        size = kept;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(songs, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * 在后台线程读取位置所在的一段，需要在主线程调用
+     *
+     * @param onLoaded 读取完成并写入列表后在主线程回调，没有需要读取的歌曲时不回调
+     */
+    public void prefetchChunk(int index, @Nullable Runnable onLoaded) {
+        checkIndex(index);
+        int start = index - index % RESOLVE_CHUNK;
+        int end = Math.min(size, start + RESOLVE_CHUNK);
+        int[] indexes = new int[end - start];
+        for (int i = start; i < end; i++) {
+            indexes[i - start] = i;
+        }
+        prefetch(indexes, onLoaded);
+    }
+
+    /**
+     * 在后台线程读取这些位置上尚未读取的歌曲，需要在主线程调用
+     * 读取期间列表发生增删时，写入前按ID核对位置，已移动的位置跳过，之后访问时再同步读取
+     *
+     * @param onLoaded 读取完成并写入列表后在主线程回调，没有需要读取的歌曲时不回调
+     */
+    public void prefetch(@NonNull int[] indexes, @Nullable Runnable onLoaded) {
+        List<Long> missing = new ArrayList<>();
+        for (int index : indexes) {
+            if (index >= 0 && index < size && songs[index] == null && prefetching.add(ids[index])) {
+                missing.add(ids[index]);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        int[] targets = indexes.clone();
+        prefetchExecutor.execute(() -> {
+            List<Song> resolved;
+            try {
+                resolved = SongResolver.resolve(missing);
+            } catch (RuntimeException e) {
+                // 预读失败时访问这些位置再同步读取
+                Log.w(TAG, "预读歌曲失败: " + e.getMessage(), e);
+                resolved = Collections.emptyList();
+            }
+            List<Song> loaded = resolved;
+            mainHandler.post(() -> {
+                prefetching.removeAll(missing);
+                Map<Long, Song> byId = new HashMap<>(loaded.size() * 2);
+                for (Song song : loaded) {
+                    byId.put(song.getId(), song);
+                }
+                for (int index : targets) {
+                    if (index >= 0 && index < size && songs[index] == null) {
+                        Song song = byId.get(ids[index]);
+                        if (song != null) {
+                            songs[index] = song;
+                        }
+                    }
+                }
+                if (onLoaded != null) {
+                    onLoaded.run();
+                }
+            });
+        });
+    }
+
+    /**
+     * 读取位置所在的一段中尚未读取的歌曲
+     */
+    private void resolveChunk(int index) {
+        int start = index - index % RESOLVE_CHUNK;
+        int end = Math.min(size, start + RESOLVE_CHUNK);
+        List<Long> missing = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            if (songs[i] == null) {
+                missing.add(ids[i]);
+            }
+        }
+        Map<Long, Song> byId = new HashMap<>(missing.size() * 2);
+        for (Song song : SongResolver.resolve(missing)) {
+            byId.put(song.getId(), song);
+        }
+        for (int i = start; i < end; i++) {
+            if (songs[i] == null) {
+                Song song = byId.get(ids[i]);
+                songs[i] = song != null ? song : placeholder(ids[i]);
+            }
+        }
+    }
+
+    private static Song placeholder(long id) {
+        Song song = new Song();
+        song.setId(id);
+        song.setTitle("");
+        song.setPath("");
+        return song;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,789 @@
+package com.magicalstory.music.utils.query;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.magicalstory.music.model.Album;
+import com.magicalstory.music.model.Artist;
+import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.db.LibrarySchema;
+
+import org.litepal.LitePal;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 音乐库内存快照
+ * 进程内共享的只读快照，歌曲、专辑、艺术家按列保存在基本类型数组中（ID、时长等为long/int数组，
+ * 相同的字符串只保存一份），列表页面直接从快照读取，不需要每次打开都通过LitePal反射创建整张表的对象。
+ * <ul>
+ *     <li>排序视图是行号的排列（int数组），第一次使用时计算并缓存在快照中</li>
+ *     <li>返回的列表按需把行转换为Song/Album/Artist对象，对象是快照的副本，修改后需要自行写入数据库</li>
+ *     <li>音乐库变化后调用{@link #invalidate()}，下一次{@link #get()}重新读取并整体替换快照；
+ *     播放时间变化只替换对应的列（{@link #updateLastPlayed}）</li>
+ * </ul>
+ * {@link #get()}在快照失效时会读取数据库，需要在后台线程调用。
+ */
+public final class LibrarySnapshot {
+    private static final String TAG = "LibrarySnapshot";
+
+    private static final Object BUILD_LOCK = new Object();
+    // 每次失效加一，快照记录读取时的值，不相等即为过期
+    private static final AtomicInteger generation = new AtomicInteger();
+    private static volatile LibrarySnapshot current;
+
+    private static final String SQL_SELECT_SONGS = "select id, title, artist, album, path, duration, size, "
+            + "displayname, albumid, artistid, dateadded, datemodified, mimetype, track, year, genre, lastplayed, "
+            + "mediastoreid, hasembeddedlyrics, hasembeddedart, replaygaintrack, replaygainalbum, albumrowid, "
+            + "artistrowid, titlepinyin, artistpinyin from song order by id";
+    private static final String SQL_SELECT_ALBUMS = "select id, albumname, artist, songcount, albumid, albumart, "
+            + "year, firstyear, lastyear, lastplayed, dateadded, genre, artistrowid, albumnamepinyin from album "
+            + "order by id";
+    private static final String SQL_SELECT_ARTISTS = "select id, artistname, songcount, albumcount, artistid, "
+            + "coverurl, coverfetched, lastplayed, dateadded, artistnamepinyin from artist order by id";
+
+    private static final byte FLAG_EMBEDDED_LYRICS = 1;
+    private static final byte FLAG_EMBEDDED_ART = 2;
+
+    private final int generationValue;
+
+    // 歌曲，按id升序
+    private final int songCount;
+    private final long[] songIds;
+    private final String[] songTitles;
+    private final String[] songArtists;
+    private final String[] songAlbums;
+    // 已保存的拼音转写，创建对象时直接赋值，不再转写
+    private final String[] songTitlePinyins;
+    private final String[] songArtistPinyins;
+    private final String[] songPaths;
+    private final String[] songDisplayNames;
+    private final String[] songMimeTypes;
+    private final String[] songGenres;
+    private final int[] songDurations;
+    private final long[] songSizes;
+    private final long[] songAlbumIds;
+    private final long[] songArtistIds;
+    private final long[] songAlbumRowIds;
+    private final long[] songArtistRowIds;
+    private final long[] songDateAdded;
+    private final long[] songDateModified;
+    private final long[] songLastPlayed;
+    private final long[] songMediaStoreIds;
+    private final int[] songTracks;
+    private final int[] songYears;
+    private final byte[] songFlags;
+    private final float[] songReplayGainTrack;
+    private final float[] songReplayGainAlbum;
+
+    // 专辑，按id升序
+    private final int albumCount;
+    private final long[] albumIds;
+    private final String[] albumNames;
+    private final String[] albumNamePinyins;
+    private final String[] albumArtists;
+    private final String[] albumArts;
+    private final String[] albumGenres;
+    private final int[] albumSongCounts;
+    private final long[] albumMediaIds;
+    private final long[] albumArtistRowIds;
+    private final int[] albumYears;
+    private final long[] albumFirstYears;
+    private final long[] albumLastYears;
+    private final long[] albumLastPlayed;
+    private final long[] albumDateAdded;
+
+    // 艺术家，按id升序
+    private final int artistCount;
+    private final long[] artistIds;
+    private final String[] artistNames;
+    private final String[] artistNamePinyins;
+    private final String[] artistCoverUrls;
+    private final int[] artistSongCounts;
+    private final int[] artistAlbumCounts;
+    private final long[] artistMediaIds;
+    private final boolean[] artistCoverFetched;
+    private final long[] artistLastPlayed;
+    private final long[] artistDateAdded;
+
+    // 排序视图缓存，第一次使用时计算
+    private volatile int[] songsByDateAdded;
+    private volatile int[] songsByLastPlayed;
+    private volatile int[] albumsByDateAdded;
+    private volatile int[] albumsByLastPlayed;
+    private volatile int[] artistsByDateAdded;
+    private volatile int[] artistsByLastPlayed;
+
+    private LibrarySnapshot(int generationValue, Cursor songCursor, Cursor albumCursor, Cursor artistCursor) {
+        this.generationValue = generationValue;
+        // 相同的艺术家、专辑、流派等字符串只保留一个实例
+        Map<String, String> pool = new HashMap<>();
+
+        songCount = songCursor.getCount();
+        songIds = new long[songCount];
+        songTitles = new String[songCount];
+        songArtists = new String[songCount];
+        songAlbums = new String[songCount];
+        songTitlePinyins = new String[songCount];
+        songArtistPinyins = new String[songCount];
+        songPaths = new String[songCount];
+        songDisplayNames = new String[songCount];
+        songMimeTypes = new String[songCount];
+        songGenres = new String[songCount];
+        songDurations = new int[songCount];
+        songSizes = new long[songCount];
+        songAlbumIds = new long[songCount];
+        songArtistIds = new long[songCount];
+        songAlbumRowIds = new long[songCount];
+        songArtistRowIds = new long[songCount];
+        songDateAdded = new long[songCount];
+        songDateModified = new long[songCount];
+        songLastPlayed = new long[songCount];
+        songMediaStoreIds = new long[songCount];
+        songTracks = new int[songCount];
+        songYears = new int[songCount];
+        songFlags = new byte[songCount];
+        songReplayGainTrack = new float[songCount];
+        songReplayGainAlbum = new float[songCount];
+        for (int i = 0; i < songCount && songCursor.moveToNext(); i++) {
+            songIds[i] = songCursor.getLong(0);
+            songTitles[i] = songCursor.getString(1);
+            songArtists[i] = intern(pool, songCursor.getString(2));
+            songAlbums[i] = intern(pool, songCursor.getString(3));
+            songPaths[i] = songCursor.getString(4);
+            songDurations[i] = (int) Math.min(Integer.MAX_VALUE, songCursor.getLong(5));
+            songSizes[i] = songCursor.getLong(6);
+            songDisplayNames[i] = songCursor.getString(7);
+            songAlbumIds[i] = songCursor.getLong(8);
+            songArtistIds[i] = songCursor.getLong(9);
+            songDateAdded[i] = songCursor.getLong(10);
+            songDateModified[i] = songCursor.getLong(11);
+            songMimeTypes[i] = intern(pool, songCursor.getString(12));
+            songTracks[i] = songCursor.getInt(13);
+            songYears[i] = songCursor.getInt(14);
+            songGenres[i] = intern(pool, songCursor.getString(15));
+            songLastPlayed[i] = songCursor.getLong(16);
+            songMediaStoreIds[i] = songCursor.getLong(17);
+            byte flags = 0;
+            if (songCursor.getInt(18) != 0) {
+                flags |= FLAG_EMBEDDED_LYRICS;
+            }
+            if (songCursor.getInt(19) != 0) {
+                flags |= FLAG_EMBEDDED_ART;
+            }
+            songFlags[i] = flags;
+            songReplayGainTrack[i] = songCursor.getFloat(20);
+            songReplayGainAlbum[i] = songCursor.getFloat(21);
+            songAlbumRowIds[i] = songCursor.getLong(22);
+            songArtistRowIds[i] = songCursor.getLong(23);
+            songTitlePinyins[i] = songCursor.getString(24);
+            songArtistPinyins[i] = intern(pool, songCursor.getString(25));
+        }
+
+        albumCount = albumCursor.getCount();
+        albumIds = new long[albumCount];
+        albumNames = new String[albumCount];
+        albumNamePinyins = new String[albumCount];
+        albumArtists = new String[albumCount];
+        albumArts = new String[albumCount];
+        albumGenres = new String[albumCount];
+        albumSongCounts = new int[albumCount];
+        albumMediaIds = new long[albumCount];
+        albumArtistRowIds = new long[albumCount];
+        albumYears = new int[albumCount];
+        albumFirstYears = new long[albumCount];
+        albumLastYears = new long[albumCount];
+        albumLastPlayed = new long[albumCount];
+        albumDateAdded = new long[albumCount];
+        for (int i = 0; i < albumCount && albumCursor.moveToNext(); i++) {
+            albumIds[i] = albumCursor.getLong(0);
+            albumNames[i] = intern(pool, albumCursor.getString(1));
+            albumArtists[i] = intern(pool, albumCursor.getString(2));
+            albumSongCounts[i] = albumCursor.getInt(3);
+            albumMediaIds[i] = albumCursor.getLong(4);
+            albumArts[i] = albumCursor.getString(5);
+            albumYears[i] = albumCursor.getInt(6);
+            albumFirstYears[i] = albumCursor.getLong(7);
+            albumLastYears[i] = albumCursor.getLong(8);
+            albumLastPlayed[i] = albumCursor.getLong(9);
+            albumDateAdded[i] = albumCursor.getLong(10);
+            albumGenres[i] = intern(pool, albumCursor.getString(11));
+            albumArtistRowIds[i] = albumCursor.getLong(12);
+            albumNamePinyins[i] = intern(pool, albumCursor.getString(13));
+        }
+
+        artistCount = artistCursor.getCount();
+        artistIds = new long[artistCount];
+        artistNames = new String[artistCount];
+        artistNamePinyins = new String[artistCount];
+        artistCoverUrls = new String[artistCount];
+        artistSongCounts = new int[artistCount];
+        artistAlbumCounts = new int[artistCount];
+        artistMediaIds = new long[artistCount];
+        artistCoverFetched = new boolean[artistCount];
+        artistLastPlayed = new long[artistCount];
+        artistDateAdded = new long[artistCount];
+        for (int i = 0; i < artistCount && artistCursor.moveToNext(); i++) {
+            artistIds[i] = artistCursor.getLong(0);
+            artistNames[i] = intern(pool, artistCursor.getString(1));
+            artistSongCounts[i] = artistCursor.getInt(2);
+            artistAlbumCounts[i] = artistCursor.getInt(3);
+            artistMediaIds[i] = artistCursor.getLong(4);
+            artistCoverUrls[i] = artistCursor.getString(5);
+            artistCoverFetched[i] = artistCursor.getInt(6) != 0;
+            artistLastPlayed[i] = artistCursor.getLong(7);
+            artistDateAdded[i] = artistCursor.getLong(8);
+            artistNamePinyins[i] = artistCursor.getString(9);
+        }
+    }
+
+    /**
+     * 复制快照并替换播放时间列，其他列与原快照共享
+     */
+    private LibrarySnapshot(LibrarySnapshot source, long[] songLastPlayed, long[] albumLastPlayed,
+                            long[] artistLastPlayed) {
+        generationValue = source.generationValue;
+        songCount = source.songCount;
+        songIds = source.songIds;
+        songTitles = source.songTitles;
+        songArtists = source.songArtists;
+        songAlbums = source.songAlbums;
+        songTitlePinyins = source.songTitlePinyins;
+        songArtistPinyins = source.songArtistPinyins;
+        songPaths = source.songPaths;
+        songDisplayNames = source.songDisplayNames;
+        songMimeTypes = source.songMimeTypes;
+        songGenres = source.songGenres;
+        songDurations = source.songDurations;
+        songSizes = source.songSizes;
+        songAlbumIds = source.songAlbumIds;
+        songArtistIds = source.songArtistIds;
+        songAlbumRowIds = source.songAlbumRowIds;
+        songArtistRowIds = source.songArtistRowIds;
+        songDateAdded = source.songDateAdded;
+        songDateModified = source.songDateModified;
+        this.songLastPlayed = songLastPlayed;
+        songMediaStoreIds = source.songMediaStoreIds;
+        songTracks = source.songTracks;
+        songYears = source.songYears;
+        songFlags = source.songFlags;
+        songReplayGainTrack = source.songReplayGainTrack;
+        songReplayGainAlbum = source.songReplayGainAlbum;
+
+        albumCount = source.albumCount;
+        albumIds = source.albumIds;
+        albumNames = source.albumNames;
+        albumNamePinyins = source.albumNamePinyins;
+        albumArtists = source.albumArtists;
+        albumArts = source.albumArts;
+        albumGenres = source.albumGenres;
+        albumSongCounts = source.albumSongCounts;
+        albumMediaIds = source.albumMediaIds;
+        albumArtistRowIds = source.albumArtistRowIds;
+        albumYears = source.albumYears;
+        albumFirstYears = source.albumFirstYears;
+        albumLastYears = source.albumLastYears;
+        this.albumLastPlayed = albumLastPlayed;
+        albumDateAdded = source.albumDateAdded;
+
+        artistCount = source.artistCount;
+        artistIds = source.artistIds;
+        artistNames = source.artistNames;
+        artistNamePinyins = source.artistNamePinyins;
+        artistCoverUrls = source.artistCoverUrls;
+        artistSongCounts = source.artistSongCounts;
+        artistAlbumCounts = source.artistAlbumCounts;
+        artistMediaIds = source.artistMediaIds;
+        artistCoverFetched = source.artistCoverFetched;
+        this.artistLastPlayed = artistLastPlayed;
+        artistDateAdded = source.artistDateAdded;
+
+        // 添加时间没有变化，排序视图可以沿用
+        songsByDateAdded = source.songsByDateAdded;
+        albumsByDateAdded = source.albumsByDateAdded;
+        artistsByDateAdded = source.artistsByDateAdded;
+    }
+
+    /**
+     * 当前快照，已失效时重新读取数据库
+     */
+    @NonNull
+    public static LibrarySnapshot get() {
+        LibrarySnapshot snapshot = current;
+        if (snapshot != null && snapshot.generationValue == generation.get()) {
+            return snapshot;
+        }
+        synchronized (BUILD_LOCK) {
+            snapshot = current;
+            int generationValue = generation.get();
+            if (snapshot != null && snapshot.generationValue == generationValue) {
+                return snapshot;
+            }
+            LibrarySchema.awaitMigrated();
+            snapshot = load(generationValue);
+            current = snapshot;
+            return snapshot;
+        }
+    }
+
+    /**
+     * 当前快照，尚未读取或已失效时返回null，不会读取数据库
+     */
+    @Nullable
+    public static LibrarySnapshot peek() {
+        LibrarySnapshot snapshot = current;
+        return snapshot != null && snapshot.generationValue == generation.get() ? snapshot : null;
+    }
+
+    /**
+     * 音乐库发生变化（扫描、同步、删除、编辑标签等）后调用，下一次{@link #get()}会重新读取
+     */
+    public static void invalidate() {
+        generation.incrementAndGet();
+        QueryCache.invalidate(QueryCache.SONG, QueryCache.ALBUM, QueryCache.ARTIST, QueryCache.SONG_ARTIST);
+    }
+
+    /**
+     * 更新快照中的最后播放时间，与PlaybackStateManager写入数据库的规则一致（专辑和艺术家均为行ID）
+     * 快照尚未读取或已失效时不需要处理，下一次读取会包含新的播放时间
+     */
+    public static void updateLastPlayed(long songId, long albumRowId, long artistRowId, long time) {
+        synchronized (BUILD_LOCK) {
+            LibrarySnapshot snapshot = current;
+            if (snapshot == null || snapshot.generationValue != generation.get()) {
+                return;
+            }
+            long[] songLastPlayed = snapshot.songLastPlayed.clone();
+            int songIndex = Arrays.binarySearch(snapshot.songIds, songId);
+            if (songIndex >= 0) {
+                songLastPlayed[songIndex] = time;
+            }
+            long[] albumLastPlayed = snapshot.albumLastPlayed.clone();
+            int albumIndex = Arrays.binarySearch(snapshot.albumIds, albumRowId);
+            if (albumIndex >= 0) {
+                albumLastPlayed[albumIndex] = time;
+            }
+            long[] artistLastPlayed = snapshot.artistLastPlayed.clone();
+            int artistIndex = Arrays.binarySearch(snapshot.artistIds, artistRowId);
+            if (artistIndex >= 0) {
+                artistLastPlayed[artistIndex] = time;
+            }
+            current = new LibrarySnapshot(snapshot, songLastPlayed, albumLastPlayed, artistLastPlayed);
+        }
+    }
+
+    private static LibrarySnapshot load(int generationValue) {
+        long startTime = SystemClock.elapsedRealtime();
+        Cursor songCursor = null;
+        Cursor albumCursor = null;
+        Cursor artistCursor = null;
+        try {
+            songCursor = LitePal.findBySQL(SQL_SELECT_SONGS);
+            albumCursor = LitePal.findBySQL(SQL_SELECT_ALBUMS);
+            artistCursor = LitePal.findBySQL(SQL_SELECT_ARTISTS);
+            LibrarySnapshot snapshot = new LibrarySnapshot(generationValue, songCursor, albumCursor, artistCursor);
+            Log.d(TAG, "读取音乐库快照: 歌曲 " + snapshot.songCount + ", 专辑 " + snapshot.albumCount
+                    + ", 艺术家 " + snapshot.artistCount + ", 耗时 " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+            return snapshot;
+        } finally {
+            closeCursor(songCursor);
+            closeCursor(albumCursor);
+            closeCursor(artistCursor);
+        }
+    }
+
+    /**
+     * 读取快照时的失效计数，相同说明行号和文本没有变化（只替换播放时间的快照与原快照相同）
+     */
+    public int getGeneration() {
+        return generationValue;
+    }
+
+    // ---------------------------------------------------------------- 歌曲
+
+    public int getSongCount() {
+        return songCount;
+    }
+
+    public long getSongIdAt(int row) {
+        return songIds[row];
+    }
+
+    public String getSongTitleAt(int row) {
+        return songTitles[row];
+    }
+
+    public String getSongArtistAt(int row) {
+        return songArtists[row];
+    }
+
+    @NonNull
+    public Song getSongAt(int row) {
+        return songAt(row);
+    }
+
+    /**
+     * 按ID查找歌曲，不存在时返回null
+     */
+    @Nullable
+    public Song findSong(long id) {
+        int index = Arrays.binarySearch(songIds, id);
+        return index >= 0 ? songAt(index) : null;
+    }
+
+    /**
+     * 所有歌曲，按添加时间倒序
+     */
+    @NonNull
+    public List<Song> getSongsByDateAdded() {
+        return new SongList(songsByDateAdded());
+    }
+
+    /**
+     * 所有歌曲，按最后播放时间倒序
+     */
+    @NonNull
+    public List<Song> getSongsByLastPlayed() {
+        int[] order = songsByLastPlayed;
+        if (order == null) {
+            order = sortDescending(songCount, songLastPlayed);
+            songsByLastPlayed = order;
+        }
+        return new SongList(order);
+    }
+
+    /**
+     * 艺术家（行ID）的歌曲，按添加时间倒序
+     */
+    @NonNull
+    public List<Song> getSongsByArtist(long artistRowId) {
+        int[] order = songsByDateAdded();
+        int[] matched = new int[order.length];
+        int count = 0;
+        for (int index : order) {
+            if (songArtistRowIds[index] == artistRowId) {
+                matched[count++] = index;
+            }
+        }
+        return new SongList(Arrays.copyOf(matched, count));
+    }
+
+    /**
+     * 专辑（行ID）的歌曲，按添加时间倒序
+     */
+    @NonNull
+    public List<Song> getSongsByAlbum(long albumRowId) {
+        int[] order = songsByDateAdded();
+        int[] matched = new int[order.length];
+        int count = 0;
+        for (int index : order) {
+            if (songAlbumRowIds[index] == albumRowId) {
+                matched[count++] = index;
+            }
+        }
+        return new SongList(Arrays.copyOf(matched, count));
+    }
+
+    private int[] songsByDateAdded() {
+        int[] order = songsByDateAdded;
+        if (order == null) {
+            order = sortDescending(songCount, songDateAdded);
+            songsByDateAdded = order;
+        }
+        return order;
+    }
+
+    private Song songAt(int index) {
+        Song song = new Song();
+        song.setId(songIds[index]);
+        song.setTitle(songTitles[index], songTitlePinyins[index]);
+        song.setArtist(songArtists[index], songArtistPinyins[index]);
+        song.setAlbum(songAlbums[index]);
+        song.setPath(songPaths[index]);
+        song.setDuration(songDurations[index]);
+        song.setSize(songSizes[index]);
+        song.setDisplayName(songDisplayNames[index]);
+        song.setAlbumId(songAlbumIds[index]);
+        song.setArtistId(songArtistIds[index]);
+        song.setAlbumRowId(songAlbumRowIds[index]);
+        song.setArtistRowId(songArtistRowIds[index]);
+        song.setDateAdded(songDateAdded[index]);
+        song.setDateModified(songDateModified[index]);
+        song.setMimeType(songMimeTypes[index]);
+        song.setTrack(songTracks[index]);
+        song.setYear(songYears[index]);
+        song.setGenre(songGenres[index]);
+        song.setLastplayed(songLastPlayed[index]);
+        song.setMediaStoreId(songMediaStoreIds[index]);
+        song.setHasEmbeddedLyrics((songFlags[index] & FLAG_EMBEDDED_LYRICS) != 0);
+        song.setHasEmbeddedArt((songFlags[index] & FLAG_EMBEDDED_ART) != 0);
+        song.setReplayGainTrack(songReplayGainTrack[index]);
+        song.setReplayGainAlbum(songReplayGainAlbum[index]);
+        return song;
+    }
+
+    // ---------------------------------------------------------------- 专辑
+
+    public int getAlbumCount() {
+        return albumCount;
+    }
+
+    public long getAlbumIdAt(int row) {
+        return albumIds[row];
+    }
+
+    public String getAlbumNameAt(int row) {
+        return albumNames[row];
+    }
+
+    @NonNull
+    public Album getAlbumAt(int row) {
+        return albumAt(row);
+    }
+
+    /**
+     * 所有专辑，按添加时间倒序
+     */
+    @NonNull
+    public List<Album> getAlbumsByDateAdded() {
+        int[] order = albumsByDateAdded;
+        if (order == null) {
+            order = sortDescending(albumCount, albumDateAdded);
+            albumsByDateAdded = order;
+        }
+        return new AlbumList(order);
+    }
+
+    /**
+     * 所有专辑，按最后播放时间倒序
+     */
+    @NonNull
+    public List<Album> getAlbumsByLastPlayed() {
+        return new AlbumList(albumsByLastPlayed());
+    }
+
+    /**
+     * 艺术家（行ID）的专辑，按最后播放时间倒序
+     */
+    @NonNull
+    public List<Album> getAlbumsByArtist(long artistRowId) {
+        int[] order = albumsByLastPlayed();
+        int[] matched = new int[order.length];
+        int count = 0;
+        for (int index : order) {
+            if (albumArtistRowIds[index] == artistRowId) {
+                matched[count++] = index;
+            }
+        }
+        return new AlbumList(Arrays.copyOf(matched, count));
+    }
+
+    private int[] albumsByLastPlayed() {
+        int[] order = albumsByLastPlayed;
+        if (order == null) {
+            order = sortDescending(albumCount, albumLastPlayed);
+            albumsByLastPlayed = order;
+        }
+        return order;
+    }
+
+    private Album albumAt(int index) {
+        Album album = new Album();
+        album.setId(albumIds[index]);
+        album.setAlbumName(albumNames[index], albumNamePinyins[index]);
+        album.setArtist(albumArtists[index]);
+        album.setSongCount(albumSongCounts[index]);
+        album.setAlbumId(albumMediaIds[index]);
+        album.setArtistRowId(albumArtistRowIds[index]);
+        album.setAlbumArt(albumArts[index]);
+        album.setYear(albumYears[index]);
+        album.setFirstYear(albumFirstYears[index]);
+        album.setLastYear(albumLastYears[index]);
+        album.setLastplayed(albumLastPlayed[index]);
+        album.setDateAdded(albumDateAdded[index]);
+        album.setGenre(albumGenres[index]);
+        return album;
+    }
+
+    // ---------------------------------------------------------------- 艺术家
+
+    public int getArtistCount() {
+        return artistCount;
+    }
+
+    public long getArtistIdAt(int row) {
+        return artistIds[row];
+    }
+
+    public String getArtistNameAt(int row) {
+        return artistNames[row];
+    }
+
+    @NonNull
+    public Artist getArtistAt(int row) {
+        return artistAt(row);
+    }
+
+    /**
+     * 所有艺术家，按添加时间倒序
+     */
+    @NonNull
+    public List<Artist> getArtistsByDateAdded() {
+        int[] order = artistsByDateAdded;
+        if (order == null) {
+            order = sortDescending(artistCount, artistDateAdded);
+            artistsByDateAdded = order;
+        }
+        return new ArtistList(order);
+    }
+
+    /**
+     * 所有艺术家，按最后播放时间倒序
+     */
+    @NonNull
+    public List<Artist> getArtistsByLastPlayed() {
+        int[] order = artistsByLastPlayed;
+        if (order == null) {
+            order = sortDescending(artistCount, artistLastPlayed);
+            artistsByLastPlayed = order;
+        }
+        return new ArtistList(order);
+    }
+
+    private Artist artistAt(int index) {
+        Artist artist = new Artist();
+        artist.setId(artistIds[index]);
+        artist.setArtistName(artistNames[index], artistNamePinyins[index]);
+        artist.setSongCount(artistSongCounts[index]);
+        artist.setAlbumCount(artistAlbumCounts[index]);
+        artist.setArtistId(artistMediaIds[index]);
+        artist.setCoverUrl(artistCoverUrls[index]);
+        artist.setCoverFetched(artistCoverFetched[index]);
+        artist.setLastplayed(artistLastPlayed[index]);
+        artist.setDateAdded(artistDateAdded[index]);
+        return artist;
+    }
+
+    // ---------------------------------------------------------------- 视图
+
+    /**
+     * 按行号排列的只读列表，读取元素时才创建对象
+     */
+    private final class SongList extends AbstractList<Song> implements RandomAccess {
+        private final int[] order;
+
+        SongList(int[] order) {
+            this.order = order;
+        }
+
+        @Override
+        public Song get(int index) {
+            return songAt(order[index]);
+        }
+
+        @Override
+        public int size() {
+            return order.length;
+        }
+    }
+
+    private final class AlbumList extends AbstractList<Album> implements RandomAccess {
+        private final int[] order;
+
+        AlbumList(int[] order) {
+            this.order = order;
+        }
+
+        @Override
+        public Album get(int index) {
+            return albumAt(order[index]);
+        }
+
+        @Override
+        public int size() {
+            return order.length;
+        }
+    }
+
+    private final class ArtistList extends AbstractList<Artist> implements RandomAccess {
+        private final int[] order;
+
+        ArtistList(int[] order) {
+            this.order = order;
+        }
+
+        @Override
+        public Artist get(int index) {
+            return artistAt(order[index]);
+        }
+
+        @Override
+        public int size() {
+            return order.length;
+        }
+    }
+
+    // ---------------------------------------------------------------- 工具方法
+
+    /**
+     * 按keys倒序排列的行号，相同的值保持行号（即id）升序
+     */
+    private static int[] sortDescending(int count, long[] keys) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        // 归并排序，保证相同值的顺序稳定
+        int[] buffer = new int[count];
+        for (int width = 1; width < count; width *= 2) {
+            for (int start = 0; start < count; start += width * 2) {
+                int middle = Math.min(start + width, count);
+                int end = Math.min(start + width * 2, count);
+                int left = start;
+                int right = middle;
+                int out = start;
+                while (left < middle && right < end) {
+                    buffer[out++] = keys[order[right]] > keys[order[left]] ? order[right++] : order[left++];
+                }
+                while (left < middle) {
+                    buffer[out++] = order[left++];
+                }
+                while (right < end) {
+                    buffer[out++] = order[right++];
+                }
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
+    }
+
+    private static String intern(Map<String, String> pool, String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = pool.get(value);
+        if (existing == null) {
+            pool.put(value, value);
+            return value;
+        }
+        return existing;
+    }
+
+    private static void closeCursor(Cursor cursor) {
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+}
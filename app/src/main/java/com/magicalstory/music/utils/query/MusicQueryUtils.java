@@ -24,8 +24,8 @@ public class MusicQueryUtils {
             return null;
         }
         
-        // 通过专辑名称和艺术家名称查询歌曲
-        return LitePal.where("album = ? AND artist = ?", album.getAlbumName(), album.getArtist())
+        // 通过专辑行ID查询歌曲
+        return LitePal.where("albumRowId = ?", String.valueOf(album.getId()))
                 .find(Song.class);
     }
 
@@ -39,8 +39,9 @@ public class MusicQueryUtils {
             return null;
         }
         
-        // 通过艺术家名称查询歌曲
-        return LitePal.where("artist = ?", artist.getArtistName())
+        // 通过歌曲-艺术家关联行查询艺术家署名的歌曲
+        return LitePal.where("id in (select songid from songartist where artistid = ?)",
+                        String.valueOf(artist.getId()))
                 .find(Song.class);
     }
 
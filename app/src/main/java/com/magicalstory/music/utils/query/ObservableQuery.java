@@ -0,0 +1,226 @@
+package com.magicalstory.music.utils.query;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 可订阅的列表查询
+ * 页面订阅一条查询后，查询依赖的表发生变化（{@link QueryCache#invalidate}）时自动重新查询：
+ * <ul>
+ *     <li>查询和DiffUtil比较都在后台线程执行，主线程只收到新列表和比较结果，
+ *     适配器通过{@link DiffUtil.DiffResult#dispatchUpdatesTo}只刷新变化的项</li>
+ *     <li>查询期间再次发生变化时，本次结果返回后再查询一次，连续的变化合并为一次查询</li>
+ *     <li>分页列表滚动读取的下一页通过{@link #append}加入当前结果，重新查询时读取相同的数量</li>
+ * </ul>
+ * 所有方法都需要在主线程调用，页面销毁时调用{@link #close()}。
+ */
+public final class ObservableQuery<T> implements QueryCache.ChangeListener {
+    private static final String TAG = "ObservableQuery";
+
+    // 所有订阅共用一个后台线程，按提交顺序执行
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * 在后台线程执行的查询
+     */
+    public interface Loader<T> {
+        /**
+         * @param loadedCount 当前结果的数量，分页列表需要至少读取这么多项，保持滚动位置
+         */
+        @NonNull
+        List<T> load(int loadedCount);
+    }
+
+    /**
+     * 在主线程回调的查询结果
+     */
+    public interface Callback<T> {
+        /**
+         * @param items 新的结果（只读）
+         * @param diff  与上一次结果的差异，第一次查询时为null
+         */
+        void onChanged(@NonNull List<T> items, @Nullable DiffUtil.DiffResult diff);
+
+        void onError(Exception e);
+    }
+
+    private final String[] tables;
+    private final Loader<T> loader;
+    private final DiffUtil.ItemCallback<T> itemCallback;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private Callback<T> callback;
+    private List<T> items = new ArrayList<>();
+    // 结果每次被替换或追加时加一，用于丢弃查询期间已过期的结果
+    private int modCount;
+    private boolean loaded;
+    private boolean loading;
+    private boolean dirty;
+    private boolean closed;
+
+    /**
+     * @param tables       查询依赖的表（{@link QueryCache}中的表名）
+     * @param itemCallback 判断两项是否为同一项、内容是否相同
+     */
+    public ObservableQuery(@NonNull String[] tables, @NonNull Loader<T> loader,
+                           @NonNull DiffUtil.ItemCallback<T> itemCallback) {
+        this.tables = tables.clone();
+        this.loader = loader;
+        this.itemCallback = itemCallback;
+    }
+
+    /**
+     * 订阅并立即执行第一次查询
+     */
+    public void subscribe(@NonNull Callback<T> callback) {
+        this.callback = callback;
+        QueryCache.addChangeListener(this);
+        evaluate();
+    }
+
+    /**
+     * 不等表变化，重新查询一次（例如收到没有对应表变化的刷新广播）
+     */
+    public void refresh() {
+        evaluate();
+    }
+
+    /**
+     * 把滚动读取的下一页加入当前结果
+     */
+    public void append(@NonNull List<T> more) {
+        if (more.isEmpty()) {
+            return;
+        }
+        items.addAll(more);
+        modCount++;
+    }
+
+    /**
+     * 当前结果（只读）
+     */
+    @NonNull
+    public List<T> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * 取消订阅，之后不再回调
+     */
+    public void close() {
+        closed = true;
+        QueryCache.removeChangeListener(this);
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    @Override
+    public void onTablesChanged(String[] changedTables) {
+        if (!closed && QueryCache.dependsOn(tables, changedTables)) {
+            mainHandler.post(this::evaluate);
+        }
+    }
+
+    private void evaluate() {
+        if (closed) {
+            return;
+        }
+        if (loading) {
+            dirty = true;
+            return;
+        }
+        loading = true;
+        dirty = false;
+        List<T> oldItems = new ArrayList<>(items);
+        int expectedModCount = modCount;
+        boolean first = !loaded;
+        executor.execute(() -> {
+            List<T> newItems;
+            DiffUtil.DiffResult diff = null;
+            try {
+                newItems = loader.load(oldItems.size());
+                if (!first) {
+                    diff = DiffUtil.calculateDiff(new ListDiff<>(oldItems, newItems, itemCallback));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "查询失败: " + e.getMessage(), e);
+                mainHandler.post(() -> {
+                    if (!closed) {
+                        callback.onError(e);
+                    }
+                    finishLoading();
+                });
+                return;
+            }
+            DiffUtil.DiffResult result = diff;
+            mainHandler.post(() -> {
+                if (closed) {
+                    return;
+                }
+                if (modCount != expectedModCount) {
+                    // 查询期间追加了新的一页，按新的数量重新查询
+                    dirty = true;
+                    finishLoading();
+                    return;
+                }
+                items = new ArrayList<>(newItems);
+                modCount++;
+                loaded = true;
+                callback.onChanged(getItems(), result);
+                finishLoading();
+            });
+        });
+    }
+
+    private void finishLoading() {
+        loading = false;
+        if (dirty) {
+            evaluate();
+        }
+    }
+
+    /**
+     * 新旧两个列表的比较，按项比较的规则由ItemCallback决定
+     */
+    private static final class ListDiff<T> extends DiffUtil.Callback {
+        private final List<T> oldItems;
+        private final List<T> newItems;
+        private final DiffUtil.ItemCallback<T> itemCallback;
+
+        ListDiff(List<T> oldItems, List<T> newItems, DiffUtil.ItemCallback<T> itemCallback) {
+            this.oldItems = oldItems;
+            this.newItems = newItems;
+            this.itemCallback = itemCallback;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldItems.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newItems.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return itemCallback.areItemsTheSame(oldItems.get(oldItemPosition), newItems.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return itemCallback.areContentsTheSame(oldItems.get(oldItemPosition), newItems.get(newItemPosition));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.magicalstory.music.utils.query;
+
+import androidx.annotation.NonNull;
+
+import com.magicalstory.music.utils.db.LibrarySchema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 查询结果缓存
+ * 首页、详情页、歌单页每次进入都会重复执行相同的查询，结果按"查询形状 + 参数"缓存，
+ * 数量有上限，超过时淘汰最久未使用的结果（LRU）。
+ * <ul>
+ *     <li>每条缓存记录依赖的表，写入方在数据变化后调用{@link #invalidate}通知变化的表，
+ *     只淘汰依赖这些表的结果，其他结果继续有效</li>
+ *     <li>扫描、同步、删除等调用{@link LibrarySnapshot#invalidate()}时会同时通知歌曲、专辑、艺术家表</li>
+ *     <li>查询期间依赖的表发生变化时，结果只返回给调用方，不放入缓存</li>
+ *     <li>表变化同时通知{@link ChangeListener}，页面通过{@link ObservableQuery}订阅查询结果的变化</li>
+ * </ul>
+ * 列表结果缓存为只读列表，{@link #getList}每次返回新的列表；列表中的对象是共享的，不要修改。
+ * 未命中时在调用线程执行查询，需要在后台线程调用。
+ */
+public final class QueryCache {
+
+    // 表名，与LitePal生成的表名一致
+    public static final String SONG = "song";
+    public static final String ALBUM = "album";
+    public static final String ARTIST = "artist";
+    public static final String SONG_ARTIST = "songartist";
+    public static final String PLAYLIST = "playlist";
+    public static final String PLAYLIST_SONG = "playlistsong";
+    public static final String FAVORITE_SONG = "favoritesong";
+    public static final String PLAY_HISTORY = "playhistory";
+    public static final String PLAY_ROLLUP = "playrollup";
+
+    // 缓存的结果数量上限
+    private static final int MAX_ENTRIES = 128;
+
+    /**
+     * 缓存未命中时执行的查询
+     */
+    public interface Loader<T> {
+        T load();
+    }
+
+    /**
+     * 表变化监听，在调用{@link #invalidate}的线程回调
+     */
+    public interface ChangeListener {
+        void onTablesChanged(String[] tables);
+    }
+
+    private static final class Entry {
+        final Object value;
+        final String[] tables;
+
+        Entry(Object value, String[] tables) {
+            this.value = value;
+            this.tables = tables;
+        }
+    }
+
+    private static final Object LOCK = new Object();
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    // 每张表的变化次数，查询前后不相等说明查询期间表发生了变化
+    private static final Map<String, Long> tableVersions = new HashMap<>();
+
+    private static final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private static long hitCount;
+    private static long missCount;
+
+    private QueryCache() {
+    }
+
+    /**
+     * 读取缓存的结果，未命中时执行查询并缓存
+     *
+     * @param shape  查询形状，相同形状、相同参数的查询结果相同
+     * @param tables 查询依赖的表
+     * @param args   查询参数
+     */
+    public static <T> T get(@NonNull String shape, @NonNull String[] tables, @NonNull Loader<T> loader,
+                            Object... args) {
+        String key = key(shape, args);
+        long[] versions;
+        synchronized (LOCK) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hitCount++;
+                @SuppressWarnings("unchecked")
+                T value = (T) entry.value;
+                return value;
+            }
+            missCount++;
+            versions = versionsOf(tables);
+        }
+
+        LibrarySchema.awaitMigrated();
+        T value = loader.load();
+        synchronized (LOCK) {
+            if (Arrays.equals(versions, versionsOf(tables))) {
+                entries.put(key, new Entry(value, tables.clone()));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 读取缓存的列表结果，每次返回新的列表，调用方可以修改列表本身
+     */
+    @NonNull
+    public static <T> List<T> getList(@NonNull String shape, @NonNull String[] tables,
+                                      @NonNull Loader<List<T>> loader, Object... args) {
+        List<T> cached = get(shape, tables, () -> {
+            List<T> list = loader.load();
+            return list == null ? Collections.<T>emptyList() : Collections.unmodifiableList(new ArrayList<>(list));
+        }, args);
+        return new ArrayList<>(cached);
+    }
+
+    /**
+     * 通知表发生了变化，淘汰依赖这些表的结果
+     */
+    public static void invalidate(String... tables) {
+        synchronized (LOCK) {
+            for (String table : tables) {
+                Long version = tableVersions.get(table);
+                tableVersions.put(table, version == null ? 1 : version + 1);
+            }
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (dependsOn(iterator.next().tables, tables)) {
+                    iterator.remove();
+                }
+            }
+        }
+        for (ChangeListener listener : listeners) {
+            listener.onTablesChanged(tables);
+        }
+    }
+
+    public static void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 清空所有缓存
+     */
+    public static void clear() {
+        synchronized (LOCK) {
+            entries.clear();
+        }
+    }
+
+    public static long getHitCount() {
+        synchronized (LOCK) {
+            return hitCount;
+        }
+    }
+
+    public static long getMissCount() {
+        synchronized (LOCK) {
+            return missCount;
+        }
+    }
+
+    /**
+     * 依赖的表中是否有发生变化的表
+     */
+    static boolean dependsOn(String[] dependencies, String[] tables) {
+        for (String dependency : dependencies) {
+            for (String table : tables) {
+                if (dependency.equals(table)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long[] versionsOf(String[] tables) {
+        long[] versions = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            Long version = tableVersions.get(tables[i]);
+            versions[i] = version == null ? 0 : version;
+        }
+        return versions;
+    }
+
+    private static String key(String shape, Object[] args) {
+        StringBuilder builder = new StringBuilder(shape);
+        for (Object arg : args) {
+            // 用不会出现在SQL中的字符分隔参数
+            builder.append('\u0001').append(arg);
+        }
+        return builder.toString();
+    }
+}
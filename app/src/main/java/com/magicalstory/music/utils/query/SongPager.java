@@ -0,0 +1,196 @@
+package com.magicalstory.music.utils.query;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+
+import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.db.LibrarySchema;
+import com.magicalstory.music.utils.db.PlayEventLog;
+
+import org.litepal.LitePal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 歌曲列表的键集分页
+ * 列表页面不再一次读取整张表，而是滚动到接近末尾时读取下一页：
+ * <ul>
+ *     <li>每页从上一页最后一行的(排序键, 行ID)之后继续读取（不使用OFFSET），
+ *     排序键有索引时无论翻到第几页都只读取一页的行</li>
+ *     <li>一页的行只包含歌曲ID，歌曲通过{@link SongResolver}批量读取</li>
+ *     <li>"播放全部"等需要完整结果的操作使用{@link #loadAll()}，不影响当前的读取位置</li>
+ * </ul>
+ * 每种列表对应一个静态工厂方法，都按排序键倒序、行ID倒序排列。
+ * {@link #nextPage()}会记录读取位置，同一个实例只能在一个线程中顺序调用；所有方法都需要在后台线程调用。
+ */
+public final class SongPager {
+
+    // 每页的行数
+    public static final int PAGE_SIZE = 100;
+
+    private final String from;          // 表（含别名）
+    private final String sortKey;       // 排序键表达式
+    private final String rowId;         // 排序键相同时的排序依据，需要唯一
+    private final String songId;        // 歌曲ID表达式
+    private final String where;         // 过滤条件，没有时为null
+    private final String[] args;
+
+    // 上一页最后一行的位置
+    private boolean started;
+    private long lastSortKey;
+    private long lastRowId;
+    private boolean exhausted;
+
+    private SongPager(String from, String sortKey, String rowId, String songId, String where, String... args) {
+        this.from = from;
+        this.sortKey = sortKey;
+        this.rowId = rowId;
+        this.songId = songId;
+        this.where = where;
+        this.args = args;
+    }
+
+    /**
+     * 所有歌曲，按添加时间倒序
+     */
+    public static SongPager allByDateAdded() {
+        return new SongPager("song s", "s.dateadded", "s.id", "s.id", null);
+    }
+
+    /**
+     * 所有歌曲，按最后播放时间倒序
+     */
+    public static SongPager allByLastPlayed() {
+        return new SongPager("song s", "s.lastplayed", "s.id", "s.id", null);
+    }
+
+    /**
+     * 艺术家（行ID）署名的歌曲，按添加时间倒序
+     */
+    public static SongPager byArtist(long artistRowId) {
+        return new SongPager("songartist sa join song s on s.id = sa.songid", "s.dateadded", "s.id", "s.id",
+                "sa.artistid = ?", String.valueOf(artistRowId));
+    }
+
+    /**
+     * 专辑（行ID）的歌曲，按添加时间倒序
+     */
+    public static SongPager byAlbum(long albumRowId) {
+        return new SongPager("song s", "s.dateadded", "s.id", "s.id", "s.albumrowid = ?",
+                String.valueOf(albumRowId));
+    }
+
+    /**
+     * 随机顺序：按种子对歌曲ID做乘法散列后排序，同一个种子的顺序固定，翻页时不会重复或遗漏。
+     * 散列值没有索引，每页需要扫描一次歌曲表（只计算不读取行内容）
+     */
+    public static SongPager random(int seed) {
+        return new SongPager("song s", "((s.id * 1103515245 + " + (seed & 0x7fffffff) + ") % 2147483647)",
+                "s.id", "s.id", null);
+    }
+
+    /**
+     * 收藏的歌曲，按收藏时间倒序
+     */
+    public static SongPager favorites() {
+        return new SongPager("favoritesong f", "f.addtime", "f.id", "f.songid", null);
+    }
+
+    /**
+     * 播放历史，按最后播放时间倒序
+     */
+    public static SongPager history() {
+        return new SongPager("playhistory h", "h.lastplaytime", "h.id", "h.songid", null);
+    }
+
+    /**
+     * 最常播放，按收听汇总中全部时间的播放次数倒序
+     */
+    public static SongPager mostPlayed() {
+        return new SongPager("playrollup r", "r.playcount", "r.itemid", "r.itemid",
+                "r.period = " + PlayEventLog.PERIOD_ALL + " and r.bucket = 0 and r.kind = " + PlayEventLog.KIND_SONG);
+    }
+
+    /**
+     * 歌单中的歌曲，按添加时间倒序（最新添加的在前面）
+     */
+    public static SongPager playlist(long playlistId) {
+        return new SongPager("playlistsong p", "p.addedtime", "p.id", "p.songid", "p.playlistid = ?",
+                String.valueOf(playlistId));
+    }
+
+    /**
+     * 是否还有下一页
+     */
+    public boolean hasMore() {
+        return !exhausted;
+    }
+
+    /**
+     * 读取下一页，已删除的歌曲被跳过，因此一页可能少于{@link #PAGE_SIZE}首；没有更多时返回空列表
+     */
+    @NonNull
+    public List<Song> nextPage() {
+        if (exhausted) {
+            return new ArrayList<>();
+        }
+        LibrarySchema.awaitMigrated();
+        StringBuilder sql = new StringBuilder("select ").append(sortKey).append(", ").append(rowId).append(", ")
+                .append(songId).append(" from ").append(from);
+        List<String> sqlArgs = new ArrayList<>();
+        String condition = where;
+        for (String arg : args) {
+            sqlArgs.add(arg);
+        }
+        if (started) {
+            // 位置直接写成整数而不是绑定参数：findBySQL的参数都是文本，排序键是表达式（随机顺序的散列值）时没有列亲和性，
+            // SQLite按整数 < 文本比较，条件恒为真，每页都会重新读取第一页
+            String seek = "(" + sortKey + " < " + lastSortKey + " or (" + sortKey + " = " + lastSortKey
+                    + " and " + rowId + " < " + lastRowId + "))";
+            condition = condition == null ? seek : condition + " and " + seek;
+        }
+        if (condition != null) {
+            sql.append(" where ").append(condition);
+        }
+        sql.append(" order by ").append(sortKey).append(" desc, ").append(rowId).append(" desc limit ")
+                .append(PAGE_SIZE);
+
+        String[] sqlAndArgs = new String[sqlArgs.size() + 1];
+        sqlAndArgs[0] = sql.toString();
+        for (int i = 0; i < sqlArgs.size(); i++) {
+            sqlAndArgs[i + 1] = sqlArgs.get(i);
+        }
+
+        List<Long> ids = new ArrayList<>(PAGE_SIZE);
+        Cursor cursor = LitePal.findBySQL(sqlAndArgs);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    lastSortKey = cursor.getLong(0);
+                    lastRowId = cursor.getLong(1);
+                    ids.add(cursor.getLong(2));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        started = true;
+        exhausted = ids.size() < PAGE_SIZE;
+        return SongResolver.resolve(ids);
+    }
+
+    /**
+     * 按相同的顺序读取完整的结果（两条SQL），用于播放全部、随机播放等
+     */
+    @NonNull
+    public List<Song> loadAll() {
+        StringBuilder sql = new StringBuilder("select ").append(songId).append(" from ").append(from);
+        if (where != null) {
+            sql.append(" where ").append(where);
+        }
+        sql.append(" order by ").append(sortKey).append(" desc, ").append(rowId).append(" desc");
+        return SongResolver.resolveQuery(sql.toString(), args);
+    }
+}
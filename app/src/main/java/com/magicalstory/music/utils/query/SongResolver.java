@@ -0,0 +1,136 @@
+package com.magicalstory.music.utils.query;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.magicalstory.music.model.Song;
+
+import org.litepal.LitePal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按ID批量读取歌曲
+ * 收藏、播放历史、歌单、播放队列等只保存歌曲ID的列表通过这里一次性读取，而不是逐个调用LitePal.find：
+ * <ul>
+ *     <li>{@link LibrarySnapshot}有效时直接从快照中按ID查找，不访问数据库</li>
+ *     <li>否则用IN查询读取：ID来自一条SQL时（{@link #resolveQuery}）把这条SQL作为子查询，
+ *     不论列表多长都只需要两条SQL；直接传入ID时按{@link #ID_CHUNK_SIZE}个一批</li>
+ * </ul>
+ * 返回的列表保持请求的顺序，不存在的ID（歌曲已删除）被跳过。需要在后台线程调用。
+ */
+public final class SongResolver {
+
+    // 每条SQL中IN列表的ID数量，ID直接写在SQL中（不是绑定参数），只受SQL长度限制
+    private static final int ID_CHUNK_SIZE = 2000;
+
+    private SongResolver() {
+    }
+
+    /**
+     * 按ID读取一首歌曲
+     */
+    @Nullable
+    public static Song resolve(long id) {
+        LibrarySnapshot snapshot = LibrarySnapshot.peek();
+        if (snapshot != null) {
+            return snapshot.findSong(id);
+        }
+        return LitePal.find(Song.class, id);
+    }
+
+    /**
+     * 按ID读取歌曲，保持ids的顺序
+     */
+    @NonNull
+    public static List<Song> resolve(@NonNull List<Long> ids) {
+        List<Song> songs = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return songs;
+        }
+        LibrarySnapshot snapshot = LibrarySnapshot.peek();
+        if (snapshot != null) {
+            for (Long id : ids) {
+                Song song = snapshot.findSong(id);
+                if (song != null) {
+                    songs.add(song);
+                }
+            }
+            return songs;
+        }
+
+        List<Long> uniqueIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Long, Song> byId = new HashMap<>(uniqueIds.size() * 2);
+        for (int start = 0; start < uniqueIds.size(); start += ID_CHUNK_SIZE) {
+            List<Long> chunk = uniqueIds.subList(start, Math.min(uniqueIds.size(), start + ID_CHUNK_SIZE));
+            collect(byId, LitePal.where("id in (" + joinIds(chunk) + ")").find(Song.class));
+        }
+        return inOrder(ids, byId);
+    }
+
+    /**
+     * 执行只查询歌曲ID一列的SQL（例如"select songid from favoritesong order by addtime desc"），
+     * 再按结果的顺序读取歌曲
+     */
+    @NonNull
+    public static List<Song> resolveQuery(@NonNull String sql, String... args) {
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = LitePal.findBySQL(prepend(sql, args));
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        if (ids.isEmpty() || LibrarySnapshot.peek() != null) {
+            return resolve(ids);
+        }
+        Map<Long, Song> byId = new HashMap<>(ids.size() * 2);
+        collect(byId, LitePal.where(prepend("id in (" + sql + ")", args)).find(Song.class));
+        return inOrder(ids, byId);
+    }
+
+    private static void collect(Map<Long, Song> byId, List<Song> songs) {
+        for (Song song : songs) {
+            byId.put(song.getId(), song);
+        }
+    }
+
+    private static List<Song> inOrder(List<Long> ids, Map<Long, Song> byId) {
+        List<Song> songs = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Song song = byId.get(id);
+            if (song != null) {
+                songs.add(song);
+            }
+        }
+        return songs;
+    }
+
+    private static String[] prepend(String first, String[] rest) {
+        String[] result = new String[rest.length + 1];
+        result[0] = first;
+        System.arraycopy(rest, 0, result, 1, rest.length);
+        return result;
+    }
+
+    private static String joinIds(List<Long> ids) {
+        StringBuilder builder = new StringBuilder(ids.size() * 8);
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(ids.get(i));
+        }
+        return builder.toString();
+    }
+}
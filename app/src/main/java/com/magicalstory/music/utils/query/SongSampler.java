@@ -0,0 +1,130 @@
+package com.magicalstory.music.utils.query;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+
+import com.magicalstory.music.model.Song;
+
+import org.litepal.LitePal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 随机抽取歌曲
+ * 不使用ORDER BY random()（需要为每一行生成随机数并对整张表排序，随机播放全部时还要读取每一行）：
+ * <ul>
+ *     <li>从歌曲ID数组中抽取k个不重复的位置，只读取这k首歌曲；快照有效时直接从快照中取</li>
+ *     <li>ID数组只读取ID一列（按主键顺序，不读取行内容），缓存在{@link QueryCache}中，歌曲表变化后重新读取</li>
+ *     <li>随机播放全部只打乱ID数组，返回按需读取的{@link LazySongList}</li>
+ * </ul>
+ * 需要在后台线程调用。
+ */
+public final class SongSampler {
+
+    private static final String SQL_SELECT_SONG_IDS = "select id from song order by id";
+
+    private static final Random random = new Random();
+
+    private SongSampler() {
+    }
+
+    /**
+     * 随机抽取最多k首不重复的歌曲
+     */
+    @NonNull
+    public static List<Song> sample(int k) {
+        LibrarySnapshot snapshot = LibrarySnapshot.peek();
+        if (snapshot != null) {
+            List<Song> songs = new ArrayList<>(k);
+            for (int index : pickIndices(snapshot.getSongCount(), k)) {
+                songs.add(snapshot.getSongAt(index));
+            }
+            return songs;
+        }
+
+        long[] ids = cachedSongIds();
+        List<Long> picked = new ArrayList<>(k);
+        for (int index : pickIndices(ids.length, k)) {
+            picked.add(ids[index]);
+        }
+        return SongResolver.resolve(picked);
+    }
+
+    /**
+     * 所有歌曲的随机排列，歌曲在访问时才读取
+     */
+    @NonNull
+    public static LazySongList shuffleAll() {
+        long[] ids = copySongIds();
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+        return new LazySongList(ids);
+    }
+
+    /**
+     * 从[0, n)中抽取min(k, n)个不重复的位置（Floyd算法，只需要k次随机数），按随机顺序返回
+     */
+    static List<Integer> pickIndices(int n, int k) {
+        int count = Math.min(n, Math.max(0, k));
+        Set<Integer> picked = new LinkedHashSet<>(count * 2);
+        for (int j = n - count; j < n; j++) {
+            int t = random.nextInt(j + 1);
+            if (!picked.add(t)) {
+                picked.add(j);
+            }
+        }
+        List<Integer> indices = new ArrayList<>(picked);
+        Collections.shuffle(indices, random);
+        return indices;
+    }
+
+    /**
+     * 所有歌曲ID（升序）的副本，快照有效时从快照复制
+     */
+    private static long[] copySongIds() {
+        LibrarySnapshot snapshot = LibrarySnapshot.peek();
+        if (snapshot != null) {
+            long[] ids = new long[snapshot.getSongCount()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = snapshot.getSongIdAt(i);
+            }
+            return ids;
+        }
+        return cachedSongIds().clone();
+    }
+
+    /**
+     * 缓存的所有歌曲ID（升序），结果只读
+     */
+    private static long[] cachedSongIds() {
+        return QueryCache.get("song.ids", new String[]{QueryCache.SONG}, SongSampler::loadSongIds);
+    }
+
+    private static long[] loadSongIds() {
+        Cursor cursor = LitePal.findBySQL(SQL_SELECT_SONG_IDS);
+        if (cursor == null) {
+            return new long[0];
+        }
+        try {
+            long[] ids = new long[cursor.getCount()];
+            int count = 0;
+            while (cursor.moveToNext() && count < ids.length) {
+                ids[count++] = cursor.getLong(0);
+            }
+            return count == ids.length ? ids : Arrays.copyOf(ids, count);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.magicalstory.music.utils.search;
+
+import android.os.CancellationSignal;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.magicalstory.music.utils.query.LibrarySnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 三元组（trigram）容错索引
+ * 用于全文索引找不到结果时的容错搜索，例如"beatels"找到"The Beatles"、"thebeatles"找到"The Beatles"。
+ * <ul>
+ *     <li>文本去掉空格和标点后，每连续三个字符为一个三元组，三元组哈希为int，
+ *     每个三元组对应一个按条目编号升序的倒排列表，差值以变长整数保存在同一个byte数组中</li>
+ *     <li>查询时统计每个条目包含的关键字三元组数量，数量足够的条目再计算编辑距离并排序</li>
+ * </ul>
+ * 索引由{@link LibrarySnapshot}的文本构建，不保存文本本身，十万条目约占用几MB。
+ * 快照变化后第一次查询时重新构建。
+ */
+public final class FuzzyIndex {
+    private static final String TAG = "FuzzyIndex";
+
+    public static final int KIND_SONG = 0;
+    public static final int KIND_ALBUM = 1;
+    public static final int KIND_ARTIST = 2;
+
+    // 参与编辑距离计算的最大候选数量
+    private static final int MAX_CANDIDATES = 400;
+    // 每计算多少个候选检查一次是否已取消
+    private static final int CANCEL_CHECK_INTERVAL = 64;
+
+    private static final Object BUILD_LOCK = new Object();
+    private static volatile FuzzyIndex current;
+
+    /**
+     * 一条搜索结果，row为快照中的行号
+     */
+    public static final class Hit {
+        public final int row;
+        public final int distance;
+
+        Hit(int row, int distance) {
+            this.row = row;
+            this.distance = distance;
+        }
+    }
+
+    private final int generation;
+    private final LibrarySnapshot snapshot;
+    private final Postings[] postings;
+
+    private FuzzyIndex(LibrarySnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.generation = snapshot.getGeneration();
+        postings = new Postings[]{
+                // 歌曲按标题和艺术家两个条目索引，条目编号 = 行号 * 2 + 列
+                Postings.build(snapshot.getSongCount() * 2, entry -> entry % 2 == 0
+                        ? snapshot.getSongTitleAt(entry / 2) : snapshot.getSongArtistAt(entry / 2)),
+                Postings.build(snapshot.getAlbumCount(), snapshot::getAlbumNameAt),
+                Postings.build(snapshot.getArtistCount(), snapshot::getArtistNameAt),
+        };
+    }
+
+    /**
+     * 与快照对应的索引，快照的文本变化后重新构建，需要在后台线程调用
+     */
+    @NonNull
+    public static FuzzyIndex get(@NonNull LibrarySnapshot snapshot) {
+        FuzzyIndex index = current;
+        if (index != null && index.generation == snapshot.getGeneration()) {
+            return index;
+        }
+        synchronized (BUILD_LOCK) {
+            index = current;
+            if (index != null && index.generation == snapshot.getGeneration()) {
+                return index;
+            }
+            long startTime = SystemClock.elapsedRealtime();
+            index = new FuzzyIndex(snapshot);
+            current = index;
+            Log.d(TAG, "构建容错索引: " + index.sizeInBytes() / 1024 + "KB, 耗时 "
+                    + (SystemClock.elapsedRealtime() - startTime) + "ms");
+            return index;
+        }
+    }
+
+    public LibrarySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 容错搜索
+     *
+     * @param kind   {@link #KIND_SONG}、{@link #KIND_ALBUM}或{@link #KIND_ARTIST}
+     * @param limit  最多返回的结果数
+     * @param signal 取消信号，取消后抛出{@link android.os.OperationCanceledException}
+     * @return 按编辑距离升序排列的结果，关键字少于三个字符时为空
+     */
+    @NonNull
+    public List<Hit> search(int kind, String query, int limit, @Nullable CancellationSignal signal) {
+        String compactQuery = FuzzyMatcher.compact(query);
+        if (compactQuery.length() < 3) {
+            return new ArrayList<>();
+        }
+        int maxEdits = FuzzyMatcher.maxEdits(compactQuery.length());
+        int[] queryGrams = Postings.grams(compactQuery);
+        // 每处编辑最多影响三个三元组
+        int minShared = Math.max(1, queryGrams.length - maxEdits * 3);
+
+        Postings index = postings[kind];
+        int[] candidates = index.candidates(queryGrams, minShared, MAX_CANDIDATES);
+        if (signal != null) {
+            signal.throwIfCanceled();
+        }
+
+        // 同一行的多个条目只保留距离最小的一个
+        int entriesPerRow = kind == KIND_SONG ? 2 : 1;
+        List<Hit> hits = new ArrayList<>();
+        int[] bestByRow = new int[candidates.length];
+        int[] rows = new int[candidates.length];
+        int rowCount = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            if (signal != null && i % CANCEL_CHECK_INTERVAL == 0) {
+                signal.throwIfCanceled();
+            }
+            int entry = candidates[i];
+            int distance = FuzzyMatcher.distance(compactQuery, textOf(kind, entry), maxEdits);
+            if (distance < 0) {
+                continue;
+            }
+            int row = entry / entriesPerRow;
+            int existing = -1;
+            for (int j = 0; j < rowCount; j++) {
+                if (rows[j] == row) {
+                    existing = j;
+                    break;
+                }
+            }
+            if (existing < 0) {
+                rows[rowCount] = row;
+                bestByRow[rowCount] = distance;
+                rowCount++;
+            } else if (distance < bestByRow[existing]) {
+                bestByRow[existing] = distance;
+            }
+        }
+        for (int i = 0; i < rowCount; i++) {
+            hits.add(new Hit(rows[i], bestByRow[i]));
+        }
+        // 候选已按共有三元组数量排序，稳定排序后距离相同的保持该顺序
+        Collections.sort(hits, (a, b) -> Integer.compare(a.distance, b.distance));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    private String textOf(int kind, int entry) {
+        switch (kind) {
+            case KIND_SONG:
+                return entry % 2 == 0 ? snapshot.getSongTitleAt(entry / 2) : snapshot.getSongArtistAt(entry / 2);
+            case KIND_ALBUM:
+                return snapshot.getAlbumNameAt(entry);
+            default:
+                return snapshot.getArtistNameAt(entry);
+        }
+    }
+
+    private long sizeInBytes() {
+        long size = 0;
+        for (Postings p : postings) {
+            size += p.sizeInBytes();
+        }
+        return size;
+    }
+
+    /**
+     * 一组条目的倒排索引
+     */
+    private static final class Postings {
+        interface TextSource {
+            String textAt(int entry);
+        }
+
+        private final int entryCount;
+        private final int[] keys;       // 三元组哈希，升序
+        private final int[] offsets;    // keys[i]的倒排列表在data中的范围为offsets[i]..offsets[i + 1]
+        private final byte[] data;      // 条目编号的差值，变长整数
+
+        private Postings(int entryCount, int[] keys, int[] offsets, byte[] data) {
+            this.entryCount = entryCount;
+            this.keys = keys;
+            this.offsets = offsets;
+            this.data = data;
+        }
+
+        static Postings build(int entryCount, TextSource source) {
+            // 每个(三元组, 条目)组合为一个long：高32位为哈希，低32位为条目编号，排序后即为倒排列表
+            long[] pairs = new long[Math.max(16, entryCount * 8)];
+            int pairCount = 0;
+            for (int entry = 0; entry < entryCount; entry++) {
+                int[] grams = grams(FuzzyMatcher.compact(source.textAt(entry)));
+                if (pairCount + grams.length > pairs.length) {
+                    pairs = Arrays.copyOf(pairs, Math.max(pairs.length * 2, pairCount + grams.length));
+                }
+                for (int gram : grams) {
+                    pairs[pairCount++] = ((long) gram << 32) | entry;
+                }
+            }
+            Arrays.sort(pairs, 0, pairCount);
+
+            int[] keys = new int[16];
+            int[] offsets = new int[17];
+            byte[] data = new byte[Math.max(16, pairCount * 2)];
+            int keyCount = 0;
+            int dataLength = 0;
+            int previousEntry = 0;
+            long previousPair = -1;
+            for (int i = 0; i < pairCount; i++) {
+                long pair = pairs[i];
+                if (pair == previousPair) {
+                    continue;
+                }
+                int key = (int) (pair >>> 32);
+                int entry = (int) pair;
+                if (keyCount == 0 || keys[keyCount - 1] != key) {
+                    if (keyCount == keys.length) {
+                        keys = Arrays.copyOf(keys, keyCount * 2);
+                        offsets = Arrays.copyOf(offsets, keyCount * 2 + 1);
+                    }
+                    keys[keyCount] = key;
+                    offsets[keyCount] = dataLength;
+                    keyCount++;
+                    previousEntry = 0;
+                }
+                if (dataLength + 5 > data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                dataLength = writeVarInt(data, dataLength, entry - previousEntry);
+                previousEntry = entry;
+                previousPair = pair;
+            }
+            offsets[keyCount] = dataLength;
+            return new Postings(entryCount, Arrays.copyOf(keys, keyCount), Arrays.copyOf(offsets, keyCount + 1),
+                    Arrays.copyOf(data, dataLength));
+        }
+
+        /**
+         * 至少包含minShared个关键字三元组的条目，按包含数量倒序（相同时条目编号升序），最多limit个
+         */
+        int[] candidates(int[] queryGrams, int minShared, int limit) {
+            short[] counts = new short[entryCount];
+            int[] touched = new int[64];
+            int touchedCount = 0;
+            for (int gram : queryGrams) {
+                int keyIndex = Arrays.binarySearch(keys, gram);
+                if (keyIndex < 0) {
+                    continue;
+                }
+                int position = offsets[keyIndex];
+                int end = offsets[keyIndex + 1];
+                int entry = 0;
+                while (position < end) {
+                    int value = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[position++];
+                        value |= (b & 0x7f) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    entry += value;
+                    if (counts[entry]++ == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = entry;
+                    }
+                }
+            }
+
+            // 按(数量, 条目编号)排序：数量取反放在高位，排序后数量多的在前
+            long[] ranked = new long[touchedCount];
+            int rankedCount = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int entry = touched[i];
+                if (counts[entry] >= minShared) {
+                    ranked[rankedCount++] = ((long) (Short.MAX_VALUE - counts[entry]) << 32) | entry;
+                }
+            }
+            Arrays.sort(ranked, 0, rankedCount);
+            int[] result = new int[Math.min(limit, rankedCount)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (int) ranked[i];
+            }
+            return result;
+        }
+
+        long sizeInBytes() {
+            return keys.length * 4L + offsets.length * 4L + data.length;
+        }
+
+        /**
+         * 文本中不重复的三元组哈希
+         */
+        static int[] grams(String compactText) {
+            int count = compactText.length() - 2;
+            if (count <= 0) {
+                return new int[0];
+            }
+            int[] grams = new int[count];
+            for (int i = 0; i < count; i++) {
+                long packed = ((long) compactText.charAt(i) << 32)
+                        | ((long) compactText.charAt(i + 1) << 16)
+                        | compactText.charAt(i + 2);
+                // 哈希冲突只会多出候选，编辑距离计算时会被过滤；去掉符号位，保证排序后的高32位可比较
+                grams[i] = (int) ((packed * 0x9E3779B97F4A7C15L) >>> 33);
+            }
+            Arrays.sort(grams);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || grams[unique - 1] != grams[i]) {
+                    grams[unique++] = grams[i];
+                }
+            }
+            return Arrays.copyOf(grams, unique);
+        }
+
+        private static int writeVarInt(byte[] data, int position, int value) {
+            while ((value & ~0x7f) != 0) {
+                data[position++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[position++] = (byte) value;
+            return position;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.magicalstory.music.utils.search;
+
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 容错匹配
+ * 比较前去掉空格和标点并转为小写（"the beatles"与"thebeatles"相同），
+ * 再计算关键字与文本中最接近的一段之间的编辑距离（插入、删除、替换各算一次）。
+ */
+public final class FuzzyMatcher {
+
+    /**
+     * 一次匹配的结果，start/end为原文中的位置，用于高亮
+     */
+    public static final class Match {
+        public final int distance;
+        public final int start;
+        public final int end;
+
+        Match(int distance, int start, int end) {
+            this.distance = distance;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private FuzzyMatcher() {
+    }
+
+    /**
+     * 去掉空格和标点并转为小写
+     */
+    @NonNull
+    public static String compact(String text) {
+        if (TextUtils.isEmpty(text)) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 关键字允许的最大编辑距离，越短越严格
+     */
+    public static int maxEdits(int queryLength) {
+        if (queryLength <= 3) {
+            return 0;
+        } else if (queryLength <= 5) {
+            return 1;
+        } else if (queryLength <= 9) {
+            return 2;
+        }
+        return 3;
+    }
+
+    /**
+     * 计算关键字与文本中最接近的一段的编辑距离
+     *
+     * @param compactQuery 已经过{@link #compact}处理的关键字
+     * @param maxEdits     允许的最大编辑距离
+     * @return 超过maxEdits时返回-1
+     */
+    public static int distance(@NonNull String compactQuery, String text, int maxEdits) {
+        Match match = align(compactQuery, text, maxEdits, false);
+        return match == null ? -1 : match.distance;
+    }
+
+    /**
+     * 在原文中查找与关键字最接近的一段
+     *
+     * @return 超过maxEdits时返回null
+     */
+    @Nullable
+    public static Match find(@NonNull String compactQuery, String text, int maxEdits) {
+        return align(compactQuery, text, maxEdits, true);
+    }
+
+    /**
+     * 近似子串匹配（Sellers算法）：文本中任意位置都可以作为匹配的开始，按列计算编辑距离，
+     * 同时记录每个位置对应的开始位置，用于高亮
+     */
+    private static Match align(String query, String text, int maxEdits, boolean trackStart) {
+        int m = query.length();
+        if (m == 0 || TextUtils.isEmpty(text)) {
+            return null;
+        }
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        int[] previousStart = trackStart ? new int[m + 1] : null;
+        int[] currentStart = trackStart ? new int[m + 1] : null;
+        for (int i = 0; i <= m; i++) {
+            previous[i] = i;
+        }
+
+        int best = Integer.MAX_VALUE;
+        int bestStart = 0;
+        int bestEnd = 0;
+        for (int j = 0; j < text.length(); j++) {
+            char c = text.charAt(j);
+            if (!Character.isLetterOrDigit(c)) {
+                continue;
+            }
+            c = Character.toLowerCase(c);
+            current[0] = 0;
+            if (trackStart) {
+                currentStart[0] = j + 1;
+            }
+            for (int i = 1; i <= m; i++) {
+                int substitute = previous[i - 1] + (query.charAt(i - 1) == c ? 0 : 1);
+                int delete = previous[i] + 1;
+                int insert = current[i - 1] + 1;
+                int value = substitute;
+                int start = trackStart ? (i == 1 ? j : previousStart[i - 1]) : 0;
+                if (delete < value) {
+                    value = delete;
+                    start = trackStart ? previousStart[i] : 0;
+                }
+                if (insert < value) {
+                    value = insert;
+                    start = trackStart ? currentStart[i - 1] : 0;
+                }
+                current[i] = value;
+                if (trackStart) {
+                    currentStart[i] = start;
+                }
+            }
+            // 距离相同时取结束位置靠后的一段，"beatels"高亮"Beatles"而不是"Beatl"
+            if (current[m] < best || (trackStart && current[m] == best)) {
+                best = current[m];
+                bestEnd = j + 1;
+                if (trackStart) {
+                    bestStart = currentStart[m];
+                }
+                if (best == 0) {
+                    break;
+                }
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+            if (trackStart) {
+                swap = previousStart;
+                previousStart = currentStart;
+                currentStart = swap;
+            }
+        }
+        return best <= maxEdits ? new Match(best, bestStart, bestEnd) : null;
+    }
+}
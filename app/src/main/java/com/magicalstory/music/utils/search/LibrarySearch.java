@@ -0,0 +1,377 @@
+package com.magicalstory.music.utils.search;
+
+import android.database.Cursor;
+import android.os.CancellationSignal;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.magicalstory.music.model.Album;
+import com.magicalstory.music.model.Artist;
+import com.magicalstory.music.model.Playlist;
+import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.db.SearchIndex;
+import com.magicalstory.music.utils.query.LibrarySnapshot;
+import com.magicalstory.music.utils.query.SongResolver;
+
+import org.litepal.LitePal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 音乐库搜索
+ * 首页、音乐库和歌单页面共用的搜索入口，基于{@link SearchIndex}全文索引：
+ * 每种结果按匹配的列和匹配位置打分排序，同一条记录只出现一次（按ID去重）；
+ * 全文索引的结果较少时，{@link #search}再追加{@link FuzzyIndex}容错搜索的结果，处理拼写错误和缺少空格的关键字。
+ * 所有方法都会访问数据库，需要在后台线程调用。
+ */
+public final class LibrarySearch {
+    private static final String TAG = "LibrarySearch";
+
+    // 每种结果的最大数量
+    private static final int MAX_SONGS = 300;
+    private static final int MAX_ALBUMS = 100;
+    private static final int MAX_ARTISTS = 100;
+    private static final int MAX_PLAYLISTS = 20;
+    // 每列最多读取的候选数量，超出部分不参与排序
+    private static final int CANDIDATES_PER_COLUMN = 500;
+    // 按ID读取时每条SQL中IN参数的最大数量
+    private static final int ID_CHUNK_SIZE = 500;
+
+    // 列权重：越靠前的列（标题、专辑名、艺术家名）权重越高
+    private static final float COLUMN_WEIGHT_STEP = 10f;
+    // 整列完全相同、以关键字开头时的加分
+    private static final float EXACT_BONUS = 8f;
+    private static final float PREFIX_BONUS = 4f;
+
+    // 全文索引的结果少于这个数量时追加容错搜索的结果
+    private static final int FUZZY_THRESHOLD = 10;
+    // 每种结果追加的容错结果的最大数量
+    private static final int MAX_FUZZY = 50;
+
+    /**
+     * "全部"搜索的结果
+     */
+    public static class Results {
+        public final List<Song> songs;
+        public final List<Album> albums;
+        public final List<Artist> artists;
+
+        Results(List<Song> songs, List<Album> albums, List<Artist> artists) {
+            this.songs = songs;
+            this.albums = albums;
+            this.artists = artists;
+        }
+    }
+
+    private LibrarySearch() {
+    }
+
+    /**
+     * 按搜索类型搜索，供搜索页面在输入过程中调用
+     *
+     * @param searchType "all"、"songs"、"album"、"artist"或"playlist"
+     * @param signal     取消信号，关键字变化后取消，此时抛出{@link android.os.OperationCanceledException}
+     */
+    @NonNull
+    public static Results search(String query, String searchType, @Nullable CancellationSignal signal) {
+        long startTime = SystemClock.elapsedRealtime();
+        SearchIndex.syncPending();
+        List<Song> songs = new ArrayList<>();
+        List<Album> albums = new ArrayList<>();
+        List<Artist> artists = new ArrayList<>();
+        switch (searchType) {
+            case "all":
+                songs = searchSongsInternal(query);
+                throwIfCanceled(signal);
+                albums = searchAlbumsInternal(query);
+                throwIfCanceled(signal);
+                artists = searchArtistsInternal(query);
+                break;
+            case "songs":
+                songs = searchSongsInternal(query);
+                break;
+            case "album":
+                albums = searchAlbumsInternal(query);
+                break;
+            case "artist":
+                artists = searchArtistsInternal(query);
+                break;
+            case "playlist":
+                // 歌单名称数量少，不做容错搜索
+                return new Results(searchPlaylistSongs(query), albums, artists);
+        }
+        throwIfCanceled(signal);
+
+        // 只对本次搜索的类型判断结果是否太少，够多时不读取快照和容错索引
+        boolean all = "all".equals(searchType);
+        boolean fuzzySongs = (all || "songs".equals(searchType)) && songs.size() < FUZZY_THRESHOLD;
+        boolean fuzzyAlbums = (all || "album".equals(searchType)) && albums.size() < FUZZY_THRESHOLD;
+        boolean fuzzyArtists = (all || "artist".equals(searchType)) && artists.size() < FUZZY_THRESHOLD;
+        if (fuzzySongs || fuzzyAlbums || fuzzyArtists) {
+            FuzzyIndex index = FuzzyIndex.get(LibrarySnapshot.get());
+            if (fuzzySongs) {
+                appendFuzzy(index, FuzzyIndex.KIND_SONG, songs, query, signal,
+                        LibrarySnapshot::getSongIdAt, LibrarySnapshot::getSongAt);
+            }
+            if (fuzzyAlbums) {
+                appendFuzzy(index, FuzzyIndex.KIND_ALBUM, albums, query, signal,
+                        LibrarySnapshot::getAlbumIdAt, LibrarySnapshot::getAlbumAt);
+            }
+            if (fuzzyArtists) {
+                appendFuzzy(index, FuzzyIndex.KIND_ARTIST, artists, query, signal,
+                        LibrarySnapshot::getArtistIdAt, LibrarySnapshot::getArtistAt);
+            }
+        }
+        Log.d(TAG, "搜索 \"" + query + "\" (" + searchType + "): 歌曲 " + songs.size() + ", 专辑 " + albums.size()
+                + ", 艺术家 " + artists.size() + ", 耗时 " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        return new Results(songs, albums, artists);
+    }
+
+    /**
+     * 同时搜索歌曲、专辑和艺术家
+     */
+    @NonNull
+    public static Results searchAll(String query) {
+        long startTime = SystemClock.elapsedRealtime();
+        SearchIndex.syncPending();
+        Results results = new Results(searchSongsInternal(query), searchAlbumsInternal(query),
+                searchArtistsInternal(query));
+        Log.d(TAG, "搜索 \"" + query + "\": 歌曲 " + results.songs.size() + ", 专辑 " + results.albums.size()
+                + ", 艺术家 " + results.artists.size() + ", 耗时 " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        return results;
+    }
+
+    /**
+     * 搜索歌曲，匹配标题、艺术家和专辑
+     */
+    @NonNull
+    public static List<Song> searchSongs(String query) {
+        SearchIndex.syncPending();
+        return searchSongsInternal(query);
+    }
+
+    /**
+     * 搜索专辑，匹配专辑名和艺术家
+     */
+    @NonNull
+    public static List<Album> searchAlbums(String query) {
+        SearchIndex.syncPending();
+        return searchAlbumsInternal(query);
+    }
+
+    /**
+     * 搜索艺术家
+     */
+    @NonNull
+    public static List<Artist> searchArtists(String query) {
+        SearchIndex.syncPending();
+        return searchArtistsInternal(query);
+    }
+
+    /**
+     * 搜索歌单名称，返回匹配的歌单中的歌曲（按歌单匹配程度和歌单内顺序排列，去重）
+     */
+    @NonNull
+    public static List<Song> searchPlaylistSongs(String query) {
+        SearchIndex.syncPending();
+        List<Long> playlistIds = rank(SearchIndex.KIND_PLAYLIST, query, MAX_PLAYLISTS);
+        if (playlistIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, Integer> playlistOrder = new HashMap<>();
+        for (int i = 0; i < playlistIds.size(); i++) {
+            playlistOrder.put(playlistIds.get(i), i);
+        }
+        List<long[]> entries = new ArrayList<>();
+        Cursor cursor = LitePal.findBySQL("select playlistid, songid from playlistsong where playlistid in ("
+                + joinIds(playlistIds) + ") order by position asc, addedtime asc");
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    entries.add(new long[]{cursor.getLong(0), cursor.getLong(1)});
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        // 稳定排序，歌单内保持原有顺序
+        Collections.sort(entries, (a, b) -> Integer.compare(playlistOrder.get(a[0]), playlistOrder.get(b[0])));
+
+        Set<Long> songIds = new LinkedHashSet<>();
+        for (long[] entry : entries) {
+            songIds.add(entry[1]);
+            if (songIds.size() >= MAX_SONGS) {
+                break;
+            }
+        }
+        return SongResolver.resolve(new ArrayList<>(songIds));
+    }
+
+    private static List<Song> searchSongsInternal(String query) {
+        return SongResolver.resolve(rank(SearchIndex.KIND_SONG, query, MAX_SONGS));
+    }
+
+    private static List<Album> searchAlbumsInternal(String query) {
+        return findByIds(Album.class, rank(SearchIndex.KIND_ALBUM, query, MAX_ALBUMS));
+    }
+
+    private static List<Artist> searchArtistsInternal(String query) {
+        return findByIds(Artist.class, rank(SearchIndex.KIND_ARTIST, query, MAX_ARTISTS));
+    }
+
+    /**
+     * 快照中某一行记录的ID
+     */
+    private interface RowId {
+        long idAt(LibrarySnapshot snapshot, int row);
+    }
+
+    /**
+     * 读取快照中某一行的记录
+     */
+    private interface RowLoader<T> {
+        T load(LibrarySnapshot snapshot, int row);
+    }
+
+    /**
+     * 把容错搜索的结果追加到results末尾，跳过已经在results中的记录
+     * 是否需要追加由调用方根据{@link #FUZZY_THRESHOLD}判断
+     */
+    private static <T> void appendFuzzy(FuzzyIndex index, int kind, List<T> results, String query,
+                                        @Nullable CancellationSignal signal, RowId rowId, RowLoader<T> loader) {
+        LibrarySnapshot snapshot = index.getSnapshot();
+        Set<Long> present = new HashSet<>();
+        for (T model : results) {
+            present.add(idOf(model));
+        }
+        for (FuzzyIndex.Hit hit : index.search(kind, query, MAX_FUZZY, signal)) {
+            if (present.add(rowId.idAt(snapshot, hit.row))) {
+                results.add(loader.load(snapshot, hit.row));
+            }
+        }
+    }
+
+    private static void throwIfCanceled(@Nullable CancellationSignal signal) {
+        if (signal != null) {
+            signal.throwIfCanceled();
+        }
+    }
+
+    /**
+     * 按列分别匹配并打分，返回得分最高的ID
+     * 每列的得分 = 列权重 + 完全相同/前缀加分 - 文本长度（越短越接近关键字）；
+     * 关键字的各部分分别出现在不同列时（例如"歌手 歌名"）按跨列匹配计最低分
+     */
+    private static List<Long> rank(int kind, String query, int limit) {
+        String normalized = SearchIndex.normalize(query);
+        if (normalized.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int columnCount = SearchIndex.columnCount(kind);
+
+        Map<Long, Float> scores = new HashMap<>();
+        for (int column = 0; column < columnCount; column++) {
+            float weight = (columnCount - column) * COLUMN_WEIGHT_STEP;
+            for (SearchIndex.Match match : SearchIndex.match(kind, column, query, CANDIDATES_PER_COLUMN)) {
+                float score = weight + textScore(match.text, normalized);
+                Float current = scores.get(match.id);
+                if (current == null || current < score) {
+                    scores.put(match.id, score);
+                }
+            }
+        }
+        if (columnCount > 1 && normalized.indexOf(' ') > 0) {
+            for (SearchIndex.Match match : SearchIndex.match(kind, -1, query, CANDIDATES_PER_COLUMN)) {
+                if (!scores.containsKey(match.id)) {
+                    scores.put(match.id, 0f);
+                }
+            }
+        }
+
+        List<Map.Entry<Long, Float>> entries = new ArrayList<>(scores.entrySet());
+        Collections.sort(entries, (a, b) -> {
+            int result = Float.compare(b.getValue(), a.getValue());
+            return result != 0 ? result : Long.compare(a.getKey(), b.getKey());
+        });
+        List<Long> ids = new ArrayList<>(Math.min(limit, entries.size()));
+        for (Map.Entry<Long, Float> entry : entries) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            ids.add(entry.getKey());
+        }
+        return ids;
+    }
+
+    private static float textScore(String text, String normalizedQuery) {
+        if (text == null) {
+            return 0;
+        }
+        float score = -Math.min(text.length(), 100) / 100f;
+        if (text.equals(normalizedQuery)) {
+            score += EXACT_BONUS;
+        } else if (text.startsWith(normalizedQuery)) {
+            score += PREFIX_BONUS;
+        }
+        return score;
+    }
+
+    /**
+     * 按ID读取记录，并保持ids的顺序
+     */
+    private static <T> List<T> findByIds(Class<T> modelClass, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, T> byId = new HashMap<>(ids.size() * 2);
+        for (int start = 0; start < ids.size(); start += ID_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(start, Math.min(ids.size(), start + ID_CHUNK_SIZE));
+            for (T model : LitePal.where("id in (" + joinIds(chunk) + ")").find(modelClass)) {
+                byId.put(idOf(model), model);
+            }
+        }
+        List<T> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T model = byId.get(id);
+            if (model != null) {
+                results.add(model);
+            }
+        }
+        return results;
+    }
+
+    private static long idOf(Object model) {
+        if (model instanceof Song) {
+            return ((Song) model).getId();
+        } else if (model instanceof Album) {
+            return ((Album) model).getId();
+        } else if (model instanceof Artist) {
+            return ((Artist) model).getId();
+        } else if (model instanceof Playlist) {
+            return ((Playlist) model).getId();
+        }
+        throw new IllegalArgumentException("不支持的类型: " + model.getClass());
+    }
+
+    private static String joinIds(List<Long> ids) {
+        StringBuilder builder = new StringBuilder(ids.size() * 8);
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(ids.get(i));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.magicalstory.music.utils.search;
+
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 搜索任务调度
+ * 输入过程中每次关键字变化都会提交一次搜索：新任务提交时取消上一个任务，
+ * 所有任务在同一个后台线程依次执行，已取消的任务尽快结束且不回调，页面只会显示最后一次输入的结果。
+ */
+public final class SearchRunner {
+    private static final String TAG = "SearchRunner";
+
+    /**
+     * 在后台线程执行的搜索，需要定期检查取消信号
+     */
+    public interface Task<T> {
+        T run(CancellationSignal signal);
+    }
+
+    /**
+     * 在主线程回调的搜索结果
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+
+        void onError(Exception e);
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private CancellationSignal currentSignal;
+
+    /**
+     * 取消上一个任务并提交新任务，需要在主线程调用
+     */
+    public <T> void submit(Task<T> task, Callback<T> callback) {
+        cancel();
+        CancellationSignal signal = new CancellationSignal();
+        currentSignal = signal;
+        executor.execute(() -> {
+            if (signal.isCanceled()) {
+                return;
+            }
+            try {
+                T result = task.run(signal);
+                mainHandler.post(() -> {
+                    if (!signal.isCanceled()) {
+                        callback.onResult(result);
+                    }
+                });
+            } catch (OperationCanceledException e) {
+                // 关键字已变化，丢弃结果
+            } catch (Exception e) {
+                Log.e(TAG, "搜索失败: " + e.getMessage(), e);
+                mainHandler.post(() -> {
+                    if (!signal.isCanceled()) {
+                        callback.onError(e);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 取消正在执行的任务，需要在主线程调用
+     */
+    public void cancel() {
+        if (currentSignal != null) {
+            currentSignal.cancel();
+            currentSignal = null;
+        }
+    }
+
+    /**
+     * 页面销毁时调用
+     */
+    public void shutdown() {
+        cancel();
+        mainHandler.removeCallbacksAndMessages(null);
+        executor.shutdown();
+    }
+}
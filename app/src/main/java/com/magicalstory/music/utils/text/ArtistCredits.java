@@ -0,0 +1,166 @@
+package com.magicalstory.music.utils.text;
+
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.tencent.mmkv.MMKV;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 艺术家署名拆分
+ * 标签中的艺术家经常是多位艺术家的组合，例如"A;B"、"A / B"、"A & B"、"A feat. B"。
+ * 扫描统计艺术家时按分隔符拆分为多位艺术家，每位艺术家各有一行Artist，歌曲通过SongArtist关联行关联到每一位，
+ * 艺术家页面和歌曲数量都按关联行查询。
+ * <ul>
+ *     <li>符号分隔符（";"、"/"、"&"等）出现在任何位置都拆分</li>
+ *     <li>以字母开头的分隔符（"feat."、"ft."等）不区分大小写，只在前面是空白或括号时拆分，
+ *     "A (feat. B)"拆分为"A"和"B"</li>
+ * </ul>
+ * 分隔符可以修改，修改后已有歌曲需要重新统计（见{@link #setSeparators}）。
+ */
+public final class ArtistCredits {
+
+    private static final String KEY_SEPARATORS = "artist_credit_separators";
+
+    // 默认分隔符
+    public static final String[] DEFAULT_SEPARATORS = {";", "/", "&", "feat.", "ft."};
+
+    // 拆分后需要去掉的不成对括号
+    private static final String OPEN_BRACKETS = "([（【";
+    private static final String CLOSE_BRACKETS = ")]）】";
+
+    private static volatile String[] separators;
+    private static volatile Pattern pattern;
+
+    private ArtistCredits() {
+    }
+
+    /**
+     * 拆分署名，按出现顺序返回不重复的艺术家名称；第一位为主艺术家。
+     * 没有可拆分的内容时返回只包含原名称的列表，名称为空时返回空列表
+     */
+    @NonNull
+    public static List<String> split(String credit) {
+        List<String> names = new ArrayList<>();
+        if (TextUtils.isEmpty(credit)) {
+            return names;
+        }
+        Set<String> seen = new HashSet<>();
+        for (String part : pattern().split(credit)) {
+            String name = trim(part);
+            if (!name.isEmpty() && seen.add(name)) {
+                names.add(name);
+            }
+        }
+        if (names.isEmpty()) {
+            names.add(credit);
+        }
+        return names;
+    }
+
+    /**
+     * 主艺术家（署名中的第一位）
+     */
+    public static String primary(String credit) {
+        List<String> names = split(credit);
+        return names.isEmpty() ? credit : names.get(0);
+    }
+
+    /**
+     * 当前使用的分隔符
+     */
+    @NonNull
+    public static String[] getSeparators() {
+        String[] current = separators;
+        if (current == null) {
+            Set<String> saved = MMKV.defaultMMKV().decodeStringSet(KEY_SEPARATORS, null);
+            current = saved == null || saved.isEmpty() ? DEFAULT_SEPARATORS : saved.toArray(new String[0]);
+            separators = current;
+        }
+        return current;
+    }
+
+    /**
+     * 保存新的分隔符。调用方需要再调用{@link com.magicalstory.music.utils.db.LibraryAggregates#markAllCreditsDirty}，
+     * 下一次扫描时按新的分隔符重新拆分已有歌曲
+     */
+    public static void setSeparators(String... newSeparators) {
+        MMKV.defaultMMKV().encode(KEY_SEPARATORS, new LinkedHashSet<>(Arrays.asList(newSeparators)));
+        useSeparators(newSeparators);
+    }
+
+    /**
+     * 只替换内存中的分隔符，不保存，用于在没有MMKV的JVM测试中运行扫描
+     */
+    @VisibleForTesting
+    public static void useSeparators(String... newSeparators) {
+        separators = newSeparators.clone();
+        pattern = null;
+    }
+
+    private static Pattern pattern() {
+        Pattern current = pattern;
+        if (current == null) {
+            current = compile(getSeparators());
+            pattern = current;
+        }
+        return current;
+    }
+
+    private static Pattern compile(String[] separators) {
+        StringBuilder regex = new StringBuilder();
+        for (String separator : separators) {
+            if (TextUtils.isEmpty(separator)) {
+                continue;
+            }
+            if (regex.length() > 0) {
+                regex.append('|');
+            }
+            if (Character.isLetter(separator.charAt(0))) {
+                regex.append("(?<=[\\s(\\[（【])").append(Pattern.quote(separator.toLowerCase(Locale.ROOT)));
+            } else {
+                regex.append(Pattern.quote(separator));
+            }
+        }
+        // 没有分隔符时不拆分
+        return Pattern.compile(regex.length() == 0 ? "(?!)" : regex.toString(),
+                Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    /**
+     * 去掉首尾空白，以及拆分后残留的不成对括号："A (" -> "A"，"B)" -> "B"，"A (Band)"保持不变
+     */
+    private static String trim(String text) {
+        String name = text.trim();
+        while (!name.isEmpty()) {
+            int balance = 0;
+            for (int i = 0; i < name.length(); i++) {
+                if (OPEN_BRACKETS.indexOf(name.charAt(i)) >= 0) {
+                    balance++;
+                } else if (CLOSE_BRACKETS.indexOf(name.charAt(i)) >= 0) {
+                    balance--;
+                }
+            }
+            char first = name.charAt(0);
+            char last = name.charAt(name.length() - 1);
+            if (CLOSE_BRACKETS.indexOf(first) >= 0 || (balance > 0 && OPEN_BRACKETS.indexOf(first) >= 0)) {
+                name = name.substring(1).trim();
+            } else if (OPEN_BRACKETS.indexOf(last) >= 0 || (balance < 0 && CLOSE_BRACKETS.indexOf(last) >= 0)) {
+                name = name.substring(0, name.length() - 1).trim();
+            } else {
+                break;
+            }
+        }
+        return name;
+    }
+}
@@ -23,7 +23,7 @@ public class KeywordHighlighter {
             int startIndex = fullText.indexOf(keyword);
             while (startIndex >= 0) {
                 int endIndex = startIndex + keyword.length();
-                spannableString.setSpan(new ForegroundColorSpan(highlightColor), startIndex, endIndex, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                setColorSpan(spannableString, startIndex, endIndex, highlightColor);
 
                 ClickableSpan clickableSpan = new ClickableSpan() {
                     @Override
@@ -41,6 +41,22 @@ public class KeywordHighlighter {
         textView.setMovementMethod(LinkMovementMethod.getInstance());
     }
 
+    /**
+     * 高亮文本中[start, end)的一段，范围无效时返回原文本
+     */
+    public static CharSequence highlightRange(String text, int start, int end, int highlightColor) {
+        if (text == null || start < 0 || start >= end || end > text.length()) {
+            return text;
+        }
+        SpannableString spannableString = new SpannableString(text);
+        setColorSpan(spannableString, start, end, highlightColor);
+        return spannableString;
+    }
+
+    private static void setColorSpan(SpannableString spannableString, int start, int end, int highlightColor) {
+        spannableString.setSpan(new ForegroundColorSpan(highlightColor), start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+    }
+
     public interface OnKeywordClickListener {
         void onKeywordClick(String keyword);
     }
@@ -0,0 +1,86 @@
+package com.magicalstory.music.utils.text;
+
+import android.text.TextUtils;
+
+import com.github.promeg.pinyinhelper.Pinyin;
+
+import java.util.Locale;
+
+/**
+ * 拼音转写
+ * 歌曲标题、艺术家、专辑名写入数据库时转写一次并保存，搜索和按字母索引时直接使用保存的结果。
+ * <p>
+ * 转写结果为空格分隔的若干个词：每段连续汉字的全拼和首字母，有多段汉字时再加上整体的全拼和首字母，
+ * 例如"周杰伦" -> "zhoujielun zjl"，"晴天 (Live)" -> "qingtian qt"；不含汉字时为空字符串。
+ * 全文索引按词前缀匹配，因此输入"zjl"、"zhouj"都能找到"周杰伦"。
+ */
+public class PinyinUtils {
+
+    /**
+     * 转写文本，不含汉字时返回空字符串（而不是null，null表示尚未转写）
+     */
+    public static String transliterate(String text) {
+        if (TextUtils.isEmpty(text)) {
+            return "";
+        }
+        StringBuilder result = new StringBuilder();
+        StringBuilder runFull = new StringBuilder();
+        StringBuilder runInitials = new StringBuilder();
+        StringBuilder allFull = new StringBuilder();
+        StringBuilder allInitials = new StringBuilder();
+        int runCount = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Pinyin.isChinese(c)) {
+                String pinyin = Pinyin.toPinyin(c).toLowerCase(Locale.ROOT);
+                runFull.append(pinyin);
+                runInitials.append(pinyin.charAt(0));
+                continue;
+            }
+            if (runFull.length() > 0) {
+                appendRun(result, runFull, runInitials, allFull, allInitials);
+                runCount++;
+            }
+        }
+        if (runFull.length() > 0) {
+            appendRun(result, runFull, runInitials, allFull, allInitials);
+            runCount++;
+        }
+        if (runCount > 1) {
+            result.append(' ').append(allFull).append(' ').append(allInitials);
+        }
+        return result.toString();
+    }
+
+    /**
+     * 字母索引：首字为汉字时取拼音首字母，为英文字母时取大写字母，其他为'#'
+     *
+     * @param pinyin 保存的转写结果，可以为null
+     */
+    public static char indexLetter(String text, String pinyin) {
+        if (TextUtils.isEmpty(text)) {
+            return '#';
+        }
+        char first = text.trim().isEmpty() ? text.charAt(0) : text.trim().charAt(0);
+        char letter;
+        if (Pinyin.isChinese(first)) {
+            letter = !TextUtils.isEmpty(pinyin) ? pinyin.charAt(0) : Pinyin.toPinyin(first).charAt(0);
+        } else {
+            letter = first;
+        }
+        letter = Character.toUpperCase(letter);
+        return letter >= 'A' && letter <= 'Z' ? letter : '#';
+    }
+
+    private static void appendRun(StringBuilder result, StringBuilder runFull, StringBuilder runInitials,
+                                  StringBuilder allFull, StringBuilder allInitials) {
+        if (result.length() > 0) {
+            result.append(' ');
+        }
+        result.append(runFull).append(' ').append(runInitials);
+        allFull.append(runFull);
+        allInitials.append(runInitials);
+        runFull.setLength(0);
+        runInitials.setLength(0);
+    }
+}
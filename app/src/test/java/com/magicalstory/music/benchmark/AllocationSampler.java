@@ -0,0 +1,96 @@
+package com.magicalstory.music.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 统计一段代码在所有线程中分配的堆内存
+ * 扫描会在线程池中执行读取/映射阶段，只统计当前线程会漏掉大部分分配，
+ * 因此后台定时采样所有线程的累计分配量，结束时按线程求和。
+ * 在两次采样之间创建并结束的线程无法统计，采样间隔足够短时可以忽略。
+ */
+class AllocationSampler {
+
+    private static final long SAMPLE_INTERVAL_MS = 5;
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final Map<Long, Long> baseline = new HashMap<>();
+    private final Map<Long, Long> latest = new ConcurrentHashMap<>();
+    private volatile boolean running;
+    private Thread sampler;
+
+    AllocationSampler() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threadBean = null;
+        }
+    }
+
+    void start() {
+        if (threadBean == null) {
+            return;
+        }
+        baseline.clear();
+        latest.clear();
+        long[] ids = threadBean.getAllThreadIds();
+        long[] bytes = threadBean.getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) {
+                baseline.put(ids[i], bytes[i]);
+            }
+        }
+
+        running = true;
+        sampler = new Thread(() -> {
+            while (running) {
+                sample();
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "AllocationSampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * @return 分配的字节数，JVM不支持统计时返回-1
+     */
+    long stop() throws InterruptedException {
+        if (threadBean == null) {
+            return -1;
+        }
+        running = false;
+        sampler.join();
+        sample();
+
+        long samplerId = sampler.getId();
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : latest.entrySet()) {
+            if (entry.getKey() == samplerId) {
+                continue;
+            }
+            Long before = baseline.get(entry.getKey());
+            total += entry.getValue() - (before == null ? 0 : before);
+        }
+        return total;
+    }
+
+    private void sample() {
+        long[] ids = threadBean.getAllThreadIds();
+        long[] bytes = threadBean.getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) {
+                latest.put(ids[i], bytes[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.magicalstory.music.benchmark;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.provider.MediaStore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 模拟MediaStore音频表的ContentProvider
+ * 按照扫描和同步实际使用的几种查询条件（_ID IN、DATE_MODIFIED/_ID水位线、GENERATION_MODIFIED）过滤合成数据，
+ * 并统计查询次数和返回的行数
+ */
+public class FakeMediaStoreProvider extends ContentProvider {
+
+    private static final String[] COLUMNS = {
+            MediaStore.Audio.Media._ID,
+            MediaStore.Audio.Media.TITLE,
+            MediaStore.Audio.Media.ARTIST,
+            MediaStore.Audio.Media.ALBUM,
+            MediaStore.Audio.Media.DATA,
+            MediaStore.Audio.Media.DURATION,
+            MediaStore.Audio.Media.SIZE,
+            MediaStore.Audio.Media.DISPLAY_NAME,
+            MediaStore.Audio.Media.ALBUM_ID,
+            MediaStore.Audio.Media.ARTIST_ID,
+            MediaStore.Audio.Media.DATE_ADDED,
+            MediaStore.Audio.Media.DATE_MODIFIED,
+            MediaStore.Audio.Media.MIME_TYPE,
+            MediaStore.Audio.Media.TRACK,
+            MediaStore.Audio.Media.YEAR,
+            MediaStore.Audio.Media.IS_MUSIC,
+            MediaStore.MediaColumns.GENERATION_MODIFIED
+    };
+
+    private static final Pattern ID_IN = Pattern.compile(MediaStore.Audio.Media._ID + " IN \\(([^)]*)\\)");
+
+    /**
+     * 一行合成的音频记录
+     */
+    static class Row {
+        long id;
+        String title;
+        String artist;
+        String album;
+        String path;
+        long size;
+        long albumId;
+        long artistId;
+        long dateAdded;
+        long dateModified;
+        int track;
+        int year;
+        long generation;
+
+        Object value(String column) {
+            switch (column) {
+                case MediaStore.Audio.Media._ID: return id;
+                case MediaStore.Audio.Media.TITLE: return title;
+                case MediaStore.Audio.Media.ARTIST: return artist;
+                case MediaStore.Audio.Media.ALBUM: return album;
+                case MediaStore.Audio.Media.DATA: return path;
+                case MediaStore.Audio.Media.DURATION: return 180000L;
+                case MediaStore.Audio.Media.SIZE: return size;
+                case MediaStore.Audio.Media.DISPLAY_NAME: return title + ".mp3";
+                case MediaStore.Audio.Media.ALBUM_ID: return albumId;
+                case MediaStore.Audio.Media.ARTIST_ID: return artistId;
+                case MediaStore.Audio.Media.DATE_ADDED: return dateAdded;
+                case MediaStore.Audio.Media.DATE_MODIFIED: return dateModified;
+                case MediaStore.Audio.Media.MIME_TYPE: return "audio/mpeg";
+                case MediaStore.Audio.Media.TRACK: return track;
+                case MediaStore.Audio.Media.YEAR: return year;
+                case MediaStore.Audio.Media.IS_MUSIC: return 1;
+                case MediaStore.MediaColumns.GENERATION_MODIFIED: return generation;
+                default: return null;
+            }
+        }
+    }
+
+    // 按_ID排序
+    private final Map<Long, Row> rows = new LinkedHashMap<>();
+    private final AtomicLong queryCount = new AtomicLong();
+    private final AtomicLong rowCount = new AtomicLong();
+    private long generation = 1;
+    private long clock = 1_600_000_000L;
+
+    /**
+     * 生成合成音乐库，每首歌对应fileDir下一个真实存在的空文件
+     * 大约每10首歌一个专辑，每5个专辑一个艺术家
+     */
+    public synchronized void populate(int count, File fileDir) {
+        rows.clear();
+        for (int i = 1; i <= count; i++) {
+            Row row = new Row();
+            row.id = i;
+            row.title = "Track " + i;
+            int albumIndex = (i - 1) / 10;
+            int artistIndex = albumIndex / 5;
+            row.album = "Album " + albumIndex;
+            row.artist = "Artist " + artistIndex;
+            row.albumId = albumIndex + 1;
+            row.artistId = artistIndex + 1;
+            row.path = new File(fileDir, i + ".mp3").getAbsolutePath();
+            row.size = 4_000_000L + i;
+            // 修改时间各不相同，最新的歌曲修改时间等于clock，与真实音乐库一样只有少数行落在水位线上
+            row.dateAdded = clock - count + i;
+            row.dateModified = clock - count + i;
+            row.track = (i - 1) % 10 + 1;
+            row.year = 1990 + albumIndex % 30;
+            row.generation = generation;
+            rows.put(row.id, row);
+        }
+    }
+
+    /**
+     * 修改一部分歌曲并删除一部分歌曲，被修改的歌曲中每4首有1首换了艺术家
+     *
+     * @return {修改数量, 删除数量}
+     */
+    synchronized int[] mutate(double changedRatio, double deletedRatio, long seed) {
+        generation++;
+        clock += 60;
+        List<Long> ids = new ArrayList<>(rows.keySet());
+        Random random = new Random(seed);
+        int changeCount = (int) Math.round(ids.size() * changedRatio);
+        int deleteCount = (int) Math.round(ids.size() * deletedRatio);
+
+        Set<Long> picked = new HashSet<>();
+        int changed = 0;
+        while (changed < changeCount && picked.size() < ids.size()) {
+            long id = ids.get(random.nextInt(ids.size()));
+            if (!picked.add(id)) {
+                continue;
+            }
+            Row row = rows.get(id);
+            row.title = row.title + " (edit)";
+            if (changed % 4 == 0) {
+                row.artist = row.artist + " feat. Guest";
+            }
+            row.dateModified = clock;
+            row.generation = generation;
+            changed++;
+        }
+
+        int deleted = 0;
+        Iterator<Long> iterator = ids.iterator();
+        while (deleted < deleteCount && iterator.hasNext()) {
+            long id = iterator.next();
+            if (picked.add(id)) {
+                rows.remove(id);
+                deleted++;
+            }
+        }
+        return new int[]{changed, deleted};
+    }
+
+    synchronized int size() {
+        return rows.size();
+    }
+
+    long getQueryCount() {
+        return queryCount.get();
+    }
+
+    long getRowCount() {
+        return rowCount.get();
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public synchronized Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                                     String sortOrder) {
+        queryCount.incrementAndGet();
+        String[] columns = projection != null ? projection : COLUMNS;
+        MatrixCursor cursor = new MatrixCursor(columns);
+        RowFilter filter = new RowFilter(selection, selectionArgs);
+        Object[] values = new Object[columns.length];
+        for (Row row : rows.values()) {
+            if (!filter.matches(row)) {
+                continue;
+            }
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = row.value(columns[i]);
+            }
+            cursor.addRow(values);
+        }
+        rowCount.addAndGet(cursor.getCount());
+        return cursor;
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        // MediaStore.getVersion / MediaStore.getGeneration
+        Bundle out = new Bundle();
+        out.putString(Intent.EXTRA_TEXT, "benchmark");
+        synchronized (this) {
+            out.putLong(Intent.EXTRA_INDEX, generation);
+        }
+        return out;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 解析扫描代码实际使用的查询条件，所有合成歌曲都满足IS_MUSIC和DURATION条件
+     */
+    private static class RowFilter {
+        Set<Long> ids;
+        long minDateModified = -1;
+        long minIdExclusive = -1;
+        long minGeneration = -1;
+
+        RowFilter(String selection, String[] args) {
+            if (selection == null) {
+                return;
+            }
+            Matcher matcher = ID_IN.matcher(selection);
+            if (matcher.find()) {
+                ids = new HashSet<>();
+                for (String id : matcher.group(1).split(",")) {
+                    ids.add(Long.parseLong(id.trim()));
+                }
+            }
+            if (selection.contains(MediaStore.MediaColumns.GENERATION_MODIFIED + " > ?")) {
+                minGeneration = Long.parseLong(args[0]);
+            } else if (selection.contains(MediaStore.Audio.Media.DATE_MODIFIED + " >= ?")) {
+                minDateModified = Long.parseLong(args[0]);
+                minIdExclusive = Long.parseLong(args[1]);
+            }
+        }
+
+        boolean matches(Row row) {
+            if (ids != null && !ids.contains(row.id)) {
+                return false;
+            }
+            if (minGeneration >= 0 && row.generation <= minGeneration) {
+                return false;
+            }
+            if (minDateModified >= 0 && row.dateModified < minDateModified && row.id <= minIdExclusive) {
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.magicalstory.music.benchmark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import android.app.Application;
+import android.os.CancellationSignal;
+import android.provider.MediaStore;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.magicalstory.music.model.FavoriteSong;
+import com.magicalstory.music.model.Song;
+import com.magicalstory.music.service.MusicScanPipeline;
+import com.magicalstory.music.service.ScanWatermark;
+import com.magicalstory.music.utils.MusicSyncUtils;
+import com.magicalstory.music.utils.db.LibraryAggregates;
+import com.magicalstory.music.utils.db.LibraryBulkWriter;
+import com.magicalstory.music.utils.db.LibrarySchema;
+import com.magicalstory.music.utils.db.SearchIndex;
+import com.magicalstory.music.utils.file.FilePresenceCache;
+import com.magicalstory.music.utils.query.LibrarySnapshot;
+import com.magicalstory.music.utils.query.SongResolver;
+import com.magicalstory.music.utils.search.FuzzyIndex;
+import com.magicalstory.music.utils.search.LibrarySearch;
+import com.magicalstory.music.utils.text.ArtistCredits;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.litepal.LitePal;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * 扫描/同步基准测试
+ * 用合成的MediaStore数据（默认1k，可通过-Pbenchmark.sizes=1000,10000,100000指定）分别测量：
+ * 全量扫描、增量扫描、全量同步（MusicSyncUtils）、专辑/艺术家统计、全文索引建立和逐字输入搜索的耗时、内存分配、
+ * 数据库写入语句数和MediaStore查询行数，结果以JSON写入build/benchmark/scan-benchmark.json。
+ * <p>
+ * 使用API 29运行，增量扫描走DATE_MODIFIED/_ID水位线。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29, application = Application.class)
+public class ScanBenchmarkTest {
+
+    private static final String DEFAULT_SIZES = "1000";
+    private static final double DEFAULT_CHANGED_RATIO = 0.05;
+    private static final double DEFAULT_DELETED_RATIO = 0.01;
+    private static final String DEFAULT_OUTPUT = "build/benchmark/scan-benchmark.json";
+
+    // 模拟逐字输入的搜索关键字
+    private static final String[] SEARCH_KEYSTROKES = {
+            "t", "tr", "tra", "trac", "track", "track 1", "track 12",
+            "a", "al", "album", "album 3", "artist 2", "edit"
+    };
+    // 拼写错误、缺少空格的关键字，全文索引找不到，由容错搜索补充
+    private static final String[] FUZZY_KEYSTROKES = {
+            "trak", "trakc 1", "albm", "albun 3", "artst", "artist2", "edti"
+    };
+
+    /**
+     * 单项测量结果，字段名即JSON输出的键
+     */
+    static class Result {
+        String scenario;
+        int librarySize;
+        int rowsChanged;
+        int rowsDeleted;
+        long wallMs;
+        int operations;
+        long allocatedBytes;
+        long dbStatements;
+        long dbTransactions;
+        long providerQueries;
+        long providerRows;
+        int resultCount;
+    }
+
+    /**
+     * 整次运行的输出
+     */
+    static class Report {
+        long timestamp;
+        String jvm;
+        double changedRatio;
+        double deletedRatio;
+        List<Result> results = new ArrayList<>();
+    }
+
+    /**
+     * 内存中的水位线存储，替代MMKV
+     */
+    private static class MemoryWatermarkStore implements ScanWatermark.Store {
+        private ScanWatermark saved;
+
+        @Override
+        public ScanWatermark load() {
+            ScanWatermark watermark = new ScanWatermark();
+            if (saved != null) {
+                watermark.hasScanned = saved.hasScanned;
+                watermark.mediaVersion = saved.mediaVersion;
+                watermark.generation = saved.generation;
+                watermark.maxDateModified = saved.maxDateModified;
+                watermark.maxMediaId = saved.maxMediaId;
+            } else {
+                watermark.mediaVersion = "";
+            }
+            return watermark;
+        }
+
+        @Override
+        public void save(ScanWatermark watermark) {
+            saved = watermark;
+        }
+
+        @Override
+        public void reset() {
+            saved = null;
+        }
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Application context;
+    private FakeMediaStoreProvider provider;
+    private File fileDir;
+    private int createdFiles = 0;
+
+    @Before
+    public void setUp() throws IOException {
+        context = RuntimeEnvironment.getApplication();
+        LitePal.initialize(context);
+        LibrarySchema.migrate();
+        ScanWatermark.setStore(new MemoryWatermarkStore());
+        ArtistCredits.useSeparators(ArtistCredits.DEFAULT_SEPARATORS);
+        provider = Robolectric.setupContentProvider(FakeMediaStoreProvider.class, MediaStore.AUTHORITY);
+        fileDir = temporaryFolder.newFolder("music");
+    }
+
+    @After
+    public void tearDown() {
+        // LitePal缓存了数据库连接，Robolectric每个测试使用新的应用目录
+        LitePal.deleteDatabase("MagicalMusic");
+    }
+
+    @Test
+    public void benchmarkScanAndSync() throws Exception {
+        double changedRatio = Double.parseDouble(System.getProperty("benchmark.changedRatio",
+                String.valueOf(DEFAULT_CHANGED_RATIO)));
+        double deletedRatio = Double.parseDouble(System.getProperty("benchmark.deletedRatio",
+                String.valueOf(DEFAULT_DELETED_RATIO)));
+
+        Report report = new Report();
+        report.timestamp = System.currentTimeMillis();
+        report.jvm = System.getProperty("java.vm.name") + " " + System.getProperty("java.version");
+        report.changedRatio = changedRatio;
+        report.deletedRatio = deletedRatio;
+
+        for (String value : System.getProperty("benchmark.sizes", DEFAULT_SIZES).split(",")) {
+            int size = Integer.parseInt(value.trim());
+            runLibrarySize(size, changedRatio, deletedRatio, report.results);
+        }
+
+        writeReport(report);
+    }
+
+    private void runLibrarySize(int size, double changedRatio, double deletedRatio, List<Result> results)
+            throws Exception {
+        resetLibrary();
+        createFiles(size);
+        provider.populate(size, fileDir);
+
+        // 1. 全量扫描：空数据库
+        results.add(measure("full_scan", size, 0, 0,
+                () -> new MusicScanPipeline(context, true, null).run()));
+        assertEquals(size, LitePal.count(Song.class));
+
+        // 2. 增量扫描：只读取水位线之后变化的行，再用_ID查询检测删除
+        int[] mutation = provider.mutate(changedRatio, deletedRatio, size);
+        results.add(measure("incremental_scan", size, mutation[0], mutation[1],
+                () -> new MusicScanPipeline(context, false, null).run()));
+        assertEquals(provider.size(), LitePal.count(Song.class));
+
+        // 3. 同步：MusicSyncUtils读取整个MediaStore并与数据库逐行比较
+        mutation = provider.mutate(changedRatio, deletedRatio, size + 1);
+        MusicSyncUtils.SyncResult[] syncResult = new MusicSyncUtils.SyncResult[1];
+        results.add(measure("sync", size, mutation[0], mutation[1], () -> {
+            MusicSyncUtils.syncMusicFiles(context, result -> syncResult[0] = result);
+            return syncResult[0] == null ? 0 : syncResult[0].updatedSongs + syncResult[0].deletedSongs;
+        }));
+        assertNotNull("同步失败", syncResult[0]);
+        assertEquals(provider.size(), LitePal.count(Song.class));
+
+        // 4. 专辑/艺术家统计：清空后按所有歌曲重新统计
+        LitePal.getDatabase().execSQL("delete from album");
+        LitePal.getDatabase().execSQL("delete from artist");
+        LibraryAggregates aggregates = new LibraryAggregates();
+        for (Song song : LitePal.select("album", "artist").find(Song.class)) {
+            aggregates.touch(song);
+        }
+        results.add(measure("aggregate_rebuild", size, 0, 0, () -> {
+            try (LibraryBulkWriter writer = new LibraryBulkWriter()) {
+                LibraryAggregates.Result result = aggregates.apply(writer);
+                writer.flush();
+                return result.addedAlbums + result.addedArtists;
+            }
+        }));
+
+        // 5. 全文索引：扫描后一次性处理所有变化的行
+        results.add(measure("search_index_build", size, 0, 0, SearchIndex::syncPending));
+
+        // 6. 逐字输入搜索，每个关键字对应一次"全部"搜索，wallMs / operations即单次搜索耗时
+        results.add(measure("search_keystroke", size, 0, 0, SEARCH_KEYSTROKES.length, () -> {
+            int count = 0;
+            for (String query : SEARCH_KEYSTROKES) {
+                LibrarySearch.Results searchResults = LibrarySearch.searchAll(query);
+                count += searchResults.songs.size() + searchResults.albums.size() + searchResults.artists.size();
+            }
+            return count;
+        }));
+
+        // 7. 列表页面：LitePal读取整张表 与 从内存快照读取（第一次读取快照包含构建时间）
+        results.add(measure("song_list_litepal", size, 0, 0,
+                () -> LitePal.order("dateAdded desc").find(Song.class).size()));
+        LibrarySnapshot.invalidate();
+        results.add(measure("library_snapshot_build", size, 0, 0, () -> LibrarySnapshot.get().getSongCount()));
+        results.add(measure("song_list_snapshot", size, 0, 0,
+                () -> new ArrayList<>(LibrarySnapshot.get().getSongsByDateAdded()).size()));
+
+        // 8. 容错搜索：第一次搜索包含构建三元组索引的时间
+        results.add(measure("fuzzy_index_build", size, 0, 0,
+                () -> FuzzyIndex.get(LibrarySnapshot.get()).search(FuzzyIndex.KIND_SONG, "trak", 50, null).size()));
+        results.add(measure("fuzzy_search_keystroke", size, 0, 0, FUZZY_KEYSTROKES.length, () -> {
+            int count = 0;
+            for (String query : FUZZY_KEYSTROKES) {
+                LibrarySearch.Results searchResults = LibrarySearch.search(query, "all", new CancellationSignal());
+                count += searchResults.songs.size() + searchResults.albums.size() + searchResults.artists.size();
+            }
+            return count;
+        }));
+
+        // 9. 收藏列表：逐个LitePal.find 与 SongResolver批量读取（快照失效时走数据库）
+        LitePal.getDatabase().execSQL("insert into favoritesong (songid, addtime, sortorder) "
+                + "select id, dateadded, 0 from song");
+        results.add(measure("favorites_find_each", size, 0, 0, () -> {
+            int count = 0;
+            for (FavoriteSong favoriteSong : LitePal.order("addTime desc").find(FavoriteSong.class)) {
+                if (LitePal.find(Song.class, favoriteSong.getSongId()) != null) {
+                    count++;
+                }
+            }
+            return count;
+        }));
+        LibrarySnapshot.invalidate();
+        results.add(measure("favorites_resolve", size, 0, 0,
+                () -> SongResolver.resolveQuery("select songid from favoritesong order by addtime desc").size()));
+    }
+
+    private Result measure(String scenario, int size, int changed, int deleted, Callable<Integer> body)
+            throws Exception {
+        return measure(scenario, size, changed, deleted, 1, body);
+    }
+
+    private Result measure(String scenario, int size, int changed, int deleted, int operations,
+                           Callable<Integer> body) throws Exception {
+        // 每个场景都从冷缓存开始，避免上一个场景的文件校验结果影响测量
+        FilePresenceCache.getInstance().clear();
+        System.gc();
+
+        AllocationSampler sampler = new AllocationSampler();
+        long statements = LibraryBulkWriter.getTotalStatementCount();
+        long transactions = LibraryBulkWriter.getTotalTransactionCount();
+        long queries = provider.getQueryCount();
+        long rows = provider.getRowCount();
+
+        sampler.start();
+        long start = System.nanoTime();
+        int count = body.call();
+        long wallNs = System.nanoTime() - start;
+        long allocated = sampler.stop();
+
+        Result result = new Result();
+        result.scenario = scenario;
+        result.librarySize = size;
+        result.rowsChanged = changed;
+        result.rowsDeleted = deleted;
+        result.wallMs = wallNs / 1_000_000;
+        result.operations = operations;
+        result.allocatedBytes = allocated;
+        result.dbStatements = LibraryBulkWriter.getTotalStatementCount() - statements;
+        result.dbTransactions = LibraryBulkWriter.getTotalTransactionCount() - transactions;
+        result.providerQueries = provider.getQueryCount() - queries;
+        result.providerRows = provider.getRowCount() - rows;
+        result.resultCount = count;
+        System.out.println("benchmark " + new Gson().toJson(result));
+        return result;
+    }
+
+    private void resetLibrary() {
+        LitePal.getDatabase().execSQL("delete from song");
+        LitePal.getDatabase().execSQL("delete from album");
+        LitePal.getDatabase().execSQL("delete from artist");
+        LitePal.getDatabase().execSQL("delete from favoritesong");
+        LitePal.getDatabase().execSQL("delete from songartist");
+        ScanWatermark.reset();
+        FilePresenceCache.getInstance().clear();
+    }
+
+    /**
+     * 创建合成歌曲对应的空文件，多个音乐库大小之间复用
+     */
+    private void createFiles(int count) throws IOException {
+        for (int i = createdFiles + 1; i <= count; i++) {
+            if (!new File(fileDir, i + ".mp3").createNewFile()) {
+                throw new IOException("无法创建文件: " + i);
+            }
+        }
+        createdFiles = Math.max(createdFiles, count);
+    }
+
+    private void writeReport(Report report) throws IOException {
+        File output = new File(System.getProperty("benchmark.output", DEFAULT_OUTPUT));
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("无法创建目录: " + parent);
+        }
+        try (Writer writer = new FileWriter(output)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+        }
+        System.out.println("benchmark report: " + output.getAbsolutePath());
+    }
+}
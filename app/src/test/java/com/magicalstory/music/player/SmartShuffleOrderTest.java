@@ -0,0 +1,201 @@
+package com.magicalstory.music.player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.magicalstory.music.model.Song;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 随机播放顺序测试：每次操作后位置和下标两个数组互为逆映射，已播放的位置不变
+ */
+public class SmartShuffleOrderTest {
+
+    private static final int SIZE = 20;
+
+    @Test
+    public void constructorPutsStartIndexFirst() {
+        SmartShuffleOrder order = new SmartShuffleOrder(SIZE, 7);
+        assertEquals(7, order.indexAt(0));
+        assertEquals(0, order.positionOf(7));
+        assertConsistent(order, SIZE);
+    }
+
+    @Test
+    public void pinMovesUnplayedSongAfterPlayedPart() {
+        SmartShuffleOrder order = new SmartShuffleOrder(SIZE, 0);
+        order.markPlayed(1);
+        int[] before = snapshot(order, SIZE);
+
+        int pinned = order.pin(before[6]);
+
+        assertEquals(2, pinned);
+        assertEquals(before[6], order.indexAt(2));
+        // 已播放的位置不变，被越过的歌曲依次后移，之后的位置不变
+        assertEquals(before[0], order.indexAt(0));
+        assertEquals(before[1], order.indexAt(1));
+        for (int p = 2; p < 6; p++) {
+            assertEquals(before[p], order.indexAt(p + 1));
+        }
+        for (int p = 7; p < SIZE; p++) {
+            assertEquals(before[p], order.indexAt(p));
+        }
+        assertConsistent(order, SIZE);
+    }
+
+    @Test
+    public void pinKeepsPlayedSongInPlace() {
+        SmartShuffleOrder order = new SmartShuffleOrder(SIZE, 0);
+        order.markPlayed(4);
+        int[] before = snapshot(order, SIZE);
+
+        assertEquals(2, order.pin(before[2]));
+        assertTrue(Arrays.equals(before, snapshot(order, SIZE)));
+        assertConsistent(order, SIZE);
+    }
+
+    @Test
+    public void insertBeforeInsideAndAfterFixedRange() {
+        // 已打散的位置是[0, 5)
+        assertInsert(0, 2, 0);
+        assertInsert(5, 3, 2);
+        assertInsert(SIZE, 2, SIZE);
+    }
+
+    @Test
+    public void removeAllKeepsCurrentSongFirst() {
+        SmartShuffleOrder order = new SmartShuffleOrder(SIZE, 4);
+        int[] before = snapshot(order, SIZE);
+        boolean[] removed = new boolean[SIZE];
+        removed[0] = true;
+        removed[3] = true;
+        removed[11] = true;
+        removed[19] = true;
+
+        order.removeAll(removed);
+
+        List<Integer> expected = new ArrayList<>();
+        for (int index : before) {
+            if (!removed[index]) {
+                expected.add(newIndex(index, removed));
+            }
+        }
+        assertEquals(expected, toList(snapshot(order, expected.size())));
+        // 当前歌曲的下标4之前移除了2首
+        assertEquals(2, order.indexAt(0));
+        assertConsistent(order, expected.size());
+    }
+
+    @Test
+    public void swapIndicesKeepsPositions() {
+        SmartShuffleOrder order = new SmartShuffleOrder(SIZE, 0);
+        int positionA = order.positionOf(3);
+        int positionB = order.positionOf(12);
+
+        order.swapIndices(3, 12);
+
+        assertEquals(positionB, order.positionOf(3));
+        assertEquals(positionA, order.positionOf(12));
+        assertEquals(12, order.indexAt(positionA));
+        assertEquals(3, order.indexAt(positionB));
+        assertConsistent(order, SIZE);
+    }
+
+    @Test
+    public void reshuffleAfterKeepsPrefix() {
+        SmartShuffleOrder order = new SmartShuffleOrder(SIZE, 0);
+        order.markPlayed(5);
+        int[] before = snapshot(order, SIZE);
+
+        order.reshuffleAfter(5);
+
+        int[] after = snapshot(order, SIZE);
+        for (int p = 0; p <= 5; p++) {
+            assertEquals(before[p], after[p]);
+        }
+        Set<Integer> remainingBefore = new HashSet<>();
+        Set<Integer> remainingAfter = new HashSet<>();
+        for (int p = 6; p < SIZE; p++) {
+            remainingBefore.add(before[p]);
+            remainingAfter.add(after[p]);
+        }
+        assertEquals(remainingBefore, remainingAfter);
+        assertConsistent(order, SIZE);
+    }
+
+    /**
+     * 在列表下标index处插入count首歌曲，排在播放顺序的position处
+     */
+    private static void assertInsert(int index, int count, int position) {
+        SmartShuffleOrder order = new SmartShuffleOrder(SIZE, 0);
+        // 歌曲没有关联专辑和艺术家，打散时不会交换
+        order.spreadTo(songs(SIZE), 4);
+        int[] before = snapshot(order, SIZE);
+
+        order.insert(index, count, position, false);
+
+        List<Integer> expected = new ArrayList<>();
+        for (int oldIndex : before) {
+            expected.add(oldIndex >= index ? oldIndex + count : oldIndex);
+        }
+        for (int i = 0; i < count; i++) {
+            expected.add(position + i, index + i);
+        }
+        assertEquals(expected, toList(snapshot(order, SIZE + count)));
+        assertConsistent(order, SIZE + count);
+    }
+
+    /**
+     * positionOf是indexAt的逆映射，下标不重复
+     */
+    private static void assertConsistent(SmartShuffleOrder order, int size) {
+        boolean[] seen = new boolean[size];
+        for (int p = 0; p < size; p++) {
+            int index = order.indexAt(p);
+            assertTrue("重复的下标: " + index, !seen[index]);
+            seen[index] = true;
+            assertEquals(p, order.positionOf(index));
+        }
+    }
+
+    private static int[] snapshot(SmartShuffleOrder order, int size) {
+        int[] indexes = new int[size];
+        for (int p = 0; p < size; p++) {
+            indexes[p] = order.indexAt(p);
+        }
+        return indexes;
+    }
+
+    private static List<Integer> toList(int[] values) {
+        List<Integer> list = new ArrayList<>(values.length);
+        for (int value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static int newIndex(int index, boolean[] removed) {
+        int removedBefore = 0;
+        for (int i = 0; i < index; i++) {
+            if (removed[i]) {
+                removedBefore++;
+            }
+        }
+        return index - removedBefore;
+    }
+
+    private static List<Song> songs(int count) {
+        List<Song> songs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            songs.add(new Song());
+        }
+        return songs;
+    }
+}
@@ -0,0 +1,129 @@
+package com.magicalstory.music.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import android.app.Application;
+import android.provider.MediaStore;
+
+import com.magicalstory.music.benchmark.FakeMediaStoreProvider;
+import com.magicalstory.music.utils.db.LibrarySchema;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.litepal.LitePal;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 扫描流水线测试：写入阶段失败时读取、映射阶段的线程都能退出
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29, application = Application.class)
+public class MusicScanPipelineTest {
+
+    // 超过读取队列和批次队列的容量，写入阶段失败时两个阶段都阻塞在put上
+    private static final int SONG_COUNT = 3000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Application context;
+
+    @Before
+    public void setUp() throws IOException {
+        context = RuntimeEnvironment.getApplication();
+        LitePal.initialize(context);
+        LibrarySchema.migrate();
+        ScanWatermark.setStore(new ScanWatermark.Store() {
+            private ScanWatermark saved;
+
+            @Override
+            public ScanWatermark load() {
+                if (saved != null) {
+                    return saved;
+                }
+                ScanWatermark watermark = new ScanWatermark();
+                watermark.mediaVersion = "";
+                return watermark;
+            }
+
+            @Override
+            public void save(ScanWatermark watermark) {
+                saved = watermark;
+            }
+
+            @Override
+            public void reset() {
+                saved = null;
+            }
+        });
+        File fileDir = temporaryFolder.newFolder("music");
+        for (int i = 1; i <= SONG_COUNT; i++) {
+            if (!new File(fileDir, i + ".mp3").createNewFile()) {
+                throw new IOException("无法创建文件: " + i);
+            }
+        }
+        FakeMediaStoreProvider provider = Robolectric.setupContentProvider(FakeMediaStoreProvider.class,
+                MediaStore.AUTHORITY);
+        provider.populate(SONG_COUNT, fileDir);
+    }
+
+    @After
+    public void tearDown() {
+        LitePal.deleteDatabase("MagicalMusic");
+    }
+
+    @Test
+    public void writerFailureStopsStageThreads() throws Exception {
+        RuntimeException failure = new IllegalStateException("写入失败");
+        // 每批一首歌，进度回调在写入阶段中调用；等前面两个阶段填满队列后再失败
+        MusicScanPipeline pipeline = new MusicScanPipeline(context, true, 1,
+                (rowsRead, rowsWritten, totalRows, etaMs) -> {
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw failure;
+                });
+        try {
+            pipeline.run();
+            fail("写入阶段的异常没有抛出");
+        } catch (IllegalStateException e) {
+            assertEquals(failure, e);
+        }
+
+        assertFalse("读取/映射阶段的线程没有退出", stageThreadAlive(1000));
+    }
+
+    /**
+     * 等待最多timeoutMs后是否还有读取/映射阶段的线程（线程池终止时工作线程可能还没完全退出）
+     */
+    private static boolean stageThreadAlive(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            boolean alive = false;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (MusicScanPipeline.STAGE_THREAD_NAME.equals(thread.getName()) && thread.isAlive()) {
+                    alive = true;
+                    break;
+                }
+            }
+            if (!alive || System.currentTimeMillis() >= deadline) {
+                return alive;
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.magicalstory.music.utils.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.app.Application;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.magicalstory.music.utils.text.ArtistCredits;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.litepal.LitePal;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 热点查询的执行计划测试
+ * 对每条热点查询执行EXPLAIN QUERY PLAN，出现不使用索引的全表扫描（"SCAN 表名"）即失败，
+ * 避免索引被删除或查询条件改写后悄悄退化为全表扫描
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29, application = Application.class)
+public class LibrarySchemaQueryPlanTest {
+
+    // 热点查询，与LitePal.where(...)生成的SQL等价；参数只影响执行计划的展示，用1占位
+    private static final String[] HOT_QUERIES = {
+            // MusicQueryUtils.getSongsByArtist、艺术家详情
+            "select * from song where artist = ?",
+            "select count(*) from song where artist = ?",
+            // AlbumDetailFragment
+            "select * from song where albumid = ? and artist = ? order by track asc",
+            "select * from song where album = ? and artist = ?",
+            // 扫描和同步的匹配
+            "select * from song where mediastoreid in (1, 2, 3)",
+            "select * from song where path = ?",
+            // 最近添加、最近播放
+            "select * from song order by dateadded desc limit 50",
+            "select * from song where lastplayed > 0 order by lastplayed desc limit 10",
+            "select * from album where artist = ?",
+            "select * from album where albumname = ? and artist = ?",
+            "select * from artist where artistname = ?",
+            // PlayHistory.recordPlay
+            "select * from playhistory where songid = ?",
+            // FavoriteManager.isFavorite
+            "select * from favoritesong where songid = ?",
+            // PlaylistSong.containsPlaylistSong、歌单内容、删除歌曲时清理歌单
+            "select * from playlistsong where playlistid = ? and songid = ?",
+            "select * from playlistsong where playlistid = ? order by position asc, addedtime asc",
+            "delete from playlistsong where songid = ?",
+            // SongPager：按(排序键, id)定位下一页
+            "select s.dateadded, s.id, s.id from song s where (s.dateadded < ? or (s.dateadded = ? and s.id < ?)) "
+                    + "order by s.dateadded desc, s.id desc limit 100",
+            "select s.dateadded, s.id, s.id from songartist sa join song s on s.id = sa.songid where sa.artistid = ? "
+                    + "and (s.dateadded < ? or (s.dateadded = ? and s.id < ?)) order by s.dateadded desc, s.id desc "
+                    + "limit 100",
+            "select s.dateadded, s.id, s.id from song s where s.albumrowid = ? and (s.dateadded < ? "
+                    + "or (s.dateadded = ? and s.id < ?)) order by s.dateadded desc, s.id desc limit 100",
+            "select f.addtime, f.id, f.songid from favoritesong f where (f.addtime < ? "
+                    + "or (f.addtime = ? and f.id < ?)) order by f.addtime desc, f.id desc limit 100",
+            "select h.playcount, h.id, h.songid from playhistory h where (h.playcount < ? "
+                    + "or (h.playcount = ? and h.id < ?)) order by h.playcount desc, h.id desc limit 100",
+            "select p.addedtime, p.id, p.songid from playlistsong p where p.playlistid = ? and (p.addedtime < ? "
+                    + "or (p.addedtime = ? and p.id < ?)) order by p.addedtime desc, p.id desc limit 100",
+            // 按行ID关联：专辑详情、艺术家详情和计数
+            "select * from song where albumrowid = ? order by track asc",
+            "select * from song where id in (select songid from songartist where artistid = ?) "
+                    + "order by dateadded desc limit 10",
+            "select count(*) from songartist where artistid = ?",
+            "select * from album where artistrowid = ? and id != ? limit 10",
+            "select count(*) from album where artistrowid = ?",
+            // LibraryBulkWriter.linkCredit、删除歌曲时清理关联行
+            "update album set artistrowid = ? where artist = ?",
+            "update song set artistrowid = ?, albumrowid = ifnull((select a.id from album a "
+                    + "where a.albumname = song.album and a.artist = song.artist), 0) where artist = ?",
+            "delete from songartist where songid in (select id from song where artist = ?)",
+            "insert into songartist (songid, artistid, position) select id, ?, ? from song where artist = ?",
+            // LibraryAggregates：署名关联的艺术家和按关联行统计
+            "select distinct artistid from songartist where songid in (select id from song where artist = ?)",
+            "select count(*), count(distinct s.albumrowid), max(s.dateadded) "
+                    + "from songartist sa join song s on s.id = sa.songid where sa.artistid = ?",
+            "delete from songartist where songid = ?",
+            // PlayEventLog：累加汇总、最常播放分页、按周期读取前k项
+            "update playrollup set playcount = playcount + 1, listenedms = listenedms + ? "
+                    + "where period = ? and bucket = ? and kind = ? and itemid = ?",
+            "update playrollup set playcount = playcount + 1, listenedms = listenedms + ? where period = ? "
+                    + "and bucket = ? and kind = 3 and itemid in (select artistid from songartist where songid = ?)",
+            "select r.playcount, r.itemid, r.itemid from playrollup r where r.period = 3 and r.bucket = 0 "
+                    + "and r.kind = 1 and (r.playcount < ? or (r.playcount = ? and r.itemid < ?)) "
+                    + "order by r.playcount desc, r.itemid desc limit 100",
+            "select itemid, playcount, listenedms from playrollup where period = ? and bucket = ? and kind = ? "
+                    + "order by playcount desc, itemid desc limit ?",
+            // ContentFingerprintIndex.findDuplicateGroups
+            "select contentkey from song where contentkey is not null group by contentkey having count(*) > 1",
+            "select * from song where contentkey in (?, ?) order by contentkey, id",
+    };
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        LitePal.initialize(RuntimeEnvironment.getApplication());
+        db = LitePal.getDatabase();
+        LibrarySchema.migrate(db);
+    }
+
+    @After
+    public void tearDown() {
+        LitePal.deleteDatabase("MagicalMusic");
+    }
+
+    @Test
+    public void hotQueriesUseIndexes() {
+        List<String> failures = new ArrayList<>();
+        for (String sql : HOT_QUERIES) {
+            for (String detail : explain(sql)) {
+                if (isTableScan(detail)) {
+                    failures.add(sql + " -> " + detail);
+                }
+            }
+        }
+        if (!failures.isEmpty()) {
+            fail("热点查询退化为全表扫描:\n" + String.join("\n", failures));
+        }
+    }
+
+    @Test
+    public void missingIndexesAreRecreated() {
+        // LitePal升级时重建表会删除索引
+        db.execSQL("drop index idx_song_artist");
+        assertTrue(isTableScan(explain("select * from song where artist = ?").get(0)));
+
+        LibrarySchema.migrate(db);
+        for (String detail : explain("select * from song where artist = ?")) {
+            assertTrue(detail, !isTableScan(detail));
+        }
+    }
+
+    @Test
+    public void migrationsRunOnce() {
+        int version = LibrarySchema.getVersion(db);
+        assertTrue(version > 0);
+
+        LibrarySchema.migrate(db);
+        Cursor cursor = db.rawQuery("select count(*) from schemaversion where version = ?",
+                new String[]{String.valueOf(version)});
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1, cursor.getInt(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void artistRelationsFollowLinksAndDeletes() {
+        db.execSQL("insert into artist (artistname) values ('A')");
+        db.execSQL("insert into album (albumname, artist) values ('X', 'A')");
+        db.execSQL("insert into song (title, artist, album) values ('1', 'A', 'X')");
+        db.execSQL("insert into song (title, artist, album) values ('2', 'A', 'X')");
+        try (LibraryBulkWriter writer = new LibraryBulkWriter()) {
+            writer.linkCredit("A", Collections.singletonList((long) count("select id from artist")));
+            writer.flush();
+        }
+        assertEquals(2, count("select count(*) from song where albumrowid = (select id from album) "
+                + "and artistrowid = (select id from artist)"));
+        assertEquals(1, count("select count(*) from album where artistrowid = (select id from artist)"));
+        assertEquals(2, count("select count(*) from songartist where artistid = (select id from artist)"));
+
+        // 删除歌曲时触发器清理关联行
+        db.execSQL("delete from song where title = '1'");
+        assertEquals(1, count("select count(*) from songartist"));
+    }
+
+    @Test
+    public void multiArtistCreditsLinkEveryArtist() {
+        ArtistCredits.useSeparators(ArtistCredits.DEFAULT_SEPARATORS);
+        // 迁移前按整个署名保存的组合艺术家
+        db.execSQL("insert into artist (artistname) values ('A;B')");
+        db.execSQL("insert into song (title, artist, album, dateadded) values ('1', 'A;B', 'X', 1)");
+        db.execSQL("insert into song (title, artist, album, dateadded) values ('2', 'A feat. C', 'Y', 2)");
+        db.execSQL("insert into songartist (songid, artistid, position) select s.id, r.id, 0 "
+                + "from song s, artist r where s.artist = 'A;B'");
+
+        LibraryAggregates.refreshArtists("A;B", "A feat. C");
+
+        assertEquals(0, count("select count(*) from artist where artistname = 'A;B'"));
+        assertEquals(2, count("select songcount from artist where artistname = 'A'"));
+        assertEquals(2, count("select albumcount from artist where artistname = 'A'"));
+        assertEquals(1, count("select songcount from artist where artistname = 'B'"));
+        assertEquals(1, count("select songcount from artist where artistname = 'C'"));
+        // 主艺术家为署名中的第一位
+        assertEquals(2, count("select count(*) from song where artistrowid = "
+                + "(select id from artist where artistname = 'A')"));
+        assertEquals(4, count("select count(*) from songartist"));
+    }
+
+    @Test
+    public void listensRollUpByPeriodAndItem() {
+        db.execSQL("insert into song (title, artist, album, albumrowid) values ('1', 'A', 'X', 7)");
+        db.execSQL("insert into song (title, artist, album, albumrowid) values ('2', 'A', 'X', 7)");
+        db.execSQL("insert into songartist (songid, artistid, position) select id, 5, 0 from song");
+        long time = 1_700_000_000_000L;
+        PlayEventLog.Writer writer = new PlayEventLog.Writer(db);
+        try {
+            writer.append(1, 7, time, 1000, PlayEventLog.END_COMPLETED);
+            writer.append(1, 7, time, 2000, PlayEventLog.END_SKIPPED);
+            writer.append(2, 7, time + 40L * 24 * 60 * 60 * 1000, 500, PlayEventLog.END_SKIPPED);
+        } finally {
+            writer.close();
+        }
+
+        assertEquals(3, count("select count(*) from playevent"));
+        PlayEventLog.Rollup total = PlayEventLog.getTotal(PlayEventLog.PERIOD_ALL, time);
+        assertEquals(3, total.playCount);
+        assertEquals(3500, total.listenedMs);
+        assertEquals(2, PlayEventLog.getTotal(PlayEventLog.PERIOD_DAY, time).playCount);
+        assertEquals(2, PlayEventLog.getTotal(PlayEventLog.PERIOD_MONTH, time).playCount);
+
+        List<PlayEventLog.Rollup> songs = PlayEventLog.getTop(PlayEventLog.PERIOD_ALL, time, PlayEventLog.KIND_SONG, 10);
+        assertEquals(2, songs.size());
+        assertEquals(1, songs.get(0).itemId);
+        assertEquals(2, songs.get(0).playCount);
+        assertEquals(3, PlayEventLog.getTop(PlayEventLog.PERIOD_ALL, time, PlayEventLog.KIND_ALBUM, 10)
+                .get(0).playCount);
+        assertEquals(3, PlayEventLog.getTop(PlayEventLog.PERIOD_ALL, time, PlayEventLog.KIND_ARTIST, 10)
+                .get(0).playCount);
+
+        // 从最常播放中移除只删除汇总，收听记录保留
+        PlayEventLog.clearMostPlayed();
+        assertEquals(0, PlayEventLog.getTop(PlayEventLog.PERIOD_ALL, time, PlayEventLog.KIND_SONG, 10).size());
+        assertEquals(3, count("select count(*) from playevent"));
+    }
+
+    private int count(String sql) {
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private List<String> explain(String sql) {
+        int argCount = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) == '?') {
+                argCount++;
+            }
+        }
+        String[] args = new String[argCount];
+        for (int i = 0; i < argCount; i++) {
+            args[i] = "1";
+        }
+
+        List<String> details = new ArrayList<>();
+        Cursor cursor = db.rawQuery("explain query plan " + sql, args);
+        try {
+            int detailColumn = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                details.add(cursor.getString(detailColumn));
+            }
+        } finally {
+            cursor.close();
+        }
+        return details;
+    }
+
+    /**
+     * 不使用索引的全表扫描，例如"SCAN song"或旧版本SQLite的"SCAN TABLE song"；
+     * 按索引顺序遍历（"SCAN song USING INDEX ..."）用于ORDER BY ... LIMIT，不算退化
+     */
+    private static boolean isTableScan(String detail) {
+        return detail.startsWith("SCAN") && !detail.contains("USING");
+    }
+}
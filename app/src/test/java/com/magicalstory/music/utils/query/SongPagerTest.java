@@ -0,0 +1,74 @@
+package com.magicalstory.music.utils.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.db.LibrarySchema;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.litepal.LitePal;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 键集分页测试：逐页读取到末尾，歌曲不重复、不遗漏，并且能读完
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29, application = Application.class)
+public class SongPagerTest {
+
+    // 不是整页数，最后一页不满
+    private static final int SONG_COUNT = SongPager.PAGE_SIZE * 2 + 37;
+
+    @Before
+    public void setUp() {
+        LitePal.initialize(RuntimeEnvironment.getApplication());
+        SQLiteDatabase db = LitePal.getDatabase();
+        LibrarySchema.migrate(db);
+        LibrarySnapshot.invalidate();
+        for (int i = 0; i < SONG_COUNT; i++) {
+            // 每三首添加时间相同，需要按行ID区分
+            db.execSQL("insert into song (title, artist, album, path, dateadded) values (?, 'A', 'X', ?, ?)",
+                    new Object[]{"song" + i, "/music/" + i + ".mp3", i / 3});
+        }
+    }
+
+    @After
+    public void tearDown() {
+        LitePal.deleteDatabase("MagicalMusic");
+    }
+
+    @Test
+    public void randomPagesVisitEverySongOnce() {
+        assertPagesVisitEverySongOnce(SongPager.random(12345));
+    }
+
+    @Test
+    public void dateAddedPagesVisitEverySongOnce() {
+        assertPagesVisitEverySongOnce(SongPager.allByDateAdded());
+    }
+
+    private static void assertPagesVisitEverySongOnce(SongPager pager) {
+        Set<Long> seen = new HashSet<>();
+        int pages = 0;
+        while (pager.hasMore()) {
+            pages++;
+            assertTrue("分页没有结束", pages <= SONG_COUNT / SongPager.PAGE_SIZE + 2);
+            for (Song song : pager.nextPage()) {
+                assertTrue("重复的歌曲: " + song.getId(), seen.add(song.getId()));
+            }
+        }
+        assertEquals(SONG_COUNT, seen.size());
+    }
+}
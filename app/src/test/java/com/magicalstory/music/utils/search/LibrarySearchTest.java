@@ -0,0 +1,100 @@
+package com.magicalstory.music.utils.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.magicalstory.music.model.Song;
+import com.magicalstory.music.utils.db.LibrarySchema;
+import com.magicalstory.music.utils.query.LibrarySnapshot;
+import com.magicalstory.music.utils.text.PinyinUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.litepal.LitePal;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 搜索行为测试：匹配列的排序、拼音首字母、容错搜索的补充结果
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29, application = Application.class)
+public class LibrarySearchTest {
+
+    private SQLiteDatabase db;
+    private int nextPath;
+
+    @Before
+    public void setUp() {
+        LitePal.initialize(RuntimeEnvironment.getApplication());
+        db = LitePal.getDatabase();
+        LibrarySchema.migrate(db);
+        LibrarySnapshot.invalidate();
+    }
+
+    @After
+    public void tearDown() {
+        LitePal.deleteDatabase("MagicalMusic");
+    }
+
+    @Test
+    public void titleHitRanksAboveArtistOnlyHit() {
+        // 只匹配艺术家的歌曲先插入，ID更小，不能靠ID排在前面
+        insertSong("Other Song", "Yellow Band");
+        insertSong("Yellow", "Coldplay");
+        insertSong("Fix You", "Coldplay");
+
+        List<String> titles = titlesOf(LibrarySearch.searchSongs("yellow"));
+
+        assertEquals(2, titles.size());
+        assertEquals("Yellow", titles.get(0));
+        assertEquals("Other Song", titles.get(1));
+    }
+
+    @Test
+    public void pinyinInitialsFindCjkTitle() {
+        insertSong("晴天", "周杰伦");
+        insertSong("七里香", "周杰伦");
+        insertSong("Yellow", "Coldplay");
+
+        assertEquals(Collections.singletonList("晴天"), titlesOf(LibrarySearch.searchSongs("qt")));
+        assertEquals(Collections.singletonList("晴天"), titlesOf(LibrarySearch.searchSongs("qingtian")));
+    }
+
+    @Test
+    public void oneTypoFallsBackToFuzzyMatch() {
+        insertSong("Yesterday", "The Beatles");
+        insertSong("Yellow", "Coldplay");
+
+        // 全文索引按前缀匹配，拼错一个字母时找不到
+        assertTrue(LibrarySearch.searchSongs("yesterdey").isEmpty());
+
+        LibrarySearch.Results results = LibrarySearch.search("yesterdey", "songs", null);
+        assertEquals(Collections.singletonList("Yesterday"), titlesOf(results.songs));
+    }
+
+    private void insertSong(String title, String artist) {
+        db.execSQL("insert into song (title, artist, album, path, dateadded, titlepinyin, artistpinyin) "
+                        + "values (?, ?, 'X', ?, 0, ?, ?)",
+                new Object[]{title, artist, "/music/" + nextPath++ + ".mp3",
+                        PinyinUtils.transliterate(title), PinyinUtils.transliterate(artist)});
+    }
+
+    private static List<String> titlesOf(List<Song> songs) {
+        List<String> titles = new ArrayList<>(songs.size());
+        for (Song song : songs) {
+            titles.add(song.getTitle());
+        }
+        return titles;
+    }
+}
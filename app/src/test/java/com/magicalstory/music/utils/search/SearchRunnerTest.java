@@ -0,0 +1,122 @@
+package com.magicalstory.music.utils.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Application;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 搜索调度测试：已取消的任务即使执行完也不回调，只回调最后一次提交的结果
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29, application = Application.class)
+public class SearchRunnerTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private SearchRunner runner;
+    private final List<String> results = new ArrayList<>();
+    private final List<Exception> errors = new ArrayList<>();
+
+    private final SearchRunner.Callback<String> callback = new SearchRunner.Callback<String>() {
+        @Override
+        public void onResult(String result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onError(Exception e) {
+            errors.add(e);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        runner = new SearchRunner();
+    }
+
+    @After
+    public void tearDown() {
+        runner.shutdown();
+    }
+
+    @Test
+    public void canceledTaskDeliversNoCallback() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // 第一个任务不检查取消信号，取消后仍然正常返回
+        runner.submit(signal -> {
+            started.countDown();
+            await(release);
+            return "first";
+        }, callback);
+        assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        runner.submit(signal -> "second", callback);
+        release.countDown();
+
+        // 两个任务在同一个线程依次执行，第一个任务的结果先于第二个投递到主线程
+        awaitResult();
+        assertEquals(Collections.singletonList("second"), results);
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void canceledSignalStopsSearchWithoutError() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        runner.submit(signal -> {
+            started.countDown();
+            await(release);
+            // 搜索过程中关键字已变化
+            signal.throwIfCanceled();
+            return "canceled";
+        }, callback);
+        assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        runner.cancel();
+        release.countDown();
+        runner.submit(signal -> "next", callback);
+
+        awaitResult();
+        assertEquals(Collections.singletonList("next"), results);
+        assertTrue(errors.isEmpty());
+    }
+
+    /**
+     * 在搜索线程中等待，Task.run不能抛出受检异常
+     */
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 执行主线程的消息，直到收到结果或超时
+     */
+    private void awaitResult() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (results.isEmpty() && errors.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+    }
+}